@@ -1,13 +1,90 @@
 package com.crypto;
 
+import com.crypto.cluster.LeaseCoordinator;
+import com.crypto.enums.Command;
+import com.crypto.enums.OutputFormat;
 import com.crypto.exception.InvalidArgumentException;
 import com.crypto.processor.SpreadsheetProcessor;
 import com.crypto.util.StringUtils;
+import com.google.common.base.Strings;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.util.Arrays;
 
 public class Application {
 
+    /**
+     * Option for writing to a local file, in the format --output=csv:path or --output=ndjson:path
+     */
+    private static final String OUTPUT_OPTION = "--output=";
+
+    /**
+     * Option for the connect and read timeout of a single page request, in seconds
+     */
+    private static final String REQUEST_TIMEOUT_OPTION = "--request-timeout=";
+
+    /**
+     * Option for the time a single coin has to be resolved and retrieved, in seconds
+     */
+    private static final String COIN_TIMEOUT_OPTION = "--coin-timeout=";
+
+    /**
+     * Option for the time a batch or refresh run has before in-flight work is cancelled, in seconds
+     */
+    private static final String RUN_BUDGET_OPTION = "--run-budget=";
+
+    /**
+     * Option for running as one of several workers sharing the tokens, coordinated through lease files in a directory
+     */
+    private static final String WORKER_OPTION = "--worker=";
+
+    /**
+     * Option for the name of this worker, unique across the workers sharing the directory
+     */
+    private static final String WORKER_ID_OPTION = "--worker-id=";
+
+    /**
+     * Option for the run a worker belongs to, the same for every worker started together and new for every run
+     */
+    private static final String RUN_ID_OPTION = "--run-id=";
+
+    /**
+     * Option for the directory the change journal is written to
+     */
+    private static final String JOURNAL_OPTION = "--journal=";
+
+    /**
+     * Option for the age after which served entries are no longer served, in seconds
+     */
+    private static final String MAX_STALENESS_OPTION = "--max-staleness=";
+
+    /**
+     * Option for the address the entries are served on, such as 0.0.0.0 to make them reachable from other hosts
+     */
+    private static final String BIND_OPTION = "--bind=";
+
+    /**
+     * Default port the entries are served on
+     */
+    private static final int DEFAULT_SERVE_PORT = 8080;
+
+    /**
+     * Default age after which served entries are no longer served, in seconds
+     */
+    private static final long DEFAULT_MAX_STALENESS_SECONDS = 300;
+
+    /**
+     * Default connect and read timeout of a single page request, in seconds
+     */
+    private static final long DEFAULT_REQUEST_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Default time a single coin has to be resolved and retrieved, in seconds
+     */
+    private static final long DEFAULT_COIN_TIMEOUT_SECONDS = 60;
+
     public static void main(String[] args) {
         if (args == null || args.length == 0) {
             throw new InvalidArgumentException("No arguments provided");
@@ -15,6 +92,189 @@ public class Application {
 
         SpreadsheetProcessor processor = new SpreadsheetProcessor();
 
+        // Options come before the command or coin name
+        long requestTimeoutSeconds = DEFAULT_REQUEST_TIMEOUT_SECONDS;
+        long coinTimeoutSeconds = DEFAULT_COIN_TIMEOUT_SECONDS;
+        long runBudgetSeconds = 0;
+        long maxStalenessSeconds = DEFAULT_MAX_STALENESS_SECONDS;
+        String workerDirectory = null;
+        String workerId = null;
+        String runId = null;
+        InetAddress bindAddress = InetAddress.getLoopbackAddress();
+        while (args.length > 0 && args[0].startsWith("--") && args[0].contains("=")) {
+            String option = args[0];
+            if (option.startsWith(OUTPUT_OPTION)) {
+                configureOutput(processor, option.substring(OUTPUT_OPTION.length()));
+            }
+            else if (option.startsWith(REQUEST_TIMEOUT_OPTION)) {
+                requestTimeoutSeconds = parseSeconds(option, REQUEST_TIMEOUT_OPTION);
+                if (requestTimeoutSeconds == 0) {
+                    // Jsoup takes a timeout of zero as no timeout at all
+                    throw new InvalidArgumentException("Expected a request timeout of at least one second in " + option);
+                }
+            }
+            else if (option.startsWith(COIN_TIMEOUT_OPTION)) {
+                coinTimeoutSeconds = parseSeconds(option, COIN_TIMEOUT_OPTION);
+            }
+            else if (option.startsWith(RUN_BUDGET_OPTION)) {
+                runBudgetSeconds = parseSeconds(option, RUN_BUDGET_OPTION);
+            }
+            else if (option.startsWith(MAX_STALENESS_OPTION)) {
+                maxStalenessSeconds = parseSeconds(option, MAX_STALENESS_OPTION);
+            }
+            else if (option.startsWith(BIND_OPTION)) {
+                bindAddress = parseAddress(option.substring(BIND_OPTION.length()));
+            }
+            else if (option.startsWith(JOURNAL_OPTION)) {
+                processor.setJournalDirectory(Paths.get(option.substring(JOURNAL_OPTION.length())));
+            }
+            else if (option.startsWith(WORKER_OPTION)) {
+                workerDirectory = option.substring(WORKER_OPTION.length());
+            }
+            else if (option.startsWith(WORKER_ID_OPTION)) {
+                workerId = option.substring(WORKER_ID_OPTION.length());
+            }
+            else if (option.startsWith(RUN_ID_OPTION)) {
+                runId = option.substring(RUN_ID_OPTION.length());
+            }
+            else {
+                throw new InvalidArgumentException("Unknown option " + option);
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        processor.setTimeLimits((int) Math.min(requestTimeoutSeconds * 1000, Integer.MAX_VALUE),
+                coinTimeoutSeconds * 1000, runBudgetSeconds * 1000);
+        if (workerDirectory != null) {
+            if (Strings.isNullOrEmpty(runId)) {
+                throw new InvalidArgumentException("Workers need the id of the run they belong to, given by " + RUN_ID_OPTION);
+            }
+            processor.setCoordinator(new LeaseCoordinator(Paths.get(workerDirectory),
+                    workerId != null ? workerId : defaultWorkerId(), runId));
+        }
+        if (args.length == 0) {
+            throw new InvalidArgumentException("No arguments provided");
+        }
+
+        try {
+            Command command = Command.fromArgument(args[0]);
+            if (command == Command.DISCOVER) {
+                processor.discover();
+            }
+            else if (command == Command.REFRESH_ALL) {
+                processor.refreshAll();
+            }
+            else if (command == Command.BATCH) {
+                if (args.length < 2) {
+                    throw new InvalidArgumentException("No batch file provided");
+                }
+                processor.processBatch(Paths.get(args[1]));
+            }
+            else if (command == Command.IMPORT) {
+                if (args.length < 2) {
+                    throw new InvalidArgumentException("No import file provided");
+                }
+                processor.importFile(Paths.get(args[1]));
+            }
+            else if (command == Command.SERVE) {
+                processor.serve(bindAddress, args.length < 2 ? DEFAULT_SERVE_PORT : parsePort(args[1]),
+                        maxStalenessSeconds * 1000);
+            }
+            else {
+                processCoin(processor, args);
+            }
+        } finally {
+            processor.shutdown();
+        }
+    }
+
+    /**
+     * Point the processor at a local output file
+     * @param processor
+     * @param value format and path separated by a colon
+     */
+    private static void configureOutput(SpreadsheetProcessor processor, String value) {
+        int separator = value.indexOf(':');
+        if (separator <= 0) {
+            throw new InvalidArgumentException("Output must be in the format format:path");
+        }
+
+        OutputFormat outputFormat;
+        try {
+            outputFormat = OutputFormat.valueOf(value.substring(0, separator).toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidArgumentException("Unknown output format " + value.substring(0, separator));
+        }
+        processor.setOutput(outputFormat, Paths.get(value.substring(separator + 1)));
+    }
+
+    /**
+     * Name a worker after its host and process, which is unique across the workers of a run
+     * @return
+     */
+    private static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException ex) {
+            host = "localhost";
+        }
+        return StringUtils.sanitizeAlphanumericStringValue(host) + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * Parse the number of seconds given to an option
+     * @param option
+     * @param prefix
+     * @return
+     */
+    private static long parseSeconds(String option, String prefix) {
+        try {
+            long seconds = Long.parseLong(option.substring(prefix.length()));
+            if (seconds >= 0) {
+                return seconds;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below
+        }
+        throw new InvalidArgumentException("Expected a number of seconds in " + option);
+    }
+
+    /**
+     * Parse the port to serve on
+     * @param value
+     * @return
+     */
+    private static int parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            if (port >= 0 && port <= 65535) {
+                return port;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below
+        }
+        throw new InvalidArgumentException("Expected a port number instead of " + value);
+    }
+
+    /**
+     * Parse the address to serve on
+     * @param value host name or IP address
+     * @return
+     */
+    private static InetAddress parseAddress(String value) {
+        try {
+            return InetAddress.getByName(value);
+        } catch (UnknownHostException ex) {
+            throw new InvalidArgumentException("Unknown address " + value);
+        }
+    }
+
+    /**
+     * Process a single coin given by name, optionally followed by its URL
+     * @param processor
+     * @param args
+     */
+    private static void processCoin(SpreadsheetProcessor processor, String[] args) {
         // If the URL is provided, extract the name
         String coin = StringUtils.EMPTY_STRING;
         String url = StringUtils.EMPTY_STRING;
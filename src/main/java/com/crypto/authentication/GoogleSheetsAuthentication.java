@@ -20,9 +20,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.security.GeneralSecurityException;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class GoogleSheetsAuthentication {
 
@@ -53,16 +59,15 @@ public class GoogleSheetsAuthentication {
             System.getProperty("user.dir"), ".credentials/ico-detail-generator");
 
     /**
-     * Global instance of the FileDataStoreFactory
+     * Global instance of the FileDataStoreFactory, created on first use
      */
     private static FileDataStoreFactory DATA_STORE_FACTORY;
 
     /**
-     * Global instance of the HTTP transport
+     * Global instance of the HTTP transport, created on first use
      */
     private static HttpTransport HTTP_TRANSPORT;
 
-
     /************************
      * Constants
      ************************/
@@ -93,19 +98,29 @@ public class GoogleSheetsAuthentication {
     private static String CLIENT_SECRET = "";
 
     /**
-     * Google sheets service
+     * Key of the stored OAuth credential in the data store
      */
-    private static Sheets service;
+    private static final String USER_ID = "user";
 
-    static {
-        try {
-            HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-            DATA_STORE_FACTORY = new FileDataStoreFactory(DATA_STORE_DIR);
-        } catch (Throwable t) {
-            t.printStackTrace();
-            System.exit(1);
-        }
-    }
+    /**
+     * Refresh the access token when it has fewer than this many seconds left
+     */
+    private static final long REFRESH_WINDOW_SECONDS = 300;
+
+    /**
+     * How often the background thread checks the access token expiry
+     */
+    private static final long REFRESH_CHECK_INTERVAL_SECONDS = 60;
+
+    /**
+     * Google sheets service for each authentication type, built once and reused
+     */
+    private static final Map<Authentication, Sheets> services = new EnumMap<>(Authentication.class);
+
+    /**
+     * Background thread that refreshes the OAuth access token before it expires
+     */
+    private static ScheduledExecutorService tokenRefresher;
 
     public GoogleSheetsAuthentication() {
         try {
@@ -120,42 +135,149 @@ public class GoogleSheetsAuthentication {
 
     }
 
-    public static Sheets getSheetsService(Authentication authenticationType) throws IOException {
+    /**
+     * Retrieve the Google Sheets service for the authentication type.
+     * The service is built on the first call and the same instance is returned afterwards.
+     * @param authenticationType
+     * @return
+     * @throws IOException
+     */
+    public static synchronized Sheets getSheetsService(Authentication authenticationType) throws IOException {
+        Sheets service = services.get(authenticationType);
+        if (service != null) {
+            return service;
+        }
+
         if (authenticationType == Authentication.OAUTH) {
             Credential credential = authorize();
-            service = new Sheets.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
+            service = new Sheets.Builder(getHttpTransport(), JSON_FACTORY, credential)
                     .setApplicationName(APPLICATION_NAME)
                     .build();
 
+            scheduleTokenRefresh(credential);
             logger.info("Connected to Google Sheets service through OAuth authentication");
         }
         else if (authenticationType == Authentication.BASIC) {
             BasicAuthentication credentials = new BasicAuthentication(CLIENT_ID, CLIENT_SECRET);
-            service = new Sheets.Builder(HTTP_TRANSPORT, JSON_FACTORY, credentials)
+            service = new Sheets.Builder(getHttpTransport(), JSON_FACTORY, credentials)
                     .setApplicationName(APPLICATION_NAME)
                     .build();
 
             logger.info("Connected to Google Sheets service through basic authentication");
         }
+
+        if (service != null) {
+            services.put(authenticationType, service);
+        }
         return service;
     }
 
+    /**
+     * Load the stored credential from the data store,
+     * only running the browser authorization flow if there is no usable stored credential
+     * @return
+     * @throws IOException
+     */
     private static Credential authorize() throws IOException {
         // Load client secrets
         InputStream stream = GoogleSheetsAuthentication.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE);
         GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(stream));
 
-        // Build flow and trigger user authorization request
+        // Build flow, stored credentials are persisted and refreshed through the data store
         GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow
-                .Builder(HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, SCOPES)
-                .setDataStoreFactory(DATA_STORE_FACTORY)
+                .Builder(getHttpTransport(), JSON_FACTORY, clientSecrets, SCOPES)
+                .setDataStoreFactory(getDataStoreFactory())
                 .setAccessType(ACCESS_TYPE)
                 .build();
 
-        Credential credential = new AuthorizationCodeInstalledApp(
-                flow, new LocalServerReceiver()).authorize("user");
+        Credential credential = flow.loadCredential(USER_ID);
+        if (credential != null && (credential.getRefreshToken() != null || isTokenValid(credential))) {
+            logger.info("Loaded stored credentials from {}", DATA_STORE_DIR.getAbsolutePath());
+            return credential;
+        }
+
+        // Trigger user authorization request
+        credential = new AuthorizationCodeInstalledApp(
+                flow, new LocalServerReceiver()).authorize(USER_ID);
         logger.info("Credentials saved to {}", DATA_STORE_DIR.getAbsolutePath());
 
         return credential;
     }
+
+    /**
+     * Periodically refresh the access token in the background once it is close to expiring,
+     * so requests never wait on a token refresh
+     * @param credential
+     */
+    private static void scheduleTokenRefresh(Credential credential) {
+        if (credential.getRefreshToken() == null) {
+            return;
+        }
+
+        if (tokenRefresher == null) {
+            tokenRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sheets-token-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // Check straight away in case the stored token has already expired
+        tokenRefresher.scheduleWithFixedDelay(() -> {
+            if (isTokenValid(credential)) {
+                return;
+            }
+
+            try {
+                if (credential.refreshToken()) {
+                    logger.info("Refreshed Google Sheets access token");
+                }
+                else {
+                    logger.error("Unable to refresh Google Sheets access token");
+                }
+            } catch (IOException ex) {
+                logger.error("Error in refreshing Google Sheets access token");
+            }
+        }, 0, REFRESH_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns true if the access token has more time left than the refresh window
+     * @param credential
+     * @return
+     */
+    private static boolean isTokenValid(Credential credential) {
+        Long expiresInSeconds = credential.getExpiresInSeconds();
+        return credential.getAccessToken() != null
+                && expiresInSeconds != null
+                && expiresInSeconds > REFRESH_WINDOW_SECONDS;
+    }
+
+    /**
+     * Create the trusted HTTP transport on first use
+     * @return
+     * @throws IOException
+     */
+    private static synchronized HttpTransport getHttpTransport() throws IOException {
+        if (HTTP_TRANSPORT == null) {
+            try {
+                HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
+            } catch (GeneralSecurityException ex) {
+                throw new IOException("Unable to create trusted HTTP transport", ex);
+            }
+        }
+        return HTTP_TRANSPORT;
+    }
+
+    /**
+     * Create the credential data store on first use
+     * @return
+     * @throws IOException
+     */
+    private static synchronized FileDataStoreFactory getDataStoreFactory() throws IOException {
+        if (DATA_STORE_FACTORY == null) {
+            DATA_STORE_FACTORY = new FileDataStoreFactory(DATA_STORE_DIR);
+        }
+        return DATA_STORE_FACTORY;
+    }
 }
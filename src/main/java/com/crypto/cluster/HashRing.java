@@ -0,0 +1,111 @@
+package com.crypto.cluster;
+
+import com.crypto.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring of workers. Each worker is placed on the ring at several points,
+ * so adding or removing a worker only moves the tokens next to its points and the load stays even.
+ */
+public class HashRing {
+
+    /**
+     * Default number of points each worker is placed at
+     */
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    /**
+     * Map of point on the ring to the worker placed there
+     */
+    private TreeMap<Long, String> ring;
+
+    /**
+     * Workers on the ring
+     */
+    private Set<String> workers;
+
+    public HashRing(Collection<String> workers) {
+        this(workers, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public HashRing(Collection<String> workers, int virtualNodes) {
+        this.ring = new TreeMap<>();
+        this.workers = new LinkedHashSet<>(workers);
+
+        for (String worker : this.workers) {
+            for (int i = 0; i < virtualNodes; i++) {
+                this.ring.put(hash(worker + "#" + i), worker);
+            }
+        }
+    }
+
+    /**
+     * Workers in the order they are met walking clockwise from the key's point, each listed once.
+     * The first is the key's owner, the rest take over in turn if the ones before them are gone.
+     * @param key
+     * @return
+     */
+    public List<String> successors(String key) {
+        List<String> successors = new ArrayList<>(this.workers.size());
+        if (this.ring.isEmpty()) {
+            return successors;
+        }
+
+        long point = hash(normalizeKey(key));
+        Set<String> seen = new LinkedHashSet<>();
+        for (SortedMap<Long, String> part : List.of(this.ring.tailMap(point), this.ring.headMap(point))) {
+            for (Map.Entry<Long, String> kv : part.entrySet()) {
+                if (seen.add(kv.getValue())) {
+                    successors.add(kv.getValue());
+                    if (successors.size() == this.workers.size()) {
+                        return successors;
+                    }
+                }
+            }
+        }
+        return successors;
+    }
+
+    /**
+     * Tokens that only differ in case or spacing are placed at the same point
+     * @param key
+     * @return
+     */
+    private static String normalizeKey(String key) {
+        return StringUtils.normalizeName(key == null ? StringUtils.EMPTY_STRING : key);
+    }
+
+    /**
+     * Point on the ring for a value, taken from its MD5 digest so every host computes the same point
+     * @param value
+     * @return
+     */
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("MD5 is not available", ex);
+        }
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public Set<String> getWorkers() {
+        return workers;
+    }
+}
@@ -0,0 +1,491 @@
+package com.crypto.cluster;
+
+import com.crypto.enums.WorkerState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates workers sharing a run through lease files in a shared directory, one file per worker.
+ * Every worker of a run is started with the same run id, and leases left in the directory by other runs are ignored.
+ * Each worker renews its lease on a heartbeat, and a worker whose lease hasn't been renewed within the TTL is dead.
+ * Tokens are assigned by a consistent hash ring of every worker in the run: a token belongs to the first worker
+ * clockwise from it that is alive, so when a worker dies its tokens move to the next worker on the ring.
+ * A worker that finished and left keeps the tokens it owned, and those aren't processed again.
+ * Membership is frozen once the first worker starts processing: it writes the workers it sees to the run's member
+ * file, and from then on the ring is made of those workers only. A worker that joins later isn't on the ring, so it
+ * owns no tokens and leaves, rather than claiming tokens a member already took in its first round.
+ * The directory can be on a shared filesystem for workers on several hosts, or local for processes on one host.
+ * Heartbeats are compared by wall clock, so the TTL must be well above the clock skew between hosts.
+ */
+public class LeaseCoordinator {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(LeaseCoordinator.class);
+
+    /**
+     * Suffix of lease file names
+     */
+    private static final String LEASE_SUFFIX = ".lease";
+
+    /**
+     * Suffix of the name of a run's member file
+     */
+    private static final String MEMBERS_SUFFIX = ".members";
+
+    /**
+     * Default time between lease renewals
+     */
+    private static final long DEFAULT_HEARTBEAT_MILLIS = 5000;
+
+    /**
+     * Default time after the last renewal that a worker is considered dead
+     */
+    private static final long DEFAULT_LEASE_TTL_MILLIS = 30000;
+
+    /**
+     * Directory holding the lease files
+     */
+    private Path directory;
+
+    /**
+     * Name of this worker, unique across the run
+     */
+    private String workerId;
+
+    /**
+     * Run this worker belongs to, shared by every worker of the run
+     */
+    private String runId;
+
+    /**
+     * Time between lease renewals
+     */
+    private long heartbeatMillis;
+
+    /**
+     * Time after the last renewal that a worker is considered dead
+     */
+    private long leaseTtlMillis;
+
+    /**
+     * State last written to this worker's lease
+     */
+    private volatile WorkerState state;
+
+    /**
+     * Workers in the run that have been found dead
+     */
+    private Set<String> deadWorkers;
+
+    /**
+     * Leases of the workers in the run as of the last heartbeat
+     */
+    private volatile Map<String, MemberLease> members;
+
+    /**
+     * Workers on the ring once membership is frozen, null before
+     */
+    private volatile Set<String> frozenMembers;
+
+    /**
+     * Ring of every worker in the run as of the last heartbeat, or of the frozen members
+     */
+    private volatile HashRing ring;
+
+    /**
+     * Thread renewing the lease
+     */
+    private ScheduledExecutorService heartbeat;
+
+    public LeaseCoordinator(Path directory, String workerId, String runId) {
+        this(directory, workerId, runId, DEFAULT_HEARTBEAT_MILLIS, DEFAULT_LEASE_TTL_MILLIS);
+    }
+
+    public LeaseCoordinator(Path directory, String workerId, String runId, long heartbeatMillis, long leaseTtlMillis) {
+        this.directory = directory;
+        this.workerId = workerId;
+        this.runId = runId;
+        this.heartbeatMillis = heartbeatMillis;
+        this.leaseTtlMillis = leaseTtlMillis;
+        this.state = WorkerState.RUNNING;
+        this.deadWorkers = new HashSet<>();
+        this.members = new HashMap<>();
+        this.ring = new HashRing(new ArrayList<>());
+    }
+
+    /**
+     * Write this worker's lease, start renewing it, and wait a couple of heartbeats
+     * so workers started at the same time see each other before claiming tokens
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void join() throws IOException, InterruptedException {
+        Files.createDirectories(this.directory);
+        writeLease();
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeat.scheduleWithFixedDelay(this::renew, this.heartbeatMillis, this.heartbeatMillis,
+                TimeUnit.MILLISECONDS);
+
+        Thread.sleep(2 * this.heartbeatMillis);
+        refresh();
+        logger.info("Worker {} joined {} workers of run {} in {}", this.workerId, this.members.size(), this.runId,
+                this.directory);
+    }
+
+    /**
+     * Freeze membership before this worker starts processing, unless another worker already did.
+     * The member file is linked into place in one step, so only the first worker's members are ever used.
+     * @throws IOException
+     */
+    public void freezeMembership() throws IOException {
+        synchronized (this) {
+            refresh();
+            if (this.frozenMembers != null) {
+                return;
+            }
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("members", String.join(",", this.members.keySet()));
+
+        Path tempFile = this.directory.resolve(this.workerId + MEMBERS_SUFFIX + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tempFile)) {
+            properties.store(stream, "Members of run " + this.runId);
+        }
+        try {
+            Files.createLink(membersFile(), tempFile);
+        } catch (FileAlreadyExistsException ex) {
+            // Another worker froze it first
+        } finally {
+            Files.delete(tempFile);
+        }
+
+        refresh();
+        logger.info("Worker {} froze run {} at {} workers", this.workerId, this.runId, this.frozenMembers.size());
+    }
+
+    /**
+     * Whether this worker is on the ring, false for a worker that joined after membership was frozen
+     * @return
+     */
+    public boolean isMember() {
+        Set<String> frozenMembers = this.frozenMembers;
+        return frozenMembers == null || frozenMembers.contains(this.workerId);
+    }
+
+    /**
+     * Whether this worker should process the token under the current membership
+     * @param token
+     * @return
+     */
+    public boolean owns(String token) {
+        return this.workerId.equals(ownerOf(token));
+    }
+
+    /**
+     * Mark this worker as running or as having finished the tokens it owns
+     * @param state
+     */
+    public void setState(WorkerState state) {
+        if (this.state != state) {
+            this.state = state;
+            renew();
+        }
+    }
+
+    /**
+     * Whether every other worker in the run has finished its tokens, left or died,
+     * so this worker won't be needed to take over any more tokens
+     * @return
+     */
+    public boolean othersFinished() {
+        // Workers that joined after membership was frozen don't take over tokens, so they aren't waited for
+        Set<String> frozenMembers = this.frozenMembers;
+        long now = System.currentTimeMillis();
+        for (MemberLease lease : this.members.values()) {
+            if (!lease.getWorkerId().equals(this.workerId) && lease.getState() == WorkerState.RUNNING
+                    && !isExpired(lease, now)
+                    && (frozenMembers == null || frozenMembers.contains(lease.getWorkerId()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wait for the next heartbeat, after which membership may have changed
+     * @throws InterruptedException
+     */
+    public void awaitHeartbeat() throws InterruptedException {
+        Thread.sleep(this.heartbeatMillis);
+    }
+
+    /**
+     * Mark this worker as done and stop renewing its lease. The lease file is kept so the tokens this worker owned
+     * aren't handed to other workers.
+     */
+    public void leave() {
+        if (this.heartbeat != null) {
+            this.heartbeat.shutdownNow();
+        }
+
+        this.state = WorkerState.DONE;
+        try {
+            writeLease();
+        } catch (IOException ex) {
+            logger.error("Unable to write lease of worker {}", this.workerId);
+        }
+        logger.info("Worker {} left {}", this.workerId, this.directory);
+    }
+
+    /**
+     * Find the worker a token belongs to, walking the ring past dead workers.
+     * A finished worker keeps the tokens it owned, but doesn't take over tokens from dead workers.
+     * @param token
+     * @return the worker, or null if no worker can take it
+     */
+    private String ownerOf(String token) {
+        // A worker whose lease couldn't be read is passed over like a dead one
+        HashRing ring = this.ring;
+        Map<String, MemberLease> members = this.members;
+        long now = System.currentTimeMillis();
+
+        boolean first = true;
+        for (String workerId : ring.successors(token)) {
+            MemberLease lease = members.get(workerId);
+            if (lease != null && lease.getState() == WorkerState.DONE) {
+                if (first) {
+                    return workerId;
+                }
+            }
+            else if (lease != null && !isExpired(lease, now)) {
+                return workerId;
+            }
+            first = false;
+        }
+        return null;
+    }
+
+    /**
+     * Renew this worker's lease and reload everyone else's
+     */
+    private void renew() {
+        try {
+            writeLease();
+            refresh();
+        } catch (IOException ex) {
+            logger.error("Unable to renew lease of worker {}", this.workerId);
+        }
+    }
+
+    /**
+     * Reload the leases of this run, rebuilding the ring if a worker joined before membership was frozen,
+     * or from the member file once it is
+     * @throws IOException
+     */
+    private synchronized void refresh() throws IOException {
+        Map<String, MemberLease> leases = readLeases();
+        for (Iterator<MemberLease> it = leases.values().iterator(); it.hasNext(); ) {
+            if (!this.runId.equals(it.next().getRunId())) {
+                it.remove();
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (MemberLease lease : leases.values()) {
+            if (lease.getState() != WorkerState.DONE && isExpired(lease, now) && this.deadWorkers.add(lease.getWorkerId())) {
+                logger.error("Worker {} stopped renewing its lease, reassigning its tokens", lease.getWorkerId());
+            }
+        }
+
+        this.members = leases;
+        if (this.frozenMembers == null) {
+            this.frozenMembers = readMembers();
+        }
+
+        Set<String> ringMembers = this.frozenMembers != null ? this.frozenMembers : leases.keySet();
+        if (!ringMembers.equals(this.ring.getWorkers())) {
+            this.ring = new HashRing(ringMembers);
+        }
+    }
+
+    /**
+     * Read the members of the run, if membership is frozen
+     * @return the members, or null if the member file isn't there yet
+     * @throws IOException
+     */
+    private Set<String> readMembers() throws IOException {
+        Path membersFile = membersFile();
+        if (!Files.exists(membersFile)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream stream = Files.newInputStream(membersFile)) {
+            properties.load(stream);
+        }
+
+        Set<String> members = new HashSet<>();
+        for (String workerId : properties.getProperty("members", "").split(",")) {
+            if (!workerId.isEmpty()) {
+                members.add(workerId);
+            }
+        }
+        return Collections.unmodifiableSet(members);
+    }
+
+    /**
+     * File listing the members of the run once membership is frozen
+     * @return
+     */
+    private Path membersFile() {
+        return this.directory.resolve(this.runId + MEMBERS_SUFFIX);
+    }
+
+    /**
+     * Whether a worker hasn't renewed its lease within the TTL
+     * @param lease
+     * @param now
+     * @return
+     */
+    private boolean isExpired(MemberLease lease, long now) {
+        return now - lease.getHeartbeatMillis() > this.leaseTtlMillis;
+    }
+
+    /**
+     * Write this worker's lease, replacing the file in one step so readers never see it half written
+     * @throws IOException
+     */
+    private synchronized void writeLease() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("run", this.runId);
+        properties.setProperty("heartbeat", String.valueOf(System.currentTimeMillis()));
+        properties.setProperty("state", this.state.name());
+
+        Path leaseFile = this.directory.resolve(this.workerId + LEASE_SUFFIX);
+        Path tempFile = this.directory.resolve(this.workerId + LEASE_SUFFIX + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tempFile)) {
+            properties.store(stream, "Lease of worker " + this.workerId);
+        }
+        Files.move(tempFile, leaseFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read every lease in the directory, skipping files that can't be read
+     * @return map of worker to its lease
+     * @throws IOException
+     */
+    private Map<String, MemberLease> readLeases() throws IOException {
+        Map<String, MemberLease> leases = new HashMap<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + LEASE_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String workerId = fileName.substring(0, fileName.length() - LEASE_SUFFIX.length());
+
+                Properties properties = new Properties();
+                try (InputStream stream = Files.newInputStream(file)) {
+                    properties.load(stream);
+                    leases.put(workerId, new MemberLease(workerId, properties.getProperty("run"),
+                            Long.parseLong(properties.getProperty("heartbeat")),
+                            WorkerState.valueOf(properties.getProperty("state"))));
+                } catch (IOException | RuntimeException ex) {
+                    logger.error("Unable to read lease {}", file);
+                }
+            }
+        }
+        return leases;
+    }
+
+    /**
+     * A worker's lease as last read
+     */
+    private static class MemberLease {
+
+        /**
+         * Name of the worker
+         */
+        private String workerId;
+
+        /**
+         * Run the worker belongs to, null for leases written before runs had an id
+         */
+        private String runId;
+
+        /**
+         * Time of the last renewal, in epoch milliseconds
+         */
+        private long heartbeatMillis;
+
+        /**
+         * State of the worker
+         */
+        private WorkerState state;
+
+        MemberLease(String workerId, String runId, long heartbeatMillis, WorkerState state) {
+            this.workerId = workerId;
+            this.runId = runId;
+            this.heartbeatMillis = heartbeatMillis;
+            this.state = state;
+        }
+
+        /***********************
+         * Getters and setters
+         ***********************/
+
+        String getWorkerId() {
+            return workerId;
+        }
+
+        String getRunId() {
+            return runId;
+        }
+
+        long getHeartbeatMillis() {
+            return heartbeatMillis;
+        }
+
+        WorkerState getState() {
+            return state;
+        }
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+}
@@ -4,22 +4,70 @@ import com.crypto.enums.SourceType;
 import com.crypto.util.StringUtils;
 import com.google.common.base.Strings;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class Entry {
 
     private static final Logger logger = LoggerFactory.getLogger(Entry.class);
 
+    /**
+     * Names of the instance fields, in declaration order
+     */
+    private static final List<String> FIELD_NAMES = new ArrayList<>();
+
+    /**
+     * Getter method for each instance field, keyed by field name
+     */
+    private static final Map<String, Method> FIELD_GETTERS = new HashMap<>();
+
+    /**
+     * Fields filled in from source pages, as opposed to the fields that are populated by hand
+     */
+    public static final Set<String> SCRAPED_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "token", "ticker", "totalTokens", "fundraisingGoal", "availableForTokenSale", "icoTokenPrice",
+            "projectSummary", "bonusForTheFirst", "icoStartDate", "tokenIssue", "tokenType", "soldOnPresale",
+            "whitelist", "minMaxPersonalCap", "hypeRate", "riskRate", "roiRate", "overallScore", "url")));
+
+    /**
+     * Scraped fields compared by {@link #equals(Object)}, which leaves out the hype rate
+     */
+    public static final Set<String> COMPARED_FIELDS = Collections.unmodifiableSet(SCRAPED_FIELDS.stream()
+            .filter(fieldName -> !fieldName.equals("hypeRate"))
+            .collect(Collectors.toSet()));
+
+    static {
+        for (Field field : Entry.class.getDeclaredFields()) {
+            if ((field.getModifiers() & Modifier.STATIC) == Modifier.STATIC) {
+                continue;
+            }
+
+            try {
+                Method getter = new PropertyDescriptor(field.getName(), Entry.class).getReadMethod();
+                FIELD_GETTERS.put(field.getName(), getter);
+                FIELD_NAMES.add(field.getName());
+            } catch (IntrospectionException ex) {
+                logger.error("No getter found for {}", field.getName());
+            }
+        }
+    }
+
     /**************
      * Fields
      *************/
@@ -207,114 +255,61 @@ public class Entry {
         this.purchased = purchased;
     }
 
+    /**
+     * Creates a copy of the entity
+     * @param source
+     */
+    public Entry(Entry source) {
+        this(source.getToken(), source.getTicker(), source.getType(), source.getTotalTokens(), source.getFundraisingGoal(),
+                source.getAvailableForTokenSale(), source.getIcoTokenPrice(), source.getProjectSummary(), source.getTeam(),
+                source.getAdvisors(), source.getBonusForTheFirst(), source.getPresaleInformation(), source.getIcoStartDate(),
+                source.getTokenIssue(), source.getTokenType(), source.getSoldOnPresale(), source.getWhitelist(),
+                source.getMinMaxPersonalCap(), source.getHypeRate(), source.getRiskRate(), source.getRoiRate(),
+                source.getOverallScore(), source.getUrl(), source.getRegistrationStatus(), source.getRegisteredAs(),
+                source.getWhitelistApproved(), source.getKycApproved(), source.getPurchased());
+    }
+
     /**
      * Creates an ICOEntry entity with a JSoup HTML document retrieved from the ICODrops page
      * @param document
      */
     public Entry(SourceType sourceType, Document document) {
-        String url = document.location();
-
-        String coinName = StringUtils.EMPTY_STRING,
-                hypeRate = StringUtils.EMPTY_STRING,
-                riskRate = StringUtils.EMPTY_STRING,
-                roiRate = StringUtils.EMPTY_STRING,
-                overallScore = StringUtils.EMPTY_STRING,
-                description = StringUtils.EMPTY_STRING,
-                icoStartDate = StringUtils.EMPTY_STRING,
-                ticker = StringUtils.EMPTY_STRING,
-                tokenType = StringUtils.EMPTY_STRING,
-                icoTokenPrice = StringUtils.EMPTY_STRING,
-                fundraisingGoal = StringUtils.EMPTY_STRING,
-                soldOnPresale = StringUtils.EMPTY_STRING,
-                totalTokens = StringUtils.EMPTY_STRING,
-                availableForTokenSale = StringUtils.EMPTY_STRING,
-                whitelist = StringUtils.EMPTY_STRING,
-                bonusForTheFirst = StringUtils.EMPTY_STRING,
-                minMaxPersonalCap = StringUtils.EMPTY_STRING,
-                tokenIssue = StringUtils.EMPTY_STRING;
-
-        if (sourceType == SourceType.ICODrop) {
-            coinName = document.select(".ico-desk .ico-main-info h3").text();
-            hypeRate = document.select(".rating-field .rating-items .rating-item:nth-child(1) p.rate").text();
-            riskRate = document.select(".rating-field .rating-items .rating-item:nth-child(2) p.rate").text();
-            roiRate = document.select(".rating-field .rating-items .rating-item:nth-child(3) p.rate").text();
-            overallScore = document.select(".rating-result .rating-box p.ico-rate").text();
-            description = document.select(".ico-description").text();
-            icoStartDate = document.select(".sale-date").text();
-
-            // Create a map for each row value
-            Map<String, String> tokenSaleInformation = new LinkedHashMap<>();
-            Elements tokenSaleDetails = document.select(".white-desk.ico-desk .row.list li");
-            for (Element detail : tokenSaleDetails) {
-                String detailText = detail.text();
-                String delimiter = ": ";
-
-                if (detailText.contains(delimiter)) {
-                    String key = detailText.substring(0, detailText.indexOf(delimiter));
-                    String value = detailText.substring(detailText.indexOf(delimiter) + delimiter.length(), detailText.length());
-
-                    tokenSaleInformation.put(key, value);
-                }
-            }
-
-            ticker = StringUtils.extractValueFromMap("Ticker", tokenSaleInformation);
-            tokenType = StringUtils.extractValueFromMap("Token type", tokenSaleInformation);
-            icoTokenPrice = StringUtils.extractValueFromMap("ICO Token Price", tokenSaleInformation);
-            fundraisingGoal = StringUtils.extractValueFromMap("Fundraising Goal", tokenSaleInformation);
-            soldOnPresale = StringUtils.extractValueFromMap("Sold on pre-sale", tokenSaleInformation);
-            totalTokens = StringUtils.extractValueFromMap("Total Tokens", tokenSaleInformation);
-            availableForTokenSale = StringUtils.extractValueFromMap("Available for Token Sale", tokenSaleInformation);
-            whitelist = StringUtils.extractValueFromMap("Whitelist", tokenSaleInformation);
-            bonusForTheFirst = StringUtils.extractValueFromMap("Bonus for the First", tokenSaleInformation);
-            minMaxPersonalCap = StringUtils.extractValueFromMap("Min/Max Personal Cap", tokenSaleInformation);
-            tokenIssue = StringUtils.extractValueFromMap("Token Issue", tokenSaleInformation);
-        }
-        else if (sourceType == SourceType.ICOBench) {
-            coinName = document.select(".name h1").text();
-            hypeRate = StringUtils.EMPTY_STRING;
-            riskRate = StringUtils.EMPTY_STRING;
-            roiRate = StringUtils.EMPTY_STRING;
-            overallScore = document.select(".fixed_data .rate").text() + "/5";
-            description = document.select(".ico_information p").text();
-            icoStartDate = document.select(".financial_data .col_2 small").text();
-
-            ticker = document.select(".financial_data div:eq(2) b").text();
-            tokenType = document.select("#financial .box_left > div:contains(Type) .value").text();
-            icoTokenPrice = document.select("#financial .box_left > div:contains(Price in ICO) .value").text();
-            fundraisingGoal = StringUtils.EMPTY_STRING;
-            soldOnPresale = StringUtils.EMPTY_STRING;
-            totalTokens = StringUtils.EMPTY_STRING;
-            availableForTokenSale = StringUtils.EMPTY_STRING;
-            whitelist = StringUtils.EMPTY_STRING;
-            bonusForTheFirst = StringUtils.EMPTY_STRING;
-            minMaxPersonalCap = StringUtils.EMPTY_STRING;
-            tokenIssue = StringUtils.EMPTY_STRING;
-        }
+        this(sourceType, document, null);
+    }
 
+    /**
+     * Creates an ICOEntry entity from the page, only running the selectors for the given fields.
+     * Fields that aren't extracted are left empty.
+     * @param sourceType
+     * @param document
+     * @param fieldNames fields to extract, null for every field
+     */
+    public Entry(SourceType sourceType, Document document, Set<String> fieldNames) {
+        Map<String, String> values = EntryExtractor.extract(sourceType, document, fieldNames);
 
-        this.token = coinName;
-        this.ticker = ticker;
+        this.token = values.getOrDefault("token", StringUtils.EMPTY_STRING);
+        this.ticker = values.getOrDefault("ticker", StringUtils.EMPTY_STRING);
         this.type = StringUtils.EMPTY_STRING; // will be manually updated
-        this.totalTokens = totalTokens;
-        this.fundraisingGoal = fundraisingGoal;
-        this.availableForTokenSale = availableForTokenSale;
-        this.icoTokenPrice = icoTokenPrice;
-        this.projectSummary = description;
+        this.totalTokens = values.getOrDefault("totalTokens", StringUtils.EMPTY_STRING);
+        this.fundraisingGoal = values.getOrDefault("fundraisingGoal", StringUtils.EMPTY_STRING);
+        this.availableForTokenSale = values.getOrDefault("availableForTokenSale", StringUtils.EMPTY_STRING);
+        this.icoTokenPrice = values.getOrDefault("icoTokenPrice", StringUtils.EMPTY_STRING);
+        this.projectSummary = values.getOrDefault("projectSummary", StringUtils.EMPTY_STRING);
         this.team = StringUtils.EMPTY_STRING; // will be manually updated
         this.advisors = StringUtils.EMPTY_STRING; // will be manually updated
-        this.bonusForTheFirst = bonusForTheFirst;
+        this.bonusForTheFirst = values.getOrDefault("bonusForTheFirst", StringUtils.EMPTY_STRING);
         this.presaleInformation = StringUtils.EMPTY_STRING; // will be manually updated
-        this.icoStartDate = icoStartDate;
-        this.tokenIssue = tokenIssue;
-        this.tokenType = tokenType;
-        this.soldOnPresale = soldOnPresale;
-        this.whitelist = whitelist;
-        this.minMaxPersonalCap = minMaxPersonalCap;
-        this.hypeRate = hypeRate;
-        this.riskRate = riskRate;
-        this.roiRate = roiRate;
-        this.overallScore = overallScore;
-        this.url = url;
+        this.icoStartDate = values.getOrDefault("icoStartDate", StringUtils.EMPTY_STRING);
+        this.tokenIssue = values.getOrDefault("tokenIssue", StringUtils.EMPTY_STRING);
+        this.tokenType = values.getOrDefault("tokenType", StringUtils.EMPTY_STRING);
+        this.soldOnPresale = values.getOrDefault("soldOnPresale", StringUtils.EMPTY_STRING);
+        this.whitelist = values.getOrDefault("whitelist", StringUtils.EMPTY_STRING);
+        this.minMaxPersonalCap = values.getOrDefault("minMaxPersonalCap", StringUtils.EMPTY_STRING);
+        this.hypeRate = values.getOrDefault("hypeRate", StringUtils.EMPTY_STRING);
+        this.riskRate = values.getOrDefault("riskRate", StringUtils.EMPTY_STRING);
+        this.roiRate = values.getOrDefault("roiRate", StringUtils.EMPTY_STRING);
+        this.overallScore = values.getOrDefault("overallScore", StringUtils.EMPTY_STRING);
+        this.url = values.getOrDefault("url", StringUtils.EMPTY_STRING);
         this.registrationStatus = StringUtils.EMPTY_STRING;
         this.registeredAs = StringUtils.EMPTY_STRING;
         this.whitelistApproved = StringUtils.EMPTY_STRING;
@@ -330,9 +325,6 @@ public class Entry {
      * @param columnIndexMap
      */
     public Entry(List<Object> rowEntry, Map<String, Integer> columnIndexMap) {
-        Integer nameIndex = columnIndexMap.get("Token").intValue();
-        logger.info("{} - creating entity", rowEntry.get(nameIndex).toString());
-
         Field[] fields = this.getClass().getDeclaredFields();
         for (Field field : fields) {
             if ((field.getModifiers() & Modifier.STATIC) == Modifier.STATIC) {
@@ -616,6 +608,33 @@ public class Entry {
         this.purchased = purchased;
     }
 
+    /**
+     * Names of the instance fields, in declaration order
+     * @return
+     */
+    public static List<String> getFieldNames() {
+        return Collections.unmodifiableList(FIELD_NAMES);
+    }
+
+    /**
+     * Retrieve the value of a field by name through its getter
+     * @param fieldName
+     * @return
+     */
+    public String getFieldValue(String fieldName) {
+        Method getter = FIELD_GETTERS.get(fieldName);
+        if (getter == null) {
+            return null;
+        }
+
+        try {
+            return (String) getter.invoke(this);
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            logger.error("Unable to access {} for {}", fieldName, this.token);
+        }
+        return null;
+    }
+
     /**
      * Assign the values that are user-populated, used when we're overwriting details on the spreadsheet
      * @param source
@@ -625,7 +644,7 @@ public class Entry {
         this.team = source.getTeam();
         this.advisors = source.getAdvisors();
         this.presaleInformation = source.getPresaleInformation();
-        this.registrationStatus = source.getRegisteredAs();
+        this.registrationStatus = source.getRegistrationStatus();
         this.registeredAs = source.getRegisteredAs();
         this.whitelistApproved = source.getWhitelistApproved();
         this.kycApproved = source.getKycApproved();
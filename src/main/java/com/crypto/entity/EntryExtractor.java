@@ -0,0 +1,165 @@
+package com.crypto.entity;
+
+import com.crypto.enums.SourceType;
+import com.crypto.util.StringUtils;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Extracts entry fields from a source page, one selector per field.
+ * Only the requested fields are evaluated, and the token sale list shared by several
+ * ICO Drops fields is parsed at most once per page, the first time one of those fields is needed.
+ */
+public class EntryExtractor {
+
+    /**
+     * Fields always extracted, since entries are keyed and located by them
+     */
+    private static final Set<String> REQUIRED_FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("token", "url")));
+
+    /**
+     * Extractor for each field of each source
+     */
+    private static final Map<SourceType, Map<String, Function<Page, String>>> EXTRACTORS = new EnumMap<>(SourceType.class);
+
+    static {
+        Map<String, Function<Page, String>> icoDrop = new LinkedHashMap<>();
+        icoDrop.put("token", page -> page.select(".ico-desk .ico-main-info h3"));
+        icoDrop.put("ticker", page -> page.tokenSale("Ticker"));
+        icoDrop.put("totalTokens", page -> page.tokenSale("Total Tokens"));
+        icoDrop.put("fundraisingGoal", page -> page.tokenSale("Fundraising Goal"));
+        icoDrop.put("availableForTokenSale", page -> page.tokenSale("Available for Token Sale"));
+        icoDrop.put("icoTokenPrice", page -> page.tokenSale("ICO Token Price"));
+        icoDrop.put("projectSummary", page -> page.select(".ico-description"));
+        icoDrop.put("bonusForTheFirst", page -> page.tokenSale("Bonus for the First"));
+        icoDrop.put("icoStartDate", page -> page.select(".sale-date"));
+        icoDrop.put("tokenIssue", page -> page.tokenSale("Token Issue"));
+        icoDrop.put("tokenType", page -> page.tokenSale("Token type"));
+        icoDrop.put("soldOnPresale", page -> page.tokenSale("Sold on pre-sale"));
+        icoDrop.put("whitelist", page -> page.tokenSale("Whitelist"));
+        icoDrop.put("minMaxPersonalCap", page -> page.tokenSale("Min/Max Personal Cap"));
+        icoDrop.put("hypeRate", page -> page.select(".rating-field .rating-items .rating-item:nth-child(1) p.rate"));
+        icoDrop.put("riskRate", page -> page.select(".rating-field .rating-items .rating-item:nth-child(2) p.rate"));
+        icoDrop.put("roiRate", page -> page.select(".rating-field .rating-items .rating-item:nth-child(3) p.rate"));
+        icoDrop.put("overallScore", page -> page.select(".rating-result .rating-box p.ico-rate"));
+        EXTRACTORS.put(SourceType.ICODrop, icoDrop);
+
+        Map<String, Function<Page, String>> icoBench = new LinkedHashMap<>();
+        icoBench.put("token", page -> page.select(".name h1"));
+        icoBench.put("ticker", page -> page.select(".financial_data div:eq(2) b"));
+        icoBench.put("icoTokenPrice", page -> page.select("#financial .box_left > div:contains(Price in ICO) .value"));
+        icoBench.put("projectSummary", page -> page.select(".ico_information p"));
+        icoBench.put("icoStartDate", page -> page.select(".financial_data .col_2 small"));
+        icoBench.put("tokenType", page -> page.select("#financial .box_left > div:contains(Type) .value"));
+        icoBench.put("overallScore", page -> page.select(".fixed_data .rate") + "/5");
+        EXTRACTORS.put(SourceType.ICOBench, icoBench);
+    }
+
+    private EntryExtractor() {}
+
+    /**
+     * Extract the requested fields from the page.
+     * Fields the source doesn't provide are left out.
+     * @param sourceType
+     * @param document
+     * @param fieldNames fields to extract, null for every field
+     * @return map of field name to value
+     */
+    public static Map<String, String> extract(SourceType sourceType, Document document, Set<String> fieldNames) {
+        Page page = new Page(document);
+        Map<String, String> values = new HashMap<>();
+
+        for (Map.Entry<String, Function<Page, String>> kv : EXTRACTORS.get(sourceType).entrySet()) {
+            if (fieldNames == null || fieldNames.contains(kv.getKey()) || REQUIRED_FIELDS.contains(kv.getKey())) {
+                values.put(kv.getKey(), kv.getValue().apply(page));
+            }
+        }
+        values.put("url", document.location());
+        return values;
+    }
+
+    /**
+     * Fields matched by the columns of a sheet header, in the same way as a row is read
+     * @param columnIndexMap
+     * @return
+     */
+    public static Set<String> projectedFields(Map<String, Integer> columnIndexMap) {
+        Set<String> fieldNames = new HashSet<>(REQUIRED_FIELDS);
+        for (String columnName : columnIndexMap.keySet()) {
+            String sanitizedColumnName = StringUtils.sanitizeAlphanumericStringValue(columnName);
+            for (String fieldName : Entry.getFieldNames()) {
+                if (StringUtils.areStringsEqualIgnoreCase(fieldName, sanitizedColumnName)) {
+                    fieldNames.add(fieldName);
+                }
+            }
+        }
+        return fieldNames;
+    }
+
+    /**
+     * Page being extracted, caching what is shared between fields
+     */
+    private static class Page {
+
+        /**
+         * Delimiter between the label and value of a token sale detail
+         */
+        private static final String DELIMITER = ": ";
+
+        /**
+         * Retrieved page
+         */
+        private Document document;
+
+        /**
+         * Token sale details by label, parsed on first use
+         */
+        private Map<String, String> tokenSaleInformation;
+
+        Page(Document document) {
+            this.document = document;
+        }
+
+        /**
+         * Text of the elements matching the selector
+         * @param cssQuery
+         * @return
+         */
+        String select(String cssQuery) {
+            return this.document.select(cssQuery).text();
+        }
+
+        /**
+         * Value of a token sale detail
+         * @param key
+         * @return
+         */
+        String tokenSale(String key) {
+            if (this.tokenSaleInformation == null) {
+                // Create a map for each row value
+                this.tokenSaleInformation = new LinkedHashMap<>();
+                for (Element detail : this.document.select(".white-desk.ico-desk .row.list li")) {
+                    String detailText = detail.text();
+
+                    if (detailText.contains(DELIMITER)) {
+                        String label = detailText.substring(0, detailText.indexOf(DELIMITER));
+                        String value = detailText.substring(detailText.indexOf(DELIMITER) + DELIMITER.length());
+
+                        this.tokenSaleInformation.put(label, value);
+                    }
+                }
+            }
+            return StringUtils.extractValueFromMap(key, this.tokenSaleInformation);
+        }
+    }
+}
@@ -0,0 +1,657 @@
+package com.crypto.entity;
+
+import com.google.common.base.Strings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Immutable counterpart of {@link Entry} that can be shared between threads and cached without copying.
+ * Changes are made through a {@link Builder} or {@link #merge(ImmutableEntry)}, which return a new instance
+ * sharing the values of the unchanged fields and leave the original untouched.
+ */
+public final class ImmutableEntry {
+
+    /**
+     * Getter for each field, keyed by field name in declaration order
+     */
+    private static final Map<String, Function<ImmutableEntry, String>> FIELD_GETTERS = new LinkedHashMap<>();
+
+    static {
+        FIELD_GETTERS.put("token", ImmutableEntry::getToken);
+        FIELD_GETTERS.put("ticker", ImmutableEntry::getTicker);
+        FIELD_GETTERS.put("type", ImmutableEntry::getType);
+        FIELD_GETTERS.put("totalTokens", ImmutableEntry::getTotalTokens);
+        FIELD_GETTERS.put("fundraisingGoal", ImmutableEntry::getFundraisingGoal);
+        FIELD_GETTERS.put("availableForTokenSale", ImmutableEntry::getAvailableForTokenSale);
+        FIELD_GETTERS.put("icoTokenPrice", ImmutableEntry::getIcoTokenPrice);
+        FIELD_GETTERS.put("projectSummary", ImmutableEntry::getProjectSummary);
+        FIELD_GETTERS.put("team", ImmutableEntry::getTeam);
+        FIELD_GETTERS.put("advisors", ImmutableEntry::getAdvisors);
+        FIELD_GETTERS.put("bonusForTheFirst", ImmutableEntry::getBonusForTheFirst);
+        FIELD_GETTERS.put("presaleInformation", ImmutableEntry::getPresaleInformation);
+        FIELD_GETTERS.put("icoStartDate", ImmutableEntry::getIcoStartDate);
+        FIELD_GETTERS.put("tokenIssue", ImmutableEntry::getTokenIssue);
+        FIELD_GETTERS.put("tokenType", ImmutableEntry::getTokenType);
+        FIELD_GETTERS.put("soldOnPresale", ImmutableEntry::getSoldOnPresale);
+        FIELD_GETTERS.put("whitelist", ImmutableEntry::getWhitelist);
+        FIELD_GETTERS.put("minMaxPersonalCap", ImmutableEntry::getMinMaxPersonalCap);
+        FIELD_GETTERS.put("hypeRate", ImmutableEntry::getHypeRate);
+        FIELD_GETTERS.put("riskRate", ImmutableEntry::getRiskRate);
+        FIELD_GETTERS.put("roiRate", ImmutableEntry::getRoiRate);
+        FIELD_GETTERS.put("overallScore", ImmutableEntry::getOverallScore);
+        FIELD_GETTERS.put("url", ImmutableEntry::getUrl);
+        FIELD_GETTERS.put("registrationStatus", ImmutableEntry::getRegistrationStatus);
+        FIELD_GETTERS.put("registeredAs", ImmutableEntry::getRegisteredAs);
+        FIELD_GETTERS.put("whitelistApproved", ImmutableEntry::getWhitelistApproved);
+        FIELD_GETTERS.put("kycApproved", ImmutableEntry::getKycApproved);
+        FIELD_GETTERS.put("purchased", ImmutableEntry::getPurchased);
+    }
+
+    /**************
+     * Fields
+     *************/
+
+    // One per column, with the same name and meaning as the fields of Entry
+    private final String token;
+    private final String ticker;
+    private final String type;
+    private final String totalTokens;
+    private final String fundraisingGoal;
+    private final String availableForTokenSale;
+    private final String icoTokenPrice;
+    private final String projectSummary;
+    private final String team;
+    private final String advisors;
+    private final String bonusForTheFirst;
+    private final String presaleInformation;
+    private final String icoStartDate;
+    private final String tokenIssue;
+    private final String tokenType;
+    private final String soldOnPresale;
+    private final String whitelist;
+    private final String minMaxPersonalCap;
+    private final String hypeRate;
+    private final String riskRate;
+    private final String roiRate;
+    private final String overallScore;
+    private final String url;
+    private final String registrationStatus;
+    private final String registeredAs;
+    private final String whitelistApproved;
+    private final String kycApproved;
+    private final String purchased;
+
+    private ImmutableEntry(Builder builder) {
+        this.token = builder.token;
+        this.ticker = builder.ticker;
+        this.type = builder.type;
+        this.totalTokens = builder.totalTokens;
+        this.fundraisingGoal = builder.fundraisingGoal;
+        this.availableForTokenSale = builder.availableForTokenSale;
+        this.icoTokenPrice = builder.icoTokenPrice;
+        this.projectSummary = builder.projectSummary;
+        this.team = builder.team;
+        this.advisors = builder.advisors;
+        this.bonusForTheFirst = builder.bonusForTheFirst;
+        this.presaleInformation = builder.presaleInformation;
+        this.icoStartDate = builder.icoStartDate;
+        this.tokenIssue = builder.tokenIssue;
+        this.tokenType = builder.tokenType;
+        this.soldOnPresale = builder.soldOnPresale;
+        this.whitelist = builder.whitelist;
+        this.minMaxPersonalCap = builder.minMaxPersonalCap;
+        this.hypeRate = builder.hypeRate;
+        this.riskRate = builder.riskRate;
+        this.roiRate = builder.roiRate;
+        this.overallScore = builder.overallScore;
+        this.url = builder.url;
+        this.registrationStatus = builder.registrationStatus;
+        this.registeredAs = builder.registeredAs;
+        this.whitelistApproved = builder.whitelistApproved;
+        this.kycApproved = builder.kycApproved;
+        this.purchased = builder.purchased;
+    }
+
+    /**
+     * Start building an entry with every field empty
+     * @return
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Start building an entry from the values of this one
+     * @return
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * Take a snapshot of a mutable entry
+     * @param entry
+     * @return
+     */
+    public static ImmutableEntry of(Entry entry) {
+        return builder()
+                .setToken(entry.getToken())
+                .setTicker(entry.getTicker())
+                .setType(entry.getType())
+                .setTotalTokens(entry.getTotalTokens())
+                .setFundraisingGoal(entry.getFundraisingGoal())
+                .setAvailableForTokenSale(entry.getAvailableForTokenSale())
+                .setIcoTokenPrice(entry.getIcoTokenPrice())
+                .setProjectSummary(entry.getProjectSummary())
+                .setTeam(entry.getTeam())
+                .setAdvisors(entry.getAdvisors())
+                .setBonusForTheFirst(entry.getBonusForTheFirst())
+                .setPresaleInformation(entry.getPresaleInformation())
+                .setIcoStartDate(entry.getIcoStartDate())
+                .setTokenIssue(entry.getTokenIssue())
+                .setTokenType(entry.getTokenType())
+                .setSoldOnPresale(entry.getSoldOnPresale())
+                .setWhitelist(entry.getWhitelist())
+                .setMinMaxPersonalCap(entry.getMinMaxPersonalCap())
+                .setHypeRate(entry.getHypeRate())
+                .setRiskRate(entry.getRiskRate())
+                .setRoiRate(entry.getRoiRate())
+                .setOverallScore(entry.getOverallScore())
+                .setUrl(entry.getUrl())
+                .setRegistrationStatus(entry.getRegistrationStatus())
+                .setRegisteredAs(entry.getRegisteredAs())
+                .setWhitelistApproved(entry.getWhitelistApproved())
+                .setKycApproved(entry.getKycApproved())
+                .setPurchased(entry.getPurchased())
+                .build();
+    }
+
+    /**
+     * Create a mutable copy, for code that still fills in entries field by field
+     * @return
+     */
+    public Entry toEntry() {
+        return new Entry(this.token, this.ticker, this.type, this.totalTokens, this.fundraisingGoal,
+                this.availableForTokenSale, this.icoTokenPrice, this.projectSummary, this.team, this.advisors,
+                this.bonusForTheFirst, this.presaleInformation, this.icoStartDate, this.tokenIssue,
+                this.tokenType, this.soldOnPresale, this.whitelist, this.minMaxPersonalCap, this.hypeRate,
+                this.riskRate, this.roiRate, this.overallScore, this.url, this.registrationStatus,
+                this.registeredAs, this.whitelistApproved, this.kycApproved, this.purchased);
+    }
+
+    /**
+     * Merge with an existing source, in the same way as {@link Entry#mergeEntry(Entry)}.
+     * Scraped fields keep this entry's value, falling back to the source's value when this entry has none,
+     * and the fields populated by hand are taken from the source.
+     * @param source
+     * @return the merged entry, or this entry if merging changes nothing
+     */
+    public ImmutableEntry merge(ImmutableEntry source) {
+        ImmutableEntry merged = toBuilder()
+                .setToken(firstNonEmpty(this.token, source.getToken()))
+                .setTicker(firstNonEmpty(this.ticker, source.getTicker()))
+                .setTotalTokens(firstNonEmpty(this.totalTokens, source.getTotalTokens()))
+                .setFundraisingGoal(firstNonEmpty(this.fundraisingGoal, source.getFundraisingGoal()))
+                .setAvailableForTokenSale(firstNonEmpty(this.availableForTokenSale, source.getAvailableForTokenSale()))
+                .setIcoTokenPrice(firstNonEmpty(this.icoTokenPrice, source.getIcoTokenPrice()))
+                .setProjectSummary(firstNonEmpty(this.projectSummary, source.getProjectSummary()))
+                .setBonusForTheFirst(firstNonEmpty(this.bonusForTheFirst, source.getBonusForTheFirst()))
+                .setIcoStartDate(firstNonEmpty(this.icoStartDate, source.getIcoStartDate()))
+                .setTokenIssue(firstNonEmpty(this.tokenIssue, source.getTokenIssue()))
+                .setTokenType(firstNonEmpty(this.tokenType, source.getTokenType()))
+                .setSoldOnPresale(firstNonEmpty(this.soldOnPresale, source.getSoldOnPresale()))
+                .setWhitelist(firstNonEmpty(this.whitelist, source.getWhitelist()))
+                .setMinMaxPersonalCap(firstNonEmpty(this.minMaxPersonalCap, source.getMinMaxPersonalCap()))
+                .setHypeRate(firstNonEmpty(this.hypeRate, source.getHypeRate()))
+                .setRiskRate(firstNonEmpty(this.riskRate, source.getRiskRate()))
+                .setRoiRate(firstNonEmpty(this.roiRate, source.getRoiRate()))
+                .setOverallScore(firstNonEmpty(this.overallScore, source.getOverallScore()))
+                .setUrl(firstNonEmpty(this.url, source.getUrl()))
+                .build()
+                .withUserFields(source);
+        return merged.hasSameValues(this) ? this : merged;
+    }
+
+    /**
+     * Take the fields populated by hand from a source, in the same way as {@link Entry#assignDefaultEmptyFields(Entry)},
+     * used when overwriting details on the spreadsheet
+     * @param source
+     * @return the entry with the source's hand-filled values, or this entry if they're the same
+     */
+    public ImmutableEntry withUserFields(ImmutableEntry source) {
+        ImmutableEntry updated = toBuilder()
+                .setType(source.getType())
+                .setTeam(source.getTeam())
+                .setAdvisors(source.getAdvisors())
+                .setPresaleInformation(source.getPresaleInformation())
+                .setRegistrationStatus(source.getRegistrationStatus())
+                .setRegisteredAs(source.getRegisteredAs())
+                .setWhitelistApproved(source.getWhitelistApproved())
+                .setKycApproved(source.getKycApproved())
+                .setPurchased(source.getPurchased())
+                .build();
+        return updated.hasSameValues(this) ? this : updated;
+    }
+
+    /**
+     * Names of the fields, in declaration order, the same as {@link Entry#getFieldNames()}
+     * @return
+     */
+    public static List<String> getFieldNames() {
+        return Collections.unmodifiableList(new ArrayList<>(FIELD_GETTERS.keySet()));
+    }
+
+    /**
+     * Value of a field by name
+     * @param fieldName
+     * @return the value, or null if there is no such field
+     */
+    public String getFieldValue(String fieldName) {
+        Function<ImmutableEntry, String> getter = FIELD_GETTERS.get(fieldName);
+        return getter != null ? getter.apply(this) : null;
+    }
+
+    /**
+     * Returns true if every field, including the ones populated by hand, has the same value
+     * @param other
+     * @return
+     */
+    public boolean hasSameValues(ImmutableEntry other) {
+        for (Function<ImmutableEntry, String> getter : FIELD_GETTERS.values()) {
+            if (!Objects.equals(getter.apply(this), getter.apply(other))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Value to keep when merging, the preferred one unless it is empty
+     * @param preferred
+     * @param fallback
+     * @return
+     */
+    private static String firstNonEmpty(String preferred, String fallback) {
+        return Strings.isNullOrEmpty(preferred) && !Strings.isNullOrEmpty(fallback) ? fallback : preferred;
+    }
+
+    @Override
+    public String toString() {
+        return toEntry().toString();
+    }
+
+    /**
+     * Compares the same columns as {@link Entry#equals(Object)}, leaving out the ones that are user-inputted
+     * @param obj
+     * @return
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ImmutableEntry)) {
+            return false;
+        }
+
+        ImmutableEntry comp = (ImmutableEntry) obj;
+        for (String fieldName : Entry.COMPARED_FIELDS) {
+            if (!Objects.equals(getFieldValue(fieldName), comp.getFieldValue(fieldName))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (String fieldName : FIELD_GETTERS.keySet()) {
+            if (Entry.COMPARED_FIELDS.contains(fieldName)) {
+                hash = 31 * hash + Objects.hashCode(getFieldValue(fieldName));
+            }
+        }
+        return hash;
+    }
+
+    /********************
+     * Getters
+     *******************/
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getTotalTokens() {
+        return totalTokens;
+    }
+
+    public String getFundraisingGoal() {
+        return fundraisingGoal;
+    }
+
+    public String getAvailableForTokenSale() {
+        return availableForTokenSale;
+    }
+
+    public String getIcoTokenPrice() {
+        return icoTokenPrice;
+    }
+
+    public String getProjectSummary() {
+        return projectSummary;
+    }
+
+    public String getTeam() {
+        return team;
+    }
+
+    public String getAdvisors() {
+        return advisors;
+    }
+
+    public String getBonusForTheFirst() {
+        return bonusForTheFirst;
+    }
+
+    public String getPresaleInformation() {
+        return presaleInformation;
+    }
+
+    public String getIcoStartDate() {
+        return icoStartDate;
+    }
+
+    public String getTokenIssue() {
+        return tokenIssue;
+    }
+
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    public String getSoldOnPresale() {
+        return soldOnPresale;
+    }
+
+    public String getWhitelist() {
+        return whitelist;
+    }
+
+    public String getMinMaxPersonalCap() {
+        return minMaxPersonalCap;
+    }
+
+    public String getHypeRate() {
+        return hypeRate;
+    }
+
+    public String getRiskRate() {
+        return riskRate;
+    }
+
+    public String getRoiRate() {
+        return roiRate;
+    }
+
+    public String getOverallScore() {
+        return overallScore;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getRegistrationStatus() {
+        return registrationStatus;
+    }
+
+    public String getRegisteredAs() {
+        return registeredAs;
+    }
+
+    public String getWhitelistApproved() {
+        return whitelistApproved;
+    }
+
+    public String getKycApproved() {
+        return kycApproved;
+    }
+
+    public String getPurchased() {
+        return purchased;
+    }
+
+    /**
+     * Collects the values of an entry before it is created, so a created entry never changes
+     */
+    public static final class Builder {
+
+        /**
+         * Values of the entry to build, one per field of {@link ImmutableEntry}
+         */
+        private String token;
+        private String ticker;
+        private String type;
+        private String totalTokens;
+        private String fundraisingGoal;
+        private String availableForTokenSale;
+        private String icoTokenPrice;
+        private String projectSummary;
+        private String team;
+        private String advisors;
+        private String bonusForTheFirst;
+        private String presaleInformation;
+        private String icoStartDate;
+        private String tokenIssue;
+        private String tokenType;
+        private String soldOnPresale;
+        private String whitelist;
+        private String minMaxPersonalCap;
+        private String hypeRate;
+        private String riskRate;
+        private String roiRate;
+        private String overallScore;
+        private String url;
+        private String registrationStatus;
+        private String registeredAs;
+        private String whitelistApproved;
+        private String kycApproved;
+        private String purchased;
+
+        private Builder() {}
+
+        private Builder(ImmutableEntry source) {
+            this.token = source.token;
+            this.ticker = source.ticker;
+            this.type = source.type;
+            this.totalTokens = source.totalTokens;
+            this.fundraisingGoal = source.fundraisingGoal;
+            this.availableForTokenSale = source.availableForTokenSale;
+            this.icoTokenPrice = source.icoTokenPrice;
+            this.projectSummary = source.projectSummary;
+            this.team = source.team;
+            this.advisors = source.advisors;
+            this.bonusForTheFirst = source.bonusForTheFirst;
+            this.presaleInformation = source.presaleInformation;
+            this.icoStartDate = source.icoStartDate;
+            this.tokenIssue = source.tokenIssue;
+            this.tokenType = source.tokenType;
+            this.soldOnPresale = source.soldOnPresale;
+            this.whitelist = source.whitelist;
+            this.minMaxPersonalCap = source.minMaxPersonalCap;
+            this.hypeRate = source.hypeRate;
+            this.riskRate = source.riskRate;
+            this.roiRate = source.roiRate;
+            this.overallScore = source.overallScore;
+            this.url = source.url;
+            this.registrationStatus = source.registrationStatus;
+            this.registeredAs = source.registeredAs;
+            this.whitelistApproved = source.whitelistApproved;
+            this.kycApproved = source.kycApproved;
+            this.purchased = source.purchased;
+        }
+
+        /**
+         * Create the entry
+         * @return
+         */
+        public ImmutableEntry build() {
+            return new ImmutableEntry(this);
+        }
+
+        public Builder setToken(String token) {
+            this.token = token;
+            return this;
+        }
+
+        public Builder setTicker(String ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public Builder setType(String type) {
+            this.type = type;
+            return this;
+        }
+
+        public Builder setTotalTokens(String totalTokens) {
+            this.totalTokens = totalTokens;
+            return this;
+        }
+
+        public Builder setFundraisingGoal(String fundraisingGoal) {
+            this.fundraisingGoal = fundraisingGoal;
+            return this;
+        }
+
+        public Builder setAvailableForTokenSale(String availableForTokenSale) {
+            this.availableForTokenSale = availableForTokenSale;
+            return this;
+        }
+
+        public Builder setIcoTokenPrice(String icoTokenPrice) {
+            this.icoTokenPrice = icoTokenPrice;
+            return this;
+        }
+
+        public Builder setProjectSummary(String projectSummary) {
+            this.projectSummary = projectSummary;
+            return this;
+        }
+
+        public Builder setTeam(String team) {
+            this.team = team;
+            return this;
+        }
+
+        public Builder setAdvisors(String advisors) {
+            this.advisors = advisors;
+            return this;
+        }
+
+        public Builder setBonusForTheFirst(String bonusForTheFirst) {
+            this.bonusForTheFirst = bonusForTheFirst;
+            return this;
+        }
+
+        public Builder setPresaleInformation(String presaleInformation) {
+            this.presaleInformation = presaleInformation;
+            return this;
+        }
+
+        public Builder setIcoStartDate(String icoStartDate) {
+            this.icoStartDate = icoStartDate;
+            return this;
+        }
+
+        public Builder setTokenIssue(String tokenIssue) {
+            this.tokenIssue = tokenIssue;
+            return this;
+        }
+
+        public Builder setTokenType(String tokenType) {
+            this.tokenType = tokenType;
+            return this;
+        }
+
+        public Builder setSoldOnPresale(String soldOnPresale) {
+            this.soldOnPresale = soldOnPresale;
+            return this;
+        }
+
+        public Builder setWhitelist(String whitelist) {
+            this.whitelist = whitelist;
+            return this;
+        }
+
+        public Builder setMinMaxPersonalCap(String minMaxPersonalCap) {
+            this.minMaxPersonalCap = minMaxPersonalCap;
+            return this;
+        }
+
+        public Builder setHypeRate(String hypeRate) {
+            this.hypeRate = hypeRate;
+            return this;
+        }
+
+        public Builder setRiskRate(String riskRate) {
+            this.riskRate = riskRate;
+            return this;
+        }
+
+        public Builder setRoiRate(String roiRate) {
+            this.roiRate = roiRate;
+            return this;
+        }
+
+        public Builder setOverallScore(String overallScore) {
+            this.overallScore = overallScore;
+            return this;
+        }
+
+        public Builder setUrl(String url) {
+            this.url = url;
+            return this;
+        }
+
+        public Builder setRegistrationStatus(String registrationStatus) {
+            this.registrationStatus = registrationStatus;
+            return this;
+        }
+
+        public Builder setRegisteredAs(String registeredAs) {
+            this.registeredAs = registeredAs;
+            return this;
+        }
+
+        public Builder setWhitelistApproved(String whitelistApproved) {
+            this.whitelistApproved = whitelistApproved;
+            return this;
+        }
+
+        public Builder setKycApproved(String kycApproved) {
+            this.kycApproved = kycApproved;
+            return this;
+        }
+
+        public Builder setPurchased(String purchased) {
+            this.purchased = purchased;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.crypto.enums;
+
+public enum Command {
+    /**
+     * Crawl the listing pages and add every ICO not yet on the spreadsheet
+     */
+    DISCOVER("--discover"),
+
+    /**
+     * Scrape every entry on the spreadsheet again and write the ones that changed
+     */
+    REFRESH_ALL("--refresh-all"),
+
+    /**
+     * Process every coin listed in a file, one per line
+     */
+    BATCH("--batch"),
+
+    /**
+     * Serve the entries on the spreadsheet over a read-only HTTP API
+     */
+    SERVE("--serve"),
+
+    /**
+     * Write every entry in a local CSV or newline-delimited JSON file to the spreadsheet
+     */
+    IMPORT("--import");
+
+    /**
+     * Argument that selects the command
+     */
+    private final String argument;
+
+    Command(String argument) {
+        this.argument = argument;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    /**
+     * Find the command selected by an argument
+     * @param argument
+     * @return the matching command, or null if the argument isn't a command
+     */
+    public static Command fromArgument(String argument) {
+        for (Command command : values()) {
+            if (command.getArgument().equals(argument)) {
+                return command;
+            }
+        }
+        return null;
+    }
+}
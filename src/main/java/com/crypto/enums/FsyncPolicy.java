@@ -0,0 +1,18 @@
+package com.crypto.enums;
+
+public enum FsyncPolicy {
+    /**
+     * Force every record to disk as it is appended
+     */
+    ALWAYS,
+
+    /**
+     * Force each batch of records to disk once the whole batch is appended
+     */
+    COMMIT,
+
+    /**
+     * Leave flushing to the operating system
+     */
+    NEVER
+}
@@ -0,0 +1,18 @@
+package com.crypto.enums;
+
+public enum OutputFormat {
+    /**
+     * Write to the configured Google Sheets
+     */
+    SHEETS,
+
+    /**
+     * Write to a local CSV file
+     */
+    CSV,
+
+    /**
+     * Write to a local newline-delimited JSON file
+     */
+    NDJSON
+}
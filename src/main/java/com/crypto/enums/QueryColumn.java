@@ -0,0 +1,48 @@
+package com.crypto.enums;
+
+public enum QueryColumn {
+    /**
+     * ICO price in USD, unknown when quoted in another currency
+     */
+    ICO_TOKEN_PRICE,
+
+    /**
+     * ICO fundraising goal in USD, unknown when given in another currency
+     */
+    FUNDRAISING_GOAL,
+
+    /**
+     * Total number of tokens minted
+     */
+    TOTAL_TOKENS,
+
+    /**
+     * Percentage of tokens available for token sale
+     */
+    AVAILABLE_FOR_TOKEN_SALE,
+
+    /**
+     * Predicted hype rate
+     */
+    HYPE_RATE,
+
+    /**
+     * Predicted risk rate
+     */
+    RISK_RATE,
+
+    /**
+     * Predicted return on investment rate
+     */
+    ROI_RATE,
+
+    /**
+     * Overall score
+     */
+    OVERALL_SCORE,
+
+    /**
+     * Start of public sale, as a date
+     */
+    ICO_START_DATE
+}
@@ -0,0 +1,13 @@
+package com.crypto.enums;
+
+public enum ShardStrategy {
+    /**
+     * Assign tokens by the hash of their normalized name
+     */
+    HASH,
+
+    /**
+     * Assign tokens by the first character of their normalized name, in contiguous ranges
+     */
+    RANGE
+}
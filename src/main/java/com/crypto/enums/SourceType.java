@@ -1,6 +1,48 @@
 package com.crypto.enums;
 
 public enum SourceType {
-    ICODrop,
-    ICOBench
+    ICODrop("icodrops.com", "https://icodrops.com/"),
+    ICOBench("icobench.com", "https://icobench.com/ico/");
+
+    /**
+     * Host the source's pages are served from
+     */
+    private final String host;
+
+    /**
+     * Base url of a project page, followed by the project's slug
+     */
+    private final String baseUrl;
+
+    SourceType(String host, String baseUrl) {
+        this.host = host;
+        this.baseUrl = baseUrl;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Find the source a page URL belongs to
+     * @param url
+     * @return the matching source, or null if the URL isn't from a known source
+     */
+    public static SourceType fromUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+
+        String lowerCaseUrl = url.toLowerCase();
+        for (SourceType sourceType : values()) {
+            if (lowerCaseUrl.contains(sourceType.getHost())) {
+                return sourceType;
+            }
+        }
+        return null;
+    }
 }
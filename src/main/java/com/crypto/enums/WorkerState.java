@@ -0,0 +1,18 @@
+package com.crypto.enums;
+
+public enum WorkerState {
+    /**
+     * Processing the tokens it owns
+     */
+    RUNNING,
+
+    /**
+     * Finished the tokens it owns, still available to take over tokens from workers that die
+     */
+    IDLE,
+
+    /**
+     * Finished and left, its tokens are not reassigned
+     */
+    DONE
+}
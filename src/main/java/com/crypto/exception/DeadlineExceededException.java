@@ -0,0 +1,10 @@
+package com.crypto.exception;
+
+import java.io.IOException;
+
+public class DeadlineExceededException extends IOException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
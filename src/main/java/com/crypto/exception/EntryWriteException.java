@@ -0,0 +1,21 @@
+package com.crypto.exception;
+
+import java.util.Collections;
+import java.util.Set;
+
+public class EntryWriteException extends RuntimeException {
+
+    /**
+     * Tokens of the entries that weren't written
+     */
+    private Set<String> failedTokens;
+
+    public EntryWriteException(String message, Set<String> failedTokens) {
+        super(message);
+        this.failedTokens = Collections.unmodifiableSet(failedTokens);
+    }
+
+    public Set<String> getFailedTokens() {
+        return failedTokens;
+    }
+}
@@ -0,0 +1,10 @@
+package com.crypto.exception;
+
+import java.io.IOException;
+
+public class SnapshotFormatException extends IOException {
+
+    public SnapshotFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,353 @@
+package com.crypto.journal;
+
+import com.crypto.enums.FsyncPolicy;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of changes committed to the spreadsheet, written as one JSON record per line.
+ * The journal is split into segments named by the sequence number of their first record,
+ * and a new segment is started once the current one reaches its size limit.
+ * A journal holds a lock on its directory while it is open, so only one process appends to it at a time.
+ */
+public class ChangeJournal implements Closeable {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ChangeJournal.class);
+
+    /**
+     * Global instance of JSON factory
+     */
+    private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+
+    /**
+     * Prefix of segment file names
+     */
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    /**
+     * Suffix of segment file names
+     */
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Name of the file locked while the journal is open
+     */
+    private static final String LOCK_FILE = "journal.lock";
+
+    /**
+     * Default size at which a new segment is started
+     */
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Directory containing the segments
+     */
+    private Path directory;
+
+    /**
+     * Size at which a new segment is started
+     */
+    private long maxSegmentBytes;
+
+    /**
+     * When appended records are forced to disk
+     */
+    private FsyncPolicy fsyncPolicy;
+
+    /**
+     * Channel to the lock file
+     */
+    private FileChannel lockChannel;
+
+    /**
+     * Lock on the directory, held until the journal is closed
+     */
+    private FileLock lock;
+
+    /**
+     * Channel to the segment being appended to
+     */
+    private FileChannel segment;
+
+    /**
+     * Size of the segment being appended to
+     */
+    private long segmentSize;
+
+    /**
+     * Sequence number assigned to the next record
+     */
+    private long nextSequence;
+
+    public ChangeJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES, FsyncPolicy.COMMIT);
+    }
+
+    public ChangeJournal(Path directory, long maxSegmentBytes, FsyncPolicy fsyncPolicy) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+
+        Files.createDirectories(directory);
+        acquireLock();
+        try {
+            openLastSegment();
+        } catch (IOException ex) {
+            releaseLock();
+            throw ex;
+        }
+    }
+
+    /**
+     * Append the records in order, assigning each the next sequence number
+     * @param records
+     * @throws IOException
+     */
+    public synchronized void append(List<ChangeRecord> records) throws IOException {
+        for (ChangeRecord record : records) {
+            record.setSequence(this.nextSequence);
+            byte[] line = (JSON_FACTORY.toString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+
+            if (this.segmentSize > 0 && this.segmentSize + line.length > this.maxSegmentBytes) {
+                rollSegment();
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                this.segment.write(buffer);
+            }
+            this.segmentSize += line.length;
+            ++this.nextSequence;
+
+            if (this.fsyncPolicy == FsyncPolicy.ALWAYS) {
+                this.segment.force(false);
+            }
+        }
+
+        if (this.fsyncPolicy == FsyncPolicy.COMMIT && !records.isEmpty()) {
+            this.segment.force(false);
+        }
+    }
+
+    /**
+     * Sequence number that will be assigned to the next record
+     * @return
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (this.fsyncPolicy != FsyncPolicy.NEVER) {
+                this.segment.force(false);
+            }
+            this.segment.close();
+        } finally {
+            releaseLock();
+        }
+    }
+
+    /**
+     * Read every record at or after the sequence number, for consumers tailing the journal
+     * @param directory
+     * @param fromSequence
+     * @return
+     * @throws IOException
+     */
+    public static List<ChangeRecord> read(Path directory, long fromSequence) throws IOException {
+        List<ChangeRecord> records = new ArrayList<>();
+
+        List<Path> segments = listSegments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            // Skip segments that end before the requested sequence
+            if (i + 1 < segments.size() && segmentStart(segments.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+
+            for (String line : Files.readAllLines(segments.get(i), StandardCharsets.UTF_8)) {
+                ChangeRecord record = parse(line);
+                if (record != null && record.getSequence() >= fromSequence) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Lock the directory so no other process appends to the segments or repairs one while it is being written
+     * @throws IOException if another process holds the journal
+     */
+    private void acquireLock() throws IOException {
+        this.lockChannel = FileChannel.open(this.directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            this.lock = this.lockChannel.tryLock();
+        } catch (OverlappingFileLockException ex) {
+            this.lock = null;
+        }
+
+        if (this.lock == null) {
+            this.lockChannel.close();
+            throw new IOException("Journal at " + this.directory + " is in use by another process");
+        }
+    }
+
+    /**
+     * Release the lock on the directory
+     * @throws IOException
+     */
+    private void releaseLock() throws IOException {
+        try {
+            this.lock.release();
+        } finally {
+            this.lockChannel.close();
+        }
+    }
+
+    /**
+     * Open the newest segment for appending, discarding a partially written last record left by a crash
+     * @throws IOException
+     */
+    private void openLastSegment() throws IOException {
+        List<Path> segments = listSegments(this.directory);
+        if (segments.isEmpty()) {
+            this.nextSequence = 0;
+            openSegment(segmentPath(0));
+            return;
+        }
+
+        Path lastSegment = segments.get(segments.size() - 1);
+        byte[] contents = Files.readAllBytes(lastSegment);
+
+        int end = contents.length;
+        while (end > 0 && contents[end - 1] != '\n') {
+            --end;
+        }
+
+        this.nextSequence = segmentStart(lastSegment);
+        if (end > 0) {
+            int lineStart = end - 1;
+            while (lineStart > 0 && contents[lineStart - 1] != '\n') {
+                --lineStart;
+            }
+
+            ChangeRecord lastRecord = parse(new String(contents, lineStart, end - 1 - lineStart, StandardCharsets.UTF_8));
+            if (lastRecord != null) {
+                this.nextSequence = lastRecord.getSequence() + 1;
+            }
+        }
+
+        openSegment(lastSegment);
+        if (end < contents.length) {
+            logger.error("Discarding {} bytes of a partially written record in {}", contents.length - end, lastSegment);
+            this.segment.truncate(end);
+            this.segmentSize = end;
+        }
+    }
+
+    /**
+     * Close the current segment and start a new one at the next sequence number
+     * @throws IOException
+     */
+    private void rollSegment() throws IOException {
+        if (this.fsyncPolicy != FsyncPolicy.NEVER) {
+            this.segment.force(false);
+        }
+        this.segment.close();
+
+        openSegment(segmentPath(this.nextSequence));
+        logger.info("Started journal segment at sequence {}", this.nextSequence);
+    }
+
+    /**
+     * Open a segment for appending
+     * @param path
+     * @throws IOException
+     */
+    private void openSegment(Path path) throws IOException {
+        this.segment = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.segmentSize = this.segment.size();
+    }
+
+    /**
+     * Path of the segment starting at the sequence number, zero-padded so segments sort by name
+     * @param startSequence
+     * @return
+     */
+    private Path segmentPath(long startSequence) {
+        return this.directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, startSequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Segments in the directory, oldest first
+     * @param directory
+     * @return
+     * @throws IOException
+     */
+    private static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String fileName = path.getFileName().toString();
+                        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Sequence number of the first record in a segment, taken from its file name
+     * @param segment
+     * @return
+     */
+    private static long segmentStart(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Parse a journal line, returning null if the line is incomplete or invalid
+     * @param line
+     * @return
+     */
+    private static ChangeRecord parse(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return JSON_FACTORY.fromString(line, ChangeRecord.class);
+        } catch (IOException | IllegalArgumentException ex) {
+            logger.error("Unable to parse journal record {}", line);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,126 @@
+package com.crypto.journal;
+
+import com.crypto.entity.Entry;
+import com.google.api.client.util.Key;
+import com.google.common.base.Strings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single field-level change committed to the spreadsheet
+ */
+public class ChangeRecord {
+
+    /**
+     * Position of the record in the journal, assigned when appended
+     */
+    @Key
+    private long sequence;
+
+    /**
+     * Time the change was committed, in epoch milliseconds
+     */
+    @Key
+    private long timestamp;
+
+    /**
+     * Coin name
+     */
+    @Key
+    private String token;
+
+    /**
+     * Name of the changed field
+     */
+    @Key
+    private String field;
+
+    /**
+     * Value before the change, null if the entry is new
+     */
+    @Key
+    private String oldValue;
+
+    /**
+     * Value after the change
+     */
+    @Key
+    private String newValue;
+
+    /**
+     * Where the new value came from
+     */
+    @Key
+    private String source;
+
+    public ChangeRecord() {}
+
+    public ChangeRecord(long timestamp, String token, String field, String oldValue, String newValue, String source) {
+        this.timestamp = timestamp;
+        this.token = token;
+        this.field = field;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+        this.source = source;
+    }
+
+    /**
+     * Create a record for each field that differs between the existing and updated entry.
+     * Null and empty values are treated as the same value.
+     * @param existingEntry entry currently on the spreadsheet, null if the entry is new
+     * @param updatedEntry
+     * @param source
+     * @param timestamp
+     * @return
+     */
+    public static List<ChangeRecord> diff(Entry existingEntry, Entry updatedEntry, String source, long timestamp) {
+        List<ChangeRecord> records = new ArrayList<>();
+
+        for (String fieldName : Entry.getFieldNames()) {
+            String oldValue = existingEntry == null ? null : existingEntry.getFieldValue(fieldName);
+            String newValue = updatedEntry.getFieldValue(fieldName);
+
+            if (!Strings.nullToEmpty(oldValue).equals(Strings.nullToEmpty(newValue))) {
+                records.add(new ChangeRecord(timestamp, updatedEntry.getToken(), fieldName, oldValue, newValue, source));
+            }
+        }
+        return records;
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getOldValue() {
+        return oldValue;
+    }
+
+    public String getNewValue() {
+        return newValue;
+    }
+
+    public String getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,658 @@
+package com.crypto.pipeline;
+
+import com.crypto.entity.Entry;
+import com.crypto.enums.SourceType;
+import com.crypto.exception.EntryWriteException;
+import com.crypto.reader.Reader;
+import com.crypto.trace.CoinEvent;
+import com.crypto.trace.DiffEvent;
+import com.crypto.trace.SheetWriteEvent;
+import com.crypto.util.Deadline;
+import com.crypto.util.StringUtils;
+import com.crypto.writer.EntrySink;
+import com.google.common.base.Strings;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Processes coins in stages connected by bounded queues: resolve, fetch, parse, diff and write.
+ * Network-bound stages and CPU-bound stages have separately sized pools, and entries are written
+ * from a single thread in batches. Every queue is bounded, so when writing falls behind the queues fill up
+ * and each stage in turn blocks, down to {@link #submit(PipelineItem)}, keeping memory use bounded.
+ * Each coin has a deadline covering resolution, every probe and the fallback source. Once the run deadline passes
+ * no new coin is started, entries that were already retrieved are still written, and the rest are counted as timed out.
+ * With a checkpoint, each coin's progress is recorded and changed entries are spilled until they're written.
+ */
+public class EntryPipeline {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(EntryPipeline.class);
+
+    /**
+     * Default number of items each queue holds
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * Default number of workers for stages that wait on the network
+     */
+    private static final int DEFAULT_NETWORK_PARALLELISM = 16;
+
+    /**
+     * Default number of workers for stages that are CPU-bound
+     */
+    private static final int DEFAULT_CPU_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of entries written at once
+     */
+    private static final int WRITE_BATCH_SIZE = 100;
+
+    /**
+     * How long the writer waits for a full batch before writing what it has
+     */
+    private static final long WRITE_FLUSH_MILLIS = 2000;
+
+    /**
+     * Default time a single coin has to be resolved and retrieved
+     */
+    private static final long DEFAULT_COIN_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * How long after the run deadline in-flight work is given to finish before it is cancelled
+     */
+    private static final long CANCEL_GRACE_MILLIS = 5000;
+
+    /**
+     * How often a blocked producer checks the run deadline
+     */
+    private static final long OFFER_POLL_MILLIS = 500;
+
+    /**
+     * Where changed entries are written
+     */
+    private EntrySink sink;
+
+    /**
+     * Reader for each source
+     */
+    private Map<SourceType, Reader> readers;
+
+    /**
+     * Items waiting to be resolved
+     */
+    private BlockingQueue<PipelineItem> input;
+
+    /**
+     * Items waiting to be written
+     */
+    private BlockingQueue<PipelineItem> diffed;
+
+    /**
+     * Stages before the writer, in order
+     */
+    private List<PipelineStage> stages;
+
+    /**
+     * Thread writing the entries
+     */
+    private Thread writer;
+
+    /**
+     * Number of items submitted
+     */
+    private AtomicInteger submittedCount;
+
+    /**
+     * Number of items identical to the spreadsheet
+     */
+    private AtomicInteger unchangedCount;
+
+    /**
+     * Number of entries written
+     */
+    private AtomicInteger writtenCount;
+
+    /**
+     * Number of items that couldn't be resolved, retrieved, parsed or written
+     */
+    private AtomicInteger failedCount;
+
+    /**
+     * Number of items that ran out of time
+     */
+    private AtomicInteger timedOutCount;
+
+    /**
+     * Time a single coin has to be resolved and retrieved
+     */
+    private long coinTimeoutMillis;
+
+    /**
+     * Time by which the whole run must finish
+     */
+    private Deadline runDeadline;
+
+    /**
+     * Where progress is recorded so the run can be resumed, optional
+     */
+    private RunCheckpoint checkpoint;
+
+    /**
+     * Set once the counts are final, after which items still finishing in a cancelled stage aren't counted
+     */
+    private volatile boolean settled;
+
+    public EntryPipeline(EntrySink sink) {
+        this(sink, DEFAULT_NETWORK_PARALLELISM, DEFAULT_CPU_PARALLELISM, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public EntryPipeline(EntrySink sink, int networkParallelism, int cpuParallelism, int queueCapacity) {
+        this.sink = sink;
+        this.submittedCount = new AtomicInteger();
+        this.unchangedCount = new AtomicInteger();
+        this.writtenCount = new AtomicInteger();
+        this.failedCount = new AtomicInteger();
+        this.timedOutCount = new AtomicInteger();
+        this.coinTimeoutMillis = DEFAULT_COIN_TIMEOUT_MILLIS;
+        this.runDeadline = Deadline.NONE;
+
+        this.readers = new EnumMap<>(SourceType.class);
+        for (SourceType sourceType : SourceType.values()) {
+            this.readers.put(sourceType, new Reader(sourceType));
+        }
+
+        this.input = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<PipelineItem> resolved = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<PipelineItem> fetched = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<PipelineItem> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        this.diffed = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.stages = new ArrayList<>();
+        this.stages.add(new PipelineStage("resolve", networkParallelism, this.input, resolved, this::resolve, this::fail));
+        this.stages.add(new PipelineStage("fetch", networkParallelism, resolved, fetched, this::fetch, this::fail));
+        this.stages.add(new PipelineStage("parse", cpuParallelism, fetched, parsed, this::parse, this::fail));
+        this.stages.add(new PipelineStage("diff", cpuParallelism, parsed, this.diffed, this::diff, this::fail));
+
+        this.writer = new Thread(this::runWriter, "pipeline-write");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Start every stage
+     */
+    public void start() {
+        for (PipelineStage stage : this.stages) {
+            stage.start();
+        }
+        this.writer.start();
+    }
+
+    /**
+     * Add a coin to the pipeline, blocking while the first queue is full.
+     * Coins submitted after the run deadline are counted as timed out.
+     * @param item
+     * @throws InterruptedException
+     */
+    public void submit(PipelineItem item) throws InterruptedException {
+        // Time spent queued behind a full first stage counts towards the coin
+        item.getEvent().begin();
+        this.submittedCount.incrementAndGet();
+        if (!offer(item)) {
+            timeOut(item);
+        }
+    }
+
+    /**
+     * Signal the end of the input and wait for every submitted item to be written or dropped.
+     * If work is still in flight shortly after the run deadline it is cancelled,
+     * entries already through the diff stage are written, and everything else is counted as timed out.
+     * @throws InterruptedException
+     */
+    public void finish() throws InterruptedException {
+        offer(PipelineItem.END);
+
+        if (this.runDeadline == Deadline.NONE) {
+            this.writer.join();
+        }
+        else {
+            this.writer.join(this.runDeadline.remainingMillis() + CANCEL_GRACE_MILLIS);
+            if (this.writer.isAlive()) {
+                logger.error("Run budget exhausted, cancelling in-flight work");
+                abort();
+                this.writer.join();
+            }
+        }
+
+        // Give cancelled stages a moment to stop, a worker stuck in a request is left behind
+        long stopDeadline = System.currentTimeMillis() + CANCEL_GRACE_MILLIS;
+        for (PipelineStage stage : this.stages) {
+            if (!stage.awaitTermination(Math.max(0, stopDeadline - System.currentTimeMillis()))) {
+                logger.error("Pipeline stage still running after the run was cancelled, ignoring its results");
+                break;
+            }
+        }
+
+        synchronized (this) {
+            this.settled = true;
+
+            // Anything not accounted for was cancelled in flight
+            int cancelledCount = this.submittedCount.get() - this.unchangedCount.get() - this.writtenCount.get()
+                    - this.failedCount.get() - this.timedOutCount.get();
+            if (cancelledCount > 0) {
+                this.timedOutCount.addAndGet(cancelledCount);
+            }
+        }
+
+        logger.info("Pipeline processed {} items: {} unchanged, {} written, {} failed, {} timed out",
+                this.submittedCount.get(), this.unchangedCount.get(), this.writtenCount.get(),
+                this.failedCount.get(), this.timedOutCount.get());
+    }
+
+    /**
+     * Stop every stage without waiting for the remaining items, writing the entries that are ready
+     */
+    public void abort() {
+        for (PipelineStage stage : this.stages) {
+            stage.abort();
+        }
+        this.writer.interrupt();
+    }
+
+    /**
+     * Limit the time each request waits to connect or read
+     * @param requestTimeoutMillis
+     */
+    public void setRequestTimeoutMillis(int requestTimeoutMillis) {
+        for (Reader reader : this.readers.values()) {
+            reader.setRequestTimeoutMillis(requestTimeoutMillis);
+        }
+    }
+
+    /**
+     * Only extract the given fields from pages
+     * @param fieldProjection null for every field
+     */
+    public void setFieldProjection(Set<String> fieldProjection) {
+        for (Reader reader : this.readers.values()) {
+            reader.setFieldProjection(fieldProjection);
+        }
+    }
+
+    /**
+     * Put an item on the first queue, giving up once the run deadline passes
+     * @param item
+     * @return false if the run deadline passed first
+     * @throws InterruptedException
+     */
+    private boolean offer(PipelineItem item) throws InterruptedException {
+        while (!this.runDeadline.isExpired()) {
+            if (this.input.offer(item, OFFER_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Work out the source of the item, finding the page from the name when there's no URL
+     * @param item
+     * @return
+     */
+    private boolean resolve(PipelineItem item) {
+        if (this.runDeadline.isExpired()) {
+            timeOut(item);
+            return false;
+        }
+        item.setDeadline(Deadline.afterMillis(this.coinTimeoutMillis).earliest(this.runDeadline));
+
+        // Skip probing for names an earlier attempt at the run already resolved
+        if (Strings.isNullOrEmpty(item.getUrl()) && this.checkpoint != null) {
+            item.setUrl(this.checkpoint.getResolvedUrl(item.getKey()));
+        }
+
+        if (!Strings.isNullOrEmpty(item.getUrl())) {
+            SourceType sourceType = SourceType.fromUrl(item.getUrl());
+            if (sourceType == null) {
+                logger.error("No known source for {} at {}", item.getIcoName(), item.getUrl());
+                fail(item);
+                return false;
+            }
+
+            item.setSourceType(sourceType);
+            recordResolved(item);
+            return true;
+        }
+
+        // Try each source in turn, probing the page also retrieves it
+        for (SourceType sourceType : SourceType.values()) {
+            Document document = this.readers.get(sourceType).retrieveJsoupDocument(item.getIcoName(), item.getDeadline());
+            if (document != null) {
+                item.setSourceType(sourceType);
+                item.setUrl(document.location());
+                item.setDocument(document);
+                recordResolved(item);
+                recordFetched(item);
+                return true;
+            }
+        }
+
+        if (item.getDeadline().isExpired()) {
+            timeOut(item);
+        }
+        else {
+            fail(item);
+        }
+        return false;
+    }
+
+    /**
+     * Retrieve the page, unless it was already retrieved while resolving
+     * @param item
+     * @return
+     */
+    private boolean fetch(PipelineItem item) {
+        if (item.getDocument() != null) {
+            return true;
+        }
+
+        try {
+            Reader reader = this.readers.get(item.getSourceType());
+            item.setDocument(reader.fetchDocument(item.getUrl(), item.getIcoName(), item.getDeadline()));
+            recordFetched(item);
+            return true;
+        } catch (IOException ex) {
+            if (item.getDeadline().isExpired()) {
+                timeOut(item);
+                return false;
+            }
+            logger.error("Unable to retrieve page at {}", item.getUrl());
+        }
+
+        fail(item);
+        return false;
+    }
+
+    /**
+     * Create the entry from the page, then release the page
+     * @param item
+     * @return
+     */
+    private boolean parse(PipelineItem item) {
+        item.setEntry(this.readers.get(item.getSourceType()).parseDocument(item.getDocument(), item.getIcoName()));
+        item.setDocument(null);
+        return true;
+    }
+
+    /**
+     * Drop entries identical to the spreadsheet, and merge the rest with the existing entry
+     * @param item
+     * @return
+     */
+    private boolean diff(PipelineItem item) {
+        DiffEvent event = new DiffEvent();
+        event.begin();
+
+        boolean changed = merge(item);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.token = Strings.nullToEmpty(item.getIcoName());
+            event.source = item.getSourceType().name();
+            event.changed = changed;
+            event.commit();
+        }
+
+        if (!changed) {
+            if (count(this.unchangedCount)) {
+                record(item, CoinEvent.UNCHANGED);
+                if (this.checkpoint != null) {
+                    this.checkpoint.recordUnchanged(item.getKey());
+                }
+            }
+        }
+        else if (this.checkpoint != null) {
+            this.checkpoint.spill(item.getKey(), item.getEntry());
+        }
+        return changed;
+    }
+
+    /**
+     * Merge the entry with the existing entry
+     * @param item
+     * @return false if the entry is identical to the existing entry
+     */
+    private boolean merge(PipelineItem item) {
+        Entry existingEntry = item.getExistingEntry();
+        if (existingEntry == null) {
+            return true;
+        }
+
+        // Keep the row's token so a renamed project overwrites its own row, and isn't taken as changed for the name alone
+        item.getEntry().setToken(existingEntry.getToken());
+
+        if (existingEntry.equals(item.getEntry())) {
+            return false;
+        }
+
+        item.getEntry().mergeEntry(existingEntry);
+        return true;
+    }
+
+    /**
+     * Collect entries into batches and write each batch once it is full,
+     * or once no entry has arrived for a while
+     */
+    private void runWriter() {
+        List<PipelineItem> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+
+        try {
+            while (true) {
+                PipelineItem item = this.diffed.poll(WRITE_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+                if (item == PipelineItem.END) {
+                    break;
+                }
+
+                if (item != null) {
+                    batch.add(item);
+                }
+                if (batch.size() >= WRITE_BATCH_SIZE || (item == null && !batch.isEmpty())) {
+                    write(batch);
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Write whatever made it through the diff stage before the run was cancelled
+            List<PipelineItem> remaining = new ArrayList<>();
+            this.diffed.drainTo(remaining);
+            for (PipelineItem item : remaining) {
+                if (item != PipelineItem.END) {
+                    batch.add(item);
+                }
+            }
+        }
+
+        write(batch);
+    }
+
+    /**
+     * Write a batch of entries to the sink and clear it.
+     * Only the entries the sink wrote are counted as written and committed to the checkpoint,
+     * the rest stay spilled so a resumed run writes them again.
+     * @param batch
+     */
+    private void write(List<PipelineItem> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Entry> entries = new ArrayList<>(batch.size());
+        for (PipelineItem item : batch) {
+            entries.add(item.getEntry());
+        }
+
+        SheetWriteEvent event = new SheetWriteEvent();
+        event.begin();
+
+        Set<String> failedTokens;
+        try {
+            this.sink.processResults(entries);
+            failedTokens = Collections.emptySet();
+        } catch (EntryWriteException ex) {
+            logger.error("Error in writing {} of a batch of {} entries", ex.getFailedTokens().size(), batch.size());
+            failedTokens = ex.getFailedTokens();
+        } catch (RuntimeException ex) {
+            logger.error("Error in writing batch of {} entries", batch.size());
+            failedTokens = entries.stream().map(Entry::getToken).collect(Collectors.toSet());
+        }
+
+        List<PipelineItem> written = new ArrayList<>(batch.size());
+        for (PipelineItem item : batch) {
+            if (failedTokens.contains(item.getEntry().getToken())) {
+                this.failedCount.incrementAndGet();
+                record(item, CoinEvent.FAILED);
+            }
+            else {
+                written.add(item);
+            }
+        }
+        this.writtenCount.addAndGet(written.size());
+
+        if (this.checkpoint != null && !written.isEmpty()) {
+            this.checkpoint.recordCommitted(written.stream().map(PipelineItem::getKey).collect(Collectors.toList()));
+        }
+
+        event.end();
+        event.succeeded = written.size() == batch.size();
+        if (event.shouldCommit()) {
+            event.entries = batch.size();
+            event.commit();
+        }
+
+        for (PipelineItem item : written) {
+            record(item, CoinEvent.WRITTEN);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Count an item that couldn't be processed
+     * @param item
+     */
+    private void fail(PipelineItem item) {
+        if (count(this.failedCount)) {
+            record(item, CoinEvent.FAILED);
+        }
+    }
+
+    /**
+     * Count an item that ran out of time
+     * @param item
+     */
+    private void timeOut(PipelineItem item) {
+        if (count(this.timedOutCount)) {
+            logger.error("Timed out processing {}", item.getIcoName());
+            record(item, CoinEvent.TIMED_OUT);
+        }
+    }
+
+    /**
+     * Count an item, unless the counts are already final
+     * @param counter
+     * @return false if the item came in after the counts were settled and was ignored
+     */
+    private synchronized boolean count(AtomicInteger counter) {
+        if (this.settled) {
+            return false;
+        }
+        counter.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Record the page an item resolved to in the checkpoint
+     * @param item
+     */
+    private void recordResolved(PipelineItem item) {
+        if (this.checkpoint != null && !this.settled) {
+            this.checkpoint.recordResolved(item.getKey(), item.getUrl());
+        }
+    }
+
+    /**
+     * Record that an item's page was retrieved in the checkpoint
+     * @param item
+     */
+    private void recordFetched(PipelineItem item) {
+        if (this.checkpoint != null && !this.settled) {
+            this.checkpoint.recordFetched(item.getKey());
+        }
+    }
+
+    /**
+     * Commit the flight recorder event of a coin that has finished the pipeline
+     * @param item
+     * @param outcome
+     */
+    private void record(PipelineItem item, String outcome) {
+        CoinEvent event = item.getEvent();
+        event.end();
+        if (event.shouldCommit()) {
+            event.token = Strings.nullToEmpty(item.getIcoName());
+            event.source = item.getSourceType() == null ? StringUtils.EMPTY_STRING : item.getSourceType().name();
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public int getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public int getUnchangedCount() {
+        return unchangedCount.get();
+    }
+
+    public int getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+
+    public int getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    public void setCoinTimeoutMillis(long coinTimeoutMillis) {
+        this.coinTimeoutMillis = coinTimeoutMillis;
+    }
+
+    public void setRunDeadline(Deadline runDeadline) {
+        this.runDeadline = runDeadline;
+    }
+
+    public void setCheckpoint(RunCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+}
@@ -0,0 +1,131 @@
+package com.crypto.pipeline;
+
+import com.crypto.entity.Entry;
+import com.crypto.enums.SourceType;
+import com.crypto.trace.CoinEvent;
+import com.crypto.util.Deadline;
+import com.google.common.base.Strings;
+import org.jsoup.nodes.Document;
+
+/**
+ * A single coin moving through the pipeline, filled in by each stage as it passes through
+ */
+public class PipelineItem {
+
+    /**
+     * Marks the end of the input, passed along each queue once every item before it has been handed on
+     */
+    static final PipelineItem END = new PipelineItem(null, null, null);
+
+    /**
+     * Coin name
+     */
+    private String icoName;
+
+    /**
+     * Page to retrieve the details from, resolved from the name if empty
+     */
+    private String url;
+
+    /**
+     * Entry currently on the spreadsheet, null if the coin is new
+     */
+    private Entry existingEntry;
+
+    /**
+     * Source the page belongs to
+     */
+    private SourceType sourceType;
+
+    /**
+     * Retrieved page
+     */
+    private Document document;
+
+    /**
+     * Entry parsed from the page
+     */
+    private Entry entry;
+
+    /**
+     * Time by which the coin must be resolved and retrieved, set when it starts resolving
+     */
+    private Deadline deadline;
+
+    /**
+     * Flight recorder event spanning the coin's trip through the pipeline, begun when it's submitted
+     */
+    private CoinEvent event;
+
+    public PipelineItem(String icoName, String url, Entry existingEntry) {
+        this.icoName = icoName;
+        this.url = url;
+        this.existingEntry = existingEntry;
+        this.deadline = Deadline.NONE;
+        this.event = new CoinEvent();
+    }
+
+    /**
+     * Key identifying the input, its name or its URL when there's no name
+     * @return
+     */
+    public String getKey() {
+        return Strings.isNullOrEmpty(this.icoName) ? this.url : this.icoName;
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public String getIcoName() {
+        return icoName;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public Entry getExistingEntry() {
+        return existingEntry;
+    }
+
+    public SourceType getSourceType() {
+        return sourceType;
+    }
+
+    public void setSourceType(SourceType sourceType) {
+        this.sourceType = sourceType;
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public void setDocument(Document document) {
+        this.document = document;
+    }
+
+    public Entry getEntry() {
+        return entry;
+    }
+
+    public void setEntry(Entry entry) {
+        this.entry = entry;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    public CoinEvent getEvent() {
+        return event;
+    }
+}
@@ -0,0 +1,144 @@
+package com.crypto.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * One step of the pipeline, run by its own fixed pool of workers.
+ * Workers take items from the input queue and put the ones to keep on the output queue,
+ * blocking while the output queue is full so a slow downstream stage holds back the stages before it.
+ */
+class PipelineStage {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+    /**
+     * Name of the stage, used for thread names and logging
+     */
+    private String name;
+
+    /**
+     * Items waiting for this stage
+     */
+    private BlockingQueue<PipelineItem> input;
+
+    /**
+     * Items waiting for the next stage
+     */
+    private BlockingQueue<PipelineItem> output;
+
+    /**
+     * Work done on each item, returning false to drop the item
+     */
+    private Predicate<PipelineItem> work;
+
+    /**
+     * Called with items that fail with an error
+     */
+    private Consumer<PipelineItem> onError;
+
+    /**
+     * Number of workers
+     */
+    private int parallelism;
+
+    /**
+     * Workers that haven't seen the end of the input yet
+     */
+    private AtomicInteger activeWorkers;
+
+    /**
+     * Threads the workers run on
+     */
+    private ExecutorService executor;
+
+    PipelineStage(String name, int parallelism, BlockingQueue<PipelineItem> input, BlockingQueue<PipelineItem> output,
+                  Predicate<PipelineItem> work, Consumer<PipelineItem> onError) {
+        this.name = name;
+        this.parallelism = parallelism;
+        this.input = input;
+        this.output = output;
+        this.work = work;
+        this.onError = onError;
+        this.activeWorkers = new AtomicInteger(parallelism);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-" + name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start the workers
+     */
+    void start() {
+        for (int i = 0; i < this.parallelism; i++) {
+            this.executor.execute(this::run);
+        }
+        this.executor.shutdown();
+    }
+
+    /**
+     * Stop the workers without waiting for the remaining input, interrupting the ones waiting on a queue
+     */
+    void abort() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Wait for the workers to stop
+     * @param timeoutMillis
+     * @return false if a worker was still running when the timeout passed
+     * @throws InterruptedException
+     */
+    boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+        return this.executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Process items until the end of the input.
+     * The end marker is put back for the other workers, and the last worker to finish passes it on.
+     */
+    private void run() {
+        try {
+            while (true) {
+                PipelineItem item = this.input.take();
+                if (item == PipelineItem.END) {
+                    this.input.put(PipelineItem.END);
+                    if (this.activeWorkers.decrementAndGet() == 0) {
+                        this.output.put(PipelineItem.END);
+                    }
+                    return;
+                }
+
+                boolean keep;
+                try {
+                    keep = this.work.test(item);
+                } catch (RuntimeException ex) {
+                    logger.error("Error in {} stage for {}", this.name, item.getIcoName());
+                    this.onError.accept(item);
+                    keep = false;
+                }
+
+                if (keep) {
+                    this.output.put(item);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
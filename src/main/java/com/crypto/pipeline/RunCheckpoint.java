@@ -0,0 +1,449 @@
+package com.crypto.pipeline;
+
+import com.crypto.entity.Entry;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Progress of a batch or refresh run, persisted so a run that dies partway can be resumed.
+ * The progress file records each input as it is resolved, fetched and committed, one line per step.
+ * Entries that passed the diff stage are appended to the spill file until they are committed,
+ * so a restarted run can write them before anything else and skip every input already done.
+ * Lines are flushed as they're written, so only the line being written when the process dies can be lost.
+ * A checkpoint is stamped with the time it was created and the parameters of its run, and one that is too old
+ * or was left by a run with different parameters is discarded instead of resumed.
+ */
+public class RunCheckpoint implements Closeable {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(RunCheckpoint.class);
+
+    /**
+     * Global instance of JSON factory
+     */
+    private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+
+    /**
+     * Name of the file recording each step
+     */
+    private static final String PROGRESS_FILE = "progress.log";
+
+    /**
+     * Name of the file holding entries not yet written
+     */
+    private static final String SPILL_FILE = "pending.ndjson";
+
+    /**
+     * Name of the file stamping the checkpoint with its creation time and run parameters
+     */
+    private static final String STAMP_FILE = "checkpoint.properties";
+
+    /**
+     * Default age after which a checkpoint is discarded instead of resumed
+     */
+    private static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Separates the parts of a progress line
+     */
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * Step recorded once an input's page is known, followed by its URL
+     */
+    private static final String RESOLVED = "RESOLVED";
+
+    /**
+     * Step recorded once an input's page is retrieved
+     */
+    private static final String FETCHED = "FETCHED";
+
+    /**
+     * Step recorded once an input's entry is written
+     */
+    private static final String COMMITTED = "COMMITTED";
+
+    /**
+     * Step recorded once an input's entry is found identical to the spreadsheet
+     */
+    private static final String UNCHANGED = "UNCHANGED";
+
+    /**
+     * Directory holding the checkpoint files
+     */
+    private Path directory;
+
+    /**
+     * Map of input key to the URL it resolved to
+     */
+    private Map<String, String> resolvedUrls;
+
+    /**
+     * Keys of inputs whose page was retrieved
+     */
+    private Set<String> fetchedKeys;
+
+    /**
+     * Keys of inputs that were committed or unchanged
+     */
+    private Set<String> completedKeys;
+
+    /**
+     * Map of input key to its spilled entry, for entries not yet committed
+     */
+    private Map<String, Entry> pendingEntries;
+
+    /**
+     * Writer appending to the progress file
+     */
+    private BufferedWriter progressWriter;
+
+    /**
+     * Writer appending to the spill file
+     */
+    private BufferedWriter spillWriter;
+
+    private RunCheckpoint(Path directory) {
+        this.directory = directory;
+        this.resolvedUrls = new HashMap<>();
+        this.fetchedKeys = new HashSet<>();
+        this.completedKeys = new HashSet<>();
+        this.pendingEntries = new LinkedHashMap<>();
+    }
+
+    /**
+     * Open the checkpoint in the directory, loading the progress of an earlier run that didn't finish
+     * @param directory
+     * @param runParameters identifies what the run processes and where it writes to
+     * @return
+     * @throws IOException
+     */
+    public static RunCheckpoint open(Path directory, String runParameters) throws IOException {
+        return open(directory, runParameters, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Open the checkpoint in the directory, loading the progress of an earlier run that didn't finish
+     * if it has the same parameters and was created within the maximum age
+     * @param directory
+     * @param runParameters identifies what the run processes and where it writes to
+     * @param maxAgeMillis
+     * @return
+     * @throws IOException
+     */
+    public static RunCheckpoint open(Path directory, String runParameters, long maxAgeMillis) throws IOException {
+        RunCheckpoint checkpoint = new RunCheckpoint(directory);
+        if (Files.isDirectory(directory) && checkpoint.isStale(runParameters, maxAgeMillis)) {
+            checkpoint.deleteFiles();
+        }
+
+        Files.createDirectories(directory);
+        if (!Files.exists(directory.resolve(STAMP_FILE))) {
+            checkpoint.writeStamp(runParameters);
+        }
+        checkpoint.load();
+
+        checkpoint.progressWriter = Files.newBufferedWriter(directory.resolve(PROGRESS_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        checkpoint.spillWriter = Files.newBufferedWriter(directory.resolve(SPILL_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return checkpoint;
+    }
+
+    /**
+     * Whether the input was committed or found unchanged by an earlier run
+     * @param key
+     * @return
+     */
+    public synchronized boolean isCompleted(String key) {
+        return this.completedKeys.contains(key);
+    }
+
+    /**
+     * URL the input resolved to in an earlier run
+     * @param key
+     * @return the URL, or null if it wasn't resolved
+     */
+    public synchronized String getResolvedUrl(String key) {
+        return this.resolvedUrls.get(key);
+    }
+
+    /**
+     * Entries spilled but not committed, when the checkpoint is opened these are the ones an earlier run left
+     * @return map of input key to entry
+     */
+    public synchronized Map<String, Entry> getPendingEntries() {
+        return new LinkedHashMap<>(this.pendingEntries);
+    }
+
+    /**
+     * Whether any spilled entry wasn't committed
+     * @return
+     */
+    public synchronized boolean hasPendingEntries() {
+        return !this.pendingEntries.isEmpty();
+    }
+
+    /**
+     * Record the URL an input resolved to
+     * @param key
+     * @param url
+     */
+    public synchronized void recordResolved(String key, String url) {
+        if (url != null && !url.equals(this.resolvedUrls.put(key, url))) {
+            appendProgress(RESOLVED + SEPARATOR + key + SEPARATOR + url);
+        }
+    }
+
+    /**
+     * Record that an input's page was retrieved
+     * @param key
+     */
+    public synchronized void recordFetched(String key) {
+        if (this.fetchedKeys.add(key)) {
+            appendProgress(FETCHED + SEPARATOR + key);
+        }
+    }
+
+    /**
+     * Record that an input's entry is identical to the spreadsheet
+     * @param key
+     */
+    public synchronized void recordUnchanged(String key) {
+        if (this.completedKeys.add(key)) {
+            appendProgress(UNCHANGED + SEPARATOR + key);
+        }
+    }
+
+    /**
+     * Keep an entry that is about to be written until it is committed
+     * @param key
+     * @param entry
+     */
+    public synchronized void spill(String key, Entry entry) {
+        this.pendingEntries.put(key, entry);
+        try {
+            this.spillWriter.write(JSON_FACTORY.toString(new SpilledEntry(key, entry)));
+            this.spillWriter.write('\n');
+            this.spillWriter.flush();
+        } catch (IOException ex) {
+            logger.error("Unable to spill entry for {} to checkpoint", key);
+        }
+    }
+
+    /**
+     * Record that the inputs' entries were written
+     * @param keys
+     */
+    public synchronized void recordCommitted(Collection<String> keys) {
+        for (String key : keys) {
+            this.pendingEntries.remove(key);
+            if (this.completedKeys.add(key)) {
+                appendProgress(COMMITTED + SEPARATOR + key);
+            }
+        }
+    }
+
+    /**
+     * Delete the checkpoint once the run has finished, so the next run starts from the beginning
+     */
+    public synchronized void complete() {
+        close();
+        deleteFiles();
+    }
+
+    /**
+     * Delete the checkpoint directory and everything in it
+     */
+    private void deleteFiles() {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException ex) {
+                    logger.error("Unable to delete checkpoint file {}", path);
+                }
+            });
+        } catch (IOException ex) {
+            logger.error("Unable to delete checkpoint at {}", this.directory);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            this.progressWriter.close();
+            this.spillWriter.close();
+        } catch (IOException ex) {
+            logger.error("Error in closing checkpoint at {}", this.directory);
+        }
+    }
+
+    /**
+     * Whether the checkpoint left in the directory can't be resumed, because it is older than the maximum age,
+     * was left by a run with other parameters, or has no stamp to tell
+     * @param runParameters
+     * @param maxAgeMillis
+     * @return
+     */
+    private boolean isStale(String runParameters, long maxAgeMillis) {
+        Path stampFile = this.directory.resolve(STAMP_FILE);
+        if (!Files.exists(stampFile)) {
+            logger.info("Discarding checkpoint at {} without a stamp", this.directory);
+            return true;
+        }
+
+        Properties stamp = new Properties();
+        try (InputStream stream = Files.newInputStream(stampFile)) {
+            stamp.load(stream);
+            long ageMillis = System.currentTimeMillis() - Long.parseLong(stamp.getProperty("created"));
+            if (ageMillis > maxAgeMillis) {
+                logger.info("Discarding checkpoint at {} created {} minutes ago", this.directory,
+                        TimeUnit.MILLISECONDS.toMinutes(ageMillis));
+                return true;
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.error("Discarding checkpoint at {} with an unreadable stamp", this.directory);
+            return true;
+        }
+
+        if (!runParameters.equals(stamp.getProperty("parameters"))) {
+            logger.info("Discarding checkpoint at {} left by a run with other parameters", this.directory);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stamp a new checkpoint with the current time and the run parameters
+     * @param runParameters
+     * @throws IOException
+     */
+    private void writeStamp(String runParameters) throws IOException {
+        Properties stamp = new Properties();
+        stamp.setProperty("created", String.valueOf(System.currentTimeMillis()));
+        stamp.setProperty("parameters", runParameters);
+
+        try (OutputStream stream = Files.newOutputStream(this.directory.resolve(STAMP_FILE))) {
+            stamp.store(stream, "Run checkpoint");
+        }
+    }
+
+    /**
+     * Load the progress and spilled entries of an earlier run, discarding a partially written last line
+     * @throws IOException
+     */
+    private void load() throws IOException {
+        Path progressFile = this.directory.resolve(PROGRESS_FILE);
+        if (Files.exists(progressFile)) {
+            for (String line : readCompleteLines(progressFile)) {
+                String[] parts = line.split(SEPARATOR, 3);
+                if (parts.length < 2) {
+                    continue;
+                }
+
+                if (RESOLVED.equals(parts[0]) && parts.length == 3) {
+                    this.resolvedUrls.put(parts[1], parts[2]);
+                }
+                else if (FETCHED.equals(parts[0])) {
+                    this.fetchedKeys.add(parts[1]);
+                }
+                else if (COMMITTED.equals(parts[0]) || UNCHANGED.equals(parts[0])) {
+                    this.completedKeys.add(parts[1]);
+                }
+            }
+        }
+
+        Path spillFile = this.directory.resolve(SPILL_FILE);
+        if (Files.exists(spillFile)) {
+            for (String line : readCompleteLines(spillFile)) {
+                try {
+                    SpilledEntry spilledEntry = JSON_FACTORY.fromString(line, SpilledEntry.class);
+                    if (!this.completedKeys.contains(spilledEntry.getKey())) {
+                        this.pendingEntries.put(spilledEntry.getKey(), spilledEntry.toEntry());
+                    }
+                } catch (IOException | IllegalArgumentException ex) {
+                    logger.error("Skipping unreadable spilled entry {}", line);
+                }
+            }
+        }
+
+        if (!this.completedKeys.isEmpty() || !this.pendingEntries.isEmpty()) {
+            logger.info("Resuming run from {}: {} inputs resolved, {} fetched, {} done, {} entries waiting to be written",
+                    this.directory, this.resolvedUrls.size(), this.fetchedKeys.size(), this.completedKeys.size(),
+                    this.pendingEntries.size());
+        }
+    }
+
+    /**
+     * Read the lines of a file, leaving out a last line that was cut off before its line break.
+     * The cut off line is truncated from the file, so the next line appended isn't joined onto it.
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    private static List<String> readCompleteLines(Path file) throws IOException {
+        byte[] contents = Files.readAllBytes(file);
+
+        int end = contents.length;
+        while (end > 0 && contents[end - 1] != '\n') {
+            --end;
+        }
+
+        if (end < contents.length) {
+            logger.error("Discarding {} bytes of a partially written line in {}", contents.length - end, file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+
+        List<String> lines = new ArrayList<>(Arrays.asList(
+                new String(contents, 0, end, StandardCharsets.UTF_8).split("\n", -1)));
+
+        // The part after the last line break is always empty
+        lines.remove(lines.size() - 1);
+        return lines;
+    }
+
+    /**
+     * Append a line to the progress file
+     * @param line
+     */
+    private void appendProgress(String line) {
+        try {
+            this.progressWriter.write(line);
+            this.progressWriter.write('\n');
+            this.progressWriter.flush();
+        } catch (IOException ex) {
+            logger.error("Unable to record checkpoint progress {}", line);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.crypto.pipeline;
+
+import com.crypto.entity.Entry;
+import com.crypto.util.StringUtils;
+import com.crypto.writer.EntryRowMapper;
+import com.google.api.client.util.Key;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An entry that passed the diff stage but wasn't written yet, as stored in a checkpoint's spill file
+ */
+public class SpilledEntry {
+
+    /**
+     * Key of the input the entry came from
+     */
+    @Key
+    private String key;
+
+    /**
+     * Map of field name to value
+     */
+    @Key
+    private Map<String, String> fields;
+
+    public SpilledEntry() {}
+
+    public SpilledEntry(String key, Entry entry) {
+        this.key = key;
+        this.fields = new LinkedHashMap<>();
+        for (String fieldName : Entry.getFieldNames()) {
+            String fieldValue = entry.getFieldValue(fieldName);
+            if (fieldValue != null) {
+                this.fields.put(fieldName, fieldValue);
+            }
+        }
+    }
+
+    /**
+     * Recreate the entry, laid out as a row in field order
+     * @return
+     */
+    public Entry toEntry() {
+        Map<String, Integer> columnIndexMap = EntryRowMapper.defaultColumnIndexMap();
+
+        List<Object> row = new ArrayList<>(columnIndexMap.size());
+        for (String fieldName : columnIndexMap.keySet()) {
+            row.add(this.fields.getOrDefault(fieldName, StringUtils.EMPTY_STRING));
+        }
+        return new Entry(row, columnIndexMap);
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public String getKey() {
+        return key;
+    }
+}
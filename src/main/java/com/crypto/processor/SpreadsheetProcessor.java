@@ -2,19 +2,62 @@ package com.crypto.processor;
 
 import com.crypto.authentication.Authentication;
 import com.crypto.authentication.GoogleSheetsAuthentication;
+import com.crypto.cluster.LeaseCoordinator;
 import com.crypto.entity.Entry;
+import com.crypto.entity.EntryExtractor;
+import com.crypto.enums.OutputFormat;
 import com.crypto.enums.SourceType;
+import com.crypto.enums.WorkerState;
+import com.crypto.exception.EntryWriteException;
+import com.crypto.journal.ChangeJournal;
+import com.crypto.pipeline.EntryPipeline;
+import com.crypto.pipeline.PipelineItem;
+import com.crypto.pipeline.RunCheckpoint;
+import com.crypto.reader.ConcurrentFetcher;
+import com.crypto.reader.EntryFileReader;
+import com.crypto.reader.ListingCrawler;
 import com.crypto.reader.Reader;
-import com.crypto.reader.SpreadsheetReader;
-import com.crypto.writer.SpreadsheetWriter;
+import com.crypto.reader.ShardedSpreadsheetReader;
+import com.crypto.server.CatalogCache;
+import com.crypto.server.EntryServer;
+import com.crypto.shard.SheetShard;
+import com.crypto.shard.ShardRouter;
+import com.crypto.slack.SlackNotifier;
+import com.crypto.util.Deadline;
+import com.crypto.util.StringUtils;
+import com.crypto.writer.CsvEntrySink;
+import com.crypto.writer.EntrySink;
+import com.crypto.writer.NdjsonEntrySink;
+import com.crypto.writer.ShardedSpreadsheetWriter;
+import com.crypto.writer.SheetImporter;
 import com.google.api.services.sheets.v4.Sheets;
 
 import com.google.common.base.Strings;
+import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 public class SpreadsheetProcessor {
 
@@ -23,7 +66,108 @@ public class SpreadsheetProcessor {
      */
     private static final Logger logger = LoggerFactory.getLogger(SpreadsheetProcessor.class);
 
-    public SpreadsheetProcessor() {}
+    /**
+     * Slack username to post as
+     */
+    private final String SLACK_USERNAME = "investment-spreadsheet-bot";
+
+    /**
+     * Default directory the change journal is written to
+     */
+    private final Path JOURNAL_DIR = Paths.get(System.getProperty("user.dir"), ".journal");
+
+    /**
+     * Directory the checkpoints of batch and refresh runs are kept in until the run finishes
+     */
+    private final Path CHECKPOINT_DIR = Paths.get(System.getProperty("user.dir"), ".checkpoint");
+
+    /**
+     * Snapshot of the served entries, so serving can start without waiting for the sheets
+     */
+    private final Path SNAPSHOT_PATH = Paths.get(System.getProperty("user.dir"), ".snapshot", "entries.snapshot");
+
+    /**
+     * Number of entries read from an import file at a time
+     */
+    private final int IMPORT_READ_SIZE = 5000;
+
+    /**
+     * Default connect and read timeout for a single page request
+     */
+    private final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Default time a single coin has to be resolved and retrieved
+     */
+    private final long DEFAULT_COIN_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * Posts spreadsheet changes to Slack in the background, created on first use and null if no webhook is configured
+     */
+    private SlackNotifier slackNotifier;
+
+    /**
+     * Set once creating the Slack notifier was attempted
+     */
+    private boolean slackNotifierCreated;
+
+    /**
+     * Journal of field changes committed to the spreadsheet, opened on first use
+     */
+    private ChangeJournal changeJournal;
+
+    /**
+     * Directory the change journal is written to
+     */
+    private Path journalDirectory;
+
+    /**
+     * Set once opening the change journal was attempted
+     */
+    private boolean journalOpened;
+
+    /**
+     * Assigns tokens to the configured sheets
+     */
+    private ShardRouter shardRouter;
+
+    /**
+     * Where processed entries are written
+     */
+    private OutputFormat outputFormat;
+
+    /**
+     * Local file entries are written to, when not writing to Google Sheets
+     */
+    private Path outputPath;
+
+    /**
+     * Connect and read timeout for a single page request
+     */
+    private int requestTimeoutMillis;
+
+    /**
+     * Time a single coin has to be resolved and retrieved, across every source
+     */
+    private long coinTimeoutMillis;
+
+    /**
+     * Time a whole batch or refresh run has before in-flight work is cancelled, zero for no limit
+     */
+    private long runBudgetMillis;
+
+    /**
+     * Coordinator assigning this process its share of the tokens when running as one of several workers, optional
+     */
+    private LeaseCoordinator coordinator;
+
+    public SpreadsheetProcessor() {
+        this.shardRouter = ShardRouter.fromConfiguration();
+        this.outputFormat = OutputFormat.SHEETS;
+        this.requestTimeoutMillis = DEFAULT_REQUEST_TIMEOUT_MILLIS;
+        this.coinTimeoutMillis = DEFAULT_COIN_TIMEOUT_MILLIS;
+        this.journalDirectory = JOURNAL_DIR;
+    }
 
     // TODO: Fix Basic authentication
 
@@ -32,63 +176,723 @@ public class SpreadsheetProcessor {
      * Pull data from ICO spreadsheet
      * Retrieve data from ICO Drops page
      * Store data in personal Google Sheets
+     *
+     * A page whose URL is known without the sheets, given or resolved before, is retrieved while the sheets are loading.
+     * Finding the page of a name that hasn't been resolved before waits for the sheets, since the coin may already be
+     * on them with its URL. Once both finish the page is only used if it is the one the entry is read from,
+     * otherwise that page is retrieved.
      */
     public void process(String icoName, String url) {
+        Deadline deadline = Deadline.afterMillis(this.coinTimeoutMillis);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "process-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            CompletableFuture<LoadedSheets> sheets = CompletableFuture.supplyAsync(this::loadSheets, executor);
+            String prefetchUrl = prefetchUrl(icoName, url);
+            CompletableFuture<Document> page = prefetchUrl == null
+                    ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.supplyAsync(() -> prefetchPage(icoName, prefetchUrl, deadline), executor);
+
+            // Create entity from relevant page
+            CompletableFuture<Entry> entity = sheets.thenCombine(page, (loaded, document) ->
+                    createEntity(loaded.getEntries(), icoName, url, projectedFields(loaded.getReader()),
+                            document == null ? null : new PrefetchedPage(prefetchUrl, document), deadline));
+            Entry entry = entity.join();
+
+            // Write the entry to the spreadsheet
+            if (entry != null) {
+                LoadedSheets loaded = sheets.join();
+                try (EntrySink sink = createSink(loaded.getService(), loaded.getReader())) {
+                    sink.processResults(entry);
+                }
+            }
+        } catch (EntryWriteException ex) {
+            logger.error("Unable to write {}", icoName);
+        } catch (IOException | CompletionException ex) {
+            logger.error("Error in processing ICO spreadsheet");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Connect to Google Sheets API and pull existing data from every sheet
+     * @return
+     */
+    private LoadedSheets loadSheets() {
+        try {
+            Sheets service = GoogleSheetsAuthentication.getSheetsService(Authentication.OAUTH);
+            ShardedSpreadsheetReader spreadsheetReader = createSpreadsheetReader(service);
+            return new LoadedSheets(service, spreadsheetReader, spreadsheetReader.extractEntries());
+        } catch (IOException ex) {
+            throw new CompletionException(ex);
+        }
+    }
+
+    /**
+     * URL of the page to retrieve while the sheets are loading, the given URL or the page the name was resolved to before
+     * @param icoName
+     * @param url
+     * @return the URL, or null if finding the page would mean probing for it
+     */
+    private String prefetchUrl(String icoName, String url) {
+        if (!Strings.isNullOrEmpty(url)) {
+            return url;
+        }
+        return Strings.isNullOrEmpty(icoName) ? null : createReader(SourceType.ICODrop, null).knownUrl(icoName);
+    }
+
+    /**
+     * Retrieve a page while the sheets are loading
+     * @param icoName
+     * @param url
+     * @param deadline
+     * @return the page, or null if it couldn't be retrieved
+     */
+    private Document prefetchPage(String icoName, String url, Deadline deadline) {
+        try {
+            return createReader(SourceType.ICODrop, null).fetchDocument(url, icoName, deadline);
+        } catch (IOException ex) {
+            logger.info("Unable to retrieve page at {} while loading the sheets", url);
+        }
+        return null;
+    }
+
+    /**
+     * Crawl the ICO Drops listing pages for projects that aren't on the spreadsheet yet,
+     * then retrieve their details concurrently and add them to the spreadsheet
+     */
+    public void discover() {
+        ConcurrentFetcher fetcher = new ConcurrentFetcher();
+
         try {
             // Connect to Google Sheets API
             Sheets service = GoogleSheetsAuthentication.getSheetsService(Authentication.OAUTH);
 
-            // Pull existing data from spreadsheet
-            SpreadsheetReader spreadsheetReader = new SpreadsheetReader(service);
+            // Pull existing data from every sheet
+            ShardedSpreadsheetReader spreadsheetReader = createSpreadsheetReader(service);
             Map<String, Entry> existingEntries = spreadsheetReader.extractEntries();
-            Map<String, Integer> columnIndexMap = spreadsheetReader.getColumnIndexMap();
 
-            // Create entity from relevant page
-            Entry entry = createEntity(existingEntries, icoName, url);
+            Set<String> knownUrls = new HashSet<>();
+            Set<String> knownTokens = new HashSet<>();
+            for (Entry existingEntry : existingEntries.values()) {
+                if (!Strings.isNullOrEmpty(existingEntry.getUrl())) {
+                    knownUrls.add(StringUtils.normalizeUrl(existingEntry.getUrl()));
+                }
+                knownTokens.add(StringUtils.normalizeName(existingEntry.getToken()));
+            }
 
-            // Write the entry to the spreadsheet
-            if (entry != null) {
-                SpreadsheetWriter writer = new SpreadsheetWriter(service, columnIndexMap, existingEntries);
-                writer.processResults(entry);
+            // Only retrieve the projects that aren't already on the spreadsheet
+            Map<String, String> listedProjects = new ListingCrawler(fetcher).crawl();
+            List<String> newProjectUrls =
+                    listedProjects.entrySet()
+                            .stream()
+                            .filter(kv -> !knownUrls.contains(StringUtils.normalizeUrl(kv.getKey())))
+                            .filter(kv -> !knownTokens.contains(StringUtils.normalizeName(kv.getValue())))
+                            .map(Map.Entry::getKey)
+                            .collect(Collectors.toList());
+            logger.info("Discovered {} new projects out of {} listed", newProjectUrls.size(), listedProjects.size());
+
+            Reader dataReader = createReader(SourceType.ICODrop, projectedFields(spreadsheetReader));
+            List<Entry> entries = fetcher.extractDetails(dataReader, newProjectUrls);
+
+            // The scraped name can still match an existing entry listed under a different name
+            List<Entry> newEntries =
+                    entries.stream()
+                            .filter(entry -> knownTokens.add(StringUtils.normalizeName(entry.getToken())))
+                            .collect(Collectors.toList());
+
+            try (EntrySink sink = createSink(service, spreadsheetReader)) {
+                sink.processResults(newEntries);
+            } catch (EntryWriteException ex) {
+                logger.error("Unable to add {} of {} new ICOs", ex.getFailedTokens().size(), newEntries.size());
             }
         } catch (IOException ex) {
-            logger.error("Error in processing ICO spreadsheet");
+            logger.error("Error in discovering new ICOs");
+        } finally {
+            fetcher.shutdown();
+        }
+    }
+
+    /**
+     * Scrape the stored URL of every entry on the spreadsheet through the pipeline,
+     * writing the entries that changed in batches as they come out of it
+     */
+    public void refreshAll() {
+        long startTime = System.nanoTime();
+
+        try {
+            // Connect to Google Sheets API
+            Sheets service = GoogleSheetsAuthentication.getSheetsService(Authentication.OAUTH);
+
+            // Pull existing data from every sheet
+            ShardedSpreadsheetReader spreadsheetReader = createSpreadsheetReader(service);
+            Map<String, Entry> existingEntries = spreadsheetReader.extractEntries();
+
+            List<PipelineItem> items = new ArrayList<>();
+            for (Entry existingEntry : existingEntries.values()) {
+                items.add(new PipelineItem(existingEntry.getToken(), existingEntry.getUrl(), existingEntry));
+            }
+
+            List<EntryPipeline> pipelines = runCheckpointed("refresh-all", service, spreadsheetReader, items);
+
+            int refreshedCount = pipelines.stream().mapToInt(EntryPipeline::getSubmittedCount).sum();
+            double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+            logger.info("Refreshed {} entries in {} s ({} entries/s): {} unchanged, {} changed, {} failed, {} timed out",
+                    refreshedCount, String.format("%.1f", elapsedSeconds),
+                    String.format("%.1f", refreshedCount / Math.max(elapsedSeconds, 0.001)),
+                    pipelines.stream().mapToInt(EntryPipeline::getUnchangedCount).sum(),
+                    pipelines.stream().mapToInt(EntryPipeline::getWrittenCount).sum(),
+                    pipelines.stream().mapToInt(EntryPipeline::getFailedCount).sum(),
+                    pipelines.stream().mapToInt(EntryPipeline::getTimedOutCount).sum());
+        } catch (IOException ex) {
+            logger.error("Error in refreshing ICO spreadsheet");
+        }
+    }
+
+    /**
+     * Import the entries of a local CSV or newline-delimited JSON file, streaming it a chunk at a time.
+     * Every column is read from the sheets first, so values missing from the file keep the value on the sheet
+     * and rows that wouldn't change aren't written. When writing to a local file the import converts between formats
+     * without connecting to the sheets.
+     * @param file
+     */
+    public void importFile(Path file) {
+        long startTime = System.nanoTime();
+
+        try {
+            long importedCount = 0;
+            try (EntryFileReader fileReader = new EntryFileReader(file);
+                 EntrySink sink = this.outputFormat == OutputFormat.SHEETS ? createImporter() : createLocalSink()) {
+                List<Entry> entries;
+                while (!(entries = fileReader.readEntries(IMPORT_READ_SIZE)).isEmpty()) {
+                    sink.processResults(entries);
+                    importedCount += entries.size();
+                }
+            }
+
+            logger.info("Imported {} entries from {} in {} s", importedCount, file,
+                    String.format("%.1f", (System.nanoTime() - startTime) / 1e9));
+        } catch (IOException ex) {
+            logger.error("Error in importing {}", file);
         }
     }
 
     /**
-     * Create ICO entity attempting to read from ICO Drops first then if unfound, ICO Bench
+     * Connect to Google Sheets API and create an importer for every sheet
+     * @return
+     * @throws IOException
+     */
+    private SheetImporter createImporter() throws IOException {
+        Sheets service = GoogleSheetsAuthentication.getSheetsService(Authentication.OAUTH);
+
+        // Pull existing data from every sheet, including the hand-filled columns
+        ShardedSpreadsheetReader spreadsheetReader = new ShardedSpreadsheetReader(service, this.shardRouter, false);
+        spreadsheetReader.extractEntries();
+        return new SheetImporter(service, this.shardRouter, spreadsheetReader, getChangeJournal());
+    }
+
+    /**
+     * Serve the entries of every sheet over a read-only HTTP API until the process is stopped.
+     * Every column is read so the responses are complete, and reads are answered from memory,
+     * never from the Sheets API. Serving starts from the snapshot of the last load when there is one.
+     * @param port
+     * @param maxStalenessMillis age after which the loaded entries are no longer served
+     */
+    public void serve(int port, long maxStalenessMillis) {
+        serve(InetAddress.getLoopbackAddress(), port, maxStalenessMillis);
+    }
+
+    /**
+     * Serve the entries of every sheet over a read-only HTTP API on an address until the process is stopped
+     * @param address address to listen on, the loopback address unless the entries should be reachable from other hosts
+     * @param port
+     * @param maxStalenessMillis age after which the loaded entries are no longer served
+     */
+    public void serve(InetAddress address, int port, long maxStalenessMillis) {
+        try {
+            // Connect to Google Sheets API
+            Sheets service = GoogleSheetsAuthentication.getSheetsService(Authentication.OAUTH);
+
+            CatalogCache cache = new CatalogCache(
+                    () -> new ShardedSpreadsheetReader(service, this.shardRouter, false).extractEntries().values(),
+                    maxStalenessMillis, SNAPSHOT_PATH);
+            cache.start();
+
+            EntryServer server = new EntryServer(address, port, cache);
+            server.start();
+
+            CountDownLatch stopped = new CountDownLatch(1);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                cache.shutdown();
+                stopped.countDown();
+            }, "entry-server-shutdown"));
+            stopped.await();
+        } catch (IOException ex) {
+            logger.error("Error in serving entries on {}:{}", address.getHostAddress(), port);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Process every coin listed in a file through the pipeline.
+     * Each line holds a coin name, optionally followed by its URL.
+     * @param file
+     */
+    public void processBatch(Path file) {
+        try {
+            // Connect to Google Sheets API
+            Sheets service = GoogleSheetsAuthentication.getSheetsService(Authentication.OAUTH);
+
+            // Pull existing data from every sheet
+            ShardedSpreadsheetReader spreadsheetReader = createSpreadsheetReader(service);
+            Map<String, Entry> existingEntries = spreadsheetReader.extractEntries();
+
+            List<PipelineItem> items = new ArrayList<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts[0].isEmpty()) {
+                    continue;
+                }
+
+                // If the URL is provided, extract the name
+                String icoName = String.join(" ", parts);
+                String url = StringUtils.EMPTY_STRING;
+                if (parts.length > 1 && StringUtils.isUrlFormat(parts[parts.length - 1])) {
+                    icoName = String.join(" ", Arrays.copyOfRange(parts, 0, parts.length - 1));
+                    url = parts[parts.length - 1];
+                }
+
+                // Existing entries are always refreshed from their stored URL
+                Entry existingEntry = existingEntries.get(icoName);
+                if (existingEntry != null && !Strings.isNullOrEmpty(existingEntry.getUrl())) {
+                    url = existingEntry.getUrl();
+                }
+                items.add(new PipelineItem(icoName, url, existingEntry));
+            }
+
+            String runName = "batch-" + StringUtils.sanitizeAlphanumericStringValue(file.toAbsolutePath().toString());
+            runCheckpointed(runName, service, spreadsheetReader, items);
+        } catch (IOException ex) {
+            logger.error("Error in processing batch file {}", file);
+        }
+    }
+
+    /**
+     * Run the items through the pipeline with a checkpoint, resuming from where an earlier attempt at the same run
+     * stopped. The checkpoint is deleted once the run finishes with nothing timed out or left unwritten.
+     * @param runName identifies the run across attempts
+     * @param service
+     * @param spreadsheetReader
+     * @param items
+     * @return the pipeline run for each round of owned items
+     * @throws IOException
+     */
+    private List<EntryPipeline> runCheckpointed(String runName, Sheets service,
+                                                ShardedSpreadsheetReader spreadsheetReader,
+                                                List<PipelineItem> items) throws IOException {
+        if (this.coordinator != null) {
+            runName += "-" + this.coordinator.getWorkerId();
+        }
+        RunCheckpoint checkpoint = RunCheckpoint.open(CHECKPOINT_DIR.resolve(runName), runParameters(items));
+
+        List<EntryPipeline> pipelines;
+        try {
+            pipelines = runOwnedPipelines(service, spreadsheetReader, items, checkpoint);
+        } finally {
+            checkpoint.close();
+        }
+
+        boolean finished = !Thread.currentThread().isInterrupted() && !checkpoint.hasPendingEntries()
+                && pipelines.stream().allMatch(pipeline -> pipeline.getTimedOutCount() == 0);
+        if (finished) {
+            checkpoint.complete();
+        }
+        else {
+            logger.info("Run {} didn't finish, rerun it to resume from its checkpoint", runName);
+        }
+        return pipelines;
+    }
+
+    /**
+     * Parameters a checkpoint has to have been created with to be resumed: the output, the worker run
+     * and the inputs of the run
+     * @param items
+     * @return
+     */
+    private String runParameters(List<PipelineItem> items) {
+        List<String> keys = items.stream().map(PipelineItem::getKey).collect(Collectors.toList());
+        return String.format("output=%s:%s run=%s items=%d:%08x", this.outputFormat,
+                this.outputPath == null ? StringUtils.EMPTY_STRING : this.outputPath.toAbsolutePath(),
+                this.coordinator == null ? StringUtils.EMPTY_STRING : this.coordinator.getRunId(),
+                keys.size(), keys.hashCode());
+    }
+
+    /**
+     * Run the items this process owns through the pipeline. When running as one of several workers,
+     * the tokens owned are taken from the coordinator, and once they're done the worker keeps checking for tokens
+     * left by workers that died until every other worker has finished. The sheets are read again before taking over
+     * tokens, so rows a dead worker appended before it died are updated instead of appended a second time.
+     * Membership is frozen before the first round, so a worker joining after the run started processes nothing.
+     * @param service
+     * @param spreadsheetReader
+     * @param items
+     * @param checkpoint
+     * @return the pipeline run for each round of owned items
+     * @throws IOException
+     */
+    private List<EntryPipeline> runOwnedPipelines(Sheets service, ShardedSpreadsheetReader spreadsheetReader,
+                                                  List<PipelineItem> items, RunCheckpoint checkpoint) throws IOException {
+        List<EntryPipeline> pipelines = new ArrayList<>();
+        if (this.coordinator == null) {
+            pipelines.add(runPipeline(service, spreadsheetReader, items, checkpoint));
+            return pipelines;
+        }
+
+        List<PipelineItem> remainingItems = new ArrayList<>(items);
+        try {
+            this.coordinator.join();
+            this.coordinator.freezeMembership();
+            if (!this.coordinator.isMember()) {
+                logger.info("Worker {} joined run {} after it started, leaving its tokens to the workers already running",
+                        this.coordinator.getWorkerId(), this.coordinator.getRunId());
+                return pipelines;
+            }
+
+            while (true) {
+                List<PipelineItem> ownedItems = new ArrayList<>();
+                for (Iterator<PipelineItem> it = remainingItems.iterator(); it.hasNext(); ) {
+                    PipelineItem item = it.next();
+                    if (this.coordinator.owns(item.getKey())) {
+                        ownedItems.add(item);
+                        it.remove();
+                    }
+                }
+
+                if (!ownedItems.isEmpty()) {
+                    if (!pipelines.isEmpty()) {
+                        ownedItems = rereadItems(spreadsheetReader, ownedItems);
+                    }
+
+                    logger.info("Worker {} processing {} of {} items", this.coordinator.getWorkerId(),
+                            ownedItems.size(), items.size());
+                    this.coordinator.setState(WorkerState.RUNNING);
+                    pipelines.add(runPipeline(service, spreadsheetReader, ownedItems, checkpoint));
+                    continue;
+                }
+
+                this.coordinator.setState(WorkerState.IDLE);
+                if (remainingItems.isEmpty() || this.coordinator.othersFinished()) {
+                    break;
+                }
+                this.coordinator.awaitHeartbeat();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.coordinator.leave();
+        }
+        return pipelines;
+    }
+
+    /**
+     * Read the sheets again and pair the items with the entries now on them
+     * @param spreadsheetReader
+     * @param items
+     * @return the items with their current entries
+     */
+    private List<PipelineItem> rereadItems(ShardedSpreadsheetReader spreadsheetReader, List<PipelineItem> items) {
+        Map<String, Entry> existingEntries = spreadsheetReader.extractEntries();
+
+        List<PipelineItem> rereadItems = new ArrayList<>();
+        for (PipelineItem item : items) {
+            Entry existingEntry = item.getIcoName() != null ? existingEntries.get(item.getIcoName()) : null;
+            String url = existingEntry != null && !Strings.isNullOrEmpty(existingEntry.getUrl())
+                    ? existingEntry.getUrl()
+                    : item.getUrl();
+            rereadItems.add(new PipelineItem(item.getIcoName(), url, existingEntry));
+        }
+        return rereadItems;
+    }
+
+    /**
+     * Feed the items through a pipeline writing to the configured output and wait for it to drain.
+     * Entries the checkpoint holds from an earlier attempt are written first, and items it has as done are skipped.
+     * @param service
+     * @param spreadsheetReader
+     * @param items
+     * @param checkpoint
+     * @return the finished pipeline
+     * @throws IOException
+     */
+    private EntryPipeline runPipeline(Sheets service, ShardedSpreadsheetReader spreadsheetReader,
+                                      List<PipelineItem> items, RunCheckpoint checkpoint) throws IOException {
+        try (EntrySink sink = createSink(service, spreadsheetReader)) {
+            Map<String, Entry> pendingEntries = checkpoint.getPendingEntries();
+            if (!pendingEntries.isEmpty()) {
+                writePending(sink, pendingEntries, checkpoint);
+            }
+
+            EntryPipeline pipeline = new EntryPipeline(sink);
+            pipeline.setCheckpoint(checkpoint);
+            pipeline.setRequestTimeoutMillis(this.requestTimeoutMillis);
+            pipeline.setFieldProjection(projectedFields(spreadsheetReader));
+            pipeline.setCoinTimeoutMillis(this.coinTimeoutMillis);
+            pipeline.setRunDeadline(Deadline.afterMillis(this.runBudgetMillis));
+            pipeline.start();
+
+            try {
+                for (PipelineItem item : items) {
+                    if (!checkpoint.isCompleted(item.getKey())) {
+                        pipeline.submit(item);
+                    }
+                }
+                pipeline.finish();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                pipeline.abort();
+            }
+            return pipeline;
+        }
+    }
+
+    /**
+     * Write the entries an earlier attempt left pending, committing only the ones the sink wrote
+     * @param sink
+     * @param pendingEntries map of input key to entry
+     * @param checkpoint
+     */
+    private void writePending(EntrySink sink, Map<String, Entry> pendingEntries, RunCheckpoint checkpoint) {
+        Set<String> failedTokens = Collections.emptySet();
+        try {
+            sink.processResults(pendingEntries.values());
+        } catch (EntryWriteException ex) {
+            failedTokens = ex.getFailedTokens();
+        } catch (RuntimeException ex) {
+            logger.error("Error in writing {} entries left pending by an earlier attempt", pendingEntries.size());
+            return;
+        }
+
+        List<String> committedKeys = new ArrayList<>();
+        for (Map.Entry<String, Entry> kv : pendingEntries.entrySet()) {
+            if (!failedTokens.contains(kv.getValue().getToken())) {
+                committedKeys.add(kv.getKey());
+            }
+        }
+        checkpoint.recordCommitted(committedKeys);
+        logger.info("Wrote {} of {} entries left pending by an earlier attempt", committedKeys.size(), pendingEntries.size());
+    }
+
+    /**
+     * Write processed entries to a local file instead of Google Sheets
+     * @param outputFormat
+     * @param outputPath
+     */
+    public void setOutput(OutputFormat outputFormat, Path outputPath) {
+        this.outputFormat = outputFormat;
+        this.outputPath = outputPath;
+    }
+
+    /**
+     * Process only the share of the tokens the coordinator assigns to this process
+     * @param coordinator
+     */
+    public void setCoordinator(LeaseCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    /**
+     * Limit how long page requests, single coins and whole runs may take
+     * @param requestTimeoutMillis
+     * @param coinTimeoutMillis
+     * @param runBudgetMillis zero for no limit
+     */
+    public void setTimeLimits(int requestTimeoutMillis, long coinTimeoutMillis, long runBudgetMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.coinTimeoutMillis = coinTimeoutMillis;
+        this.runBudgetMillis = runBudgetMillis;
+    }
+
+    /**
+     * Create a reader using the configured request timeout
+     * @param sourceType
+     * @param fieldProjection fields to extract from pages, null for every field
+     * @return
+     */
+    private Reader createReader(SourceType sourceType, Set<String> fieldProjection) {
+        Reader reader = new Reader(sourceType);
+        reader.setRequestTimeoutMillis(this.requestTimeoutMillis);
+        reader.setFieldProjection(fieldProjection);
+        return reader;
+    }
+
+    /**
+     * Fields worth extracting from pages, which are the ones with a column on any sheet written to
+     * @param spreadsheetReader
+     * @return the fields, or null for every field if a sheet has no header to follow or the output is a local file
+     */
+    private Set<String> projectedFields(ShardedSpreadsheetReader spreadsheetReader) {
+        if (this.outputFormat != OutputFormat.SHEETS) {
+            return null;
+        }
+
+        Set<String> fieldNames = new HashSet<>();
+        for (SheetShard shard : this.shardRouter.getShards()) {
+            Map<String, Integer> columnIndexMap = spreadsheetReader.getColumnIndexMap(shard);
+            if (columnIndexMap.isEmpty()) {
+                return null;
+            }
+            fieldNames.addAll(EntryExtractor.projectedFields(columnIndexMap));
+        }
+        return fieldNames;
+    }
+
+    /**
+     * Create a reader for every sheet. When writing back to the sheets only the scraped columns are read,
+     * since the writer reads the rest of a row before rewriting it. Local files need every column up front.
+     * @param service
+     * @return
+     */
+    private ShardedSpreadsheetReader createSpreadsheetReader(Sheets service) {
+        return new ShardedSpreadsheetReader(service, this.shardRouter, this.outputFormat == OutputFormat.SHEETS);
+    }
+
+    /**
+     * Create the sink for the configured output
+     * @param service
+     * @param spreadsheetReader
+     * @return
+     * @throws IOException
+     */
+    private EntrySink createSink(Sheets service, ShardedSpreadsheetReader spreadsheetReader) throws IOException {
+        if (this.outputFormat == OutputFormat.SHEETS) {
+            return new ShardedSpreadsheetWriter(service, this.shardRouter, spreadsheetReader,
+                    getSlackNotifier(), getChangeJournal());
+        }
+        return createLocalSink();
+    }
+
+    /**
+     * Create the sink for a local file, with a column for every entry field in declaration order.
+     * It doesn't depend on the sheets, so nothing has to be read from them to write a local file.
+     * @return
+     * @throws IOException
+     */
+    private EntrySink createLocalSink() throws IOException {
+        return this.outputFormat == OutputFormat.CSV
+                ? new CsvEntrySink(this.outputPath)
+                : new NdjsonEntrySink(this.outputPath);
+    }
+
+    /**
+     * Create the Slack notifier the first time something is written to the sheets
+     * @return the notifier, or null if no webhook is configured
+     */
+    private synchronized SlackNotifier getSlackNotifier() {
+        if (!this.slackNotifierCreated) {
+            this.slackNotifierCreated = true;
+            this.slackNotifier = SlackNotifier.fromConfiguration(SLACK_USERNAME);
+        }
+        return this.slackNotifier;
+    }
+
+    /**
+     * Open the change journal the first time it is needed. Workers sharing a directory each write to their own
+     * journal, and if another process holds the journal the changes aren't journaled.
+     * @return the journal, or null if it couldn't be opened
+     */
+    private synchronized ChangeJournal getChangeJournal() {
+        if (!this.journalOpened) {
+            this.journalOpened = true;
+
+            Path directory = this.coordinator != null
+                    ? this.journalDirectory.resolve(this.coordinator.getWorkerId())
+                    : this.journalDirectory;
+            try {
+                this.changeJournal = new ChangeJournal(directory);
+            } catch (IOException ex) {
+                logger.error("Unable to open change journal at {}: {}", directory, ex.getMessage());
+            }
+        }
+        return this.changeJournal;
+    }
+
+    /**
+     * Write the change journal to a directory other than the default
+     * @param journalDirectory
+     */
+    public void setJournalDirectory(Path journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * Flush pending Slack notifications and close the change journal, call once processing is finished
+     */
+    public void shutdown() {
+        if (this.slackNotifier != null) {
+            this.slackNotifier.shutdown();
+        }
+
+        if (this.changeJournal != null) {
+            try {
+                this.changeJournal.close();
+            } catch (IOException ex) {
+                logger.error("Error in closing change journal");
+            }
+        }
+    }
+
+    /**
+     * Create ICO entity attempting to read from ICO Drops first then if unfound, ICO Bench,
+     * giving up once the deadline passes
      * @param existingEntries
      * @param icoName
      * @param url
+     * @param fieldProjection
+     * @param prefetched ICO Drops page retrieved while the sheets were loading, null if there is none
+     * @param deadline
      * @return
      */
-    private Entry createEntity(Map<String, Entry> existingEntries, String icoName, String url) {
+    private Entry createEntity(Map<String, Entry> existingEntries, String icoName, String url,
+                               Set<String> fieldProjection, PrefetchedPage prefetched, Deadline deadline) {
         // Retrieve ICO Drops data for each ICO entry
-        Reader dataReader = new Reader(SourceType.ICODrop);
+        Reader dataReader = createReader(SourceType.ICODrop, fieldProjection);
 
         // Attempt to create entity from ICO Drops
-        Entry entry = createEntity(existingEntries, icoName, url, dataReader);
+        Entry entry = createEntity(existingEntries, icoName, url, dataReader, prefetched, deadline);
 
         // If entry is still not populated, attempt to read from ICOBench
-        if (entry == null) {
-            dataReader = new Reader(SourceType.ICOBench);
-            entry = createEntity(existingEntries, icoName, url, dataReader);
+        if (entry == null && !deadline.isExpired()) {
+            dataReader = createReader(SourceType.ICOBench, fieldProjection);
+            entry = createEntity(existingEntries, icoName, url, dataReader, null, deadline);
         }
 
+        if (entry == null && deadline.isExpired()) {
+            logger.error("Timed out processing {}", icoName);
+        }
         return entry;
     }
 
-    private Entry createEntity(Map<String, Entry> existingEntries, String icoName, String url, Reader dataReader) {
+    private Entry createEntity(Map<String, Entry> existingEntries, String icoName, String url, Reader dataReader,
+                               PrefetchedPage prefetched, Deadline deadline) {
         Entry entry = null;
 
         // First attempt to read from ICODrop
         // If the existing entry is identical, don't make any changes to the sheet
         if (existingEntries.containsKey(icoName)) {
             Entry existingEntry = existingEntries.get(icoName);
-            entry = dataReader.extractDetails(existingEntry.getUrl());
+            entry = isPage(prefetched, existingEntry.getUrl())
+                    ? dataReader.parseDocument(prefetched.getDocument(), null)
+                    : dataReader.extractDetails(existingEntry.getUrl(), deadline);
 
-            if (existingEntry.equals(entry)) {
+            if (entry == null || existingEntry.equals(entry)) {
                 return null;
             }
             else {
@@ -96,12 +900,108 @@ public class SpreadsheetProcessor {
             }
         }
         else if (!Strings.isNullOrEmpty(url)) {
-            entry = dataReader.extractDetails(url);
+            entry = isPage(prefetched, url)
+                    ? dataReader.parseDocument(prefetched.getDocument(), null)
+                    : dataReader.extractDetails(url, deadline);
         }
         else {
-            entry = dataReader.inferDetails(icoName);
+            entry = prefetched != null
+                    ? dataReader.parseDocument(prefetched.getDocument(), icoName)
+                    : dataReader.inferDetails(icoName, deadline);
         }
 
         return entry;
     }
+
+    /**
+     * Whether the prefetched page is the page at the URL, either as requested or where it was redirected to
+     * @param prefetched
+     * @param url
+     * @return
+     */
+    private boolean isPage(PrefetchedPage prefetched, String url) {
+        if (prefetched == null || Strings.isNullOrEmpty(url)) {
+            return false;
+        }
+
+        String normalizedUrl = StringUtils.normalizeUrl(url);
+        return normalizedUrl.equals(StringUtils.normalizeUrl(prefetched.getUrl()))
+                || normalizedUrl.equals(StringUtils.normalizeUrl(prefetched.getDocument().location()));
+    }
+
+    /**
+     * Connection to Google Sheets API together with the entries pulled from every sheet
+     */
+    private static class LoadedSheets {
+
+        /**
+         * Connection to Google Sheets API
+         */
+        private Sheets service;
+
+        /**
+         * Reader the entries were pulled with
+         */
+        private ShardedSpreadsheetReader reader;
+
+        /**
+         * Map of token to entry across every sheet
+         */
+        private Map<String, Entry> entries;
+
+        LoadedSheets(Sheets service, ShardedSpreadsheetReader reader, Map<String, Entry> entries) {
+            this.service = service;
+            this.reader = reader;
+            this.entries = entries;
+        }
+
+        /***********************
+         * Getters and setters
+         ***********************/
+
+        Sheets getService() {
+            return service;
+        }
+
+        ShardedSpreadsheetReader getReader() {
+            return reader;
+        }
+
+        Map<String, Entry> getEntries() {
+            return entries;
+        }
+    }
+
+    /**
+     * Page retrieved while the sheets were loading, together with the URL it was requested from
+     */
+    private static class PrefetchedPage {
+
+        /**
+         * URL the page was requested from
+         */
+        private String url;
+
+        /**
+         * Retrieved page
+         */
+        private Document document;
+
+        PrefetchedPage(String url, Document document) {
+            this.url = url;
+            this.document = document;
+        }
+
+        /***********************
+         * Getters and setters
+         ***********************/
+
+        String getUrl() {
+            return url;
+        }
+
+        Document getDocument() {
+            return document;
+        }
+    }
 }
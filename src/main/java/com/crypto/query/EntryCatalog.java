@@ -0,0 +1,228 @@
+package com.crypto.query;
+
+import com.crypto.entity.Entry;
+import com.crypto.entity.ImmutableEntry;
+import com.crypto.enums.QueryColumn;
+import com.crypto.util.StringUtils;
+import com.google.common.base.Strings;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Entries loaded for querying, with the free-text numeric and date fields parsed once into primitive columns.
+ * Queries then filter, sort and rank by scanning the arrays instead of re-parsing strings,
+ * and lookups by token, ticker or URL go through hash indexes instead of scanning.
+ * The catalog holds immutable snapshots of the entries, so it isn't affected by later changes to them
+ * and can be queried from several threads at once.
+ */
+public class EntryCatalog {
+
+    /**
+     * Entries, in load order
+     */
+    private ImmutableEntry[] entries;
+
+    /**
+     * Value of each numeric column for each entry, indexed by column ordinal then entry, NaN when unknown
+     */
+    private double[][] numericColumns;
+
+    /**
+     * Start date of each entry as an epoch day, {@link ValueParser#UNKNOWN_DATE} when unknown
+     */
+    private long[] startDates;
+
+    /**
+     * Token type of each entry, lower case
+     */
+    private String[] tokenTypes;
+
+    /**
+     * Rows of each normalized token, in catalog order
+     */
+    private Map<String, int[]> tokenRows;
+
+    /**
+     * Rows of each normalized ticker, in catalog order
+     */
+    private Map<String, int[]> tickerRows;
+
+    /**
+     * Rows of each normalized URL, in catalog order
+     */
+    private Map<String, int[]> urlRows;
+
+    /**
+     * Date the catalog was loaded relative to, used for dates without a year and for upcoming sales
+     */
+    private LocalDate referenceDate;
+
+    public EntryCatalog(Collection<Entry> entries) {
+        this(entries, LocalDate.now());
+    }
+
+    public EntryCatalog(Collection<Entry> entries, LocalDate referenceDate) {
+        this.referenceDate = referenceDate;
+        this.entries = entries.stream().map(ImmutableEntry::of).toArray(ImmutableEntry[]::new);
+
+        int size = this.entries.length;
+        this.numericColumns = new double[QueryColumn.values().length][size];
+        this.startDates = new long[size];
+        this.tokenTypes = new String[size];
+
+        for (int row = 0; row < size; row++) {
+            ImmutableEntry entry = this.entries[row];
+
+            this.numericColumns[QueryColumn.ICO_TOKEN_PRICE.ordinal()][row] = ValueParser.parseUsdAmount(entry.getIcoTokenPrice());
+            this.numericColumns[QueryColumn.FUNDRAISING_GOAL.ordinal()][row] = ValueParser.parseUsdAmount(entry.getFundraisingGoal());
+            this.numericColumns[QueryColumn.TOTAL_TOKENS.ordinal()][row] = ValueParser.parseAmount(entry.getTotalTokens());
+            this.numericColumns[QueryColumn.AVAILABLE_FOR_TOKEN_SALE.ordinal()][row] = ValueParser.parseAmount(entry.getAvailableForTokenSale());
+            this.numericColumns[QueryColumn.HYPE_RATE.ordinal()][row] = ValueParser.parseScore(entry.getHypeRate());
+            this.numericColumns[QueryColumn.RISK_RATE.ordinal()][row] = ValueParser.parseScore(entry.getRiskRate());
+            this.numericColumns[QueryColumn.ROI_RATE.ordinal()][row] = ValueParser.parseScore(entry.getRoiRate());
+            this.numericColumns[QueryColumn.OVERALL_SCORE.ordinal()][row] = ValueParser.parseScore(entry.getOverallScore());
+
+            this.startDates[row] = ValueParser.parseDate(entry.getIcoStartDate(), referenceDate);
+            this.numericColumns[QueryColumn.ICO_START_DATE.ordinal()][row] =
+                    this.startDates[row] == ValueParser.UNKNOWN_DATE ? Double.NaN : this.startDates[row];
+
+            this.tokenTypes[row] = Strings.nullToEmpty(entry.getTokenType()).trim().toLowerCase(Locale.ROOT);
+        }
+
+        this.tokenRows = index(entry -> normalizeToken(entry.getToken()));
+        this.tickerRows = index(entry -> normalizeTicker(entry.getTicker()));
+        this.urlRows = index(entry -> normalizeUrl(entry.getUrl()));
+    }
+
+    /**
+     * Normalize a token the way the token index is keyed
+     * @param token
+     * @return
+     */
+    static String normalizeToken(String token) {
+        return StringUtils.normalizeName(Strings.nullToEmpty(token));
+    }
+
+    /**
+     * Normalize a ticker the way the ticker index is keyed
+     * @param ticker
+     * @return
+     */
+    static String normalizeTicker(String ticker) {
+        return Strings.nullToEmpty(ticker).trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalize a URL the way the URL index is keyed
+     * @param url
+     * @return
+     */
+    static String normalizeUrl(String url) {
+        return StringUtils.normalizeUrl(Strings.nullToEmpty(url));
+    }
+
+    /**
+     * Group the rows by a key, leaving out entries without one
+     * @param keyFunction
+     * @return
+     */
+    private Map<String, int[]> index(Function<ImmutableEntry, String> keyFunction) {
+        Map<String, List<Integer>> groupedRows = new HashMap<>();
+        for (int row = 0; row < this.entries.length; row++) {
+            String key = keyFunction.apply(this.entries[row]);
+            if (!key.isEmpty()) {
+                groupedRows.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+            }
+        }
+
+        Map<String, int[]> index = new HashMap<>(groupedRows.size() * 2);
+        for (Map.Entry<String, List<Integer>> kv : groupedRows.entrySet()) {
+            index.put(kv.getKey(), kv.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return index;
+    }
+
+    /**
+     * Start a query over every entry in the catalog
+     * @return
+     */
+    public EntryQuery query() {
+        return new EntryQuery(this);
+    }
+
+    /**
+     * Number of entries in the catalog
+     * @return
+     */
+    public int size() {
+        return this.entries.length;
+    }
+
+    /**
+     * Entry at a row
+     * @param row
+     * @return
+     */
+    public ImmutableEntry getEntry(int row) {
+        return this.entries[row];
+    }
+
+    /**
+     * Parsed values of a column, NaN when unknown. Start dates are given as epoch days.
+     * @param column
+     * @return
+     */
+    double[] numericColumn(QueryColumn column) {
+        return this.numericColumns[column.ordinal()];
+    }
+
+    /**
+     * Rows with the token, ignoring case and punctuation
+     * @param token
+     * @return the rows in catalog order, empty if there are none
+     */
+    int[] rowsWithToken(String token) {
+        return this.tokenRows.getOrDefault(normalizeToken(token), new int[0]);
+    }
+
+    /**
+     * Rows with the ticker, ignoring case
+     * @param ticker
+     * @return the rows in catalog order, empty if there are none
+     */
+    int[] rowsWithTicker(String ticker) {
+        return this.tickerRows.getOrDefault(normalizeTicker(ticker), new int[0]);
+    }
+
+    /**
+     * Rows with the URL, ignoring casing, the scheme, a leading www and a trailing slash
+     * @param url
+     * @return the rows in catalog order, empty if there are none
+     */
+    int[] rowsWithUrl(String url) {
+        return this.urlRows.getOrDefault(normalizeUrl(url), new int[0]);
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    long[] getStartDates() {
+        return startDates;
+    }
+
+    String[] getTokenTypes() {
+        return tokenTypes;
+    }
+
+    public LocalDate getReferenceDate() {
+        return referenceDate;
+    }
+}
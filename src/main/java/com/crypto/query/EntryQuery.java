@@ -0,0 +1,397 @@
+package com.crypto.query;
+
+import com.crypto.entity.ImmutableEntry;
+import com.crypto.enums.QueryColumn;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.DoublePredicate;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+
+/**
+ * Filter, sort and top-K query over an {@link EntryCatalog}, built up fluently, for example
+ * <pre>
+ * catalog.query()
+ *        .whereUpcoming()
+ *        .whereTokenType("ERC20")
+ *        .whereLessThan(QueryColumn.FUNDRAISING_GOAL, 10000000)
+ *        .orderBy(QueryColumn.ICO_START_DATE, true)
+ *        .limit(20)
+ *        .list();
+ * </pre>
+ * Entries with an unknown value never match a filter on that column and are sorted last.
+ * Lookups by token, ticker or URL narrow the rows scanned to the ones in the catalog's indexes.
+ */
+public class EntryQuery {
+
+    /**
+     * Catalog being queried
+     */
+    private EntryCatalog catalog;
+
+    /**
+     * Rows that can match, in catalog order, null to scan every row
+     */
+    private int[] candidates;
+
+    /**
+     * Filters every matching row passes
+     */
+    private List<IntPredicate> filters;
+
+    /**
+     * Order of the matching rows, null to keep catalog order
+     */
+    private IntBinaryOperator order;
+
+    /**
+     * Maximum number of rows returned, negative for no limit
+     */
+    private int limit;
+
+    EntryQuery(EntryCatalog catalog) {
+        this.catalog = catalog;
+        this.filters = new ArrayList<>();
+        this.limit = -1;
+    }
+
+    /**
+     * Keep entries whose value in the column matches the predicate
+     * @param column
+     * @param predicate
+     * @return
+     */
+    public EntryQuery where(QueryColumn column, DoublePredicate predicate) {
+        double[] values = this.catalog.numericColumn(column);
+        this.filters.add(row -> !Double.isNaN(values[row]) && predicate.test(values[row]));
+        return this;
+    }
+
+    public EntryQuery whereLessThan(QueryColumn column, double value) {
+        return where(column, v -> v < value);
+    }
+
+    public EntryQuery whereGreaterThan(QueryColumn column, double value) {
+        return where(column, v -> v > value);
+    }
+
+    public EntryQuery whereBetween(QueryColumn column, double min, double max) {
+        return where(column, v -> v >= min && v <= max);
+    }
+
+    /**
+     * Keep entries with the token, ignoring case and punctuation
+     * @param token
+     * @return
+     */
+    public EntryQuery whereToken(String token) {
+        return restrict(this.catalog.rowsWithToken(token));
+    }
+
+    /**
+     * Keep entries with the ticker, ignoring case
+     * @param ticker
+     * @return
+     */
+    public EntryQuery whereTicker(String ticker) {
+        return restrict(this.catalog.rowsWithTicker(ticker));
+    }
+
+    /**
+     * Keep entries with the URL, ignoring casing, the scheme, a leading www and a trailing slash
+     * @param url
+     * @return
+     */
+    public EntryQuery whereUrl(String url) {
+        return restrict(this.catalog.rowsWithUrl(url));
+    }
+
+    /**
+     * Keep entries of a token type, ignoring case
+     * @param tokenType
+     * @return
+     */
+    public EntryQuery whereTokenType(String tokenType) {
+        String[] tokenTypes = this.catalog.getTokenTypes();
+        String normalizedTokenType = tokenType.trim().toLowerCase(Locale.ROOT);
+        this.filters.add(row -> tokenTypes[row].equals(normalizedTokenType));
+        return this;
+    }
+
+    /**
+     * Keep entries starting between the dates, inclusive
+     * @param from
+     * @param to
+     * @return
+     */
+    public EntryQuery whereStartsBetween(LocalDate from, LocalDate to) {
+        long[] startDates = this.catalog.getStartDates();
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        this.filters.add(row -> startDates[row] != ValueParser.UNKNOWN_DATE
+                && startDates[row] >= fromDay && startDates[row] <= toDay);
+        return this;
+    }
+
+    /**
+     * Keep entries starting after the catalog's reference date
+     * @return
+     */
+    public EntryQuery whereUpcoming() {
+        return whereStartsBetween(this.catalog.getReferenceDate().plusDays(1), LocalDate.MAX);
+    }
+
+    /**
+     * Sort the matching entries by a column
+     * @param column
+     * @param ascending
+     * @return
+     */
+    public EntryQuery orderBy(QueryColumn column, boolean ascending) {
+        double[] values = this.catalog.numericColumn(column);
+        this.order = (left, right) -> {
+            boolean leftUnknown = Double.isNaN(values[left]);
+            boolean rightUnknown = Double.isNaN(values[right]);
+            if (leftUnknown || rightUnknown) {
+                return Boolean.compare(leftUnknown, rightUnknown);
+            }
+
+            int comparison = Double.compare(values[left], values[right]);
+            return ascending ? comparison : -comparison;
+        };
+        return this;
+    }
+
+    /**
+     * Return at most this many entries, the first ones in sort order
+     * @param limit
+     * @return
+     */
+    public EntryQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Run the query
+     * @return rows of the matching entries in the catalog, in order
+     */
+    public int[] rows() {
+        IntPredicate[] filterArray = this.filters.toArray(new IntPredicate[0]);
+
+        // Only the best rows are kept when there is a limit on a sorted query
+        boolean topK = this.order != null && this.limit >= 0;
+        int[] matches = new int[topK ? Math.min(this.limit, scanCount()) : scanCount()];
+        int matchCount = 0;
+
+        for (int i = 0; i < scanCount(); i++) {
+            int row = scannedRow(i);
+            if (!matches(filterArray, row)) {
+                continue;
+            }
+
+            if (!topK) {
+                matches[matchCount++] = row;
+            }
+            else if (matchCount < this.limit) {
+                matches[matchCount++] = row;
+                siftUp(matches, matchCount - 1);
+            }
+            else if (this.limit > 0 && compare(row, matches[0]) < 0) {
+                matches[0] = row;
+                siftDown(matches, matchCount);
+            }
+        }
+
+        int[] result = Arrays.copyOf(matches, matchCount);
+        if (this.order != null) {
+            sort(result, 0, result.length, new int[result.length]);
+        }
+        if (this.limit >= 0 && result.length > this.limit) {
+            result = Arrays.copyOf(result, this.limit);
+        }
+        return result;
+    }
+
+    /**
+     * Run the query
+     * @return matching entries, in order
+     */
+    public List<ImmutableEntry> list() {
+        int[] rows = rows();
+        List<ImmutableEntry> entries = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            entries.add(this.catalog.getEntry(row));
+        }
+        return entries;
+    }
+
+    /**
+     * Count the matching entries, ignoring the limit
+     * @return
+     */
+    public int count() {
+        IntPredicate[] filterArray = this.filters.toArray(new IntPredicate[0]);
+
+        int count = 0;
+        for (int i = 0; i < scanCount(); i++) {
+            if (matches(filterArray, scannedRow(i))) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Narrow the rows that can match to the ones also in the sorted rows
+     * @param rows
+     * @return
+     */
+    private EntryQuery restrict(int[] rows) {
+        if (this.candidates == null) {
+            this.candidates = rows;
+            return this;
+        }
+
+        int[] intersection = new int[Math.min(this.candidates.length, rows.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < this.candidates.length && j < rows.length; ) {
+            if (this.candidates[i] < rows[j]) {
+                ++i;
+            }
+            else if (this.candidates[i] > rows[j]) {
+                ++j;
+            }
+            else {
+                intersection[count++] = this.candidates[i];
+                ++i;
+                ++j;
+            }
+        }
+        this.candidates = Arrays.copyOf(intersection, count);
+        return this;
+    }
+
+    /**
+     * Number of rows scanned by the query
+     * @return
+     */
+    private int scanCount() {
+        return this.candidates == null ? this.catalog.size() : this.candidates.length;
+    }
+
+    /**
+     * Row scanned at a position of the scan
+     * @param i
+     * @return
+     */
+    private int scannedRow(int i) {
+        return this.candidates == null ? i : this.candidates[i];
+    }
+
+    /**
+     * Returns true if the row passes every filter
+     * @param filterArray
+     * @param row
+     * @return
+     */
+    private static boolean matches(IntPredicate[] filterArray, int row) {
+        for (IntPredicate filter : filterArray) {
+            if (!filter.test(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare rows in the query order, breaking ties by catalog order so a limited query keeps the same rows as a full sort
+     * @param left
+     * @param right
+     * @return
+     */
+    private int compare(int left, int right) {
+        int comparison = this.order.applyAsInt(left, right);
+        return comparison != 0 ? comparison : Integer.compare(left, right);
+    }
+
+    /**
+     * Merge sort of rows in the query order, without boxing
+     * @param rows
+     * @param from
+     * @param to
+     * @param buffer
+     */
+    private void sort(int[] rows, int from, int to, int[] buffer) {
+        if (to - from < 2) {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sort(rows, from, middle, buffer);
+        sort(rows, middle, to, buffer);
+
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(rows[left], rows[right]) <= 0)) {
+                buffer[i] = rows[left++];
+            }
+            else {
+                buffer[i] = rows[right++];
+            }
+        }
+        System.arraycopy(buffer, from, rows, from, to - from);
+    }
+
+    /**
+     * Move a row up a heap that keeps the worst row in query order at the root
+     * @param heap
+     * @param index
+     */
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (compare(heap[index], heap[parent]) <= 0) {
+                return;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    /**
+     * Move the root down a heap that keeps the worst row in query order at the root
+     * @param heap
+     * @param size
+     */
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && compare(heap[left], heap[worst]) > 0) {
+                worst = left;
+            }
+            if (right < size && compare(heap[right], heap[worst]) > 0) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
@@ -0,0 +1,336 @@
+package com.crypto.query;
+
+import com.google.common.base.Strings;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the free-text values scraped from source pages into numbers and dates
+ */
+public class ValueParser {
+
+    /**
+     * Value of a date that couldn't be parsed, as an epoch day
+     */
+    public static final long UNKNOWN_DATE = Long.MIN_VALUE;
+
+    /**
+     * A number with optional thousands separators and decimals, followed by an optional magnitude
+     */
+    private static final Pattern AMOUNT_PATTERN =
+            Pattern.compile("(\\d+(?:,\\d{3})*(?:\\.\\d+)?)\\s*(k|thousand|mm|mln|m|million|bn|b|billion)?\\b");
+
+    /**
+     * Currency code or name directly after an amount
+     */
+    private static final Pattern CURRENCY_NAME_PATTERN = Pattern.compile("\\G\\s*([a-z]+)");
+
+    /**
+     * Currency symbol directly before an amount
+     */
+    private static final Pattern CURRENCY_SYMBOL_PATTERN = Pattern.compile("([$\u20ac\u00a3\u039e\u20bf])\\s*$");
+
+    /**
+     * Currency named by each code, name or symbol, including dollar pegged stablecoins as USD
+     */
+    private static final Map<String, String> CURRENCIES;
+
+    static {
+        Map<String, String> currencies = new HashMap<>();
+        for (String name : Arrays.asList("$", "usd", "usdt", "usdc", "dollar", "dollars")) {
+            currencies.put(name, "USD");
+        }
+        for (String name : Arrays.asList("\u20ac", "eur", "euro", "euros")) {
+            currencies.put(name, "EUR");
+        }
+        for (String name : Arrays.asList("\u039e", "eth", "ether", "ethereum")) {
+            currencies.put(name, "ETH");
+        }
+        for (String name : Arrays.asList("\u20bf", "btc", "bitcoin")) {
+            currencies.put(name, "BTC");
+        }
+        currencies.put("\u00a3", "GBP");
+        for (String code : Arrays.asList("gbp", "chf", "ltc", "neo", "waves", "bnb", "eos", "xlm", "trx", "xem", "qtum")) {
+            currencies.put(code, code.toUpperCase(Locale.ROOT));
+        }
+        CURRENCIES = Collections.unmodifiableMap(currencies);
+    }
+
+    /**
+     * Day then month name, with an optional year (e.g. 15 Jan 2018 or 15th January)
+     */
+    private static final Pattern DAY_MONTH_PATTERN =
+            Pattern.compile("(\\d{1,2})(?:st|nd|rd|th)?\\s+([a-z]{3})[a-z]*\\.?,?(?:\\s+(\\d{4}))?");
+
+    /**
+     * Month name then day, with an optional year (e.g. Jan 15, 2018)
+     */
+    private static final Pattern MONTH_DAY_PATTERN =
+            Pattern.compile("([a-z]{3})[a-z]*\\.?\\s+(\\d{1,2})(?:st|nd|rd|th)?,?(?:\\s+(\\d{4}))?");
+
+    /**
+     * Numeric date, year first (e.g. 2018-01-15)
+     */
+    private static final Pattern ISO_DATE_PATTERN = Pattern.compile("(\\d{4})-(\\d{1,2})-(\\d{1,2})");
+
+    /**
+     * Numeric date, day first (e.g. 15.01.2018)
+     */
+    private static final Pattern DAY_FIRST_DATE_PATTERN = Pattern.compile("(\\d{1,2})[./](\\d{1,2})[./](\\d{4})");
+
+    /**
+     * Three letter month names, in calendar order
+     */
+    private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+    /**
+     * Rating levels used in place of a number, more specific levels first so "very high" isn't read as "high"
+     */
+    private static final String[] RATING_LEVELS = {"very high", "very low", "high", "medium", "low"};
+
+    /**
+     * Score of each rating level, counting from 1 for very low
+     */
+    private static final double[] RATING_SCORES = {5, 1, 4, 3, 2};
+
+    private ValueParser() {}
+
+    /**
+     * Parse an amount such as "$0.05", "20,000,000" or "10M USD".
+     * For a price given as an exchange rate such as "1 ABC = 0.05 USD", the value after the equals sign is used.
+     * @param value
+     * @return the amount, or NaN if there is no number
+     */
+    public static double parseAmount(String value) {
+        if (Strings.isNullOrEmpty(value)) {
+            return Double.NaN;
+        }
+
+        String text = value.toLowerCase(Locale.ROOT);
+        if (text.contains("=")) {
+            text = text.substring(text.indexOf('=') + 1);
+        }
+
+        Matcher matcher = AMOUNT_PATTERN.matcher(text);
+        if (!matcher.find()) {
+            return Double.NaN;
+        }
+
+        double amount = Double.parseDouble(matcher.group(1).replace(",", ""));
+        String magnitude = matcher.group(2);
+        if (magnitude == null) {
+            return amount;
+        }
+
+        switch (magnitude) {
+            case "k":
+            case "thousand":
+                return amount * 1e3;
+            case "m":
+            case "mm":
+            case "mln":
+            case "million":
+                return amount * 1e6;
+            default:
+                return amount * 1e9;
+        }
+    }
+
+    /**
+     * Parse an amount of US dollars such as "$0.05" or "10M USD".
+     * An amount without a currency is taken to be in USD, since that is how the source pages quote prices.
+     * @param value
+     * @return the amount, or NaN if there is no number or the amount is in another currency
+     */
+    public static double parseUsdAmount(String value) {
+        double amount = parseAmount(value);
+        if (Double.isNaN(amount)) {
+            return amount;
+        }
+
+        String currency = parseCurrency(value);
+        if (currency != null) {
+            return "USD".equals(currency) ? amount : Double.NaN;
+        }
+
+        // A rate such as "1 ETH = 500 ABC" is a number of tokens, not a price
+        int equalsIndex = value.indexOf('=');
+        if (equalsIndex >= 0 && currencyOf(value.substring(0, equalsIndex).toLowerCase(Locale.ROOT)) != null) {
+            return Double.NaN;
+        }
+        return amount;
+    }
+
+    /**
+     * Parse the currency an amount is given in, from a code or name after it such as "0.5 ETH" or a symbol before it
+     * such as "$0.05". For an exchange rate, the currency of the value after the equals sign is used.
+     * @param value
+     * @return the currency code, or null if none is given
+     */
+    public static String parseCurrency(String value) {
+        if (Strings.isNullOrEmpty(value)) {
+            return null;
+        }
+
+        String text = value.toLowerCase(Locale.ROOT);
+        if (text.contains("=")) {
+            text = text.substring(text.indexOf('=') + 1);
+        }
+        return currencyOf(text);
+    }
+
+    /**
+     * Currency of the first amount in the text
+     * @param text lower case
+     * @return the currency code, or null if there is no amount or it has no currency
+     */
+    private static String currencyOf(String text) {
+        Matcher matcher = AMOUNT_PATTERN.matcher(text);
+        if (!matcher.find()) {
+            return null;
+        }
+
+        Matcher symbolMatcher = CURRENCY_SYMBOL_PATTERN.matcher(text.substring(0, matcher.start()));
+        if (symbolMatcher.find()) {
+            return CURRENCIES.get(symbolMatcher.group(1));
+        }
+
+        Matcher nameMatcher = CURRENCY_NAME_PATTERN.matcher(text);
+        if (nameMatcher.find(matcher.end())) {
+            return CURRENCIES.get(nameMatcher.group(1));
+        }
+        return null;
+    }
+
+    /**
+     * Parse a score such as "4.2/5", "7.5" or a rating level such as "Very High Interest"
+     * @param value
+     * @return the score, rating levels counting from 1 for very low, or NaN if there is no score
+     */
+    public static double parseScore(String value) {
+        if (Strings.isNullOrEmpty(value)) {
+            return Double.NaN;
+        }
+
+        String text = value.toLowerCase(Locale.ROOT);
+        Matcher matcher = AMOUNT_PATTERN.matcher(text);
+        if (matcher.find()) {
+            return Double.parseDouble(matcher.group(1).replace(",", ""));
+        }
+
+        for (int i = 0; i < RATING_LEVELS.length; i++) {
+            if (text.contains(RATING_LEVELS[i])) {
+                return RATING_SCORES[i];
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Parse the first date in a value such as "Jan 15 - Feb 15", "15th Jan 2018" or "2018-01-15".
+     * Dates without a year are taken to be in whichever year puts them closest to the reference date.
+     * @param value
+     * @param referenceDate
+     * @return the date as an epoch day, or {@link #UNKNOWN_DATE} if there is no date
+     */
+    public static long parseDate(String value, LocalDate referenceDate) {
+        if (Strings.isNullOrEmpty(value)) {
+            return UNKNOWN_DATE;
+        }
+
+        String text = value.toLowerCase(Locale.ROOT);
+        int bestStart = Integer.MAX_VALUE;
+        long bestDate = UNKNOWN_DATE;
+
+        // Use whichever format matches earliest in the value
+        Matcher matcher = ISO_DATE_PATTERN.matcher(text);
+        if (matcher.find() && matcher.start() < bestStart) {
+            long date = toEpochDay(matcher.group(1), Integer.parseInt(matcher.group(2)), matcher.group(3), referenceDate);
+            if (date != UNKNOWN_DATE) {
+                bestStart = matcher.start();
+                bestDate = date;
+            }
+        }
+
+        matcher = DAY_FIRST_DATE_PATTERN.matcher(text);
+        if (matcher.find() && matcher.start() < bestStart) {
+            long date = toEpochDay(matcher.group(3), Integer.parseInt(matcher.group(2)), matcher.group(1), referenceDate);
+            if (date != UNKNOWN_DATE) {
+                bestStart = matcher.start();
+                bestDate = date;
+            }
+        }
+
+        matcher = DAY_MONTH_PATTERN.matcher(text);
+        while (matcher.find() && matcher.start() < bestStart) {
+            long date = toEpochDay(matcher.group(3), monthOf(matcher.group(2)), matcher.group(1), referenceDate);
+            if (date != UNKNOWN_DATE) {
+                bestStart = matcher.start();
+                bestDate = date;
+                break;
+            }
+        }
+
+        matcher = MONTH_DAY_PATTERN.matcher(text);
+        while (matcher.find() && matcher.start() < bestStart) {
+            long date = toEpochDay(matcher.group(3), monthOf(matcher.group(1)), matcher.group(2), referenceDate);
+            if (date != UNKNOWN_DATE) {
+                bestDate = date;
+                break;
+            }
+        }
+
+        return bestDate;
+    }
+
+    /**
+     * Month number of a three letter month name
+     * @param name
+     * @return the month, or 0 if the name isn't a month
+     */
+    private static int monthOf(String name) {
+        int index = MONTHS.indexOf(name);
+        return index >= 0 && index % 3 == 0 ? index / 3 + 1 : 0;
+    }
+
+    /**
+     * Combine the parts of a date into an epoch day
+     * @param year null to use the year closest to the reference date
+     * @param month
+     * @param day
+     * @param referenceDate
+     * @return
+     */
+    private static long toEpochDay(String year, int month, String day, LocalDate referenceDate) {
+        if (year != null) {
+            try {
+                return LocalDate.of(Integer.parseInt(year), month, Integer.parseInt(day)).toEpochDay();
+            } catch (DateTimeException ex) {
+                return UNKNOWN_DATE;
+            }
+        }
+
+        // Try the years around the reference date, so "Jan 5" read late in December is the coming January
+        long referenceDay = referenceDate.toEpochDay();
+        long bestDate = UNKNOWN_DATE;
+        for (int offset = -1; offset <= 1; offset++) {
+            try {
+                long date = LocalDate.of(referenceDate.getYear() + offset, month, Integer.parseInt(day)).toEpochDay();
+                if (bestDate == UNKNOWN_DATE || Math.abs(date - referenceDay) < Math.abs(bestDate - referenceDay)) {
+                    bestDate = date;
+                }
+            } catch (DateTimeException ex) {
+                // Feb 29 only exists in leap years
+            }
+        }
+        return bestDate;
+    }
+}
@@ -0,0 +1,310 @@
+package com.crypto.reader;
+
+import com.crypto.enums.SourceType;
+import com.crypto.exception.DeadlineExceededException;
+import com.crypto.util.Deadline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of requests in flight to a source host, adjusting the limit by additive increase and
+ * multiplicative decrease. Latency is judged by the median of the recent requests against a baseline that is a slow
+ * moving average of that median, so a single slow response doesn't count as load. Each request that completes while
+ * the recent median stays near the baseline raises the limit by one over the limit, so it grows by about one per
+ * round trip. A request the host rejects as overloaded, a timeout, or a recent median well above the baseline cuts
+ * the limit by half, at most once per round trip.
+ * The current limit of each source is exposed over JMX as com.crypto:type=AdaptiveLimiter,source=name.
+ */
+public class AdaptiveLimiter implements AdaptiveLimiterMBean {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveLimiter.class);
+
+    /**
+     * Limit each source starts at
+     */
+    private static final double INITIAL_LIMIT = 8;
+
+    /**
+     * Lowest the limit is cut to
+     */
+    private static final double MIN_LIMIT = 1;
+
+    /**
+     * Highest the limit is raised to
+     */
+    private static final double MAX_LIMIT = 64;
+
+    /**
+     * Factor the limit is multiplied by when the host is overloaded
+     */
+    private static final double BACKOFF_RATIO = 0.5;
+
+    /**
+     * How many times the baseline the recent median latency can be before the host counts as loaded
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * Weight of the recent median each time the baseline is averaged with it, so it follows a host that got slower
+     * for good without following a short burst of load
+     */
+    private static final double BASELINE_WEIGHT = 0.05;
+
+    /**
+     * Number of recent latencies the median is taken over
+     */
+    private static final int WINDOW_SIZE = 20;
+
+    /**
+     * Number of latencies recorded since the last cut before the median is trusted
+     */
+    private static final int MIN_SAMPLES = WINDOW_SIZE / 2;
+
+    /**
+     * Limiter for each source, created on first use
+     */
+    private static final Map<SourceType, AdaptiveLimiter> limiters = new EnumMap<>(SourceType.class);
+
+    /**
+     * Source the requests go to
+     */
+    private SourceType sourceType;
+
+    /**
+     * Number of requests allowed at once, fractional so it can grow by less than one per request
+     */
+    private double limit;
+
+    /**
+     * Number of requests in flight
+     */
+    private int inFlight;
+
+    /**
+     * Latency the host responds with when it isn't loaded, zero until the first median
+     */
+    private double baselineLatencyNanos;
+
+    /**
+     * Most recent latencies, overwritten in a ring
+     */
+    private long[] window;
+
+    /**
+     * Number of latencies in the window
+     */
+    private int windowCount;
+
+    /**
+     * Position in the window the next latency is written to
+     */
+    private int windowNext;
+
+    /**
+     * Median of the latencies in the window, zero until there are enough of them
+     */
+    private double recentLatencyNanos;
+
+    /**
+     * Time the limit was last cut
+     */
+    private long lastDecreaseNanos;
+
+    /**
+     * Number of times the limit was cut
+     */
+    private long decreaseCount;
+
+    AdaptiveLimiter(SourceType sourceType) {
+        this.sourceType = sourceType;
+        this.limit = INITIAL_LIMIT;
+        this.window = new long[WINDOW_SIZE];
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    /**
+     * Retrieve the limiter for a source, registering its metrics the first time
+     * @param sourceType
+     * @return
+     */
+    public static synchronized AdaptiveLimiter getInstance(SourceType sourceType) {
+        return limiters.computeIfAbsent(sourceType, key -> {
+            AdaptiveLimiter limiter = new AdaptiveLimiter(key);
+            limiter.register();
+            return limiter;
+        });
+    }
+
+    /**
+     * Wait until another request is allowed, giving up once the deadline passes
+     * @param deadline
+     * @throws DeadlineExceededException
+     * @throws InterruptedIOException
+     */
+    public synchronized void acquire(Deadline deadline) throws DeadlineExceededException, InterruptedIOException {
+        try {
+            while (this.inFlight >= (int) this.limit) {
+                long waitMillis = Math.min(deadline.remainingMillis(), TimeUnit.SECONDS.toMillis(1));
+                if (waitMillis <= 0) {
+                    throw new DeadlineExceededException("Deadline passed waiting to request " + this.sourceType);
+                }
+                wait(waitMillis);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to request " + this.sourceType);
+        }
+        ++this.inFlight;
+    }
+
+    /**
+     * Release a request that succeeded, raising the limit if the recent median latency stayed near the baseline
+     * and cutting it if the median rose well above
+     * @param latencyNanos
+     */
+    public synchronized void release(long latencyNanos) {
+        --this.inFlight;
+        recordLatency(latencyNanos);
+
+        boolean loaded = this.baselineLatencyNanos > 0
+                && this.recentLatencyNanos > this.baselineLatencyNanos * LATENCY_TOLERANCE;
+        updateBaseline();
+
+        if (loaded) {
+            decrease("latency rise");
+        }
+        else {
+            this.limit = Math.min(MAX_LIMIT, this.limit + 1 / this.limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Release a request the host rejected as overloaded or that timed out, cutting the limit
+     */
+    public synchronized void releaseOverloaded() {
+        --this.inFlight;
+        decrease("overload");
+        notifyAll();
+    }
+
+    /**
+     * Release a request that failed for a reason unrelated to load, such as a page that doesn't exist,
+     * leaving the limit as it is
+     */
+    public synchronized void releaseIgnored() {
+        --this.inFlight;
+        notifyAll();
+    }
+
+    /**
+     * Cut the limit, unless it was already cut within the last round trip
+     * since the requests in flight then were sent at the old limit
+     * @param reason
+     */
+    private void decrease(String reason) {
+        long now = System.nanoTime();
+        if (now - this.lastDecreaseNanos < this.baselineLatencyNanos) {
+            return;
+        }
+
+        double previousLimit = this.limit;
+        this.limit = Math.max(MIN_LIMIT, this.limit * BACKOFF_RATIO);
+        this.lastDecreaseNanos = now;
+        ++this.decreaseCount;
+
+        // Latencies seen at the old limit say nothing about the new one
+        this.windowCount = 0;
+        this.recentLatencyNanos = 0;
+        logger.info("Cut {} request limit from {} to {} on {}", this.sourceType, (int) previousLimit, (int) this.limit, reason);
+    }
+
+    /**
+     * Add a latency to the window and take the median once there are enough latencies
+     * @param latencyNanos
+     */
+    private void recordLatency(long latencyNanos) {
+        this.window[this.windowNext] = latencyNanos;
+        this.windowNext = (this.windowNext + 1) % WINDOW_SIZE;
+        this.windowCount = Math.min(WINDOW_SIZE, this.windowCount + 1);
+        if (this.windowCount < MIN_SAMPLES) {
+            return;
+        }
+
+        // The latest latencies sit just before the next position in the ring
+        long[] latencies = new long[this.windowCount];
+        for (int i = 0; i < this.windowCount; i++) {
+            latencies[i] = this.window[(this.windowNext - 1 - i + WINDOW_SIZE) % WINDOW_SIZE];
+        }
+        Arrays.sort(latencies);
+        this.recentLatencyNanos = latencies[latencies.length / 2];
+    }
+
+    /**
+     * Move the baseline a little towards the recent median, starting from the first median
+     */
+    private void updateBaseline() {
+        if (this.recentLatencyNanos == 0) {
+            return;
+        }
+        if (this.baselineLatencyNanos == 0) {
+            this.baselineLatencyNanos = this.recentLatencyNanos;
+        }
+        else {
+            this.baselineLatencyNanos += (this.recentLatencyNanos - this.baselineLatencyNanos) * BASELINE_WEIGHT;
+        }
+    }
+
+    /**
+     * Register the metrics over JMX
+     */
+    private void register() {
+        try {
+            ObjectName name = new ObjectName("com.crypto:type=AdaptiveLimiter,source=" + this.sourceType.name());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException ex) {
+            logger.error("Unable to register request limit metrics for {}", this.sourceType);
+        }
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    @Override
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public synchronized long getBaselineLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((long) baselineLatencyNanos);
+    }
+
+    @Override
+    public synchronized long getRecentLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((long) recentLatencyNanos);
+    }
+
+    @Override
+    public synchronized long getDecreaseCount() {
+        return decreaseCount;
+    }
+}
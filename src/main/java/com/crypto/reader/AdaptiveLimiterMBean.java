@@ -0,0 +1,37 @@
+package com.crypto.reader;
+
+/**
+ * Metrics of an adaptive limiter, exposed over JMX
+ */
+public interface AdaptiveLimiterMBean {
+
+    /**
+     * Number of requests currently allowed at once
+     * @return
+     */
+    int getLimit();
+
+    /**
+     * Number of requests currently in flight
+     * @return
+     */
+    int getInFlight();
+
+    /**
+     * Latency the source responds with when it isn't loaded, in milliseconds
+     * @return
+     */
+    long getBaselineLatencyMillis();
+
+    /**
+     * Median latency of the recent requests to the source, in milliseconds
+     * @return
+     */
+    long getRecentLatencyMillis();
+
+    /**
+     * Number of times the limit was cut
+     * @return
+     */
+    long getDecreaseCount();
+}
@@ -0,0 +1,133 @@
+package com.crypto.reader;
+
+import com.crypto.entity.Entry;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Retrieves pages on a fixed-size pool of threads so many pages can be requested at once
+ */
+public class ConcurrentFetcher {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentFetcher.class);
+
+    /**
+     * Default number of pages retrieved at the same time
+     */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    /**
+     * Threads the pages are retrieved on
+     */
+    private ExecutorService executor;
+
+    public ConcurrentFetcher() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    public ConcurrentFetcher(int parallelism) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "fetcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Run a task on the fetcher threads
+     * @param task
+     * @return
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, this.executor);
+    }
+
+    /**
+     * Retrieve a page in the background
+     * @param reader
+     * @param url
+     * @return
+     */
+    public CompletableFuture<Document> fetchDocument(Reader reader, String url) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return reader.fetchDocument(url);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, this.executor);
+    }
+
+    /**
+     * Retrieve every page concurrently and wait for all of them.
+     * Pages that can't be retrieved are logged and left out.
+     * @param reader
+     * @param urls
+     * @return map of URL to page, in the same order as the URLs
+     */
+    public Map<String, Document> fetchDocuments(Reader reader, Collection<String> urls) {
+        Map<String, CompletableFuture<Document>> futures = new LinkedHashMap<>();
+        for (String url : urls) {
+            futures.put(url, fetchDocument(reader, url));
+        }
+
+        Map<String, Document> documents = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Document>> kv : futures.entrySet()) {
+            try {
+                documents.put(kv.getKey(), kv.getValue().join());
+            } catch (CompletionException ex) {
+                logger.error("Unable to retrieve page at {}", kv.getKey());
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Create an entry from each page concurrently and wait for all of them.
+     * Pages that can't be retrieved are left out.
+     * @param reader
+     * @param urls
+     * @return entries in the same order as the URLs
+     */
+    public List<Entry> extractDetails(Reader reader, Collection<String> urls) {
+        List<CompletableFuture<Entry>> futures = new ArrayList<>();
+        for (String url : urls) {
+            futures.add(CompletableFuture.supplyAsync(() -> reader.extractDetails(url), this.executor));
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (CompletableFuture<Entry> future : futures) {
+            Entry entry = future.join();
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Stop the fetcher threads once outstanding requests complete
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+}
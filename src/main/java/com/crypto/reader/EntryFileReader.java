@@ -0,0 +1,312 @@
+package com.crypto.reader;
+
+import com.crypto.entity.Entry;
+import com.crypto.enums.OutputFormat;
+import com.crypto.exception.InvalidArgumentException;
+import com.crypto.util.StringUtils;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.Data;
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams entries from a local CSV or newline-delimited JSON file, such as the ones written by the local sinks.
+ * Columns are matched to entry fields by name, ignoring case and punctuation, so files can follow either
+ * the spreadsheet header or the field names. Entries are read a chunk at a time so the whole file is never in memory.
+ */
+public class EntryFileReader implements Closeable {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(EntryFileReader.class);
+
+    /**
+     * Global instance of JSON factory
+     */
+    private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+
+    /**
+     * Byte order mark some editors write at the start of a CSV file
+     */
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    /**
+     * File being read
+     */
+    private Path path;
+
+    /**
+     * Format of the file
+     */
+    private OutputFormat format;
+
+    /**
+     * Buffered reader over the file
+     */
+    private BufferedReader reader;
+
+    /**
+     * Map of field name to its index in a row, rows are laid out in field order
+     */
+    private Map<String, Integer> columnIndexMap;
+
+    /**
+     * Map of normalized field name to its index in a row
+     */
+    private Map<String, Integer> normalizedFieldIndexes;
+
+    /**
+     * Row index of each CSV column, -1 if no field matches the column
+     */
+    private int[] csvColumnIndexes;
+
+    /**
+     * JSON keys already reported as not matching a field
+     */
+    private Set<String> unknownKeys;
+
+    /**
+     * Number of records read, including skipped ones
+     */
+    private long recordCount;
+
+    /**
+     * Number of records skipped since they were invalid or had no token
+     */
+    private long skippedCount;
+
+    public EntryFileReader(Path path) throws IOException {
+        this.path = path;
+        this.format = formatOf(path);
+        this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        this.columnIndexMap = new LinkedHashMap<>();
+        this.normalizedFieldIndexes = new HashMap<>();
+        this.unknownKeys = new HashSet<>();
+
+        for (String fieldName : Entry.getFieldNames()) {
+            this.normalizedFieldIndexes.put(StringUtils.normalizeName(fieldName), this.columnIndexMap.size());
+            this.columnIndexMap.put(fieldName, this.columnIndexMap.size());
+        }
+
+        if (this.format == OutputFormat.CSV) {
+            readCsvHeader();
+        }
+    }
+
+    /**
+     * Find the format of a file from its extension
+     * @param path
+     * @return
+     */
+    public static OutputFormat formatOf(Path path) {
+        String fileName = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (fileName.endsWith(".csv")) {
+            return OutputFormat.CSV;
+        }
+        if (fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl")) {
+            return OutputFormat.NDJSON;
+        }
+        throw new InvalidArgumentException("Expected a .csv, .ndjson or .jsonl file instead of " + path);
+    }
+
+    /**
+     * Read the next entries in file order, skipping records without a token
+     * @param maxEntries
+     * @return up to the requested number of entries, empty once the file is finished
+     * @throws IOException
+     */
+    public List<Entry> readEntries(int maxEntries) throws IOException {
+        List<List<Object>> rows = new ArrayList<>(maxEntries);
+        while (rows.size() < maxEntries) {
+            List<Object> row = this.format == OutputFormat.CSV ? readCsvRow() : readJsonRow();
+            if (row == null) {
+                break;
+            }
+
+            ++this.recordCount;
+            if (Strings.isNullOrEmpty((String) row.get(this.columnIndexMap.get("token")))) {
+                ++this.skippedCount;
+                continue;
+            }
+            rows.add(row);
+        }
+
+        return RowMaterializer.materialize(rows, this.columnIndexMap, true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+        logger.info("Read {} records from {}, skipping {}", this.recordCount, this.path, this.skippedCount);
+    }
+
+    /**
+     * Match each column of the CSV header to a field
+     * @throws IOException
+     */
+    private void readCsvHeader() throws IOException {
+        List<String> header = readCsvRecord();
+        if (header == null) {
+            this.csvColumnIndexes = new int[0];
+            return;
+        }
+
+        if (!header.isEmpty() && !header.get(0).isEmpty() && header.get(0).charAt(0) == BYTE_ORDER_MARK) {
+            header.set(0, header.get(0).substring(1));
+        }
+
+        this.csvColumnIndexes = new int[header.size()];
+        for (int i = 0; i < header.size(); i++) {
+            Integer index = this.normalizedFieldIndexes.get(StringUtils.normalizeName(header.get(i)));
+            if (index == null) {
+                logger.error("Ignoring column {} of {} since no field matches it", header.get(i), this.path);
+            }
+            this.csvColumnIndexes[i] = index != null ? index : -1;
+        }
+    }
+
+    /**
+     * Read the next CSV record into a row in field order
+     * @return the row, or null at the end of the file
+     * @throws IOException
+     */
+    private List<Object> readCsvRow() throws IOException {
+        List<String> record;
+        do {
+            record = readCsvRecord();
+            if (record == null) {
+                return null;
+            }
+        } while (record.size() == 1 && record.get(0).isEmpty());
+
+        List<Object> row = emptyRow();
+        for (int i = 0; i < record.size() && i < this.csvColumnIndexes.length; i++) {
+            if (this.csvColumnIndexes[i] >= 0) {
+                row.set(this.csvColumnIndexes[i], record.get(i));
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Read the values of the next CSV record. Quoted values may contain separators, escaped quotes and line breaks.
+     * @return the values, or null at the end of the file
+     * @throws IOException
+     */
+    private List<String> readCsvRecord() throws IOException {
+        int c = this.reader.read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    logger.error("Unterminated quoted value in {}", this.path);
+                    values.add(value.toString());
+                    return values;
+                }
+                if (c == '"') {
+                    c = this.reader.read();
+                    if (c != '"') {
+                        // Closing quote, the next character is handled outside of the quotes
+                        quoted = false;
+                        continue;
+                    }
+                }
+                value.append((char) c);
+            }
+            else if (c == '"' && value.length() == 0) {
+                quoted = true;
+            }
+            else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            }
+            else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    this.reader.mark(1);
+                    if (this.reader.read() != '\n') {
+                        this.reader.reset();
+                    }
+                }
+                values.add(value.toString());
+                return values;
+            }
+            else {
+                value.append((char) c);
+            }
+            c = this.reader.read();
+        }
+    }
+
+    /**
+     * Read the next JSON object into a row in field order, skipping blank and invalid lines
+     * @return the row, or null at the end of the file
+     * @throws IOException
+     */
+    private List<Object> readJsonRow() throws IOException {
+        String line;
+        while ((line = this.reader.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+
+            GenericJson record;
+            try {
+                record = JSON_FACTORY.fromString(line, GenericJson.class);
+            } catch (IOException | IllegalArgumentException ex) {
+                logger.error("Unable to parse record {} of {}", this.recordCount + 1, this.path);
+                ++this.recordCount;
+                ++this.skippedCount;
+                continue;
+            }
+
+            List<Object> row = emptyRow();
+            for (Map.Entry<String, Object> kv : record.entrySet()) {
+                Integer index = this.normalizedFieldIndexes.get(StringUtils.normalizeName(kv.getKey()));
+                if (index == null) {
+                    if (this.unknownKeys.add(kv.getKey())) {
+                        logger.error("Ignoring key {} of {} since no field matches it", kv.getKey(), this.path);
+                    }
+                    continue;
+                }
+                row.set(index, kv.getValue() == null || Data.isNull(kv.getValue())
+                        ? StringUtils.EMPTY_STRING : kv.getValue().toString());
+            }
+            return row;
+        }
+        return null;
+    }
+
+    /**
+     * Row with an empty value for every field
+     * @return
+     */
+    private List<Object> emptyRow() {
+        return new ArrayList<>(Collections.nCopies(this.columnIndexMap.size(), StringUtils.EMPTY_STRING));
+    }
+}
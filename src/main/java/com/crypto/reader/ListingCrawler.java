@@ -0,0 +1,82 @@
+package com.crypto.reader;
+
+import com.crypto.enums.SourceType;
+import com.crypto.util.StringUtils;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds ICO project pages from the ICO Drops listing pages
+ */
+public class ListingCrawler {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ListingCrawler.class);
+
+    /**
+     * Listing pages for active, upcoming and ended ICOs
+     */
+    private final List<String> LISTING_URLS = Arrays.asList(
+            "https://icodrops.com/category/active-ico/",
+            "https://icodrops.com/category/upcoming-ico/",
+            "https://icodrops.com/category/ended-ico/");
+
+    /**
+     * Link to the project page for each ICO on a listing page
+     */
+    private final String PROJECT_LINK_SELECTOR = ".a_ico .ico-main-info h3 a[href]";
+
+    /**
+     * Fetcher the listing pages are retrieved with
+     */
+    private ConcurrentFetcher fetcher;
+
+    /**
+     * Reader for the ICO Drops source
+     */
+    private Reader reader;
+
+    public ListingCrawler(ConcurrentFetcher fetcher) {
+        this.fetcher = fetcher;
+        this.reader = new Reader(SourceType.ICODrop);
+    }
+
+    /**
+     * Retrieve all the listing pages concurrently and collect each project on them
+     * @return map of project URL to project name, without duplicates
+     */
+    public Map<String, String> crawl() {
+        Map<String, Document> listings = this.fetcher.fetchDocuments(this.reader, LISTING_URLS);
+
+        Map<String, String> projects = new LinkedHashMap<>();
+        Set<String> seenUrls = new HashSet<>();
+        for (Map.Entry<String, Document> listing : listings.entrySet()) {
+            int projectCount = 0;
+
+            for (Element link : listing.getValue().select(PROJECT_LINK_SELECTOR)) {
+                String url = link.absUrl("href");
+                if (url.isEmpty() || !seenUrls.add(StringUtils.normalizeUrl(url))) {
+                    continue;
+                }
+
+                projects.put(url, link.text());
+                ++projectCount;
+            }
+            logger.info("Found {} projects on {}", projectCount, listing.getKey());
+        }
+
+        SlugIndex.getInstance(SourceType.ICODrop).recordAll(projects);
+        return projects;
+    }
+}
@@ -1,9 +1,18 @@
 package com.crypto.reader;
 
 import com.crypto.entity.Entry;
+import com.crypto.entity.EntryExtractor;
 import com.crypto.enums.SourceType;
+import com.crypto.exception.DeadlineExceededException;
 import com.crypto.exception.PageRetrievalException;
+import com.crypto.trace.PageRequestEvent;
+import com.crypto.trace.ParseEvent;
+import com.crypto.trace.SlugProbeEvent;
+import com.crypto.util.Deadline;
+import com.crypto.util.SingleFlight;
 import com.crypto.util.StringUtils;
+import com.google.common.base.Strings;
+import org.jsoup.Connection;
 import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -11,6 +20,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class Reader {
 
@@ -19,16 +32,41 @@ public class Reader {
      */
     private static final Logger logger = LoggerFactory.getLogger(Reader.class);
 
+    /**
+     * Page requests in flight, shared by every reader and keyed by normalized URL
+     */
+    private static final SingleFlight<String, Document> PAGE_FLIGHTS = new SingleFlight<>();
+
+    /**
+     * Name resolutions in flight, shared by every reader and keyed by source and normalized name
+     */
+    private static final SingleFlight<String, Document> NAME_FLIGHTS = new SingleFlight<>();
+
+    /**
+     * Entries being created, shared by every reader and keyed by source, page or name, and field projection
+     */
+    private static final SingleFlight<String, Entry> ENTRY_FLIGHTS = new SingleFlight<>();
+
     /**
      * Dash character used for different combinations of coin URL
      */
     private final String DASH_CHARACTER = "-";
 
+    /**
+     * Status codes a host responds with when it is overloaded
+     */
+    private static final Set<Integer> OVERLOAD_STATUS_CODES = Set.of(429, 503);
+
     /**
      * User agent for web requests
      */
     private final String USER_AGENT = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_13_2) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/63.0.3239.132 Safari/537.36";
 
+    /**
+     * Default connect and read timeout for a single request
+     */
+    private final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 10000;
+
     /**
      * Source type to extract data from
      */
@@ -39,16 +77,38 @@ public class Reader {
      */
     private String BASE_URL;
 
+    /**
+     * Known project slugs for the source, checked before probing URLs
+     */
+    private SlugIndex slugIndex;
+
+    /**
+     * Limits the requests in flight to the source's host
+     */
+    private AdaptiveLimiter limiter;
+
+    /**
+     * Connect and read timeout for a single request
+     */
+    private int requestTimeoutMillis;
+
+    /**
+     * Fields extracted from pages, null for every field
+     */
+    private Set<String> fieldProjection;
+
+    /**
+     * Field projection in a form usable as part of a key, so entries with different fields aren't shared
+     */
+    private String fieldProjectionKey;
 
     public Reader(SourceType sourceType) {
         this.sourceType = sourceType;
-
-        if (sourceType == SourceType.ICOBench) {
-            this.BASE_URL = "https://icobench.com/ico/";
-        }
-        else if (sourceType == SourceType.ICODrop) {
-            this.BASE_URL = "https://icodrops.com/";
-        }
+        this.BASE_URL = sourceType.getBaseUrl();
+        this.slugIndex = SlugIndex.getInstance(sourceType);
+        this.limiter = AdaptiveLimiter.getInstance(sourceType);
+        this.requestTimeoutMillis = DEFAULT_REQUEST_TIMEOUT_MILLIS;
+        this.fieldProjectionKey = "*";
     }
 
     /**
@@ -57,50 +117,314 @@ public class Reader {
      * @return
      */
     public Entry extractDetails(String url) {
-        try {
-            Document document = Jsoup.connect(url).userAgent(this.USER_AGENT).get();
+        return extractDetails(url, Deadline.NONE);
+    }
 
-            if (document != null) {
+    /**
+     * Extract details from the page given the URL, giving up once the deadline passes.
+     * Concurrent calls for the same page share one request and parse, each receiving its own copy of the entry.
+     * @param url
+     * @param deadline
+     * @return
+     */
+    public Entry extractDetails(String url, Deadline deadline) {
+        try {
+            String key = this.sourceType + "|url|" + StringUtils.normalizeUrl(url) + "|" + this.fieldProjectionKey;
+            Entry entry = ENTRY_FLIGHTS.execute(key, deadline, () -> {
+                Document document = fetchDocument(url, deadline);
                 logger.info("Creating row entity from {}", url);
-                Entry entry = new Entry(this.sourceType, document);
+                return parseDocument(document, null);
+            });
 
-                return entry;
-            }
+            return entry == null ? null : new Entry(entry);
         } catch (IOException ex) {
             logger.error("Unable to retrieve page at {}", url);
         }
         return null;
     }
 
+    /**
+     * Retrieve and parse the page at the URL
+     * @param url
+     * @return
+     * @throws IOException
+     */
+    public Document fetchDocument(String url) throws IOException {
+        return fetchDocument(url, Deadline.NONE);
+    }
+
+    /**
+     * Retrieve and parse the page at the URL, with the timeout shortened to the time left before the deadline.
+     * Concurrent requests for the same page share one request.
+     * @param url
+     * @param deadline
+     * @return
+     * @throws IOException
+     */
+    public Document fetchDocument(String url, Deadline deadline) throws IOException {
+        return requestDocument(url, null, false, deadline);
+    }
+
+    /**
+     * Retrieve and parse the page of a coin, with the timeout shortened to the time left before the deadline
+     * @param url
+     * @param icoName
+     * @param deadline
+     * @return
+     * @throws IOException
+     */
+    public Document fetchDocument(String url, String icoName, Deadline deadline) throws IOException {
+        return requestDocument(url, icoName, false, deadline);
+    }
+
+    /**
+     * URL of the page the name was resolved to before, without making any requests
+     * @param icoName
+     * @return the URL, or null if the name hasn't been resolved before
+     */
+    public String knownUrl(String icoName) {
+        String knownSlug = this.slugIndex.lookup(icoName);
+        return knownSlug == null ? null : this.BASE_URL + knownSlug + "/";
+    }
+
+    /**
+     * Retrieve and parse the page, recording the request for the flight recorder
+     * @param url
+     * @param icoName coin the page is requested for, null if unknown
+     * @param probe whether the URL is a guess made while probing for the slug
+     * @param deadline
+     * @return
+     * @throws IOException
+     */
+    private Document requestDocument(String url, String icoName, boolean probe, Deadline deadline) throws IOException {
+        if (deadline.isExpired()) {
+            throw new DeadlineExceededException("Deadline passed before retrieving " + url);
+        }
+
+        return PAGE_FLIGHTS.execute(StringUtils.normalizeUrl(url), deadline, () -> {
+            PageRequestEvent event = new PageRequestEvent();
+            event.begin();
+            try {
+                Connection.Response response = execute(url, deadline);
+                event.status = response.statusCode();
+                event.bytes = response.bodyAsBytes().length;
+                return response.parse();
+            } catch (HttpStatusException ex) {
+                event.status = ex.getStatusCode();
+                throw ex;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.token = Strings.nullToEmpty(icoName);
+                    event.source = this.sourceType.name();
+                    event.url = url;
+                    event.probe = probe;
+                    event.commit();
+                }
+            }
+        });
+    }
+
+    /**
+     * Send the request once the source's limiter allows it, and adjust the limit by how the request went.
+     * Rejections for load and timeouts cut the limit, other failures such as a missing page leave it as it is.
+     * A request timing out early because the deadline was nearer than the request timeout doesn't cut the limit.
+     * @param url
+     * @param deadline
+     * @return
+     * @throws IOException
+     */
+    private Connection.Response execute(String url, Deadline deadline) throws IOException {
+        this.limiter.acquire(deadline);
+        int timeoutMillis = (int) Math.min(this.requestTimeoutMillis, Math.max(1, deadline.remainingMillis()));
+
+        long startTime = System.nanoTime();
+        Connection.Response response;
+        try {
+            response = Jsoup.connect(url).userAgent(this.USER_AGENT).timeout(timeoutMillis).execute();
+        } catch (HttpStatusException ex) {
+            if (OVERLOAD_STATUS_CODES.contains(ex.getStatusCode())) {
+                this.limiter.releaseOverloaded();
+            }
+            else {
+                this.limiter.releaseIgnored();
+            }
+            throw ex;
+        } catch (SocketTimeoutException ex) {
+            // A timeout cut short by the coin's deadline says nothing about the host
+            if (timeoutMillis >= this.requestTimeoutMillis) {
+                this.limiter.releaseOverloaded();
+            }
+            else {
+                this.limiter.releaseIgnored();
+            }
+            throw ex;
+        } catch (IOException | RuntimeException ex) {
+            this.limiter.releaseIgnored();
+            throw ex;
+        }
+
+        this.limiter.release(System.nanoTime() - startTime);
+        return response;
+    }
+
     /**
      * Attempt to infer the details from a page calculated through the name
      * @param icoName
      * @return
      */
     public Entry inferDetails(String icoName) {
-        Document document = retrieveJsoupDocument(icoName);
+        return inferDetails(icoName, Deadline.NONE);
+    }
+
+    /**
+     * Attempt to infer the details from a page calculated through the name, giving up once the deadline passes
+     * @param icoName
+     * @param deadline
+     * @return
+     */
+    public Entry inferDetails(String icoName, Deadline deadline) {
+        try {
+            String key = this.sourceType + "|name|" + StringUtils.normalizeName(icoName) + "|" + this.fieldProjectionKey;
+            Entry entry = ENTRY_FLIGHTS.execute(key, deadline, () -> {
+                Document document = retrieveJsoupDocument(icoName, deadline);
 
-        if (document != null) {
-            logger.info("Creating row entity for {}", icoName);
-            Entry entry = new Entry(this.sourceType, document);
+                if (document != null) {
+                    logger.info("Creating row entity for {}", icoName);
+                    return parseDocument(document, icoName);
+                }
+                if (deadline.isExpired()) {
+                    throw new DeadlineExceededException("Deadline passed resolving " + icoName);
+                }
+                return null;
+            });
 
-            return entry;
+            return entry == null ? null : new Entry(entry);
+        } catch (IOException ex) {
+            logger.error("Timed out waiting for details of {}", icoName);
         }
-
         return null;
     }
 
+    /**
+     * Create an entry from a retrieved page, remembering the names it was found under
+     * @param document
+     * @param icoName name the page was resolved from, null if the URL was already known
+     * @return
+     */
+    public Entry parseDocument(Document document, String icoName) {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+
+        Entry entry = new Entry(this.sourceType, document, this.fieldProjection);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.token = Strings.nullToEmpty(icoName == null ? entry.getToken() : icoName);
+            event.source = this.sourceType.name();
+            event.url = document.location();
+            event.commit();
+        }
+
+        if (icoName != null) {
+            this.slugIndex.record(icoName, document.location());
+        }
+        this.slugIndex.record(entry.getToken(), document.location());
+
+        return entry;
+    }
+
     /**
      * To handle coins that have spaces or camelcase in the name,
-     * try different combinations to find valid URL
+     * try different combinations to find valid URL until the deadline passes.
+     * Concurrent lookups of names that only differ in case or spacing share one set of probes.
      * @param icoName
-     * @return
+     * @param deadline
+     * @return the page, or null if no combination is valid
+     */
+    public Document retrieveJsoupDocument(String icoName, Deadline deadline) {
+        String normalizedName = StringUtils.normalizeName(icoName);
+        if (normalizedName.isEmpty()) {
+            return probeJsoupDocument(icoName, deadline);
+        }
+
+        try {
+            return NAME_FLIGHTS.execute(this.sourceType + "|" + normalizedName, deadline, () -> {
+                Document document = probeJsoupDocument(icoName, deadline);
+
+                // Fail rather than share a page not found, so callers with time left probe again
+                if (document == null && deadline.isExpired()) {
+                    throw new DeadlineExceededException("Deadline passed resolving " + icoName);
+                }
+                return document;
+            });
+        } catch (IOException ex) {
+            logger.error("Timed out waiting for {} to be resolved", icoName);
+        }
+        return null;
+    }
+
+    /**
+     * Probe for the page of the name, recording the attempts for the flight recorder
+     * @param icoName
+     * @param deadline
+     * @return the page, or null if no combination is valid
+     */
+    private Document probeJsoupDocument(String icoName, Deadline deadline) {
+        SlugProbeEvent event = new SlugProbeEvent();
+        event.begin();
+
+        Document doc = null;
+        try {
+            doc = probeSlugs(icoName, deadline, event);
+            return doc;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.token = Strings.nullToEmpty(icoName);
+                event.source = this.sourceType.name();
+                event.resolvedUrl = doc == null ? StringUtils.EMPTY_STRING : doc.location();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Look up the known slug, then try the name and each dashed combination of it, counting the attempts on the event
+     * @param icoName
+     * @param deadline
+     * @param event
+     * @return the page, or null if no combination is valid
      */
-    private Document retrieveJsoupDocument(String icoName) {
+    private Document probeSlugs(String icoName, Deadline deadline, SlugProbeEvent event) {
         String requestUrl = StringUtils.EMPTY_STRING;
         String sanitizedIcoName = StringUtils.EMPTY_STRING;
         Document doc = null;
 
+        // Use the known slug if the name has been resolved before, or the slug of a similar name if its page is
+        // the same project
+        String knownSlug = this.slugIndex.lookup(icoName);
+        boolean exactMatch = knownSlug != null;
+        if (!exactMatch) {
+            knownSlug = this.slugIndex.lookupSimilar(icoName);
+        }
+        if (knownSlug != null) {
+            requestUrl = this.BASE_URL + knownSlug + "/";
+            try {
+                ++event.attempts;
+                Document knownDoc = requestDocument(requestUrl, icoName, false, deadline);
+                if (exactMatch || isPageOf(knownDoc, icoName)) {
+                    return knownDoc;
+                }
+                logger.info("Page {} of a similar name is not {}, probing for URL", requestUrl, icoName);
+            } catch (DeadlineExceededException ex) {
+                logger.error("Timed out resolving {}", icoName);
+                return null;
+            } catch (IOException ex) {
+                logger.info("Known slug for {} is no longer valid, probing for URL", icoName);
+            }
+        }
+
         // If it doesn't, try to find the name
         sanitizedIcoName = StringUtils.sanitizeAlphanumericStringValue(icoName);
         requestUrl = this.BASE_URL + sanitizedIcoName + "/";
@@ -108,7 +432,8 @@ public class Reader {
         // Try the base ico name itself
         try {
             try {
-                doc = Jsoup.connect(requestUrl).userAgent(this.USER_AGENT).get();
+                ++event.attempts;
+                doc = requestDocument(requestUrl, icoName, true, deadline);
             }
             catch (IOException ex) {
                 // Try a dash in between each character in the name
@@ -116,7 +441,8 @@ public class Reader {
                     String modifiedIcoName = sanitizedIcoName.substring(0, i) + this.DASH_CHARACTER + sanitizedIcoName.substring(i, sanitizedIcoName.length());
                     requestUrl = this.BASE_URL + modifiedIcoName;
                     try {
-                        doc = Jsoup.connect(requestUrl).userAgent(this.USER_AGENT).get();
+                        ++event.attempts;
+                        doc = requestDocument(requestUrl, icoName, true, deadline);
                         break;
                     } catch (HttpStatusException hex) {
                         continue;
@@ -124,6 +450,9 @@ public class Reader {
                 }
             }
         }
+        catch (DeadlineExceededException ex) {
+            logger.error("Timed out resolving {} after probing {}", icoName, requestUrl);
+        }
         catch (IOException ex) {
             logger.error("IOException when retrieving details at", requestUrl);
         }
@@ -134,4 +463,45 @@ public class Reader {
             return doc;
         }
     }
+
+    /**
+     * Whether the project on the page has the name, ignoring case and spacing
+     * @param document
+     * @param icoName
+     * @return
+     */
+    private boolean isPageOf(Document document, String icoName) {
+        String pageName = EntryExtractor.extract(this.sourceType, document, Collections.emptySet()).get("token");
+        return !Strings.isNullOrEmpty(pageName)
+                && StringUtils.normalizeName(pageName).equals(StringUtils.normalizeName(icoName));
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public SourceType getSourceType() {
+        return sourceType;
+    }
+
+    public int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public void setRequestTimeoutMillis(int requestTimeoutMillis) {
+        // Jsoup takes a timeout of zero as no timeout at all
+        if (requestTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Request timeout must be positive, got " + requestTimeoutMillis);
+        }
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    public Set<String> getFieldProjection() {
+        return fieldProjection;
+    }
+
+    public void setFieldProjection(Set<String> fieldProjection) {
+        this.fieldProjection = fieldProjection;
+        this.fieldProjectionKey = fieldProjection == null ? "*" : String.join(",", new TreeSet<>(fieldProjection));
+    }
 }
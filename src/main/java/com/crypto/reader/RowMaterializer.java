@@ -0,0 +1,81 @@
+package com.crypto.reader;
+
+import com.crypto.entity.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Turns spreadsheet rows into entries on a fork/join pool, splitting the rows in halves until each part is small,
+ * then joining the parts back in row order
+ */
+class RowMaterializer extends RecursiveTask<List<Entry>> {
+
+    /**
+     * Number of rows below which a part is materialized on the current thread
+     */
+    private static final int SPLIT_THRESHOLD = 256;
+
+    /**
+     * Rows to materialize
+     */
+    private List<List<Object>> rows;
+
+    /**
+     * Map of column name to its index in a row
+     */
+    private Map<String, Integer> columnIndexMap;
+
+    /**
+     * Index of the first row of this part
+     */
+    private int start;
+
+    /**
+     * Index after the last row of this part
+     */
+    private int end;
+
+    private RowMaterializer(List<List<Object>> rows, Map<String, Integer> columnIndexMap, int start, int end) {
+        this.rows = rows;
+        this.columnIndexMap = columnIndexMap;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Create an entry from each row
+     * @param rows
+     * @param columnIndexMap
+     * @param parallel whether to split the rows across the common fork/join pool
+     * @return the entries, in row order
+     */
+    static List<Entry> materialize(List<List<Object>> rows, Map<String, Integer> columnIndexMap, boolean parallel) {
+        RowMaterializer task = new RowMaterializer(rows, columnIndexMap, 0, rows.size());
+        return parallel && rows.size() > SPLIT_THRESHOLD ? ForkJoinPool.commonPool().invoke(task) : task.compute();
+    }
+
+    @Override
+    protected List<Entry> compute() {
+        if (this.end - this.start <= SPLIT_THRESHOLD) {
+            List<Entry> entries = new ArrayList<>(this.end - this.start);
+            for (int i = this.start; i < this.end; i++) {
+                entries.add(new Entry(this.rows.get(i), this.columnIndexMap));
+            }
+            return entries;
+        }
+
+        int middle = (this.start + this.end) >>> 1;
+        RowMaterializer left = new RowMaterializer(this.rows, this.columnIndexMap, this.start, middle);
+        RowMaterializer right = new RowMaterializer(this.rows, this.columnIndexMap, middle, this.end);
+        left.fork();
+
+        List<Entry> rightEntries = right.compute();
+        List<Entry> entries = left.join();
+        entries.addAll(rightEntries);
+        return entries;
+    }
+}
@@ -0,0 +1,115 @@
+package com.crypto.reader;
+
+import com.crypto.entity.Entry;
+import com.crypto.shard.ShardRouter;
+import com.crypto.shard.SheetShard;
+import com.google.api.services.sheets.v4.Sheets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads every configured sheet in parallel, each with its own column index map
+ */
+public class ShardedSpreadsheetReader {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ShardedSpreadsheetReader.class);
+
+    /**
+     * Reader for each sheet
+     */
+    private Map<SheetShard, SpreadsheetReader> readers;
+
+    /**
+     * Entries read from each sheet
+     */
+    private Map<SheetShard, Map<String, Entry>> shardEntries;
+
+    /**
+     * Read only the identity and scraped columns, completing rows when they're rewritten
+     */
+    private boolean partialRead;
+
+    public ShardedSpreadsheetReader(Sheets googleSheetsService, ShardRouter router) {
+        this(googleSheetsService, router, false);
+    }
+
+    public ShardedSpreadsheetReader(Sheets googleSheetsService, ShardRouter router, boolean partialRead) {
+        this.partialRead = partialRead;
+        this.readers = new LinkedHashMap<>();
+        for (SheetShard shard : router.getShards()) {
+            this.readers.put(shard, new SpreadsheetReader(googleSheetsService, shard));
+        }
+        this.shardEntries = new LinkedHashMap<>();
+    }
+
+    /**
+     * Extract the entries from every sheet in parallel
+     * @return entries from all the sheets, in shard order
+     */
+    public Map<String, Entry> extractEntries() {
+        this.shardEntries.clear();
+
+        if (this.readers.size() == 1) {
+            for (Map.Entry<SheetShard, SpreadsheetReader> kv : this.readers.entrySet()) {
+                this.shardEntries.put(kv.getKey(), extractEntries(kv.getValue()));
+            }
+        }
+        else {
+            ExecutorService executor = Executors.newFixedThreadPool(this.readers.size());
+            try {
+                Map<SheetShard, CompletableFuture<Map<String, Entry>>> futures = new LinkedHashMap<>();
+                for (Map.Entry<SheetShard, SpreadsheetReader> kv : this.readers.entrySet()) {
+                    SpreadsheetReader reader = kv.getValue();
+                    futures.put(kv.getKey(), CompletableFuture.supplyAsync(() -> extractEntries(reader), executor));
+                }
+                for (Map.Entry<SheetShard, CompletableFuture<Map<String, Entry>>> kv : futures.entrySet()) {
+                    this.shardEntries.put(kv.getKey(), kv.getValue().join());
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (Map.Entry<SheetShard, Map<String, Entry>> kv : this.shardEntries.entrySet()) {
+            entries.putAll(kv.getValue());
+            logger.info("Read {} entries from {}", kv.getValue().size(), kv.getKey());
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Extract the entries from a single sheet in the configured mode
+     * @param reader
+     * @return
+     */
+    private Map<String, Entry> extractEntries(SpreadsheetReader reader) {
+        return this.partialRead ? reader.extractPartialEntries() : reader.extractEntries();
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public Map<SheetShard, Map<String, Entry>> getShardEntries() {
+        return Collections.unmodifiableMap(shardEntries);
+    }
+
+    public Map<String, Integer> getColumnIndexMap(SheetShard shard) {
+        return this.readers.get(shard).getColumnIndexMap();
+    }
+
+    public SpreadsheetReader getReader(SheetShard shard) {
+        return this.readers.get(shard);
+    }
+}
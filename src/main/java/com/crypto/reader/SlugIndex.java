@@ -0,0 +1,309 @@
+package com.crypto.reader;
+
+import com.crypto.enums.SourceType;
+import com.crypto.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Local index of project slugs for a source, keyed by normalized project name.
+ * Names are resolved with an exact match on the normalized name first, then by trigram similarity
+ * so small differences in spelling still resolve without probing. A similar name can belong to a different project,
+ * so the page a similar name leads to has to be checked before it is used.
+ * Processes sharing the directory save under a file lock, merging in what the others saved since.
+ */
+public class SlugIndex {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SlugIndex.class);
+
+    /**
+     * Directory the indexes are persisted to
+     */
+    private static final Path INDEX_DIR = Paths.get(System.getProperty("user.dir"), ".slug-index");
+
+    /**
+     * Minimum trigram similarity for a fuzzy match
+     */
+    private static final double MIN_SIMILARITY = 0.6;
+
+    /**
+     * Length of the character sequences compared for a fuzzy match
+     */
+    private static final int NGRAM_SIZE = 3;
+
+    /**
+     * Marks the start and end of a name so short names still produce trigrams
+     */
+    private static final String BOUNDARY = "$";
+
+    /**
+     * Index for each source, loaded on first use
+     */
+    private static final Map<SourceType, SlugIndex> indexes = new EnumMap<>(SourceType.class);
+
+    /**
+     * Source the slugs belong to
+     */
+    private SourceType sourceType;
+
+    /**
+     * File the index is persisted to
+     */
+    private Path indexFile;
+
+    /**
+     * File locked while the index is saved
+     */
+    private Path lockFile;
+
+    /**
+     * Map of normalized name to slug
+     */
+    private Map<String, String> slugs;
+
+    /**
+     * Map of trigram to the normalized names containing it
+     */
+    private Map<String, Set<String>> trigramIndex;
+
+    private SlugIndex(SourceType sourceType) {
+        this.sourceType = sourceType;
+        this.indexFile = INDEX_DIR.resolve(sourceType.name() + ".properties");
+        this.lockFile = INDEX_DIR.resolve(sourceType.name() + ".lock");
+        this.slugs = new HashMap<>();
+        this.trigramIndex = new HashMap<>();
+
+        load();
+    }
+
+    /**
+     * Retrieve the index for the source, loading it from disk the first time
+     * @param sourceType
+     * @return
+     */
+    public static synchronized SlugIndex getInstance(SourceType sourceType) {
+        return indexes.computeIfAbsent(sourceType, SlugIndex::new);
+    }
+
+    /**
+     * Find the slug recorded for a project name
+     * @param name
+     * @return the slug, or null if the name isn't known
+     */
+    public synchronized String lookup(String name) {
+        String normalizedName = StringUtils.normalizeName(name);
+        return normalizedName.isEmpty() ? null : this.slugs.get(normalizedName);
+    }
+
+    /**
+     * Find the slug of the known name most similar to a project name
+     * @param name
+     * @return the slug, or null if no known name is close enough
+     */
+    public synchronized String lookupSimilar(String name) {
+        String normalizedName = StringUtils.normalizeName(name);
+        if (normalizedName.isEmpty()) {
+            return null;
+        }
+
+        // Count the trigrams each known name shares with the requested name
+        Set<String> trigrams = trigrams(normalizedName);
+        Map<String, Integer> sharedCounts = new HashMap<>();
+        for (String trigram : trigrams) {
+            for (String candidate : this.trigramIndex.getOrDefault(trigram, new HashSet<>())) {
+                sharedCounts.merge(candidate, 1, Integer::sum);
+            }
+        }
+
+        String bestMatch = null;
+        double bestSimilarity = MIN_SIMILARITY;
+        for (Map.Entry<String, Integer> kv : sharedCounts.entrySet()) {
+            int candidateCount = trigrams(kv.getKey()).size();
+            double similarity = (double) kv.getValue() / (trigrams.size() + candidateCount - kv.getValue());
+
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                bestMatch = kv.getKey();
+            }
+        }
+
+        if (bestMatch != null) {
+            logger.info("Matched {} to known project {}", name, bestMatch);
+            return this.slugs.get(bestMatch);
+        }
+        return null;
+    }
+
+    /**
+     * Record the page a project name resolved to
+     * @param name
+     * @param url
+     */
+    public synchronized void record(String name, String url) {
+        if (add(name, url)) {
+            save();
+        }
+    }
+
+    /**
+     * Record many resolved pages at once, persisting the index a single time
+     * @param urlToName
+     */
+    public synchronized void recordAll(Map<String, String> urlToName) {
+        boolean changed = false;
+        for (Map.Entry<String, String> kv : urlToName.entrySet()) {
+            changed |= add(kv.getValue(), kv.getKey());
+        }
+
+        if (changed) {
+            save();
+        }
+    }
+
+    /**
+     * Add a name to the index if the URL is a project page of this source
+     * @param name
+     * @param url
+     * @return true if the index changed
+     */
+    private boolean add(String name, String url) {
+        if (name == null || url == null) {
+            return false;
+        }
+
+        String normalizedName = StringUtils.normalizeName(name);
+        String slug = extractSlug(url);
+        if (normalizedName.isEmpty() || slug == null || slug.equals(this.slugs.get(normalizedName))) {
+            return false;
+        }
+
+        put(normalizedName, slug);
+        return true;
+    }
+
+    /**
+     * Index a slug under its normalized name
+     * @param normalizedName
+     * @param slug
+     */
+    private void put(String normalizedName, String slug) {
+        this.slugs.put(normalizedName, slug);
+        for (String trigram : trigrams(normalizedName)) {
+            this.trigramIndex.computeIfAbsent(trigram, key -> new HashSet<>()).add(normalizedName);
+        }
+    }
+
+    /**
+     * Extract the slug from a project page URL of this source
+     * @param url
+     * @return the slug, or null if the URL isn't a project page of this source
+     */
+    private String extractSlug(String url) {
+        String normalizedBaseUrl = StringUtils.normalizeUrl(this.sourceType.getBaseUrl()) + "/";
+        String normalizedUrl = StringUtils.normalizeUrl(url);
+
+        if (!normalizedUrl.startsWith(normalizedBaseUrl)) {
+            return null;
+        }
+
+        String slug = normalizedUrl.substring(normalizedBaseUrl.length());
+        return slug.isEmpty() || slug.contains("/") ? null : slug;
+    }
+
+    /**
+     * Split a normalized name into its trigrams, including the name boundaries
+     * @param normalizedName
+     * @return
+     */
+    private static Set<String> trigrams(String normalizedName) {
+        String padded = BOUNDARY + normalizedName + BOUNDARY;
+
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + NGRAM_SIZE <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + NGRAM_SIZE));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Load the persisted index, if there is one
+     */
+    private void load() {
+        try {
+            Properties properties = readIndexFile();
+            for (String normalizedName : properties.stringPropertyNames()) {
+                put(normalizedName, properties.getProperty(normalizedName));
+            }
+        } catch (IOException ex) {
+            logger.error("Unable to load slug index from {}", this.indexFile);
+            return;
+        }
+        logger.info("Loaded {} known {} slugs", this.slugs.size(), this.sourceType);
+    }
+
+    /**
+     * Persist the index. Slugs other processes saved since this index was loaded are merged in first,
+     * keeping this index's slug where both have the name, and the file is replaced in one step.
+     */
+    private void save() {
+        try {
+            Files.createDirectories(INDEX_DIR);
+            try (FileChannel channel = FileChannel.open(this.lockFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                Properties saved = readIndexFile();
+                for (String normalizedName : saved.stringPropertyNames()) {
+                    if (!this.slugs.containsKey(normalizedName)) {
+                        put(normalizedName, saved.getProperty(normalizedName));
+                    }
+                }
+
+                Properties properties = new Properties();
+                properties.putAll(this.slugs);
+
+                Path tempFile = INDEX_DIR.resolve(this.indexFile.getFileName() + ".tmp");
+                try (OutputStream stream = Files.newOutputStream(tempFile)) {
+                    properties.store(stream, this.sourceType + " project slugs");
+                }
+                Files.move(tempFile, this.indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException ex) {
+            logger.error("Unable to save slug index to {}", this.indexFile);
+        }
+    }
+
+    /**
+     * Read the persisted index
+     * @return the saved slugs, empty if nothing was saved yet
+     * @throws IOException
+     */
+    private Properties readIndexFile() throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(this.indexFile)) {
+            try (InputStream stream = Files.newInputStream(this.indexFile)) {
+                properties.load(stream);
+            }
+        }
+        return properties;
+    }
+}
@@ -1,20 +1,25 @@
 package com.crypto.reader;
 
-import com.crypto.GoogleSheetsConstants;
 import com.crypto.entity.Entry;
+import com.crypto.shard.SheetShard;
 import com.crypto.util.StringUtils;
 import com.google.api.services.sheets.v4.Sheets;
 import com.google.api.services.sheets.v4.model.BatchGetValuesResponse;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import com.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -30,14 +35,52 @@ public class SpreadsheetReader {
      */
     private Sheets googleSheetsService;
 
+    /**
+     * Sheet to read from
+     */
+    private SheetShard shard;
+
+    /**
+     * Number of rows completed in a single request
+     */
+    private final int COMPLETE_BATCH_SIZE = 100;
+
     /**
      * Map of column names from spreadsheet
      */
     private Map<String, Integer> columnIndexMap;
 
+    /**
+     * Number of columns in the header row
+     */
+    private int headerColumnCount;
+
+    /**
+     * Map of token to the number of the row its entry was read from, the one source of row numbers for writing back
+     */
+    private Map<String, Integer> rowNumbers;
+
+    /**
+     * Tokens whose hand-filled columns haven't been read yet
+     */
+    private Set<String> partialTokens;
+
+    /**
+     * Whether rows are turned into entries in parallel
+     */
+    private boolean parallelMaterialization;
+
     public SpreadsheetReader(Sheets googleSheetsService) {
+        this(googleSheetsService, SheetShard.defaultShard());
+    }
+
+    public SpreadsheetReader(Sheets googleSheetsService, SheetShard shard) {
         this.googleSheetsService = googleSheetsService;
+        this.shard = shard;
         this.columnIndexMap = new HashMap<>();
+        this.rowNumbers = new HashMap<>();
+        this.partialTokens = new HashSet<>();
+        this.parallelMaterialization = true;
     }
 
     /**
@@ -45,24 +88,28 @@ public class SpreadsheetReader {
      */
     public Map<String, Entry> extractEntries() {
         Map<String, Entry> entries = new LinkedHashMap<>();
+        this.rowNumbers.clear();
+        this.partialTokens.clear();
 
         try {
             // Shorthand notation for retrieving all cells on a sheet
             List<String> ranges = new ArrayList<>();
-            ranges.add(GoogleSheetsConstants.SHEET_TITLE + "!1:65536");
+            ranges.add(this.shard.getSheetRange());
 
             // Extract each entry (row value) from the spreadsheet
             BatchGetValuesResponse response =
                     googleSheetsService.spreadsheets()
                             .values()
-                            .batchGet(GoogleSheetsConstants.SPREADSHEET_ID)
+                            .batchGet(this.shard.getSpreadsheetId())
                             .setRanges(ranges)
                             .execute();
 
-            if (response != null) {
+            // An empty sheet comes back without values
+            if (response != null && response.getValueRanges() != null) {
                 List<List<Object>> values =
                         response.getValueRanges()
                                 .stream()
+                                .filter(valueRange -> valueRange.getValues() != null)
                                 .flatMap(valueRange -> valueRange.getValues().stream())
                                 .collect(Collectors.toList());
 
@@ -81,17 +128,14 @@ public class SpreadsheetReader {
                 }
 
                 // Create a map of the column name to its index in case the spreadsheet order changes
-                boolean headerRow = true;
-                for (List<Object> entry : values) {
-                    if (headerRow) {
-                        this.columnIndexMap = generateColumnIndexMap(entry);
-                        headerRow = false;
-                        logger.info("Created map of column name to index");
-                    } else {
-                        Entry detailedIco = new Entry(entry, this.columnIndexMap);
-                        entries.put(detailedIco.getToken(), detailedIco);
-                    }
+                if (!values.isEmpty()) {
+                    this.columnIndexMap = generateColumnIndexMap(values.get(0));
+                    this.headerColumnCount = values.get(0).size();
+                    logger.info("Created map of column name to index");
 
+                    long startTime = System.nanoTime();
+                    collectEntries(materialize(values.subList(1, values.size())), entries);
+                    logMaterialized(values.size() - 1, entries.size(), startTime);
                 }
             }
         } catch (IOException ex) {
@@ -101,6 +145,215 @@ public class SpreadsheetReader {
         return Collections.unmodifiableMap(entries);
     }
 
+    /**
+     * Extract partial entries from the ICO spreadsheet, reading only the header row
+     * and the scraped columns, each column as its own range.
+     * That is enough to identify each coin and detect changes, while the free-text columns that are filled in by hand
+     * are left null until {@link #completeEntries(Collection)} is called for the rows being rewritten.
+     * @return
+     */
+    public Map<String, Entry> extractPartialEntries() {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        this.rowNumbers.clear();
+        this.partialTokens.clear();
+
+        try {
+            ValueRange header =
+                    googleSheetsService.spreadsheets()
+                            .values()
+                            .get(this.shard.getSpreadsheetId(), this.shard.getSheetRange() + "!1:1")
+                            .execute();
+
+            if (header == null || header.getValues() == null || header.getValues().isEmpty()) {
+                return Collections.unmodifiableMap(entries);
+            }
+            this.columnIndexMap = generateColumnIndexMap(header.getValues().get(0));
+            this.headerColumnCount = header.getValues().get(0).size();
+
+            // Request each scraped column from the row after the header to the end of the sheet
+            List<Integer> columnIndexes = new ArrayList<>();
+            List<String> ranges = new ArrayList<>();
+            for (Map.Entry<String, Integer> kv : this.columnIndexMap.entrySet()) {
+                String sanitizedColumnName = StringUtils.sanitizeAlphanumericStringValue(kv.getKey());
+                boolean scraped = Entry.SCRAPED_FIELDS.stream()
+                        .anyMatch(fieldName -> StringUtils.areStringsEqualIgnoreCase(fieldName, sanitizedColumnName));
+
+                if (scraped) {
+                    String columnLetter = columnLetter(kv.getValue());
+                    columnIndexes.add(kv.getValue());
+                    ranges.add(this.shard.getSheetRange() + "!" + columnLetter + "2:" + columnLetter);
+                }
+            }
+
+            BatchGetValuesResponse response =
+                    googleSheetsService.spreadsheets()
+                            .values()
+                            .batchGet(this.shard.getSpreadsheetId())
+                            .setRanges(ranges)
+                            .setMajorDimension("COLUMNS")
+                            .execute();
+            List<ValueRange> valueRanges = response == null || response.getValueRanges() == null
+                    ? Collections.emptyList()
+                    : response.getValueRanges();
+
+            List<List<Object>> columns = new ArrayList<>();
+            int rowCount = 0;
+            for (ValueRange valueRange : valueRanges) {
+                List<Object> column = valueRange.getValues() == null || valueRange.getValues().isEmpty()
+                        ? Collections.emptyList()
+                        : valueRange.getValues().get(0);
+                columns.add(column);
+                rowCount = Math.max(rowCount, column.size());
+            }
+
+            // Assemble the columns into rows, leaving the columns that weren't read as null
+            List<List<Object>> rows = new ArrayList<>(rowCount);
+            for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+                List<Object> row = new ArrayList<>(Collections.nCopies(this.headerColumnCount, null));
+                for (int i = 0; i < columnIndexes.size(); i++) {
+                    List<Object> column = columns.get(i);
+                    row.set(columnIndexes.get(i), rowIndex < column.size() ? column.get(rowIndex) : StringUtils.EMPTY_STRING);
+                }
+                rows.add(row);
+            }
+
+            long startTime = System.nanoTime();
+            collectEntries(materialize(rows), entries);
+            this.partialTokens.addAll(entries.keySet());
+            logMaterialized(rowCount, entries.size(), startTime);
+            logger.info("Read {} of {} columns for {} rows from {}", columnIndexes.size(), this.headerColumnCount, rowCount, this.shard);
+        } catch (IOException ex) {
+            logger.error("Error in reading columns from {}", this.shard);
+        }
+
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Read the whole row of each partially read entry, in batches of ranges
+     * @param tokens
+     * @return map of token to its complete entry, leaving out rows that couldn't be read
+     */
+    public synchronized Map<String, Entry> completeEntries(Collection<String> tokens) {
+        Map<String, Entry> completedEntries = new LinkedHashMap<>();
+        List<String> pendingTokens = tokens.stream()
+                .filter(this.partialTokens::contains)
+                .distinct()
+                .collect(Collectors.toList());
+
+        for (int batchStart = 0; batchStart < pendingTokens.size(); batchStart += COMPLETE_BATCH_SIZE) {
+            List<String> batch = pendingTokens.subList(batchStart, Math.min(batchStart + COMPLETE_BATCH_SIZE, pendingTokens.size()));
+
+            List<String> ranges = new ArrayList<>();
+            for (String token : batch) {
+                int rowNumber = this.rowNumbers.get(token);
+                ranges.add(this.shard.getSheetRange() + "!" + rowNumber + ":" + rowNumber);
+            }
+
+            try {
+                BatchGetValuesResponse response =
+                        googleSheetsService.spreadsheets()
+                                .values()
+                                .batchGet(this.shard.getSpreadsheetId())
+                                .setRanges(ranges)
+                                .execute();
+
+                List<ValueRange> valueRanges = response.getValueRanges();
+                for (int i = 0; i < batch.size(); i++) {
+                    List<List<Object>> values = valueRanges.get(i).getValues();
+                    List<Object> row = values == null || values.isEmpty() ? new ArrayList<>() : new ArrayList<>(values.get(0));
+
+                    // Force the row to match the number of columns in the header
+                    while (row.size() < this.headerColumnCount) {
+                        row.add(StringUtils.EMPTY_STRING);
+                    }
+
+                    // Rows inserted or deleted since the sheet was read move the token to another row
+                    Entry completedEntry = new Entry(row, this.columnIndexMap);
+                    if (!batch.get(i).equals(completedEntry.getToken())) {
+                        logger.error("Row {} of {} holds {} instead of {}", this.rowNumbers.get(batch.get(i)), this.shard,
+                                completedEntry.getToken(), batch.get(i));
+                        continue;
+                    }
+
+                    completedEntries.put(batch.get(i), completedEntry);
+                    this.partialTokens.remove(batch.get(i));
+                }
+            } catch (IOException ex) {
+                logger.error("Error in reading {} rows from {}", batch.size(), this.shard);
+            }
+        }
+
+        return completedEntries;
+    }
+
+    /**
+     * Key each entry by its token, numbering the row it was read from.
+     * Rows without a token can't be matched to a coin and are left out, and a repeated token keeps its last row.
+     * @param rowEntries entries in row order, starting with the row after the header
+     * @param entries
+     */
+    private void collectEntries(List<Entry> rowEntries, Map<String, Entry> entries) {
+        int skippedRowCount = 0;
+        for (int rowIndex = 0; rowIndex < rowEntries.size(); rowIndex++) {
+            Entry entry = rowEntries.get(rowIndex);
+            if (Strings.isNullOrEmpty(entry.getToken())) {
+                skippedRowCount++;
+                continue;
+            }
+
+            // Rows start after the header row
+            entries.put(entry.getToken(), entry);
+            this.rowNumbers.put(entry.getToken(), rowIndex + 2);
+        }
+
+        if (skippedRowCount > 0) {
+            logger.info("Skipped {} rows without a token on {}", skippedRowCount, this.shard);
+        }
+    }
+
+    /**
+     * Returns true if the token's hand-filled columns haven't been read yet
+     * @param token
+     * @return
+     */
+    public synchronized boolean isPartial(String token) {
+        return this.partialTokens.contains(token);
+    }
+
+    /**
+     * Turn rows into entries, in parallel if enabled, keeping the row order so a repeated token keeps the last row
+     * @param rows
+     * @return
+     */
+    private List<Entry> materialize(List<List<Object>> rows) {
+        return RowMaterializer.materialize(rows, this.columnIndexMap, this.parallelMaterialization);
+    }
+
+    /**
+     * Log how long turning the rows into entries took
+     * @param rowCount
+     * @param entryCount
+     * @param startTime
+     */
+    private void logMaterialized(int rowCount, int entryCount, long startTime) {
+        logger.info("Created {} entities from {} rows of {} in {} ms", entryCount, rowCount, this.shard,
+                (System.nanoTime() - startTime) / 1000000);
+    }
+
+    /**
+     * Letters of a column in A1 notation
+     * @param columnIndex
+     * @return
+     */
+    public static String columnLetter(int columnIndex) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = columnIndex + 1; i > 0; i = (i - 1) / 26) {
+            sb.insert(0, (char) ('A' + (i - 1) % 26));
+        }
+        return sb.toString();
+    }
+
     /**
      * Create a mapping for each valid column index to name
      * Preserve the order with a LinkedHashMap
@@ -124,4 +377,20 @@ public class SpreadsheetReader {
     public Map<String, Integer> getColumnIndexMap() {
         return columnIndexMap;
     }
+
+    public synchronized Map<String, Integer> getRowNumbers() {
+        return Collections.unmodifiableMap(new HashMap<>(rowNumbers));
+    }
+
+    public SheetShard getShard() {
+        return shard;
+    }
+
+    public boolean isParallelMaterialization() {
+        return parallelMaterialization;
+    }
+
+    public void setParallelMaterialization(boolean parallelMaterialization) {
+        this.parallelMaterialization = parallelMaterialization;
+    }
 }
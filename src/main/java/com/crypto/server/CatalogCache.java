@@ -0,0 +1,181 @@
+package com.crypto.server;
+
+import com.crypto.entity.Entry;
+import com.crypto.query.EntryCatalog;
+import com.crypto.snapshot.SnapshotReader;
+import com.crypto.snapshot.SnapshotWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a catalog of the entries in memory and reloads it in the background, so reads never wait on the sheets.
+ * The catalog is reloaded twice per staleness bound, and once it is older than the bound it is no longer served.
+ * Each load is also written to a snapshot, so the next start can serve right away from the snapshot
+ * while the sheets are read in the background.
+ */
+public class CatalogCache {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(CatalogCache.class);
+
+    /**
+     * Loads the entries the catalog is built from
+     */
+    private Supplier<Collection<Entry>> loader;
+
+    /**
+     * Age after which the catalog is no longer served
+     */
+    private long maxStalenessMillis;
+
+    /**
+     * Snapshot the catalog is started from and saved to, optional
+     */
+    private Path snapshotPath;
+
+    /**
+     * Thread reloading the catalog
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Catalog being served, null until the first load
+     */
+    private volatile EntryCatalog catalog;
+
+    /**
+     * Time the catalog being served was loaded, in epoch milliseconds
+     */
+    private volatile long loadedAtMillis;
+
+    public CatalogCache(Supplier<Collection<Entry>> loader, long maxStalenessMillis) {
+        this(loader, maxStalenessMillis, null);
+    }
+
+    public CatalogCache(Supplier<Collection<Entry>> loader, long maxStalenessMillis, Path snapshotPath) {
+        this.loader = loader;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.snapshotPath = snapshotPath;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load the catalog, then keep reloading it in the background.
+     * If a snapshot can be read the catalog starts from it and the first load from the sheets runs in the background.
+     */
+    public void start() {
+        if (loadSnapshot()) {
+            this.scheduler.execute(this::reload);
+        }
+        else {
+            reload();
+        }
+
+        long reloadIntervalMillis = Math.max(this.maxStalenessMillis / 2, 1);
+        this.scheduler.scheduleWithFixedDelay(this::reload, reloadIntervalMillis, reloadIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop reloading the catalog
+     */
+    public void shutdown() {
+        this.scheduler.shutdownNow();
+    }
+
+    /**
+     * Catalog to answer a read from
+     * @return the catalog, or null if it hasn't loaded or is older than the staleness bound
+     */
+    public EntryCatalog getCatalog() {
+        EntryCatalog current = this.catalog;
+        return current != null && getAgeMillis() <= this.maxStalenessMillis ? current : null;
+    }
+
+    /**
+     * Time since the catalog being served was loaded
+     * @return
+     */
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - this.loadedAtMillis;
+    }
+
+    /**
+     * Build a new catalog from the loaded entries and swap it in.
+     * A failed read of the sheets comes back empty, so an empty load keeps the previous catalog.
+     */
+    private void reload() {
+        long startTime = System.currentTimeMillis();
+        try {
+            Collection<Entry> entries = this.loader.get();
+            if (entries.isEmpty() && this.catalog != null && this.catalog.size() > 0) {
+                logger.error("Read no entries, keeping the catalog loaded {} ms ago", getAgeMillis());
+                return;
+            }
+
+            this.catalog = new EntryCatalog(entries);
+            this.loadedAtMillis = startTime;
+            logger.info("Loaded catalog of {} entries in {} ms", entries.size(), System.currentTimeMillis() - startTime);
+
+            saveSnapshot(entries);
+        } catch (RuntimeException ex) {
+            logger.error("Error in reloading catalog, keeping the catalog loaded {} ms ago", getAgeMillis());
+        }
+    }
+
+    /**
+     * Start from the snapshot, aged by when it was written
+     * @return true if the snapshot was read
+     */
+    private boolean loadSnapshot() {
+        if (this.snapshotPath == null || !Files.exists(this.snapshotPath)) {
+            return false;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            long writtenAtMillis = Files.getLastModifiedTime(this.snapshotPath).toMillis();
+            Collection<Entry> entries = new SnapshotReader(this.snapshotPath).getEntries().values();
+
+            this.catalog = new EntryCatalog(entries);
+            this.loadedAtMillis = writtenAtMillis;
+            logger.info("Loaded catalog of {} entries from {} in {} ms", entries.size(), this.snapshotPath,
+                    System.currentTimeMillis() - startTime);
+            return true;
+        } catch (IOException ex) {
+            logger.error("Unable to load catalog from snapshot {}", this.snapshotPath);
+        }
+        return false;
+    }
+
+    /**
+     * Save the loaded entries as the snapshot the next start begins from
+     * @param entries
+     */
+    private void saveSnapshot(Collection<Entry> entries) {
+        if (this.snapshotPath == null) {
+            return;
+        }
+
+        try {
+            SnapshotWriter.write(this.snapshotPath, entries);
+        } catch (IOException ex) {
+            logger.error("Unable to save catalog snapshot to {}", this.snapshotPath);
+        }
+    }
+}
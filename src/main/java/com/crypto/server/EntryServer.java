@@ -0,0 +1,374 @@
+package com.crypto.server;
+
+import com.crypto.entity.ImmutableEntry;
+import com.crypto.enums.QueryColumn;
+import com.crypto.exception.InvalidArgumentException;
+import com.crypto.query.EntryCatalog;
+import com.crypto.query.EntryQuery;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only HTTP API answering lookups and filtered queries from the in-memory catalog as JSON, for example
+ * <pre>
+ * GET /entries?token=Bitcoin
+ * GET /entries?ticker=ETH
+ * GET /entries?url=https://icodrops.com/some-project/
+ * GET /entries?upcoming=true&amp;tokenType=ERC20&amp;max.fundraising_goal=10000000&amp;orderBy=ico_start_date&amp;limit=20
+ * GET /health
+ * </pre>
+ * Numeric filters are given as min.&lt;column&gt; and max.&lt;column&gt; with the column named as in {@link QueryColumn},
+ * and start dates as startsFrom and startsTo in ISO format.
+ * The server only listens on the loopback address unless it is given another address to expose the entries on.
+ */
+public class EntryServer {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(EntryServer.class);
+
+    /**
+     * Global instance of JSON factory
+     */
+    private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+
+    /**
+     * Number of threads answering requests
+     */
+    private static final int THREAD_COUNT = 4;
+
+    /**
+     * Prefix of the parameters keeping entries with at least a value in a column
+     */
+    private static final String MIN_PREFIX = "min.";
+
+    /**
+     * Prefix of the parameters keeping entries with at most a value in a column
+     */
+    private static final String MAX_PREFIX = "max.";
+
+    /**
+     * Catalog the reads are answered from
+     */
+    private CatalogCache cache;
+
+    /**
+     * Underlying HTTP server
+     */
+    private HttpServer server;
+
+    /**
+     * Threads answering requests
+     */
+    private ExecutorService executor;
+
+    public EntryServer(int port, CatalogCache cache) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, cache);
+    }
+
+    public EntryServer(InetAddress address, int port, CatalogCache cache) throws IOException {
+        this.cache = cache;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+            Thread thread = new Thread(runnable, "entry-server-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        this.server.createContext("/entries", exchange -> handle(exchange, this::handleEntries));
+        this.server.createContext("/health", exchange -> handle(exchange, this::handleHealth));
+        this.server.setExecutor(this.executor);
+    }
+
+    /**
+     * Start answering requests
+     */
+    public void start() {
+        this.server.start();
+        logger.info("Serving entries on {}:{}", this.server.getAddress().getAddress().getHostAddress(),
+                this.server.getAddress().getPort());
+    }
+
+    /**
+     * Stop answering requests, giving requests in progress a second to finish
+     */
+    public void stop() {
+        this.server.stop(1);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Run a handler, answering with an error instead of dropping the connection if it fails unexpectedly
+     * @param exchange
+     * @param handler
+     * @throws IOException
+     */
+    private static void handle(HttpExchange exchange, HttpHandler handler) throws IOException {
+        try {
+            handler.handle(exchange);
+        } catch (RuntimeException ex) {
+            logger.error("Error in answering {}", exchange.getRequestURI(), ex);
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answer a query over the entries
+     * @param exchange
+     * @throws IOException
+     */
+    private void handleEntries(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "Only GET is supported");
+            return;
+        }
+
+        EntryCatalog catalog = this.cache.getCatalog();
+        if (catalog == null) {
+            sendError(exchange, 503, "Entries are not loaded or are older than the staleness bound");
+            return;
+        }
+
+        List<ImmutableEntry> entries;
+        try {
+            entries = buildQuery(catalog, parseParameters(exchange.getRequestURI().getRawQuery())).list();
+        } catch (InvalidArgumentException ex) {
+            sendError(exchange, 400, ex.getMessage());
+            return;
+        }
+
+        List<Map<String, String>> records = new ArrayList<>(entries.size());
+        for (ImmutableEntry entry : entries) {
+            Map<String, String> record = new LinkedHashMap<>();
+            for (String fieldName : ImmutableEntry.getFieldNames()) {
+                record.put(fieldName, entry.getFieldValue(fieldName));
+            }
+            records.add(record);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("count", records.size());
+        response.put("ageMillis", this.cache.getAgeMillis());
+        response.put("entries", records);
+        send(exchange, 200, response);
+    }
+
+    /**
+     * Report whether the catalog can be served
+     * @param exchange
+     * @throws IOException
+     */
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        EntryCatalog catalog = this.cache.getCatalog();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", catalog != null ? "ok" : "stale");
+        response.put("entries", catalog != null ? catalog.size() : 0);
+        response.put("ageMillis", this.cache.getAgeMillis());
+        send(exchange, catalog != null ? 200 : 503, response);
+    }
+
+    /**
+     * Turn the request parameters into a query over the catalog
+     * @param catalog
+     * @param parameters
+     * @return
+     */
+    private static EntryQuery buildQuery(EntryCatalog catalog, Map<String, String> parameters) {
+        EntryQuery query = catalog.query();
+
+        for (Map.Entry<String, String> kv : parameters.entrySet()) {
+            String name = kv.getKey();
+            String value = kv.getValue();
+
+            if (name.equals("token")) {
+                query.whereToken(value);
+            }
+            else if (name.equals("ticker")) {
+                query.whereTicker(value);
+            }
+            else if (name.equals("url")) {
+                query.whereUrl(value);
+            }
+            else if (name.equals("tokenType")) {
+                query.whereTokenType(value);
+            }
+            else if (name.equals("upcoming")) {
+                if (Boolean.parseBoolean(value)) {
+                    query.whereUpcoming();
+                }
+            }
+            else if (name.startsWith(MIN_PREFIX)) {
+                double min = parseNumber(name, value);
+                query.where(parseColumn(name.substring(MIN_PREFIX.length())), v -> v >= min);
+            }
+            else if (name.startsWith(MAX_PREFIX)) {
+                double max = parseNumber(name, value);
+                query.where(parseColumn(name.substring(MAX_PREFIX.length())), v -> v <= max);
+            }
+            else if (!name.equals("startsFrom") && !name.equals("startsTo") && !name.equals("orderBy")
+                    && !name.equals("order") && !name.equals("limit")) {
+                throw new InvalidArgumentException("Unknown parameter " + name);
+            }
+        }
+
+        if (parameters.containsKey("startsFrom") || parameters.containsKey("startsTo")) {
+            query.whereStartsBetween(parseDate(parameters.get("startsFrom"), LocalDate.MIN),
+                    parseDate(parameters.get("startsTo"), LocalDate.MAX));
+        }
+        if (parameters.containsKey("orderBy")) {
+            query.orderBy(parseColumn(parameters.get("orderBy")), !"desc".equalsIgnoreCase(parameters.get("order")));
+        }
+        if (parameters.containsKey("limit")) {
+            double limit = parseNumber("limit", parameters.get("limit"));
+            if (limit < 0 || limit != Math.floor(limit)) {
+                throw new InvalidArgumentException("Expected a whole number in limit");
+            }
+            // No more rows than the catalog holds can be returned
+            query.limit((int) Math.min(limit, catalog.size()));
+        }
+        return query;
+    }
+
+    /**
+     * Decode the parameters of a query string, a repeated parameter keeps its last value
+     * @param rawQuery
+     * @return
+     */
+    private static Map<String, String> parseParameters(String rawQuery) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+
+            int separator = pair.indexOf('=');
+            try {
+                String name = URLDecoder.decode(separator >= 0 ? pair.substring(0, separator) : pair, StandardCharsets.UTF_8);
+                String value = separator >= 0 ? URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8) : "";
+                parameters.put(name, value);
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidArgumentException("Unable to decode parameter " + pair);
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Find the column a parameter refers to, ignoring case
+     * @param value
+     * @return
+     */
+    private static QueryColumn parseColumn(String value) {
+        try {
+            return QueryColumn.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidArgumentException("Unknown column " + value);
+        }
+    }
+
+    /**
+     * Parse the number given to a parameter
+     * @param name
+     * @param value
+     * @return
+     */
+    private static double parseNumber(String name, String value) {
+        try {
+            double number = Double.parseDouble(value);
+            if (!Double.isNaN(number)) {
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below
+        }
+        throw new InvalidArgumentException("Expected a number in " + name);
+    }
+
+    /**
+     * Parse an ISO date given to a parameter
+     * @param value
+     * @param defaultDate used when the parameter is missing
+     * @return
+     */
+    private static LocalDate parseDate(String value, LocalDate defaultDate) {
+        if (value == null) {
+            return defaultDate;
+        }
+
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException ex) {
+            throw new InvalidArgumentException("Expected a date in the format yyyy-mm-dd instead of " + value);
+        }
+    }
+
+    /**
+     * Send an error message as JSON
+     * @param exchange
+     * @param status
+     * @param message
+     * @throws IOException
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("error", message);
+        send(exchange, status, response);
+    }
+
+    /**
+     * Send a response as JSON
+     * @param exchange
+     * @param status
+     * @param response
+     * @throws IOException
+     */
+    private static void send(HttpExchange exchange, int status, Map<String, Object> response) throws IOException {
+        byte[] body = JSON_FACTORY.toString(response).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream stream = exchange.getResponseBody()) {
+            stream.write(body);
+        }
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+}
@@ -0,0 +1,117 @@
+package com.crypto.shard;
+
+import com.crypto.enums.ShardStrategy;
+import com.crypto.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Assigns each token to one of the configured sheets
+ */
+public class ShardRouter {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ShardRouter.class);
+
+    /**
+     * Name of file listing the shards
+     */
+    private static final String SHARDS_FILE = "sheets.properties";
+
+    /**
+     * Characters a normalized name can start with, in the order they are split into ranges
+     */
+    private static final String RANGE_CHARACTERS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * Sheets the tokens are spread across
+     */
+    private List<SheetShard> shards;
+
+    /**
+     * How tokens are assigned to sheets
+     */
+    private ShardStrategy strategy;
+
+    public ShardRouter(List<SheetShard> shards, ShardStrategy strategy) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.strategy = strategy;
+    }
+
+    /**
+     * Load the shards from sheets.properties, falling back to the single default sheet if the file isn't present.
+     * The file lists the shards as spreadsheetId!sheetTitle separated by commas under "shards",
+     * and optionally the strategy as "hash" or "range" under "shard-strategy".
+     * @return
+     */
+    public static ShardRouter fromConfiguration() {
+        List<SheetShard> shards = new ArrayList<>();
+        ShardStrategy strategy = ShardStrategy.HASH;
+
+        try (InputStream stream = ShardRouter.class.getClassLoader().getResourceAsStream(SHARDS_FILE)) {
+            if (stream != null) {
+                Properties props = new Properties();
+                props.load(stream);
+
+                for (String shard : props.getProperty("shards", StringUtils.EMPTY_STRING).split(",")) {
+                    if (!shard.trim().isEmpty()) {
+                        shards.add(SheetShard.parse(shard.trim()));
+                    }
+                }
+                strategy = ShardStrategy.valueOf(props.getProperty("shard-strategy", strategy.name()).trim().toUpperCase());
+            }
+        } catch (IOException ex) {
+            logger.error("Error in retrieving shard properties");
+        }
+
+        if (shards.isEmpty()) {
+            shards.add(SheetShard.defaultShard());
+        }
+
+        logger.info("Writing to {} shards by {}", shards.size(), strategy);
+        return new ShardRouter(shards, strategy);
+    }
+
+    /**
+     * Find the sheet a token belongs on
+     * @param token
+     * @return
+     */
+    public SheetShard shardFor(String token) {
+        if (this.shards.size() == 1) {
+            return this.shards.get(0);
+        }
+
+        String normalizedName = StringUtils.normalizeName(token == null ? StringUtils.EMPTY_STRING : token);
+        int index;
+        if (this.strategy == ShardStrategy.RANGE) {
+            int position = normalizedName.isEmpty() ? 0 : Math.max(RANGE_CHARACTERS.indexOf(normalizedName.charAt(0)), 0);
+            index = position * this.shards.size() / RANGE_CHARACTERS.length();
+        }
+        else {
+            index = Math.floorMod(normalizedName.hashCode(), this.shards.size());
+        }
+        return this.shards.get(index);
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public List<SheetShard> getShards() {
+        return shards;
+    }
+}
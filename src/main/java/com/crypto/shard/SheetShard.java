@@ -0,0 +1,88 @@
+package com.crypto.shard;
+
+import com.crypto.GoogleSheetsConstants;
+
+import java.util.Objects;
+
+/**
+ * A sheet that a subset of the tokens are written to
+ */
+public class SheetShard {
+
+    /**
+     * ID of spreadsheet containing the sheet
+     */
+    private String spreadsheetId;
+
+    /**
+     * Title of sheet
+     */
+    private String sheetTitle;
+
+    public SheetShard(String spreadsheetId, String sheetTitle) {
+        this.spreadsheetId = spreadsheetId;
+        this.sheetTitle = sheetTitle;
+    }
+
+    /**
+     * The single sheet used when no shards are configured
+     * @return
+     */
+    public static SheetShard defaultShard() {
+        return new SheetShard(GoogleSheetsConstants.SPREADSHEET_ID, GoogleSheetsConstants.SHEET_TITLE);
+    }
+
+    /**
+     * Parse a shard in the format spreadsheetId!sheetTitle
+     * @param value
+     * @return
+     */
+    public static SheetShard parse(String value) {
+        int separator = value.indexOf('!');
+        if (separator <= 0 || separator == value.length() - 1) {
+            throw new IllegalArgumentException("Shard must be in the format spreadsheetId!sheetTitle: " + value);
+        }
+        return new SheetShard(value.substring(0, separator).trim(), value.substring(separator + 1).trim());
+    }
+
+    /**
+     * A1 notation for the whole sheet, quoted so titles with spaces are supported
+     * @return
+     */
+    public String getSheetRange() {
+        return "'" + this.sheetTitle.replace("'", "''") + "'";
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public String getSpreadsheetId() {
+        return spreadsheetId;
+    }
+
+    public String getSheetTitle() {
+        return sheetTitle;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof SheetShard)) {
+            return false;
+        }
+
+        SheetShard comp = (SheetShard) obj;
+        return this.spreadsheetId.equals(comp.getSpreadsheetId()) &&
+                this.sheetTitle.equals(comp.getSheetTitle());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.spreadsheetId, this.sheetTitle);
+    }
+
+    @Override
+    public String toString() {
+        return this.spreadsheetId + "!" + this.sheetTitle;
+    }
+}
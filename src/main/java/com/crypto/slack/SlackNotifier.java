@@ -0,0 +1,228 @@
+package com.crypto.slack;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Posts Slack messages from a single background thread so callers never wait on the webhook.
+ * Messages queued within a window are collapsed into one digest, and at most one digest is posted per window.
+ */
+public class SlackNotifier {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SlackNotifier.class);
+
+    /**
+     * Resource holding the webhook URL under "webhook-url"
+     */
+    private static final String PROPERTIES_FILE = "slack.properties";
+
+    /**
+     * Default number of messages that can wait to be sent
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    /**
+     * Default length of a digest window
+     */
+    private static final long DEFAULT_WINDOW_MILLIS = 10000;
+
+    /**
+     * Default number of messages listed in a single digest
+     */
+    private static final int DEFAULT_MAX_DIGEST_LINES = 20;
+
+    /**
+     * How long the sender waits for a message before checking if it was shut down
+     */
+    private static final long POLL_INTERVAL_MILLIS = 500;
+
+    /**
+     * Webhook used to post digests
+     */
+    private SlackWebhook webhook;
+
+    /**
+     * Messages waiting to be sent
+     */
+    private BlockingQueue<String> queue;
+
+    /**
+     * Length of a digest window
+     */
+    private long windowMillis;
+
+    /**
+     * Number of messages listed in a single digest, the rest are summarized as a count
+     */
+    private int maxDigestLines;
+
+    /**
+     * Number of messages dropped because the queue was full
+     */
+    private AtomicLong droppedCount;
+
+    /**
+     * Thread that sends the digests
+     */
+    private Thread sender;
+
+    /**
+     * Set to false once the notifier is shut down
+     */
+    private volatile boolean running;
+
+    public SlackNotifier(SlackWebhook webhook) {
+        this(webhook, DEFAULT_QUEUE_CAPACITY, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_DIGEST_LINES);
+    }
+
+    public SlackNotifier(SlackWebhook webhook, int queueCapacity, long windowMillis, int maxDigestLines) {
+        this.webhook = webhook;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.windowMillis = windowMillis;
+        this.maxDigestLines = maxDigestLines;
+        this.droppedCount = new AtomicLong();
+        this.running = true;
+
+        this.sender = new Thread(this::run, "slack-notifier");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Create a notifier posting to the webhook in slack.properties
+     * @param username
+     * @return the notifier, or null if no webhook is configured
+     */
+    public static SlackNotifier fromConfiguration(String username) {
+        try (InputStream stream = SlackNotifier.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE)) {
+            if (stream == null) {
+                logger.info("No Slack webhook configured, changes won't be posted");
+                return null;
+            }
+
+            Properties props = new Properties();
+            props.load(stream);
+            String webhookUrl = props.getProperty("webhook-url");
+            if (webhookUrl == null || webhookUrl.trim().isEmpty()) {
+                logger.info("No Slack webhook configured, changes won't be posted");
+                return null;
+            }
+
+            return new SlackNotifier(new SlackWebhook(webhookUrl.trim(), username));
+        } catch (IOException | RuntimeException ex) {
+            logger.error("Error in retrieving Slack properties");
+            return null;
+        }
+    }
+
+    /**
+     * Queue a message for the next digest without blocking.
+     * If the queue is full the message is dropped and counted in the next digest.
+     * @param message
+     * @return
+     */
+    public boolean enqueue(String message) {
+        if (!this.running || !this.queue.offer(message)) {
+            this.droppedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Send whatever is still queued as a final digest and stop the sender thread
+     */
+    public void shutdown() {
+        this.running = false;
+
+        try {
+            this.sender.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            this.webhook.shutdown();
+        } catch (RuntimeException ex) {
+            logger.error("Error in shutting down Slack webhook");
+        }
+    }
+
+    /**
+     * Wait for the first message of a window, collect everything else that arrives until the window closes,
+     * then post it all as one digest
+     */
+    private void run() {
+        while (this.running || !this.queue.isEmpty()) {
+            List<String> messages = new ArrayList<>();
+
+            try {
+                String first = this.queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                messages.add(first);
+
+                long windowEnd = System.currentTimeMillis() + this.windowMillis;
+                long remaining = this.windowMillis;
+                while (this.running && remaining > 0) {
+                    String message = this.queue.poll(Math.min(remaining, POLL_INTERVAL_MILLIS), TimeUnit.MILLISECONDS);
+                    if (message != null) {
+                        messages.add(message);
+                    }
+                    remaining = windowEnd - System.currentTimeMillis();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                this.running = false;
+            }
+
+            this.queue.drainTo(messages);
+            if (!messages.isEmpty()) {
+                send(messages);
+            }
+        }
+    }
+
+    /**
+     * Post the messages as a single digest
+     * @param messages
+     */
+    private void send(List<String> messages) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(messages.size()).append(messages.size() == 1 ? " update" : " updates").append(":\n");
+
+        int lineCount = Math.min(messages.size(), this.maxDigestLines);
+        for (int i = 0; i < lineCount; i++) {
+            sb.append("- ").append(messages.get(i)).append("\n");
+        }
+        if (messages.size() > lineCount) {
+            sb.append("...and ").append(messages.size() - lineCount).append(" more\n");
+        }
+
+        long dropped = this.droppedCount.getAndSet(0);
+        if (dropped > 0) {
+            sb.append(dropped).append(" updates were dropped because the queue was full\n");
+        }
+
+        try {
+            this.webhook.sendMessage(sb.toString());
+            logger.info("Posted Slack digest of {} updates", messages.size());
+        } catch (RuntimeException ex) {
+            logger.error("Error in posting Slack digest of {} updates", messages.size());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.crypto.snapshot;
+
+/**
+ * Layout of a binary entry snapshot. All numbers are big-endian.
+ *
+ * <pre>
+ * int    magic
+ * short  version
+ * short  reserved
+ * int    column count
+ * column count x { int length, UTF-8 bytes }   column names
+ * int    row count
+ * long   offset of the row index
+ * row count x { column count x { int length, UTF-8 bytes } }   rows, length of -1 is a null value
+ * row count x long   offset of each row
+ * </pre>
+ */
+public class SnapshotFormat {
+
+    /**
+     * Marks the start of a snapshot file ("ICOS")
+     */
+    public final static int MAGIC = 0x49434F53;
+
+    /**
+     * Current version of the layout
+     */
+    public final static short VERSION = 1;
+
+    /**
+     * Length written in place of a null value
+     */
+    public final static int NULL_LENGTH = -1;
+
+    /**
+     * Size in bytes of the fixed part of the header, before the column names
+     */
+    public final static int PREAMBLE_SIZE = Integer.BYTES + Short.BYTES + Short.BYTES + Integer.BYTES;
+
+    /**
+     * Size in bytes of the row count and index offset that follow the column names
+     */
+    public final static int TRAILER_SIZE = Integer.BYTES + Long.BYTES;
+
+    /**
+     * Size in bytes of a single row index entry
+     */
+    public final static int INDEX_ENTRY_SIZE = Long.BYTES;
+}
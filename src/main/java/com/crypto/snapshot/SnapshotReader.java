@@ -0,0 +1,283 @@
+package com.crypto.snapshot;
+
+import com.crypto.entity.Entry;
+import com.crypto.exception.SnapshotFormatException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a snapshot written by {@link SnapshotWriter} directly from a memory-mapped file.
+ * Only absolute reads are used on the mapped buffer, so a single reader can be shared between threads.
+ */
+public class SnapshotReader {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotReader.class);
+
+    /**
+     * Memory-mapped contents of the snapshot
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * Names of the columns in each row
+     */
+    private List<String> columnNames;
+
+    /**
+     * Map of column name to its index in a row
+     */
+    private Map<String, Integer> columnIndexMap;
+
+    /**
+     * Number of rows in the snapshot
+     */
+    private int rowCount;
+
+    /**
+     * Position of the row index
+     */
+    private long indexOffset;
+
+    /**
+     * Position of the first row, right after the header
+     */
+    private long dataOffset;
+
+    public SnapshotReader(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new SnapshotFormatException("Snapshot is too large to map into memory");
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        readHeader();
+        validateRows();
+        logger.info("Opened snapshot of {} rows from {}", this.rowCount, path);
+    }
+
+    /**
+     * Number of rows in the snapshot
+     * @return
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Names of the columns in each row
+     * @return
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * Read a single value without decoding the rest of the row
+     * @param rowIndex
+     * @param columnIndex
+     * @return
+     */
+    public String getValue(int rowIndex, int columnIndex) {
+        if (columnIndex < 0 || columnIndex >= this.columnNames.size()) {
+            throw new IndexOutOfBoundsException("Column " + columnIndex + " is out of range");
+        }
+
+        int position = rowOffset(rowIndex);
+        for (int i = 0; i < columnIndex; i++) {
+            position = skipString(position);
+        }
+        return readString(position);
+    }
+
+    /**
+     * Read a single value by its column name
+     * @param rowIndex
+     * @param columnName
+     * @return
+     */
+    public String getValue(int rowIndex, String columnName) {
+        Integer columnIndex = this.columnIndexMap.get(columnName);
+        if (columnIndex == null) {
+            return null;
+        }
+        return getValue(rowIndex, columnIndex);
+    }
+
+    /**
+     * Materialize the entry stored in a row
+     * @param rowIndex
+     * @return
+     */
+    public Entry getEntry(int rowIndex) {
+        List<Object> row = new ArrayList<>(this.columnNames.size());
+
+        int position = rowOffset(rowIndex);
+        for (int i = 0; i < this.columnNames.size(); i++) {
+            row.add(readString(position));
+            position = skipString(position);
+        }
+
+        return new Entry(row, this.columnIndexMap);
+    }
+
+    /**
+     * Materialize every row, keyed by token in the same way as the spreadsheet reader
+     * @return
+     */
+    public Map<String, Entry> getEntries() {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (int rowIndex = 0; rowIndex < this.rowCount; rowIndex++) {
+            Entry entry = getEntry(rowIndex);
+            entries.put(entry.getToken(), entry);
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Validate the magic number and version, then read the column layout and row index location.
+     * Every length and offset is checked against the size of the file so a truncated or corrupt snapshot
+     * is reported as a format error.
+     * @throws SnapshotFormatException
+     */
+    private void readHeader() throws SnapshotFormatException {
+        if (this.buffer.capacity() < SnapshotFormat.PREAMBLE_SIZE) {
+            throw new SnapshotFormatException("Snapshot is too short to contain a header");
+        }
+        if (this.buffer.getInt(0) != SnapshotFormat.MAGIC) {
+            throw new SnapshotFormatException("File is not an entry snapshot");
+        }
+
+        short version = this.buffer.getShort(Integer.BYTES);
+        if (version != SnapshotFormat.VERSION) {
+            throw new SnapshotFormatException("Unsupported snapshot version " + version);
+        }
+
+        int columnCount = this.buffer.getInt(Integer.BYTES + Short.BYTES + Short.BYTES);
+        int position = SnapshotFormat.PREAMBLE_SIZE;
+
+        // Each column name takes at least its length
+        if (columnCount < 0 || columnCount > (this.buffer.capacity() - position) / Integer.BYTES) {
+            throw new SnapshotFormatException("Snapshot column count " + columnCount + " is invalid");
+        }
+
+        this.columnNames = new ArrayList<>(columnCount);
+        this.columnIndexMap = new LinkedHashMap<>();
+        for (int i = 0; i < columnCount; i++) {
+            int next = checkedSkipString(position, this.buffer.capacity());
+            String columnName = readString(position);
+            if (columnName == null) {
+                throw new SnapshotFormatException("Snapshot column " + i + " has no name");
+            }
+            this.columnNames.add(columnName);
+            this.columnIndexMap.put(columnName, i);
+            position = next;
+        }
+        this.columnNames = Collections.unmodifiableList(this.columnNames);
+
+        if (position + SnapshotFormat.TRAILER_SIZE > this.buffer.capacity()) {
+            throw new SnapshotFormatException("Snapshot header is truncated");
+        }
+        this.rowCount = this.buffer.getInt(position);
+        this.indexOffset = this.buffer.getLong(position + Integer.BYTES);
+        this.dataOffset = position + SnapshotFormat.TRAILER_SIZE;
+
+        if (this.rowCount < 0 || this.indexOffset < this.dataOffset || this.indexOffset > this.buffer.capacity()
+                || this.rowCount > (this.buffer.capacity() - this.indexOffset) / SnapshotFormat.INDEX_ENTRY_SIZE) {
+            throw new SnapshotFormatException("Snapshot row index is truncated");
+        }
+    }
+
+    /**
+     * Check that every row starts between the header and the row index and that its values end before the index,
+     * so reading a row afterwards can't run past the end of the file
+     * @throws SnapshotFormatException
+     */
+    private void validateRows() throws SnapshotFormatException {
+        for (int rowIndex = 0; rowIndex < this.rowCount; rowIndex++) {
+            long offset = this.buffer.getLong((int) this.indexOffset + rowIndex * SnapshotFormat.INDEX_ENTRY_SIZE);
+            if (offset < this.dataOffset || offset > this.indexOffset) {
+                throw new SnapshotFormatException("Snapshot row " + rowIndex + " is outside of the row data");
+            }
+
+            int position = (int) offset;
+            for (int i = 0; i < this.columnNames.size(); i++) {
+                position = checkedSkipString(position, (int) this.indexOffset);
+            }
+        }
+    }
+
+    /**
+     * Position immediately after the length-prefixed value at the position, checking the value ends before the limit
+     * @param position
+     * @param limit
+     * @return
+     * @throws SnapshotFormatException
+     */
+    private int checkedSkipString(int position, int limit) throws SnapshotFormatException {
+        if (position > limit - Integer.BYTES) {
+            throw new SnapshotFormatException("Snapshot is truncated at " + position);
+        }
+
+        int length = this.buffer.getInt(position);
+        if (length < SnapshotFormat.NULL_LENGTH || (long) position + Integer.BYTES + Math.max(length, 0) > limit) {
+            throw new SnapshotFormatException("Snapshot value at " + position + " has invalid length " + length);
+        }
+        return position + Integer.BYTES + Math.max(length, 0);
+    }
+
+    /**
+     * Look up the start of a row in the index
+     * @param rowIndex
+     * @return
+     */
+    private int rowOffset(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= this.rowCount) {
+            throw new IndexOutOfBoundsException("Row " + rowIndex + " is out of range");
+        }
+        return (int) this.buffer.getLong((int) this.indexOffset + rowIndex * SnapshotFormat.INDEX_ENTRY_SIZE);
+    }
+
+    /**
+     * Decode the length-prefixed value at the position
+     * @param position
+     * @return
+     */
+    private String readString(int position) {
+        int length = this.buffer.getInt(position);
+        if (length == SnapshotFormat.NULL_LENGTH) {
+            return null;
+        }
+
+        ByteBuffer value = this.buffer.duplicate();
+        value.position(position + Integer.BYTES);
+        value.limit(position + Integer.BYTES + length);
+        return StandardCharsets.UTF_8.decode(value).toString();
+    }
+
+    /**
+     * Position immediately after the length-prefixed value at the position
+     * @param position
+     * @return
+     */
+    private int skipString(int position) {
+        int length = this.buffer.getInt(position);
+        return position + Integer.BYTES + Math.max(length, 0);
+    }
+}
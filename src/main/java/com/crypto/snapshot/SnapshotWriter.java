@@ -0,0 +1,230 @@
+package com.crypto.snapshot;
+
+import com.crypto.entity.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+public class SnapshotWriter implements Closeable {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotWriter.class);
+
+    /**
+     * Size of the write buffer
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Destination of the snapshot
+     */
+    private Path path;
+
+    /**
+     * Channel to the snapshot file
+     */
+    private FileChannel channel;
+
+    /**
+     * Pending bytes not yet written to the channel
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Names of the columns written for each row
+     */
+    private List<String> columnNames;
+
+    /**
+     * Position of the row count and index offset in the header
+     */
+    private long trailerPosition;
+
+    /**
+     * Number of bytes written so far, including the buffer
+     */
+    private long position;
+
+    /**
+     * Start offset of each row written
+     */
+    private long[] rowOffsets;
+
+    /**
+     * Number of rows written
+     */
+    private int rowCount;
+
+    public SnapshotWriter(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.columnNames = Entry.getFieldNames();
+        this.rowOffsets = new long[1024];
+        this.rowCount = 0;
+
+        writeHeader();
+    }
+
+    /**
+     * Write a snapshot of all the entries to the path. The snapshot is written to a temporary file first
+     * and moved into place, so a reader never sees a partially written snapshot.
+     * @param path
+     * @param entries
+     * @throws IOException
+     */
+    public static void write(Path path, Collection<Entry> entries) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        Path temporaryPath = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (SnapshotWriter writer = new SnapshotWriter(temporaryPath)) {
+                for (Entry entry : entries) {
+                    writer.write(entry);
+                }
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Append a single entry as the next row
+     * @param entry
+     * @throws IOException
+     */
+    public void write(Entry entry) throws IOException {
+        if (this.rowCount == this.rowOffsets.length) {
+            this.rowOffsets = Arrays.copyOf(this.rowOffsets, this.rowOffsets.length * 2);
+        }
+        this.rowOffsets[this.rowCount++] = this.position;
+
+        for (String columnName : this.columnNames) {
+            writeString(entry.getFieldValue(columnName));
+        }
+    }
+
+    /**
+     * Write the row index and fill in the row count and index offset in the header
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long indexOffset = this.position;
+            for (int i = 0; i < this.rowCount; i++) {
+                ensureCapacity(SnapshotFormat.INDEX_ENTRY_SIZE);
+                this.buffer.putLong(this.rowOffsets[i]);
+                this.position += SnapshotFormat.INDEX_ENTRY_SIZE;
+            }
+            flush();
+
+            ByteBuffer trailer = ByteBuffer.allocate(SnapshotFormat.TRAILER_SIZE);
+            trailer.putInt(this.rowCount);
+            trailer.putLong(indexOffset);
+            trailer.flip();
+            long trailerPosition = this.trailerPosition;
+            while (trailer.hasRemaining()) {
+                trailerPosition += this.channel.write(trailer, trailerPosition);
+            }
+
+            logger.info("Wrote snapshot of {} rows to {}", this.rowCount, this.path);
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Write the magic number, version and column layout.
+     * The row count and index offset are written as placeholders until the file is closed.
+     * @throws IOException
+     */
+    private void writeHeader() throws IOException {
+        ensureCapacity(SnapshotFormat.PREAMBLE_SIZE);
+        this.buffer.putInt(SnapshotFormat.MAGIC);
+        this.buffer.putShort(SnapshotFormat.VERSION);
+        this.buffer.putShort((short) 0);
+        this.buffer.putInt(this.columnNames.size());
+        this.position += SnapshotFormat.PREAMBLE_SIZE;
+
+        for (String columnName : this.columnNames) {
+            writeString(columnName);
+        }
+
+        this.trailerPosition = this.position;
+        ensureCapacity(SnapshotFormat.TRAILER_SIZE);
+        this.buffer.putInt(0);
+        this.buffer.putLong(0L);
+        this.position += SnapshotFormat.TRAILER_SIZE;
+    }
+
+    /**
+     * Write a length-prefixed UTF-8 value
+     * @param value
+     * @throws IOException
+     */
+    private void writeString(String value) throws IOException {
+        ensureCapacity(Integer.BYTES);
+        if (value == null) {
+            this.buffer.putInt(SnapshotFormat.NULL_LENGTH);
+            this.position += Integer.BYTES;
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.buffer.putInt(bytes.length);
+        this.position += Integer.BYTES + bytes.length;
+
+        if (bytes.length > this.buffer.capacity()) {
+            flush();
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            while (wrapped.hasRemaining()) {
+                this.channel.write(wrapped);
+            }
+        }
+        else {
+            ensureCapacity(bytes.length);
+            this.buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Flush the buffer if it can't hold the number of bytes
+     * @param byteCount
+     * @throws IOException
+     */
+    private void ensureCapacity(int byteCount) throws IOException {
+        if (this.buffer.remaining() < byteCount) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the buffered bytes to the channel
+     * @throws IOException
+     */
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+}
@@ -0,0 +1,58 @@
+package com.crypto.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning a coin's whole trip through the pipeline, from submission to writing.
+ * Started and committed on different threads, the stage events in between are on the pipeline threads.
+ */
+@Name("com.crypto.Coin")
+@Label("Coin")
+@Category({"Crypto"})
+@Description("Processing of a single coin from submission to output")
+@StackTrace(false)
+public class CoinEvent extends Event {
+
+    /**
+     * Outcome of a coin that was written
+     */
+    public static final String WRITTEN = "written";
+
+    /**
+     * Outcome of a coin identical to the spreadsheet
+     */
+    public static final String UNCHANGED = "unchanged";
+
+    /**
+     * Outcome of a coin that couldn't be processed
+     */
+    public static final String FAILED = "failed";
+
+    /**
+     * Outcome of a coin that ran out of time
+     */
+    public static final String TIMED_OUT = "timed out";
+
+    /**
+     * Coin name
+     */
+    @Label("Token")
+    public String token;
+
+    /**
+     * Source the coin was retrieved from, empty if it wasn't resolved
+     */
+    @Label("Source")
+    public String source;
+
+    /**
+     * How processing ended
+     */
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,37 @@
+package com.crypto.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for comparing a retrieved entry with the one on the spreadsheet
+ */
+@Name("com.crypto.Diff")
+@Label("Diff")
+@Category({"Crypto", "Processing"})
+@Description("Comparison and merge of a retrieved entry with the existing one")
+@StackTrace(false)
+public class DiffEvent extends Event {
+
+    /**
+     * Coin name
+     */
+    @Label("Token")
+    public String token;
+
+    /**
+     * Source the entry was retrieved from
+     */
+    @Label("Source")
+    public String source;
+
+    /**
+     * Whether the entry differs from the spreadsheet
+     */
+    @Label("Changed")
+    public boolean changed;
+}
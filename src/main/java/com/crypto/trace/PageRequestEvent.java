@@ -0,0 +1,57 @@
+package com.crypto.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a single HTTP request for a page, including each URL attempted while probing for a slug
+ */
+@Name("com.crypto.PageRequest")
+@Label("Page Request")
+@Category({"Crypto", "Scraping"})
+@Description("Retrieval of a single page from a source")
+@StackTrace(false)
+public class PageRequestEvent extends Event {
+
+    /**
+     * Coin name, empty if the page was requested by URL alone
+     */
+    @Label("Token")
+    public String token;
+
+    /**
+     * Source the page belongs to
+     */
+    @Label("Source")
+    public String source;
+
+    /**
+     * Requested URL
+     */
+    @Label("URL")
+    public String url;
+
+    /**
+     * HTTP status of the response, 0 if no response was received
+     */
+    @Label("Status")
+    public int status;
+
+    /**
+     * Size of the response body
+     */
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    /**
+     * Whether the URL was a guess made while probing for the slug
+     */
+    @Label("Probe")
+    public boolean probe;
+}
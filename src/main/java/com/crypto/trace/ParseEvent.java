@@ -0,0 +1,37 @@
+package com.crypto.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for creating an entry from a retrieved page
+ */
+@Name("com.crypto.Parse")
+@Label("Parse")
+@Category({"Crypto", "Processing"})
+@Description("Extraction of an entry from a page")
+@StackTrace(false)
+public class ParseEvent extends Event {
+
+    /**
+     * Coin name
+     */
+    @Label("Token")
+    public String token;
+
+    /**
+     * Source the page belongs to
+     */
+    @Label("Source")
+    public String source;
+
+    /**
+     * Page the entry was extracted from
+     */
+    @Label("URL")
+    public String url;
+}
@@ -0,0 +1,31 @@
+package com.crypto.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for writing a batch of entries to the output
+ */
+@Name("com.crypto.SheetWrite")
+@Label("Sheet Write")
+@Category({"Crypto", "Output"})
+@Description("Write of a batch of entries to the output")
+@StackTrace(false)
+public class SheetWriteEvent extends Event {
+
+    /**
+     * Number of entries in the batch
+     */
+    @Label("Entries")
+    public int entries;
+
+    /**
+     * Whether the batch was written
+     */
+    @Label("Succeeded")
+    public boolean succeeded;
+}
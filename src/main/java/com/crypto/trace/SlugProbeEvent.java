@@ -0,0 +1,43 @@
+package com.crypto.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for resolving a coin name to its page, spanning every URL attempted
+ */
+@Name("com.crypto.SlugProbe")
+@Label("Slug Probe")
+@Category({"Crypto", "Scraping"})
+@Description("Resolution of a coin name to its page on a source")
+@StackTrace(false)
+public class SlugProbeEvent extends Event {
+
+    /**
+     * Coin name
+     */
+    @Label("Token")
+    public String token;
+
+    /**
+     * Source probed
+     */
+    @Label("Source")
+    public String source;
+
+    /**
+     * Number of URLs requested
+     */
+    @Label("Attempts")
+    public int attempts;
+
+    /**
+     * Page the name resolved to, empty if it couldn't be resolved
+     */
+    @Label("Resolved URL")
+    public String resolvedUrl;
+}
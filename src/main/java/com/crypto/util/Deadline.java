@@ -0,0 +1,69 @@
+package com.crypto.util;
+
+/**
+ * Point in time by which some work must finish, measured on the monotonic clock
+ */
+public class Deadline {
+
+    /**
+     * Deadline that never expires
+     */
+    public static final Deadline NONE = new Deadline(0, false);
+
+    /**
+     * Time the deadline expires, as given by {@link System#nanoTime()}
+     */
+    private final long expiresAtNanos;
+
+    /**
+     * False if the deadline never expires
+     */
+    private final boolean bounded;
+
+    private Deadline(long expiresAtNanos, boolean bounded) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Deadline the given time from now
+     * @param millis
+     * @return a deadline that never expires if the time is zero or less
+     */
+    public static Deadline afterMillis(long millis) {
+        if (millis <= 0) {
+            return NONE;
+        }
+        return new Deadline(System.nanoTime() + millis * 1000000L, true);
+    }
+
+    /**
+     * The earlier of this deadline and another
+     * @param other
+     * @return
+     */
+    public Deadline earliest(Deadline other) {
+        if (!other.bounded) {
+            return this;
+        }
+        if (!this.bounded) {
+            return other;
+        }
+        return this.expiresAtNanos - other.expiresAtNanos <= 0 ? this : other;
+    }
+
+    /**
+     * Time left before the deadline, zero once it has expired
+     * @return
+     */
+    public long remainingMillis() {
+        if (!this.bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (this.expiresAtNanos - System.nanoTime()) / 1000000L);
+    }
+
+    public boolean isExpired() {
+        return this.bounded && this.expiresAtNanos - System.nanoTime() <= 0;
+    }
+}
@@ -0,0 +1,124 @@
+package com.crypto.util;
+
+import com.crypto.exception.DeadlineExceededException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent calls for the same key, so only the first caller does the work
+ * and callers arriving while it is in flight share its result or failure.
+ * Nothing is cached, a call for the key after the first one completes does the work again.
+ * @param <K> key identifying the work
+ * @param <V> result of the work
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Work that may fail with an IOException
+     * @param <V>
+     */
+    public interface Call<V> {
+        V call() throws IOException;
+    }
+
+    /**
+     * Result of the call in flight for each key
+     */
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Number of callers that shared another caller's result
+     */
+    private final AtomicLong sharedCount = new AtomicLong();
+
+    /**
+     * Do the work for the key, or wait for the call already in flight for it.
+     * If the shared call ran out of its caller's deadline while this caller still has time, the work is done again
+     * under this caller's deadline rather than failing with the other caller's timeout.
+     * @param key
+     * @param deadline how long to wait for a call in flight, the caller's own call is bounded by the work itself
+     * @param call
+     * @return
+     * @throws IOException
+     */
+    public V execute(K key, Deadline deadline, Call<V> call) throws IOException {
+        while (true) {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = this.inFlight.putIfAbsent(key, future);
+            if (existing != null) {
+                this.sharedCount.incrementAndGet();
+                try {
+                    return await(existing, deadline);
+                } catch (DeadlineExceededException ex) {
+                    // Only the other caller's deadline passed, so take over the call
+                    if (existing.isDone() && !deadline.isExpired()) {
+                        continue;
+                    }
+                    throw ex;
+                }
+            }
+
+            // Removed before the result is published, so a caller retrying after it never finds the finished call
+            V value;
+            try {
+                value = call.call();
+            } catch (Throwable ex) {
+                this.inFlight.remove(key, future);
+                future.completeExceptionally(ex);
+                throw ex;
+            }
+            this.inFlight.remove(key, future);
+            future.complete(value);
+            return value;
+        }
+    }
+
+    /**
+     * Number of callers that shared another caller's result
+     * @return
+     */
+    public long getSharedCount() {
+        return this.sharedCount.get();
+    }
+
+    /**
+     * Wait for another caller's result, rethrowing its failure
+     * @param future
+     * @param deadline
+     * @return
+     * @throws IOException
+     */
+    private V await(CompletableFuture<V> future, Deadline deadline) throws IOException {
+        try {
+            if (deadline == Deadline.NONE) {
+                return future.get();
+            }
+            return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new DeadlineExceededException("Deadline passed waiting for a shared request");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a shared request");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -48,4 +48,34 @@ public class StringUtils {
         String http = "http";
         return value.toLowerCase().indexOf(http) == 0;
     }
+
+    /**
+     * Normalize a name for comparison by removing non-alphanumeric characters and ignoring casing
+     * @param value
+     * @return
+     */
+    public static String normalizeName(String value) {
+        return sanitizeAlphanumericStringValue(value).toLowerCase();
+    }
+
+    /**
+     * Normalize a URL for comparison by ignoring casing, the scheme, a leading www and a trailing slash
+     * @param value
+     * @return
+     */
+    public static String normalizeUrl(String value) {
+        String url = value.trim().toLowerCase();
+
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd >= 0) {
+            url = url.substring(schemeEnd + 3);
+        }
+        if (url.startsWith("www.")) {
+            url = url.substring(4);
+        }
+        while (url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url;
+    }
 }
@@ -0,0 +1,106 @@
+package com.crypto.writer;
+
+import com.crypto.entity.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams entries to a local CSV file, with a header row and the columns in spreadsheet order
+ */
+public class CsvEntrySink implements EntrySink {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(CsvEntrySink.class);
+
+    /**
+     * Size of the write buffer
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Destination file
+     */
+    private Path path;
+
+    /**
+     * Buffered writer to the destination file
+     */
+    private BufferedWriter writer;
+
+    /**
+     * Lays out each entry in column order
+     */
+    private EntryRowMapper rowMapper;
+
+    /**
+     * Number of rows written, excluding the header
+     */
+    private long rowCount;
+
+    public CsvEntrySink(Path path) throws IOException {
+        this(path, EntryRowMapper.defaultColumnIndexMap());
+    }
+
+    public CsvEntrySink(Path path, Map<String, Integer> columnIndexMap) throws IOException {
+        this.path = path;
+        this.rowMapper = new EntryRowMapper(columnIndexMap);
+        this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        writeRow(this.rowMapper.getColumnNames());
+    }
+
+    @Override
+    public void processResults(Collection<Entry> entries) {
+        try {
+            for (Entry entry : entries) {
+                writeRow(this.rowMapper.toRow(entry));
+                ++this.rowCount;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+        logger.info("Wrote {} rows to {}", this.rowCount, this.path);
+    }
+
+    /**
+     * Write a line of comma-separated values, quoting values that contain a separator, quote or line break
+     * @param values
+     * @throws IOException
+     */
+    private void writeRow(List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                this.writer.write(',');
+            }
+
+            String value = String.valueOf(values.get(i));
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                this.writer.write('"');
+                this.writer.write(value.replace("\"", "\"\""));
+                this.writer.write('"');
+            }
+            else {
+                this.writer.write(value);
+            }
+        }
+        this.writer.write("\r\n");
+    }
+}
@@ -0,0 +1,99 @@
+package com.crypto.writer;
+
+import com.crypto.entity.Entry;
+import com.crypto.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lays out an entry's values in the order of the spreadsheet columns.
+ * Each column is matched to an entry field once, instead of for every row.
+ */
+public class EntryRowMapper {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(EntryRowMapper.class);
+
+    /**
+     * Column names, in spreadsheet order
+     */
+    private List<String> columnNames;
+
+    /**
+     * Entry field for each column, null if no field matches the column
+     */
+    private List<String> fieldNames;
+
+    public EntryRowMapper(Map<String, Integer> columnIndexMap) {
+        this.columnNames = new ArrayList<>(columnIndexMap.keySet());
+        this.fieldNames = new ArrayList<>();
+
+        // Find the matching field for each column in the same way as the entity
+        for (String columnName : this.columnNames) {
+            String matchedField = null;
+            for (String fieldName : Entry.getFieldNames()) {
+                if (StringUtils.areStringsEqualIgnoreCase(fieldName, StringUtils.sanitizeAlphanumericStringValue(columnName))) {
+                    matchedField = fieldName;
+                    break;
+                }
+            }
+
+            if (matchedField == null) {
+                logger.error("Missing field for {}", columnName);
+            }
+            this.fieldNames.add(matchedField);
+        }
+    }
+
+    /**
+     * Column index map with a column for every entry field, in declaration order.
+     * Used when there is no spreadsheet header to follow.
+     * @return
+     */
+    public static Map<String, Integer> defaultColumnIndexMap() {
+        Map<String, Integer> columnIndexMap = new LinkedHashMap<>();
+        for (String fieldName : Entry.getFieldNames()) {
+            columnIndexMap.put(fieldName, columnIndexMap.size());
+        }
+        return columnIndexMap;
+    }
+
+    /**
+     * Values of the entry in column order, with empty strings for missing values
+     * @param entry
+     * @return
+     */
+    public List<Object> toRow(Entry entry) {
+        List<Object> rowData = new ArrayList<>(this.fieldNames.size());
+        for (String fieldName : this.fieldNames) {
+            String fieldValue = fieldName == null ? null : entry.getFieldValue(fieldName);
+            rowData.add(fieldValue == null ? StringUtils.EMPTY_STRING : fieldValue);
+        }
+        return rowData;
+    }
+
+    /**
+     * Index of the column holding a field
+     * @param fieldName
+     * @return the index, or -1 if no column holds the field
+     */
+    public int getColumnIndex(String fieldName) {
+        return this.fieldNames.indexOf(fieldName);
+    }
+
+    /***********************
+     * Getters and setters
+     ***********************/
+
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(columnNames);
+    }
+}
@@ -0,0 +1,38 @@
+package com.crypto.writer;
+
+import com.crypto.entity.Entry;
+import com.crypto.exception.EntryWriteException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Destination that processed entries are written to
+ */
+public interface EntrySink extends Closeable {
+
+    /**
+     * Write the entries, in order. An entry counts as written once this returns without naming its token
+     * in an {@link EntryWriteException}, and any other exception means none of them can be relied on.
+     * @param entries
+     * @throws EntryWriteException if some of the entries weren't written
+     */
+    void processResults(Collection<Entry> entries);
+
+    /**
+     * Write a single entry
+     * @param entry
+     */
+    default void processResults(Entry entry) {
+        processResults(Collections.singletonList(entry));
+    }
+
+    /**
+     * Flush anything buffered and release the destination
+     * @throws IOException
+     */
+    @Override
+    default void close() throws IOException {}
+}
@@ -0,0 +1,98 @@
+package com.crypto.writer;
+
+import com.crypto.entity.Entry;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams entries to a local newline-delimited JSON file, one object per entry keyed by column name
+ */
+public class NdjsonEntrySink implements EntrySink {
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(NdjsonEntrySink.class);
+
+    /**
+     * Global instance of JSON factory
+     */
+    private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+
+    /**
+     * Size of the write buffer
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Destination file
+     */
+    private Path path;
+
+    /**
+     * Buffered writer to the destination file
+     */
+    private BufferedWriter writer;
+
+    /**
+     * Lays out each entry in column order
+     */
+    private EntryRowMapper rowMapper;
+
+    /**
+     * Number of entries written
+     */
+    private long rowCount;
+
+    public NdjsonEntrySink(Path path) throws IOException {
+        this(path, EntryRowMapper.defaultColumnIndexMap());
+    }
+
+    public NdjsonEntrySink(Path path, Map<String, Integer> columnIndexMap) throws IOException {
+        this.path = path;
+        this.rowMapper = new EntryRowMapper(columnIndexMap);
+        this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void processResults(Collection<Entry> entries) {
+        List<String> columnNames = this.rowMapper.getColumnNames();
+
+        try {
+            for (Entry entry : entries) {
+                List<Object> rowData = this.rowMapper.toRow(entry);
+
+                Map<String, Object> record = new LinkedHashMap<>();
+                for (int i = 0; i < columnNames.size(); i++) {
+                    record.put(columnNames.get(i), rowData.get(i));
+                }
+
+                this.writer.write(JSON_FACTORY.toString(record));
+                this.writer.write('\n');
+                ++this.rowCount;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+        logger.info("Wrote {} entries to {}", this.rowCount, this.path);
+    }
+}
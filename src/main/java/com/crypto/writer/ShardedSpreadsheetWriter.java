@@ -0,0 +1,130 @@
+package com.crypto.writer;
+
+import com.crypto.entity.Entry;
+import com.crypto.exception.EntryWriteException;
+import com.crypto.journal.ChangeJournal;
+import com.crypto.reader.ShardedSpreadsheetReader;
+import com.crypto.shard.ShardRouter;
+import com.crypto.shard.SheetShard;
+import com.crypto.slack.SlackNotifier;
+import com.google.api.services.sheets.v4.Sheets;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes entries to the sheet they belong on, writing to each sheet in parallel.
+ * Entries already on a sheet stay on it, new entries are assigned by the router.
+ */
+public class ShardedSpreadsheetWriter implements EntrySink {
+
+    /**
+     * Assigns new tokens to a sheet
+     */
+    private ShardRouter router;
+
+    /**
+     * Writer for each sheet
+     */
+    private Map<SheetShard, SpreadsheetWriter> writers;
+
+    public ShardedSpreadsheetWriter(Sheets googleSheetsService, ShardRouter router, ShardedSpreadsheetReader reader,
+                                    SlackNotifier slackNotifier, ChangeJournal changeJournal) {
+        this.router = router;
+        this.writers = new LinkedHashMap<>();
+
+        for (SheetShard shard : router.getShards()) {
+            Map<String, Entry> existingEntries = reader.getShardEntries().getOrDefault(shard, Collections.emptyMap());
+            this.writers.put(shard, new SpreadsheetWriter(googleSheetsService, shard, reader.getColumnIndexMap(shard),
+                    existingEntries, slackNotifier, changeJournal, reader.getReader(shard)));
+        }
+    }
+
+    /**
+     * Group the entries by sheet and write each group in parallel
+     * @param entries
+     * @throws EntryWriteException naming the entries that weren't written on any of the sheets
+     */
+    @Override
+    public void processResults(Collection<Entry> entries) {
+        Map<SheetShard, List<Entry>> shardEntries = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            shardEntries.computeIfAbsent(findShard(entry), shard -> new ArrayList<>()).add(entry);
+        }
+
+        Set<String> failedTokens = new LinkedHashSet<>();
+        if (shardEntries.size() <= 1) {
+            for (Map.Entry<SheetShard, List<Entry>> kv : shardEntries.entrySet()) {
+                try {
+                    this.writers.get(kv.getKey()).processResults(kv.getValue());
+                } catch (RuntimeException ex) {
+                    failedTokens.addAll(failedTokens(ex, kv.getValue()));
+                }
+            }
+        }
+        else {
+            ExecutorService executor = Executors.newFixedThreadPool(shardEntries.size());
+            try {
+                Map<SheetShard, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+                for (Map.Entry<SheetShard, List<Entry>> kv : shardEntries.entrySet()) {
+                    SpreadsheetWriter writer = this.writers.get(kv.getKey());
+                    futures.put(kv.getKey(), CompletableFuture.runAsync(() -> writer.processResults(kv.getValue()), executor));
+                }
+                for (Map.Entry<SheetShard, CompletableFuture<Void>> kv : futures.entrySet()) {
+                    try {
+                        kv.getValue().join();
+                    } catch (CompletionException ex) {
+                        failedTokens.addAll(failedTokens(ex.getCause(), shardEntries.get(kv.getKey())));
+                    }
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        if (!failedTokens.isEmpty()) {
+            throw new EntryWriteException(String.format("Unable to write %d of %d entries",
+                    failedTokens.size(), entries.size()), failedTokens);
+        }
+    }
+
+    /**
+     * Tokens a sheet's writer failed to write
+     * @param ex
+     * @param entries entries given to the writer
+     * @return the tokens named by the exception, or every token if it doesn't name them
+     */
+    private static Set<String> failedTokens(Throwable ex, List<Entry> entries) {
+        if (ex instanceof EntryWriteException) {
+            return ((EntryWriteException) ex).getFailedTokens();
+        }
+
+        Set<String> failedTokens = new LinkedHashSet<>();
+        entries.forEach(entry -> failedTokens.add(entry.getToken()));
+        return failedTokens;
+    }
+
+    /**
+     * Find the sheet that already holds the entry, otherwise the sheet the router assigns it to
+     * @param entry
+     * @return
+     */
+    private SheetShard findShard(Entry entry) {
+        for (Map.Entry<SheetShard, SpreadsheetWriter> kv : this.writers.entrySet()) {
+            if (kv.getValue().containsToken(entry.getToken())) {
+                return kv.getKey();
+            }
+        }
+        return this.router.shardFor(entry.getToken());
+    }
+}
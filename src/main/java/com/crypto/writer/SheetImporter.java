@@ -0,0 +1,845 @@
+package com.crypto.writer;
+
+import com.crypto.entity.Entry;
+import com.crypto.journal.ChangeJournal;
+import com.crypto.journal.ChangeRecord;
+import com.crypto.reader.ShardedSpreadsheetReader;
+import com.crypto.reader.SpreadsheetReader;
+import com.crypto.shard.ShardRouter;
+import com.crypto.shard.SheetShard;
+import com.crypto.util.StringUtils;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.AppendValuesResponse;
+import com.google.api.services.sheets.v4.model.BatchUpdateValuesRequest;
+import com.google.api.services.sheets.v4.model.ValueRange;
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Writes large numbers of entries to the sheets in chunks, several requests in flight at once.
+ * Within a chunk, entries already on a sheet overwrite their row in a single batch update request, and new entries
+ * are appended in a single append request that inserts the rows, so no row number is ever computed for a new entry
+ * and chunks can be written in any order. The rows the API reports the new entries landed in are remembered.
+ * Requests are spaced out to stay within the write quota, and a request that is throttled or fails on the server side
+ * is retried with backoff. An append is only sent again as it is when the response proves it wasn't applied,
+ * otherwise the sheet is read again and only the tokens not found on it are appended, so a token never ends up on
+ * two rows. A token imported more than once is written after the earlier write of that token finishes, to the same row.
+ */
+public class SheetImporter implements EntrySink {
+
+    /**
+     * Request to the Sheets API that may fail with an IOException
+     */
+    private interface SheetRequest {
+        void send() throws IOException;
+    }
+
+    /**
+     * Logger
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SheetImporter.class);
+
+    /**
+     * Source recorded in the journal for imported values
+     */
+    private static final String IMPORT_SOURCE = "Import";
+
+    /**
+     * Default number of rows sent in a single update request
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * Default number of update requests in flight at once
+     */
+    private static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    /**
+     * Default number of update requests sent per minute, the per-user write quota of the Sheets API
+     */
+    private static final int DEFAULT_REQUESTS_PER_MINUTE = 60;
+
+    /**
+     * Number of times a request is sent before its rows are given up on
+     */
+    private static final int MAX_ATTEMPTS = 5;
+
+    /**
+     * Wait before the first retry of a request, doubled for each later retry
+     */
+    private static final long INITIAL_BACKOFF_MILLIS = 2000;
+
+    /**
+     * Status code of a request rejected for exceeding the quota
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Status code of a request rejected because the service is unavailable
+     */
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    /**
+     * Service for accessing Google Sheets
+     */
+    private Sheets googleSheetsService;
+
+    /**
+     * Assigns new tokens to a sheet
+     */
+    private ShardRouter router;
+
+    /**
+     * Rows assigned on each sheet
+     */
+    private Map<SheetShard, ShardRows> shardRows;
+
+    /**
+     * Journal that committed field changes are appended to, optional
+     */
+    private ChangeJournal changeJournal;
+
+    /**
+     * Number of rows sent in a single update request
+     */
+    private int chunkSize;
+
+    /**
+     * Minimum time between the start of two update requests
+     */
+    private long requestIntervalMillis;
+
+    /**
+     * Time the next update request may be sent, in epoch milliseconds
+     */
+    private long nextRequestMillis;
+
+    /**
+     * Permits for the update requests in flight
+     */
+    private Semaphore inFlight;
+
+    /**
+     * Threads sending the update requests
+     */
+    private ExecutorService executor;
+
+    /**
+     * Latest write of each token, keyed by sheet and token, removed once the write finishes
+     */
+    private Map<String, CompletableFuture<Void>> tokenWrites;
+
+    /**
+     * Update requests not yet finished
+     */
+    private Set<CompletableFuture<Void>> pendingWrites;
+
+    /**
+     * Number of entries added as new rows
+     */
+    private AtomicInteger addedCount;
+
+    /**
+     * Number of entries that overwrote an existing row
+     */
+    private AtomicInteger updatedCount;
+
+    /**
+     * Number of entries identical to their existing row, which aren't written
+     */
+    private AtomicInteger unchangedCount;
+
+    /**
+     * Number of entries whose rows couldn't be written
+     */
+    private AtomicInteger failedCount;
+
+    /**
+     * Number of update requests sent, including retries
+     */
+    private AtomicInteger requestCount;
+
+    public SheetImporter(Sheets googleSheetsService, ShardRouter router, ShardedSpreadsheetReader reader,
+                         ChangeJournal changeJournal) {
+        this(googleSheetsService, router, reader, changeJournal,
+                DEFAULT_CHUNK_SIZE, DEFAULT_MAX_IN_FLIGHT, DEFAULT_REQUESTS_PER_MINUTE);
+    }
+
+    /**
+     * The reader's entries must already be extracted, with every column read
+     * @param googleSheetsService
+     * @param router
+     * @param reader
+     * @param changeJournal
+     * @param chunkSize
+     * @param maxInFlight
+     * @param requestsPerMinute
+     */
+    public SheetImporter(Sheets googleSheetsService, ShardRouter router, ShardedSpreadsheetReader reader,
+                         ChangeJournal changeJournal, int chunkSize, int maxInFlight, int requestsPerMinute) {
+        this.googleSheetsService = googleSheetsService;
+        this.router = router;
+        this.changeJournal = changeJournal;
+        this.chunkSize = chunkSize;
+        this.requestIntervalMillis = 60000 / requestsPerMinute;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.tokenWrites = new ConcurrentHashMap<>();
+        this.pendingWrites = ConcurrentHashMap.newKeySet();
+        this.addedCount = new AtomicInteger();
+        this.updatedCount = new AtomicInteger();
+        this.unchangedCount = new AtomicInteger();
+        this.failedCount = new AtomicInteger();
+        this.requestCount = new AtomicInteger();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "sheet-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.shardRows = new LinkedHashMap<>();
+        for (SheetShard shard : router.getShards()) {
+            this.shardRows.put(shard, new ShardRows(shard, reader.getColumnIndexMap(shard),
+                    reader.getShardEntries().getOrDefault(shard, Collections.emptyMap()),
+                    reader.getReader(shard).getRowNumbers()));
+        }
+    }
+
+    /**
+     * Merge each entry with the latest entry of its token and queue the rows to be written in chunks, blocking while
+     * the maximum number of requests are in flight. Values missing from an entry keep the value already on its row.
+     * A token given more than once is written once, with its entries merged in order.
+     * @param entries
+     */
+    @Override
+    public void processResults(Collection<Entry> entries) {
+        Map<SheetShard, Map<String, RowWrite>> writes = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            if (Strings.isNullOrEmpty(entry.getToken())) {
+                continue;
+            }
+
+            ShardRows rows = this.shardRows.get(findShard(entry.getToken()));
+            Map<String, RowWrite> shardWrites = writes.computeIfAbsent(rows.shard, shard -> new LinkedHashMap<>());
+            RowWrite earlierWrite = shardWrites.get(entry.getToken());
+
+            RowWrite write = rows.assign(entry);
+            if (write == null) {
+                if (earlierWrite == null) {
+                    this.unchangedCount.incrementAndGet();
+                }
+                continue;
+            }
+
+            // Journal the change from the row as it was before this call
+            if (earlierWrite != null) {
+                write = new RowWrite(write.entry, earlierWrite.previousEntry);
+            }
+            shardWrites.put(entry.getToken(), write);
+        }
+
+        for (Map.Entry<SheetShard, Map<String, RowWrite>> kv : writes.entrySet()) {
+            List<RowWrite> shardWrites = new ArrayList<>(kv.getValue().values());
+            if (shardWrites.isEmpty()) {
+                continue;
+            }
+            if (!writeHeader(this.shardRows.get(kv.getKey()))) {
+                this.failedCount.addAndGet(shardWrites.size());
+                continue;
+            }
+
+            for (int chunkStart = 0; chunkStart < shardWrites.size(); chunkStart += this.chunkSize) {
+                submit(this.shardRows.get(kv.getKey()),
+                        shardWrites.subList(chunkStart, Math.min(chunkStart + this.chunkSize, shardWrites.size())));
+            }
+        }
+    }
+
+    /**
+     * Wait for every queued chunk to be written
+     */
+    @Override
+    public void close() {
+        CompletableFuture.allOf(this.pendingWrites.toArray(new CompletableFuture[0])).join();
+        this.executor.shutdown();
+
+        logger.info("Imported {} new and {} updated rows in {} requests, {} unchanged, {} failed",
+                this.addedCount.get(), this.updatedCount.get(), this.requestCount.get(),
+                this.unchangedCount.get(), this.failedCount.get());
+    }
+
+    /**
+     * Write the header row of a sheet that doesn't have one yet, before any of its rows
+     * @param rows
+     * @return true if the sheet has a header
+     */
+    private boolean writeHeader(ShardRows rows) {
+        if (!rows.headerMissing) {
+            return true;
+        }
+
+        ValueRange valueRange = new ValueRange();
+        valueRange.setRange(rows.shard.getSheetRange() + "!A1");
+        valueRange.setValues(Collections.singletonList(new ArrayList<>(rows.rowMapper.getColumnNames())));
+
+        BatchUpdateValuesRequest request = new BatchUpdateValuesRequest();
+        request.setValueInputOption("RAW");
+        request.setData(Collections.singletonList(valueRange));
+
+        rows.headerMissing = !send(rows.shard, 1, () -> this.googleSheetsService.spreadsheets().values()
+                .batchUpdate(rows.shard.getSpreadsheetId(), request).execute());
+        return !rows.headerMissing;
+    }
+
+    /**
+     * Send a chunk once a request permit is free and any earlier writes of the same tokens finished
+     * @param rows
+     * @param chunk
+     */
+    private void submit(ShardRows rows, List<RowWrite> chunk) {
+        List<RowWrite> writes = new ArrayList<>(chunk);
+
+        try {
+            this.inFlight.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.failedCount.addAndGet(writes.size());
+            logger.error("Interrupted before writing {} rows to {}", writes.size(), rows.shard);
+            return;
+        }
+
+        List<CompletableFuture<Void>> earlierWrites = writes.stream()
+                .map(write -> this.tokenWrites.get(tokenKey(rows.shard, write.entry.getToken())))
+                .filter(future -> future != null)
+                .distinct()
+                .collect(Collectors.toList());
+
+        CompletableFuture<Void> future = CompletableFuture.allOf(earlierWrites.toArray(new CompletableFuture[0]))
+                .exceptionally(ex -> null)
+                .thenRunAsync(() -> write(rows, writes), this.executor)
+                .exceptionally(ex -> {
+                    logger.error("Error in writing {} rows to {}", writes.size(), rows.shard);
+                    this.failedCount.addAndGet(writes.size());
+                    return null;
+                });
+        this.pendingWrites.add(future);
+        for (RowWrite write : writes) {
+            this.tokenWrites.put(tokenKey(rows.shard, write.entry.getToken()), future);
+        }
+
+        future.whenComplete((result, ex) -> {
+            this.inFlight.release();
+            for (RowWrite write : writes) {
+                this.tokenWrites.remove(tokenKey(rows.shard, write.entry.getToken()), future);
+            }
+            this.pendingWrites.remove(future);
+        });
+    }
+
+    /**
+     * Write a chunk, overwriting the rows of tokens already on the sheet in a single update request and appending the
+     * rest in a single append request, then journal the changes
+     * @param rows
+     * @param writes
+     */
+    private void write(ShardRows rows, List<RowWrite> writes) {
+        List<RowWrite> updatedWrites = new ArrayList<>();
+        List<RowWrite> newWrites = new ArrayList<>();
+        for (RowWrite write : writes) {
+            Integer rowIndex = rows.rowIndexMap.get(write.entry.getToken());
+            if (rowIndex != null) {
+                write.rowIndex = rowIndex;
+                updatedWrites.add(write);
+            }
+            else if (rows.unplacedTokens.contains(write.entry.getToken())) {
+                // Appending it again would leave the token on two rows
+                logger.error("Skipping {} since the row it was appended to is unknown", write.entry.getToken());
+                this.failedCount.incrementAndGet();
+            }
+            else {
+                newWrites.add(write);
+            }
+        }
+
+        List<RowWrite> writtenWrites = new ArrayList<>();
+        if (!updatedWrites.isEmpty()) {
+            BatchUpdateValuesRequest request = new BatchUpdateValuesRequest();
+            request.setValueInputOption("RAW");
+            request.setData(createValueRanges(rows, updatedWrites));
+
+            if (send(rows.shard, updatedWrites.size(), () -> this.googleSheetsService.spreadsheets().values()
+                    .batchUpdate(rows.shard.getSpreadsheetId(), request).execute())) {
+                this.updatedCount.addAndGet(updatedWrites.size());
+                writtenWrites.addAll(updatedWrites);
+            }
+            else {
+                this.failedCount.addAndGet(updatedWrites.size());
+            }
+        }
+        if (!newWrites.isEmpty()) {
+            List<RowWrite> appendedWrites = append(rows, newWrites);
+            this.addedCount.addAndGet(appendedWrites.size());
+            this.failedCount.addAndGet(newWrites.size() - appendedWrites.size());
+            writtenWrites.addAll(appendedWrites);
+        }
+        if (writtenWrites.isEmpty()) {
+            return;
+        }
+
+        long timestamp = System.currentTimeMillis();
+        List<ChangeRecord> records = new ArrayList<>();
+        for (RowWrite write : writtenWrites) {
+            records.addAll(ChangeRecord.diff(write.previousEntry, write.entry, IMPORT_SOURCE, timestamp));
+        }
+
+        if (this.changeJournal != null) {
+            try {
+                this.changeJournal.append(records);
+            } catch (IOException ex) {
+                logger.error("Unable to journal changes for {} imported rows", writtenWrites.size());
+            }
+        }
+        logger.info("Imported {} rows to {}", writtenWrites.size(), rows.shard);
+    }
+
+    /**
+     * Append new rows after the last row of the sheet, inserting rows so nothing below the table is overwritten,
+     * and remember the rows the API reports they landed in.
+     * An append isn't idempotent, so it is only sent again as it is when it was throttled or the service was
+     * unavailable. After any other failure the server may have applied it, so the sheet is read again after the
+     * backoff and only the tokens not found on it are appended again. Tokens that can't be checked are left unplaced.
+     * @param rows
+     * @param writes
+     * @return the writes that are on the sheet
+     */
+    private List<RowWrite> append(ShardRows rows, List<RowWrite> writes) {
+        List<RowWrite> appendedWrites = new ArrayList<>();
+        List<RowWrite> pendingWrites = new ArrayList<>(writes);
+
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            boolean maybeApplied;
+            try {
+                awaitQuota();
+                this.requestCount.incrementAndGet();
+                placeRows(rows, pendingWrites, sendAppend(rows, pendingWrites));
+                appendedWrites.addAll(pendingWrites);
+                return appendedWrites;
+            } catch (IOException ex) {
+                logger.error("Error in appending {} rows to {}, attempt {} of {}", pendingWrites.size(), rows.shard,
+                        attempt, MAX_ATTEMPTS);
+                if (!isRetryable(ex)) {
+                    return appendedWrites;
+                }
+                maybeApplied = !isRejected(ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return appendedWrites;
+            }
+
+            if (!maybeApplied && attempt == MAX_ATTEMPTS) {
+                return appendedWrites;
+            }
+            if (!backoff(backoffMillis)) {
+                // Whether the rows were appended can't be told without reading the sheet
+                if (maybeApplied) {
+                    pendingWrites.forEach(write -> rows.unplacedTokens.add(write.entry.getToken()));
+                }
+                return appendedWrites;
+            }
+            backoffMillis *= 2;
+
+            if (maybeApplied) {
+                List<RowWrite> foundWrites = findAppendedRows(rows, pendingWrites);
+                if (foundWrites == null) {
+                    pendingWrites.forEach(write -> rows.unplacedTokens.add(write.entry.getToken()));
+                    logger.error("Unable to tell if {} rows were appended to {}, leaving them unplaced",
+                            pendingWrites.size(), rows.shard);
+                    return appendedWrites;
+                }
+                appendedWrites.addAll(foundWrites);
+                pendingWrites.removeAll(foundWrites);
+                if (pendingWrites.isEmpty()) {
+                    return appendedWrites;
+                }
+            }
+        }
+        return appendedWrites;
+    }
+
+    /**
+     * Send a single append request for the rows
+     * @param rows
+     * @param writes
+     * @return
+     * @throws IOException
+     */
+    private AppendValuesResponse sendAppend(ShardRows rows, List<RowWrite> writes) throws IOException {
+        List<List<Object>> sheetData = new ArrayList<>();
+        for (RowWrite write : writes) {
+            sheetData.add(rows.rowMapper.toRow(write.entry));
+        }
+
+        ValueRange valueRange = new ValueRange();
+        valueRange.setValues(sheetData);
+
+        return this.googleSheetsService.spreadsheets()
+                .values()
+                .append(rows.shard.getSpreadsheetId(), rows.shard.getSheetRange() + "!A1", valueRange)
+                .setValueInputOption("RAW")
+                .setInsertDataOption("INSERT_ROWS")
+                .execute();
+    }
+
+    /**
+     * Remember the rows the API reports appended rows landed in, or that they're unplaced if it doesn't say
+     * @param rows
+     * @param writes
+     * @param response
+     */
+    private void placeRows(ShardRows rows, List<RowWrite> writes, AppendValuesResponse response) {
+        Integer firstRowIndex = response == null || response.getUpdates() == null
+                ? null
+                : SpreadsheetWriter.parseRowIndex(response.getUpdates().getUpdatedRange());
+        for (int i = 0; i < writes.size(); i++) {
+            String token = writes.get(i).entry.getToken();
+            if (firstRowIndex != null) {
+                rows.rowIndexMap.put(token, firstRowIndex + i);
+            }
+            else {
+                rows.unplacedTokens.add(token);
+            }
+        }
+        if (firstRowIndex == null) {
+            logger.error("Unable to tell which rows the {} entries appended to {} landed in", writes.size(), rows.shard);
+        }
+    }
+
+    /**
+     * Read the token column of the sheet to find which of the rows an append that failed did write,
+     * and remember the rows they're on
+     * @param rows
+     * @param writes
+     * @return the writes found on the sheet, or null if the sheet couldn't be read
+     */
+    private List<RowWrite> findAppendedRows(ShardRows rows, List<RowWrite> writes) {
+        int tokenColumn = rows.rowMapper.getColumnIndex("token");
+        if (tokenColumn < 0) {
+            return null;
+        }
+
+        String columnLetter = SpreadsheetReader.columnLetter(tokenColumn);
+        ValueRange response;
+        try {
+            response = this.googleSheetsService.spreadsheets()
+                    .values()
+                    .get(rows.shard.getSpreadsheetId(), rows.shard.getSheetRange() + "!" + columnLetter + "2:" + columnLetter)
+                    .execute();
+        } catch (IOException ex) {
+            logger.error("Error in reading the tokens of {}", rows.shard);
+            return null;
+        }
+
+        // The last row holding a token is the one appended most recently
+        Map<String, Integer> sheetRows = new HashMap<>();
+        List<List<Object>> values = response.getValues() != null ? response.getValues() : Collections.emptyList();
+        for (int i = 0; i < values.size(); i++) {
+            if (!values.get(i).isEmpty()) {
+                sheetRows.put(values.get(i).get(0).toString(), i + 2);
+            }
+        }
+
+        List<RowWrite> foundWrites = new ArrayList<>();
+        for (RowWrite write : writes) {
+            Integer rowIndex = sheetRows.get(write.entry.getToken());
+            if (rowIndex != null) {
+                rows.rowIndexMap.put(write.entry.getToken(), rowIndex);
+                foundWrites.add(write);
+            }
+        }
+        logger.info("Found {} of {} rows on {} after a failed append", foundWrites.size(), writes.size(), rows.shard);
+        return foundWrites;
+    }
+
+    /**
+     * Send a request within the write quota, retrying with backoff if it is throttled or fails on the server side.
+     * Only used for requests that can be sent twice without changing the result.
+     * @param shard
+     * @param rowCount
+     * @param request
+     * @return true if the rows were written
+     */
+    private boolean send(SheetShard shard, int rowCount, SheetRequest request) {
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                awaitQuota();
+                this.requestCount.incrementAndGet();
+                request.send();
+                return true;
+            } catch (IOException ex) {
+                logger.error("Error in writing {} rows to {}, attempt {} of {}", rowCount, shard, attempt, MAX_ATTEMPTS);
+                if (!isRetryable(ex)) {
+                    return false;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            if (attempt < MAX_ATTEMPTS) {
+                if (!backoff(backoffMillis)) {
+                    return false;
+                }
+                backoffMillis *= 2;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a failed request may succeed if sent again, which excludes requests the API rejected as invalid
+     * @param ex
+     * @return
+     */
+    private static boolean isRetryable(IOException ex) {
+        if (!(ex instanceof HttpResponseException)) {
+            return true;
+        }
+        int statusCode = ((HttpResponseException) ex).getStatusCode();
+        return statusCode == TOO_MANY_REQUESTS || statusCode >= 500;
+    }
+
+    /**
+     * Whether the API rejected a request before applying any of it
+     * @param ex
+     * @return
+     */
+    private static boolean isRejected(IOException ex) {
+        if (!(ex instanceof HttpResponseException)) {
+            return false;
+        }
+        int statusCode = ((HttpResponseException) ex).getStatusCode();
+        return statusCode == TOO_MANY_REQUESTS || statusCode == SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Wait before sending a request again
+     * @param backoffMillis
+     * @return false if interrupted while waiting
+     */
+    private static boolean backoff(long backoffMillis) {
+        try {
+            Thread.sleep(backoffMillis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Wait until the next request can be sent without exceeding the write quota
+     * @throws InterruptedException
+     */
+    private void awaitQuota() throws InterruptedException {
+        long waitMillis;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long start = Math.max(now, this.nextRequestMillis);
+            this.nextRequestMillis = start + this.requestIntervalMillis;
+            waitMillis = start - now;
+        }
+
+        if (waitMillis > 0) {
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    /**
+     * Lay out the rows of a chunk, with a single range for each run of consecutive rows
+     * @param rows
+     * @param writes
+     * @return
+     */
+    private List<ValueRange> createValueRanges(ShardRows rows, List<RowWrite> writes) {
+        List<RowWrite> sortedWrites = new ArrayList<>(writes);
+        sortedWrites.sort((left, right) -> Integer.compare(left.rowIndex, right.rowIndex));
+
+        List<ValueRange> valueRanges = new ArrayList<>();
+        List<List<Object>> sheetData = null;
+        int nextRowIndex = -1;
+        for (RowWrite write : sortedWrites) {
+            if (write.rowIndex != nextRowIndex) {
+                sheetData = new ArrayList<>();
+
+                ValueRange valueRange = new ValueRange();
+                valueRange.setRange(rows.shard.getSheetRange() + "!A" + write.rowIndex);
+                valueRange.setValues(sheetData);
+                valueRanges.add(valueRange);
+            }
+
+            sheetData.add(rows.rowMapper.toRow(write.entry));
+            nextRowIndex = write.rowIndex + 1;
+        }
+        return valueRanges;
+    }
+
+    /**
+     * Find the sheet that already holds the token, otherwise the sheet the router assigns it to
+     * @param token
+     * @return
+     */
+    private SheetShard findShard(String token) {
+        for (ShardRows rows : this.shardRows.values()) {
+            if (rows.entries.containsKey(token)) {
+                return rows.shard;
+            }
+        }
+        return this.router.shardFor(token);
+    }
+
+    /**
+     * Key of a token in the map of token writes
+     * @param shard
+     * @param token
+     * @return
+     */
+    private static String tokenKey(SheetShard shard, String token) {
+        return shard + "!" + token;
+    }
+
+    /**
+     * Rows of a single sheet. The entries are only used from the thread queueing them, the rows are also
+     * learned by the threads appending new entries.
+     */
+    private static class ShardRows {
+
+        /**
+         * Sheet the rows are on
+         */
+        private SheetShard shard;
+
+        /**
+         * Lays out each entry in the column order of the sheet
+         */
+        private EntryRowMapper rowMapper;
+
+        /**
+         * Whether the sheet has no header row yet
+         */
+        private boolean headerMissing;
+
+        /**
+         * Latest entry of each token, including entries imported so far
+         */
+        private Map<String, Entry> entries;
+
+        /**
+         * Map of token to its row, as read from the sheet or reported for the rows appended so far
+         */
+        private Map<String, Integer> rowIndexMap;
+
+        /**
+         * Tokens appended to rows the API didn't report
+         */
+        private Set<String> unplacedTokens;
+
+        ShardRows(SheetShard shard, Map<String, Integer> columnIndexMap, Map<String, Entry> existingEntries,
+                  Map<String, Integer> rowNumbers) {
+            this.shard = shard;
+
+            // An empty sheet is given a column for every field
+            this.headerMissing = columnIndexMap.isEmpty();
+            this.rowMapper = new EntryRowMapper(this.headerMissing ? EntryRowMapper.defaultColumnIndexMap() : columnIndexMap);
+            this.entries = new HashMap<>(existingEntries);
+
+            // Use the rows the reader found the entries on
+            this.rowIndexMap = new ConcurrentHashMap<>(rowNumbers);
+            this.rowIndexMap.keySet().retainAll(existingEntries.keySet());
+            this.unplacedTokens = ConcurrentHashMap.newKeySet();
+        }
+
+        /**
+         * Merge the entry with the latest entry of its token, keeping the existing values of fields the entry has
+         * no value for
+         * @param entry
+         * @return the row to write, or null if the row wouldn't change
+         */
+        RowWrite assign(Entry entry) {
+            Entry previousEntry = this.entries.get(entry.getToken());
+            Entry mergedEntry = previousEntry != null ? fillEmptyFields(entry, previousEntry) : entry;
+            if (previousEntry != null && ChangeRecord.diff(previousEntry, mergedEntry, IMPORT_SOURCE, 0).isEmpty()) {
+                return null;
+            }
+
+            this.entries.put(entry.getToken(), mergedEntry);
+            return new RowWrite(mergedEntry, previousEntry);
+        }
+
+        /**
+         * Create an entry with the values of the entry, and the source's values where the entry has none
+         * @param entry
+         * @param source
+         * @return
+         */
+        private static Entry fillEmptyFields(Entry entry, Entry source) {
+            Map<String, Integer> columnIndexMap = EntryRowMapper.defaultColumnIndexMap();
+
+            List<Object> row = new ArrayList<>(columnIndexMap.size());
+            for (String fieldName : columnIndexMap.keySet()) {
+                String value = entry.getFieldValue(fieldName);
+                row.add(!Strings.isNullOrEmpty(value)
+                        ? value : Strings.isNullOrEmpty(source.getFieldValue(fieldName))
+                        ? StringUtils.EMPTY_STRING : source.getFieldValue(fieldName));
+            }
+            return new Entry(row, columnIndexMap);
+        }
+    }
+
+    /**
+     * An entry to write to its token's row
+     */
+    private static class RowWrite {
+
+        /**
+         * Entry to write
+         */
+        private Entry entry;
+
+        /**
+         * Entry the row held before, null if the row is new
+         */
+        private Entry previousEntry;
+
+        /**
+         * Row the entry is written to, set when its chunk is written if the token is on the sheet by then
+         */
+        private int rowIndex;
+
+        RowWrite(Entry entry, Entry previousEntry) {
+            this.entry = entry;
+            this.previousEntry = previousEntry;
+        }
+    }
+}
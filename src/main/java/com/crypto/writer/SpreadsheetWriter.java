@@ -1,9 +1,15 @@
 package com.crypto.writer;
 
-import com.crypto.GoogleSheetsConstants;
 import com.crypto.entity.Entry;
-import com.crypto.util.StringUtils;
+import com.crypto.enums.SourceType;
+import com.crypto.exception.EntryWriteException;
+import com.crypto.journal.ChangeJournal;
+import com.crypto.journal.ChangeRecord;
+import com.crypto.reader.SpreadsheetReader;
+import com.crypto.shard.SheetShard;
+import com.crypto.slack.SlackNotifier;
 import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.AppendValuesResponse;
 import com.google.api.services.sheets.v4.model.Sheet;
 import com.google.api.services.sheets.v4.model.BatchUpdateValuesRequest;
 import com.google.api.services.sheets.v4.model.SheetProperties;
@@ -11,18 +17,22 @@ import com.google.api.services.sheets.v4.model.ValueRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.beans.IntrospectionException;
-import java.beans.PropertyDescriptor;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-public class SpreadsheetWriter {
+public class SpreadsheetWriter implements EntrySink {
 
     /**
      * Logger
@@ -35,9 +45,24 @@ public class SpreadsheetWriter {
     private final String DATE_FORMAT = "MM-dd";
 
     /**
-     * Slack username to post as
+     * Base URL for linking to the spreadsheet
      */
-    private final String SLACK_USERNAME = "investment-spreadsheet-bot";
+    private final String SPREADSHEET_URL = "https://docs.google.com/spreadsheets/d/";
+
+    /**
+     * Source recorded in the journal when the entry's URL isn't from a known source
+     */
+    private final String UNKNOWN_SOURCE = "Unknown";
+
+    /**
+     * Number of rows sent in a single update request
+     */
+    private final int BATCH_SIZE = 500;
+
+    /**
+     * Start of an A1 cell reference, capturing its row
+     */
+    private static final Pattern ROW_PATTERN = Pattern.compile("[A-Za-z]+(\\d+)");
 
     /**
      * Service for accessing Google Sheets
@@ -45,49 +70,312 @@ public class SpreadsheetWriter {
     private Sheets googleSheetsService;
 
     /**
-     * Map of column names from original spreadsheet
+     * Sheet to write to
+     */
+    private SheetShard shard;
+
+    /**
+     * Lays out each entry in the column order of the original spreadsheet
      */
-    private Map<String, Integer> columnIndexMap;
+    private EntryRowMapper rowMapper;
 
     /**
-     * ICO entries that already exist on the spreadsheet
+     * Whether the sheet has no header row yet, written before the first row is appended
+     */
+    private boolean headerMissing;
+
+    /**
+     * ICO entries that already exist on the spreadsheet, including rows added by this writer
      */
     private Map<String, Entry> existingEntries;
 
+    /**
+     * Map of token to its row on the spreadsheet, including rows added by this writer
+     */
+    private Map<String, Integer> rowIndexMap;
+
+    /**
+     * Tokens appended to rows the API didn't report, which can't be written again without leaving them on two rows
+     */
+    private Set<String> unplacedTokens;
+
+    /**
+     * Id of the sheet within its spreadsheet, resolved on the first write
+     */
+    private String sheetId;
+
+    /**
+     * Notifier for posting changes to Slack, optional
+     */
+    private SlackNotifier slackNotifier;
+
+    /**
+     * Journal that committed field changes are appended to, optional
+     */
+    private ChangeJournal changeJournal;
+
+    /**
+     * Reader the existing entries came from, used to complete partially read rows before rewriting them, optional
+     */
+    private SpreadsheetReader spreadsheetReader;
+
     /**
      * Constructor
      */
     public SpreadsheetWriter(Sheets googleSheetsService, Map<String, Integer> columnIndexMap, Map<String, Entry> existingEntries) {
+        this(googleSheetsService, SheetShard.defaultShard(), columnIndexMap, existingEntries, null, null);
+    }
+
+    /**
+     * Constructor
+     */
+    public SpreadsheetWriter(Sheets googleSheetsService, SheetShard shard, Map<String, Integer> columnIndexMap,
+                             Map<String, Entry> existingEntries, SlackNotifier slackNotifier, ChangeJournal changeJournal) {
+        this(googleSheetsService, shard, columnIndexMap, existingEntries, slackNotifier, changeJournal, null);
+    }
+
+    /**
+     * Constructor
+     */
+    public SpreadsheetWriter(Sheets googleSheetsService, SheetShard shard, Map<String, Integer> columnIndexMap,
+                             Map<String, Entry> existingEntries, SlackNotifier slackNotifier, ChangeJournal changeJournal,
+                             SpreadsheetReader spreadsheetReader) {
         this.googleSheetsService = googleSheetsService;
-        this.columnIndexMap = columnIndexMap;
-        this.existingEntries = existingEntries;
+        this.shard = shard;
+
+        // An empty sheet is given a column for every field
+        this.headerMissing = columnIndexMap.isEmpty();
+        this.rowMapper = new EntryRowMapper(this.headerMissing ? EntryRowMapper.defaultColumnIndexMap() : columnIndexMap);
+        this.existingEntries = new LinkedHashMap<>(existingEntries);
+        this.slackNotifier = slackNotifier;
+        this.changeJournal = changeJournal;
+        this.spreadsheetReader = spreadsheetReader;
+        this.unplacedTokens = new HashSet<>();
+
+        // Use the rows the reader found the entries on, otherwise take the entries to be the rows after the header
+        if (spreadsheetReader != null) {
+            this.rowIndexMap = new HashMap<>(spreadsheetReader.getRowNumbers());
+            this.rowIndexMap.keySet().retainAll(this.existingEntries.keySet());
+        }
+        else {
+            this.rowIndexMap = new HashMap<>();
+            int rowIndex = 2;
+            for (String token : this.existingEntries.keySet()) {
+                this.rowIndexMap.put(token, rowIndex++);
+            }
+        }
     }
 
-    public void processResults(Entry entry) {
+    /**
+     * Write the entries in batches of rows. Within a batch, entries already on the sheet are overwritten in a single
+     * update request, and new entries are appended after the last row in a single append request.
+     * @param entries
+     * @throws EntryWriteException naming the entries that weren't written, once every batch has been tried
+     */
+    @Override
+    public void processResults(Collection<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Set<String> failedTokens = new LinkedHashSet<>();
+        if (this.headerMissing && !postHeader()) {
+            entries.forEach(entry -> failedTokens.add(entry.getToken()));
+            throw new EntryWriteException("Unable to write the header row of " + this.shard, failedTokens);
+        }
+
         // Get sheet id
         String sheetId = getSheetId();
 
-        // Find index of row to insert in, account for header row
-        Integer rowIndex = findAvailableRow(entry);
+        List<Entry> pendingEntries = new ArrayList<>(entries);
+        for (int batchStart = 0; batchStart < pendingEntries.size(); batchStart += BATCH_SIZE) {
+            List<Entry> batch = completePartialEntries(
+                    pendingEntries.subList(batchStart, Math.min(batchStart + BATCH_SIZE, pendingEntries.size())),
+                    failedTokens);
+
+            // A token repeated within the batch is only appended once, with its last entry
+            List<Entry> updatedEntries = new ArrayList<>();
+            Map<String, Entry> newEntries = new LinkedHashMap<>();
+            for (Entry entry : batch) {
+                if (this.rowIndexMap.containsKey(entry.getToken())) {
+                    updatedEntries.add(entry);
+                }
+                else if (this.unplacedTokens.contains(entry.getToken())) {
+                    // Appending it again would leave the token on two rows
+                    logger.error("Skipping {} since the row it was appended to is unknown", entry.getToken());
+                    failedTokens.add(entry.getToken());
+                }
+                else {
+                    newEntries.put(entry.getToken(), entry);
+                }
+            }
+
+            if (!updateRows(updatedEntries, sheetId)) {
+                updatedEntries.forEach(entry -> failedTokens.add(entry.getToken()));
+            }
+            if (!appendRows(new ArrayList<>(newEntries.values()), sheetId)) {
+                failedTokens.addAll(newEntries.keySet());
+            }
+        }
+
+        if (!failedTokens.isEmpty()) {
+            throw new EntryWriteException(String.format("Unable to write %d of %d entries to %s",
+                    failedTokens.size(), entries.size(), this.shard), failedTokens);
+        }
+    }
+
+    /**
+     * Overwrite the rows of entries already on the sheet
+     * @param batch
+     * @param sheetId
+     * @return true if the rows were written
+     */
+    private boolean updateRows(List<Entry> batch, String sheetId) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        List<Entry> previousEntries = new ArrayList<>();
+        List<Integer> rowIndexes = new ArrayList<>();
+        List<ValueRange> valueRanges = new ArrayList<>();
+        for (Entry entry : batch) {
+            Integer rowIndex = this.rowIndexMap.get(entry.getToken());
+
+            // Track the entry so a later entry in the batch is compared against it
+            previousEntries.add(this.existingEntries.put(entry.getToken(), entry));
+
+            rowIndexes.add(rowIndex);
+            valueRanges.add(createValueRange(this.shard.getSheetRange(), entry, rowIndex));
+        }
 
         // Post ICO details to sheet
-        postResults(GoogleSheetsConstants.SHEET_TITLE, entry, rowIndex);
+        if (!postResults(valueRanges)) {
+            restoreEntries(batch, previousEntries);
+            return false;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            // Record the committed field changes
+            recordChanges(previousEntries.get(i), batch.get(i));
+
+            // Send slack alert
+            sendSlackAlert(batch.get(i), previousEntries.get(i), sheetId, rowIndexes.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Append entries that aren't on the sheet yet after its last row.
+     * The rows are inserted by the Sheets API, so no row count is needed and concurrent appends don't overwrite each other.
+     * @param batch
+     * @param sheetId
+     * @return true if the rows were written
+     */
+    private boolean appendRows(List<Entry> batch, String sheetId) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        Integer firstRowIndex;
+        try {
+            firstRowIndex = postNewRows(batch);
+        } catch (IOException ex) {
+            logger.error("Error in appending {} rows to {}", batch.size(), this.shard);
+            return false;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
 
-        // Send slack alert
-//        sendSlackAlert(spreadsheetUrl, sheetId);
+            // Track the row so later entries for the token overwrite it
+            this.existingEntries.put(entry.getToken(), entry);
+            if (firstRowIndex != null) {
+                this.rowIndexMap.put(entry.getToken(), firstRowIndex + i);
+            }
+            else {
+                this.unplacedTokens.add(entry.getToken());
+            }
+
+            // Record the committed field changes
+            recordChanges(null, entry);
+
+            // Send slack alert
+            if (firstRowIndex != null) {
+                sendSlackAlert(entry, null, sheetId, firstRowIndex + i);
+            }
+        }
+        if (firstRowIndex == null) {
+            logger.error("Unable to tell which rows the {} entries appended to {} landed in", batch.size(), this.shard);
+        }
+        return true;
     }
 
     /**
-     * Gets the sheet id from the sheet title
+     * Read the hand-filled columns of rows that were only partially read, right before they're rewritten,
+     * and carry them over to the entries being written.
+     * Entries whose row can't be read, or no longer holds their token since the sheet was read, are left out
+     * so their hand-filled columns aren't blanked and another coin's row isn't overwritten.
+     * @param batch
+     * @param failedTokens collects the tokens of entries left out
+     * @return entries that are safe to write
+     */
+    private List<Entry> completePartialEntries(List<Entry> batch, Set<String> failedTokens) {
+        if (this.spreadsheetReader == null) {
+            return batch;
+        }
+
+        List<String> partialTokens = batch.stream()
+                .map(Entry::getToken)
+                .filter(this.spreadsheetReader::isPartial)
+                .collect(Collectors.toList());
+        if (partialTokens.isEmpty()) {
+            return batch;
+        }
+
+        Map<String, Entry> completedEntries = this.spreadsheetReader.completeEntries(partialTokens);
+
+        List<Entry> completeBatch = new ArrayList<>();
+        for (Entry entry : batch) {
+            Entry completedEntry = completedEntries.get(entry.getToken());
+            if (completedEntry != null) {
+                this.existingEntries.put(entry.getToken(), completedEntry);
+                entry.assignDefaultEmptyFields(completedEntry);
+            }
+            else if (this.spreadsheetReader.isPartial(entry.getToken())) {
+                logger.error("Skipping {} since its row couldn't be read or no longer holds it", entry.getToken());
+                failedTokens.add(entry.getToken());
+                continue;
+            }
+            completeBatch.add(entry);
+        }
+        return completeBatch;
+    }
+
+    /**
+     * Returns true if a row for the token is on this sheet
+     * @param token
+     * @return
+     */
+    public boolean containsToken(String token) {
+        return this.rowIndexMap.containsKey(token) || this.unplacedTokens.contains(token);
+    }
+
+    /**
+     * Gets the sheet id from the sheet title, looked up once and reused for later writes
      * @return
      */
     private String getSheetId() {
+        if (this.sheetId != null) {
+            return this.sheetId;
+        }
+
         try {
-            List<Sheet> sheets = this.googleSheetsService.spreadsheets().get(GoogleSheetsConstants.SPREADSHEET_ID).execute().getSheets();
+            List<Sheet> sheets = this.googleSheetsService.spreadsheets().get(this.shard.getSpreadsheetId()).execute().getSheets();
             for (Sheet sheet : sheets) {
                 SheetProperties properties = sheet.getProperties();
-                if (properties.get("title").toString().equals(GoogleSheetsConstants.SHEET_TITLE)) {
-                    return properties.get("sheetId").toString();
+                if (properties.get("title").toString().equals(this.shard.getSheetTitle())) {
+                    this.sheetId = properties.get("sheetId").toString();
+                    return this.sheetId;
                 }
             }
         } catch (IOException ex) {
@@ -97,70 +385,67 @@ public class SpreadsheetWriter {
     }
 
     /**
-     * If the entry already exists, return that index so it can be overwritten.
-     * The index has to be incremented by 1 to account for the header row.
-     *
-     * If the entry doesn't exist, return the first available row.
-     * The index has to be incremented by 2 to account for the header row and the newly inserted row.
-     *
-     * @param entry
-     * @return
+     * Restore the entries a batch that failed to be written replaced
+     * @param batch
+     * @param previousEntries
      */
-    private Integer findAvailableRow(Entry entry) {
-        String tokenName = entry.getToken();
-
-        int index=1;
-        for (Map.Entry<String, Entry> kv : this.existingEntries.entrySet()) {
-            if (kv.getKey().equals(tokenName)) {
-                return index + 1;
-            }
-            ++index;
+    private void restoreEntries(List<Entry> batch, List<Entry> previousEntries) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            this.existingEntries.put(batch.get(i).getToken(), previousEntries.get(i));
         }
-
-        return this.existingEntries.size() + 2;
     }
 
     /**
-     * Send results from ICO Drop list to spreadsheet
-     * @param sheetTitle
+     * Append a journal record for each field that differs from the previous entry
+     * @param previousEntry
      * @param entry
      */
-    private void postResults(String sheetTitle, Entry entry, Integer rowIndex) {
-        String range = sheetTitle + "!A" + rowIndex;
-        List<List<Object>> sheetData = new ArrayList<>();
+    private void recordChanges(Entry previousEntry, Entry entry) {
+        if (this.changeJournal == null) {
+            return;
+        }
 
-        List<Object> rowData = new ArrayList<>();
+        SourceType sourceType = SourceType.fromUrl(entry.getUrl());
+        String source = sourceType != null ? sourceType.name() : UNKNOWN_SOURCE;
 
-        // Find the matching column for each field in the ICOEntry through reflection
-        Field[] icoEntryFields = entry.getClass().getDeclaredFields();
-        for (String columnName : this.columnIndexMap.keySet()) {
-            List<Field> matchedFields =
-                    Arrays.stream(icoEntryFields)
-                            .filter(f ->
-                                    StringUtils.areStringsEqualIgnoreCase(f.getName(), StringUtils.sanitizeAlphanumericStringValue(columnName)))
-                            .collect(Collectors.toList());
+        List<ChangeRecord> records =
+                ChangeRecord.diff(previousEntry, entry, source, System.currentTimeMillis());
+        try {
+            this.changeJournal.append(records);
+        } catch (IOException ex) {
+            logger.error("Unable to journal changes for {}", entry.getToken());
+        }
+    }
 
-            if (matchedFields.size() != 1) {
-                logger.error("Missing field for {}", columnName);
-                rowData.add(StringUtils.EMPTY_STRING);
-                continue;
-            }
+    /**
+     * Queue a message linking to the updated row, sent asynchronously as part of a digest
+     * @param entry
+     * @param previousEntry
+     * @param sheetId
+     * @param rowIndex
+     */
+    private void sendSlackAlert(Entry entry, Entry previousEntry, String sheetId, Integer rowIndex) {
+        if (this.slackNotifier == null) {
+            return;
+        }
 
-            Field matchedField = matchedFields.get(0);
-            try {
-                Object fieldValue = new PropertyDescriptor(matchedField.getName(), entry.getClass()).getReadMethod().invoke(entry);
+        String action = previousEntry != null ? "Updated" : "Added";
+        String rowUrl = SPREADSHEET_URL + this.shard.getSpreadsheetId() + "/edit#gid=" + sheetId + "&range=A" + rowIndex;
+        this.slackNotifier.enqueue(String.format("%s <%s|%s> in row %d", action, rowUrl, entry.getToken(), rowIndex));
+    }
 
-                if (fieldValue == null) {
-                    rowData.add(StringUtils.EMPTY_STRING);
-                }
-                else {
-                    rowData.add(fieldValue);
-                }
+    /**
+     * Create the range holding an entry's row, with a value for each column in the spreadsheet
+     * @param sheetRange
+     * @param entry
+     * @param rowIndex
+     * @return
+     */
+    private ValueRange createValueRange(String sheetRange, Entry entry, Integer rowIndex) {
+        String range = sheetRange + "!A" + rowIndex;
+        List<List<Object>> sheetData = new ArrayList<>();
 
-            } catch (IntrospectionException | IllegalAccessException | InvocationTargetException ex) {
-                logger.error("Illegal access for ICO Entry {}", entry.getToken());
-            }
-        }
+        List<Object> rowData = this.rowMapper.toRow(entry);
 
         sheetData.add(rowData);
 
@@ -168,19 +453,94 @@ public class SpreadsheetWriter {
         valueRange.setRange(range);
         valueRange.setValues(sheetData);
 
-        List<ValueRange> oList = new ArrayList<>();
-        oList.add(valueRange);
+        return valueRange;
+    }
 
+    /**
+     * Send results from ICO Drop list to spreadsheet
+     * @param valueRanges
+     * @return true if the rows were written
+     */
+    private boolean postResults(List<ValueRange> valueRanges) {
         BatchUpdateValuesRequest oRequest = new BatchUpdateValuesRequest();
         oRequest.setValueInputOption("RAW");
-        oRequest.setData(oList);
+        oRequest.setData(valueRanges);
+
+        try {
+            googleSheetsService.spreadsheets().values().batchUpdate(this.shard.getSpreadsheetId(), oRequest).execute();
+        } catch (IOException ex) {
+            logger.error("Error in writing {} rows to {}", valueRanges.size(), this.shard);
+            return false;
+        }
+
+        logger.info("ICO drop results posted to spreadsheet for {} rows", valueRanges.size());
+        return true;
+    }
+
+    /**
+     * Write the header row of an empty sheet, so appended rows start below it
+     * @return true if the header was written
+     */
+    private boolean postHeader() {
+        ValueRange valueRange = new ValueRange();
+        valueRange.setValues(Collections.singletonList(new ArrayList<>(this.rowMapper.getColumnNames())));
 
         try {
-            googleSheetsService.spreadsheets().values().batchUpdate(GoogleSheetsConstants.SPREADSHEET_ID, oRequest).execute();
+            googleSheetsService.spreadsheets().values()
+                    .update(this.shard.getSpreadsheetId(), this.shard.getSheetRange() + "!A1", valueRange)
+                    .setValueInputOption("RAW")
+                    .execute();
         } catch (IOException ex) {
-            ex.printStackTrace();
+            logger.error("Error in writing the header row of {}", this.shard);
+            return false;
+        }
+
+        this.headerMissing = false;
+        logger.info("Wrote the header row of {}", this.shard);
+        return true;
+    }
+
+    /**
+     * Append new rows after the last row of the sheet, inserting rows so nothing below the table is overwritten
+     * @param batch
+     * @return the row the first entry landed in, or null if the response doesn't tell
+     * @throws IOException if the rows weren't written
+     */
+    private Integer postNewRows(List<Entry> batch) throws IOException {
+        List<List<Object>> sheetData = new ArrayList<>();
+        for (Entry entry : batch) {
+            sheetData.add(this.rowMapper.toRow(entry));
+        }
+
+        ValueRange valueRange = new ValueRange();
+        valueRange.setValues(sheetData);
+
+        AppendValuesResponse response = googleSheetsService.spreadsheets().values()
+                .append(this.shard.getSpreadsheetId(), this.shard.getSheetRange() + "!A1", valueRange)
+                .setValueInputOption("RAW")
+                .setInsertDataOption("INSERT_ROWS")
+                .execute();
+
+        logger.info("ICO drop results appended to spreadsheet for {} rows", batch.size());
+
+        Integer firstRowIndex = response.getUpdates() == null ? null : parseRowIndex(response.getUpdates().getUpdatedRange());
+        if (firstRowIndex == null) {
+            logger.error("Unable to tell which rows the {} appended entries landed in", batch.size());
+        }
+        return firstRowIndex;
+    }
+
+    /**
+     * Parse the first row of an A1 range such as Sheet1!A58:T60
+     * @param range
+     * @return the row, or null if the range doesn't start with a row
+     */
+    static Integer parseRowIndex(String range) {
+        if (range == null) {
+            return null;
         }
 
-        logger.info("ICO drop results posted to spreadsheet");
+        Matcher matcher = ROW_PATTERN.matcher(range.substring(range.lastIndexOf('!') + 1));
+        return matcher.lookingAt() ? Integer.valueOf(matcher.group(1)) : null;
     }
 }
@@ -0,0 +1,84 @@
+package com.crypto.cluster;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HashRingTest {
+
+    private static final List<String> WORKERS = Arrays.asList("worker-a", "worker-b", "worker-c", "worker-d");
+
+    @Test
+    public void successorsListEveryWorkerOnce() {
+        HashRing ring = new HashRing(WORKERS);
+
+        for (int i = 0; i < 100; i++) {
+            List<String> successors = ring.successors("Coin " + i);
+            assertEquals(WORKERS.size(), successors.size());
+            assertEquals(new HashSet<>(WORKERS), new HashSet<>(successors));
+        }
+    }
+
+    @Test
+    public void ownerDoesNotDependOnTheOrderWorkersAreListedIn() {
+        HashRing ring = new HashRing(WORKERS);
+        HashRing reversedRing = new HashRing(Arrays.asList("worker-d", "worker-c", "worker-b", "worker-a"));
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.successors("Coin " + i), reversedRing.successors("Coin " + i));
+        }
+    }
+
+    @Test
+    public void tokensDifferingInCaseOrSpacingHaveTheSameOwner() {
+        HashRing ring = new HashRing(WORKERS);
+
+        assertEquals(ring.successors("Some Coin").get(0), ring.successors("somecoin").get(0));
+        assertEquals(ring.successors("Some Coin").get(0), ring.successors(" SOME  COIN ").get(0));
+    }
+
+    @Test
+    public void removingAWorkerOnlyMovesItsTokensToTheirNextWorker() {
+        HashRing ring = new HashRing(WORKERS);
+        HashRing smallerRing = new HashRing(Arrays.asList("worker-a", "worker-b", "worker-d"));
+
+        for (int i = 0; i < 1000; i++) {
+            List<String> successors = ring.successors("Coin " + i);
+            String owner = smallerRing.successors("Coin " + i).get(0);
+
+            if (successors.get(0).equals("worker-c")) {
+                assertEquals(successors.get(1), owner);
+            }
+            else {
+                assertEquals(successors.get(0), owner);
+            }
+        }
+    }
+
+    @Test
+    public void tokensAreSpreadEvenly() {
+        HashRing ring = new HashRing(WORKERS);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            counts.merge(ring.successors("Coin " + i).get(0), 1, Integer::sum);
+        }
+
+        assertEquals(WORKERS.size(), counts.size());
+        for (int count : counts.values()) {
+            assertTrue("Uneven share of " + count, count > 1500 && count < 3500);
+        }
+    }
+
+    @Test
+    public void emptyRingHasNoSuccessors() {
+        assertTrue(new HashRing(Arrays.asList()).successors("Coin").isEmpty());
+    }
+}
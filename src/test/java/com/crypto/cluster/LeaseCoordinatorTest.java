@@ -0,0 +1,126 @@
+package com.crypto.cluster;
+
+import com.crypto.enums.WorkerState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LeaseCoordinatorTest {
+
+    private static final long HEARTBEAT_MILLIS = 20;
+
+    private static final long LEASE_TTL_MILLIS = 10000;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("lease-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void workersOfOtherRunsAreNotMembers() throws Exception {
+        writeLease("old-worker", "run-1", WorkerState.DONE);
+        writeLease("other-worker", "run-3", WorkerState.RUNNING);
+
+        LeaseCoordinator coordinator = join("worker", "run-2");
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(coordinator.owns("Coin " + i));
+            }
+            assertTrue(coordinator.othersFinished());
+        } finally {
+            coordinator.leave();
+        }
+    }
+
+    @Test
+    public void finishedWorkerOfTheSameRunKeepsItsTokens() throws Exception {
+        writeLease("finished-worker", "run-2", WorkerState.DONE);
+
+        LeaseCoordinator coordinator = join("worker", "run-2");
+        try {
+            HashRing ring = new HashRing(Arrays.asList("worker", "finished-worker"));
+            for (int i = 0; i < 100; i++) {
+                String token = "Coin " + i;
+                boolean owned = ring.successors(token).get(0).equals("worker");
+                assertTrue(owned == coordinator.owns(token));
+            }
+        } finally {
+            coordinator.leave();
+        }
+    }
+
+    @Test
+    public void runningWorkerOfTheSameRunIsWaitedFor() throws Exception {
+        writeLease("running-worker", "run-2", WorkerState.RUNNING);
+
+        LeaseCoordinator coordinator = join("worker", "run-2");
+        try {
+            assertFalse(coordinator.othersFinished());
+        } finally {
+            coordinator.leave();
+        }
+    }
+
+    @Test
+    public void workerJoiningAfterMembershipIsFrozenOwnsNothing() throws Exception {
+        LeaseCoordinator member = join("worker", "run-2");
+        member.freezeMembership();
+
+        LeaseCoordinator lateWorker = join("late-worker", "run-2");
+        try {
+            lateWorker.freezeMembership();
+            member.awaitHeartbeat();
+            member.awaitHeartbeat();
+
+            assertTrue(member.isMember());
+            assertFalse(lateWorker.isMember());
+            for (int i = 0; i < 100; i++) {
+                assertTrue(member.owns("Coin " + i));
+                assertFalse(lateWorker.owns("Coin " + i));
+            }
+            assertTrue(member.othersFinished());
+        } finally {
+            lateWorker.leave();
+            member.leave();
+        }
+    }
+
+    private LeaseCoordinator join(String workerId, String runId) throws Exception {
+        LeaseCoordinator coordinator =
+                new LeaseCoordinator(this.directory, workerId, runId, HEARTBEAT_MILLIS, LEASE_TTL_MILLIS);
+        coordinator.join();
+        return coordinator;
+    }
+
+    private void writeLease(String workerId, String runId, WorkerState state) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("run", runId);
+        properties.setProperty("heartbeat", String.valueOf(System.currentTimeMillis()));
+        properties.setProperty("state", state.name());
+
+        try (OutputStream stream = Files.newOutputStream(this.directory.resolve(workerId + ".lease"))) {
+            properties.store(stream, null);
+        }
+    }
+}
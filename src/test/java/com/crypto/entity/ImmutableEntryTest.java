@@ -0,0 +1,93 @@
+package com.crypto.entity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ImmutableEntryTest {
+
+    @Test
+    public void mergeKeepsScrapedValuesAndFillsEmptyOnes() {
+        ImmutableEntry scraped = ImmutableEntry.builder()
+                .setToken("Coin")
+                .setTicker("")
+                .setIcoTokenPrice("0.10 USD")
+                .build();
+        ImmutableEntry source = ImmutableEntry.builder()
+                .setToken("Old Coin")
+                .setTicker("CON")
+                .setIcoTokenPrice("0.20 USD")
+                .setUrl("https://example.com/coin")
+                .build();
+
+        ImmutableEntry merged = scraped.merge(source);
+
+        assertEquals("Coin", merged.getToken());
+        assertEquals("CON", merged.getTicker());
+        assertEquals("0.10 USD", merged.getIcoTokenPrice());
+        assertEquals("https://example.com/coin", merged.getUrl());
+        assertEquals("", scraped.getTicker());
+    }
+
+    @Test
+    public void mergeTakesUserFieldsFromTheSource() {
+        ImmutableEntry scraped = ImmutableEntry.builder()
+                .setToken("Coin")
+                .setType("Scraped type")
+                .setPurchased("")
+                .build();
+        ImmutableEntry source = ImmutableEntry.builder()
+                .setToken("Coin")
+                .setType("Utility")
+                .setKycApproved("Yes")
+                .setPurchased("No")
+                .build();
+
+        ImmutableEntry merged = scraped.merge(source);
+
+        assertEquals("Utility", merged.getType());
+        assertEquals("Yes", merged.getKycApproved());
+        assertEquals("No", merged.getPurchased());
+    }
+
+    @Test
+    public void mergeMatchesTheMutableEntry() {
+        Entry scraped = entry("Coin", "", "1000", "", "0.10 USD", "8", "");
+        Entry source = entry("Old Coin", "CON", "2000", "500", "0.20 USD", "5", "Yes");
+
+        ImmutableEntry merged = ImmutableEntry.of(scraped).merge(ImmutableEntry.of(source));
+        scraped.mergeEntry(source);
+
+        assertTrue(merged.hasSameValues(ImmutableEntry.of(scraped)));
+    }
+
+    @Test
+    public void mergeReturnsTheSameInstanceWhenNothingChanges() {
+        ImmutableEntry entry = ImmutableEntry.of(entry("Coin", "CON", "1000", "500", "0.10 USD", "8", "Yes"));
+
+        assertSame(entry, entry.merge(entry.toBuilder().build()));
+    }
+
+    @Test
+    public void equalityIgnoresHypeRateAndUserFieldsLikeEntry() {
+        Entry left = entry("Coin", "CON", "1000", "500", "0.10 USD", "8", "Yes");
+        Entry right = entry("Coin", "CON", "1000", "500", "0.10 USD", "3", "No");
+
+        assertEquals(left, right);
+        assertEquals(ImmutableEntry.of(left), ImmutableEntry.of(right));
+        assertEquals(ImmutableEntry.of(left).hashCode(), ImmutableEntry.of(right).hashCode());
+
+        right.setRiskRate("High");
+        assertFalse(left.equals(right));
+        assertFalse(ImmutableEntry.of(left).equals(ImmutableEntry.of(right)));
+    }
+
+    private static Entry entry(String token, String ticker, String totalTokens, String fundraisingGoal,
+                               String icoTokenPrice, String hypeRate, String purchased) {
+        return new Entry(token, ticker, "", totalTokens, fundraisingGoal, "", icoTokenPrice, "", "", "",
+                "", "", "", "", "", "", "", "", hypeRate, "", "", "", "", "", "", "", "", purchased);
+    }
+}
@@ -0,0 +1,123 @@
+package com.crypto.journal;
+
+import com.crypto.enums.FsyncPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChangeJournalTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("journal-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void recordsRollIntoNewSegmentsAndReadBackInOrder() throws IOException {
+        try (ChangeJournal journal = new ChangeJournal(this.directory, 512, FsyncPolicy.NEVER)) {
+            for (int i = 0; i < 20; i++) {
+                journal.append(Collections.singletonList(record(i)));
+            }
+            assertEquals(20, journal.getNextSequence());
+        }
+
+        assertTrue(segments().size() > 1);
+
+        List<ChangeRecord> records = ChangeJournal.read(this.directory, 0);
+        assertEquals(20, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, records.get(i).getSequence());
+            assertEquals("Coin " + i, records.get(i).getToken());
+        }
+    }
+
+    @Test
+    public void readStartsAtTheRequestedSequence() throws IOException {
+        try (ChangeJournal journal = new ChangeJournal(this.directory, 512, FsyncPolicy.NEVER)) {
+            List<ChangeRecord> batch = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                batch.add(record(i));
+            }
+            journal.append(batch);
+        }
+
+        List<ChangeRecord> records = ChangeJournal.read(this.directory, 13);
+        assertEquals(7, records.size());
+        assertEquals(13, records.get(0).getSequence());
+        assertEquals(19, records.get(6).getSequence());
+    }
+
+    @Test
+    public void partiallyWrittenRecordIsDiscardedOnReopen() throws IOException {
+        try (ChangeJournal journal = new ChangeJournal(this.directory, 512, FsyncPolicy.NEVER)) {
+            for (int i = 0; i < 5; i++) {
+                journal.append(Collections.singletonList(record(i)));
+            }
+        }
+
+        List<Path> segments = segments();
+        Path lastSegment = segments.get(segments.size() - 1);
+        Files.write(lastSegment, "{\"sequence\":5,\"token\":\"Co".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (ChangeJournal journal = new ChangeJournal(this.directory, 512, FsyncPolicy.NEVER)) {
+            assertEquals(5, journal.getNextSequence());
+            journal.append(Collections.singletonList(record(5)));
+        }
+
+        List<ChangeRecord> records = ChangeJournal.read(this.directory, 0);
+        assertEquals(6, records.size());
+        assertEquals(5, records.get(5).getSequence());
+        assertEquals("Coin 5", records.get(5).getToken());
+    }
+
+    @Test
+    public void journalCanOnlyBeOpenedOnce() throws IOException {
+        try (ChangeJournal journal = new ChangeJournal(this.directory)) {
+            try {
+                new ChangeJournal(this.directory);
+                fail("Opened a journal that is already open");
+            } catch (IOException expected) {
+            }
+        }
+
+        new ChangeJournal(this.directory).close();
+    }
+
+    private ChangeRecord record(int i) {
+        return new ChangeRecord(1000L + i, "Coin " + i, "ticker", "", "C" + i, "Test");
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
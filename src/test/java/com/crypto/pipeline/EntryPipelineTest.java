@@ -0,0 +1,246 @@
+package com.crypto.pipeline;
+
+import com.crypto.entity.Entry;
+import com.crypto.enums.SourceType;
+import com.crypto.exception.EntryWriteException;
+import com.crypto.writer.EntrySink;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EntryPipelineTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("pipeline-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void everyChangedEntryIsWrittenAndCounted() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        EntryPipeline pipeline = new EntryPipeline(sink, 2, 2, 4);
+        pipeline.start();
+
+        for (int i = 0; i < 50; i++) {
+            pipeline.submit(item("Coin " + i, null));
+        }
+        pipeline.finish();
+
+        assertEquals(50, pipeline.getSubmittedCount());
+        assertEquals(50, pipeline.getWrittenCount());
+        assertEquals(0, pipeline.getFailedCount());
+        assertEquals(50, sink.tokens.size());
+        assertEquals(50, new HashSet<>(sink.tokens).size());
+    }
+
+    @Test
+    public void entriesIdenticalToTheSpreadsheetAreNotWritten() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        EntryPipeline pipeline = new EntryPipeline(sink, 2, 2, 4);
+        pipeline.start();
+
+        for (int i = 0; i < 10; i++) {
+            Document document = page("Coin " + i);
+            Entry existingEntry = i % 2 == 0 ? new Entry(SourceType.ICODrop, document) : null;
+            pipeline.submit(item("Coin " + i, existingEntry));
+        }
+        pipeline.finish();
+
+        assertEquals(5, pipeline.getUnchangedCount());
+        assertEquals(5, pipeline.getWrittenCount());
+        assertEquals(5, sink.tokens.size());
+    }
+
+    @Test
+    public void renamedProjectsWithNoOtherChangeAreNotWritten() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        EntryPipeline pipeline = new EntryPipeline(sink, 2, 2, 4);
+        pipeline.start();
+
+        Entry existingEntry = new Entry(SourceType.ICODrop, page("Coin"));
+        existingEntry.setToken("Old Coin");
+        pipeline.submit(item("Coin", existingEntry));
+        pipeline.finish();
+
+        assertEquals(1, pipeline.getUnchangedCount());
+        assertEquals(0, pipeline.getWrittenCount());
+        assertTrue(sink.tokens.isEmpty());
+    }
+
+    @Test
+    public void itemsWithoutAKnownSourceFail() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        EntryPipeline pipeline = new EntryPipeline(sink, 2, 2, 4);
+        pipeline.start();
+
+        pipeline.submit(new PipelineItem("Coin", "https://example.com/coin/", null));
+        pipeline.finish();
+
+        assertEquals(1, pipeline.getFailedCount());
+        assertEquals(0, pipeline.getWrittenCount());
+        assertTrue(sink.tokens.isEmpty());
+    }
+
+    @Test
+    public void entriesTheSinkDidNotWriteAreFailedAndStayPending() throws IOException, InterruptedException {
+        Set<String> rejectedTokens = new HashSet<>();
+        for (int i = 0; i < 20; i += 4) {
+            rejectedTokens.add("Coin " + i);
+        }
+        RecordingSink sink = new RecordingSink();
+        sink.rejectedTokens = rejectedTokens;
+
+        RunCheckpoint checkpoint = RunCheckpoint.open(this.directory.resolve("run"), "test");
+        EntryPipeline pipeline = new EntryPipeline(sink, 2, 2, 4);
+        pipeline.setCheckpoint(checkpoint);
+        pipeline.start();
+
+        for (int i = 0; i < 20; i++) {
+            pipeline.submit(item("Coin " + i, null));
+        }
+        pipeline.finish();
+        checkpoint.close();
+
+        assertEquals(15, pipeline.getWrittenCount());
+        assertEquals(5, pipeline.getFailedCount());
+        assertEquals(rejectedTokens, checkpoint.getPendingEntries().keySet());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(!rejectedTokens.contains("Coin " + i), checkpoint.isCompleted("Coin " + i));
+        }
+    }
+
+    @Test
+    public void sinkErrorFailsTheWholeBatch() throws InterruptedException {
+        EntrySink sink = entries -> {
+            throw new IllegalStateException();
+        };
+        EntryPipeline pipeline = new EntryPipeline(sink, 2, 2, 4);
+        pipeline.start();
+
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(item("Coin " + i, null));
+        }
+        pipeline.finish();
+
+        assertEquals(0, pipeline.getWrittenCount());
+        assertEquals(10, pipeline.getFailedCount());
+    }
+
+    @Test
+    public void slowSinkHoldsBackSubmit() throws InterruptedException {
+        CountDownLatch released = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink();
+        sink.released = released;
+
+        EntryPipeline pipeline = new EntryPipeline(sink, 1, 1, 2);
+        pipeline.start();
+
+        AtomicInteger submitted = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 200; i++) {
+                    pipeline.submit(item("Coin " + i, null));
+                    submitted.incrementAndGet();
+                }
+                pipeline.finish();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        // Every queue fills up behind the blocked sink, so the producer stops well short of the input
+        Thread.sleep(3000);
+        int submittedWhileBlocked = submitted.get();
+        assertTrue("Submitted " + submittedWhileBlocked + " while the sink was blocked", submittedWhileBlocked < 150);
+        Thread.sleep(500);
+        assertEquals(submittedWhileBlocked, submitted.get());
+
+        released.countDown();
+        producer.join(30000);
+        assertFalse(producer.isAlive());
+        assertEquals(200, pipeline.getWrittenCount());
+        assertEquals(200, sink.tokens.size());
+    }
+
+    private static PipelineItem item(String name, Entry existingEntry) {
+        Document document = page(name);
+        PipelineItem item = new PipelineItem(name, document.location(), existingEntry);
+        item.setDocument(document);
+        return item;
+    }
+
+    /**
+     * ICO Drops page for the coin, at a URL the slug index doesn't record
+     * @param name
+     * @return
+     */
+    private static Document page(String name) {
+        String url = "https://icodrops.com/test/" + name.toLowerCase().replace(' ', '-') + "/";
+        return Jsoup.parse("<div class=\"ico-desk\"><div class=\"ico-main-info\"><h3>" + name + "</h3></div></div>"
+                + "<div class=\"ico-description\">About " + name + "</div>", url);
+    }
+
+    private static class RecordingSink implements EntrySink {
+
+        private final List<String> tokens = Collections.synchronizedList(new ArrayList<>());
+
+        private Set<String> rejectedTokens = Collections.emptySet();
+
+        private CountDownLatch released;
+
+        @Override
+        public void processResults(Collection<Entry> entries) {
+            if (this.released != null) {
+                try {
+                    this.released.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            Set<String> failedTokens = new HashSet<>();
+            for (Entry entry : entries) {
+                if (this.rejectedTokens.contains(entry.getToken())) {
+                    failedTokens.add(entry.getToken());
+                }
+                else {
+                    this.tokens.add(entry.getToken());
+                }
+            }
+            if (!failedTokens.isEmpty()) {
+                throw new EntryWriteException("Rejected " + failedTokens, failedTokens);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.crypto.pipeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineStageTest {
+
+    @Test
+    public void keptItemsArePassedOnAndTheEndIsPassedOnceEveryWorkerIsDone() throws InterruptedException {
+        BlockingQueue<PipelineItem> input = new ArrayBlockingQueue<>(100);
+        BlockingQueue<PipelineItem> output = new ArrayBlockingQueue<>(100);
+        AtomicInteger errorCount = new AtomicInteger();
+
+        PipelineStage stage = new PipelineStage("test", 4, input, output, item -> {
+            if (item.getIcoName().startsWith("Broken")) {
+                throw new IllegalStateException();
+            }
+            return !item.getIcoName().startsWith("Dropped");
+        }, item -> errorCount.incrementAndGet());
+        stage.start();
+
+        for (int i = 0; i < 30; i++) {
+            input.put(new PipelineItem((i % 3 == 0 ? "Dropped " : i % 3 == 1 ? "Broken " : "Kept ") + i, "", null));
+        }
+        input.put(PipelineItem.END);
+
+        List<PipelineItem> kept = new ArrayList<>();
+        PipelineItem item;
+        while ((item = output.poll(5, TimeUnit.SECONDS)) != PipelineItem.END) {
+            kept.add(item);
+        }
+
+        assertEquals(10, kept.size());
+        assertTrue(kept.stream().allMatch(keptItem -> keptItem.getIcoName().startsWith("Kept")));
+        assertEquals(10, errorCount.get());
+        assertNull(output.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void fullOutputQueueHoldsBackTheStage() throws InterruptedException {
+        BlockingQueue<PipelineItem> input = new ArrayBlockingQueue<>(100);
+        BlockingQueue<PipelineItem> output = new ArrayBlockingQueue<>(2);
+        AtomicInteger processedCount = new AtomicInteger();
+
+        PipelineStage stage = new PipelineStage("test", 1, input, output, item -> {
+            processedCount.incrementAndGet();
+            return true;
+        }, item -> {});
+        stage.start();
+
+        for (int i = 0; i < 10; i++) {
+            input.put(new PipelineItem("Coin " + i, "", null));
+        }
+        input.put(PipelineItem.END);
+
+        // Two items fill the output queue and the worker blocks holding the third
+        Thread.sleep(200);
+        assertEquals(3, processedCount.get());
+        assertEquals(2, output.size());
+
+        List<String> names = new ArrayList<>();
+        PipelineItem item;
+        while ((item = output.poll(5, TimeUnit.SECONDS)) != PipelineItem.END) {
+            names.add(item.getIcoName());
+        }
+
+        assertEquals(10, processedCount.get());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Coin " + i, names.get(i));
+        }
+    }
+
+    @Test
+    public void abortStopsWorkersWaitingOnTheInput() throws InterruptedException {
+        BlockingQueue<PipelineItem> input = new ArrayBlockingQueue<>(10);
+        BlockingQueue<PipelineItem> output = new ArrayBlockingQueue<>(10);
+
+        PipelineStage stage = new PipelineStage("test", 2, input, output, item -> true, item -> {});
+        stage.start();
+        stage.abort();
+        Thread.sleep(100);
+
+        input.put(new PipelineItem("Coin", "", null));
+        assertNull(output.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, input.size());
+    }
+}
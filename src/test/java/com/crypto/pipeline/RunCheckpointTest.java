@@ -0,0 +1,150 @@
+package com.crypto.pipeline;
+
+import com.crypto.entity.ImmutableEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RunCheckpointTest {
+
+    private static final String PARAMETERS = "output=SHEETS: run= items=2:0000abcd";
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("checkpoint-test").resolve("run");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory.getParent())) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void progressIsResumedByTheSameRun() throws IOException {
+        leaveProgress(PARAMETERS);
+
+        RunCheckpoint checkpoint = RunCheckpoint.open(this.directory, PARAMETERS);
+        try {
+            assertTrue(checkpoint.isCompleted("Done Coin"));
+            assertEquals("https://icodrops.com/resolved-coin/", checkpoint.getResolvedUrl("Resolved Coin"));
+            assertEquals("Spilled Coin", checkpoint.getPendingEntries().get("Spilled Coin").getToken());
+        } finally {
+            checkpoint.close();
+        }
+    }
+
+    @Test
+    public void progressOfARunWithOtherParametersIsDiscarded() throws IOException {
+        leaveProgress(PARAMETERS);
+
+        RunCheckpoint checkpoint = RunCheckpoint.open(this.directory, "output=CSV:/tmp/out.csv run= items=2:0000abcd");
+        try {
+            assertFalse(checkpoint.isCompleted("Done Coin"));
+            assertFalse(checkpoint.hasPendingEntries());
+        } finally {
+            checkpoint.close();
+        }
+    }
+
+    @Test
+    public void progressOlderThanTheMaximumAgeIsDiscarded() throws Exception {
+        leaveProgress(PARAMETERS);
+        Thread.sleep(20);
+
+        RunCheckpoint checkpoint = RunCheckpoint.open(this.directory, PARAMETERS, 10);
+        try {
+            assertFalse(checkpoint.isCompleted("Done Coin"));
+            assertFalse(checkpoint.hasPendingEntries());
+        } finally {
+            checkpoint.close();
+        }
+    }
+
+    @Test
+    public void progressWithoutAStampIsDiscarded() throws IOException {
+        leaveProgress(PARAMETERS);
+        Files.delete(this.directory.resolve("checkpoint.properties"));
+
+        RunCheckpoint checkpoint = RunCheckpoint.open(this.directory, PARAMETERS);
+        try {
+            assertFalse(checkpoint.isCompleted("Done Coin"));
+        } finally {
+            checkpoint.close();
+        }
+    }
+
+    @Test
+    public void committedEntriesAreNoLongerPending() throws IOException {
+        leaveProgress(PARAMETERS);
+
+        RunCheckpoint checkpoint = RunCheckpoint.open(this.directory, PARAMETERS);
+        checkpoint.recordCommitted(Collections.singletonList("Spilled Coin"));
+        checkpoint.close();
+
+        checkpoint = RunCheckpoint.open(this.directory, PARAMETERS);
+        try {
+            assertFalse(checkpoint.hasPendingEntries());
+            assertTrue(checkpoint.isCompleted("Spilled Coin"));
+        } finally {
+            checkpoint.close();
+        }
+    }
+
+    @Test
+    public void completedCheckpointIsDeleted() throws IOException {
+        leaveProgress(PARAMETERS);
+
+        RunCheckpoint.open(this.directory, PARAMETERS).complete();
+        assertFalse(Files.exists(this.directory));
+    }
+
+    @Test
+    public void partiallyWrittenLinesAreDiscardedBeforeAppending() throws IOException {
+        leaveProgress(PARAMETERS);
+        Files.write(this.directory.resolve("progress.log"), "COMMITTED\tSpi".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        Files.write(this.directory.resolve("pending.ndjson"), "{\"key\":\"Cut".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        RunCheckpoint checkpoint = RunCheckpoint.open(this.directory, PARAMETERS);
+        checkpoint.recordResolved("Next Coin", "https://icodrops.com/next-coin/");
+        checkpoint.spill("Next Coin", ImmutableEntry.builder().setToken("Next Coin").build().toEntry());
+        checkpoint.close();
+
+        checkpoint = RunCheckpoint.open(this.directory, PARAMETERS);
+        try {
+            assertTrue(checkpoint.isCompleted("Done Coin"));
+            assertFalse(checkpoint.isCompleted("Spi"));
+            assertEquals("https://icodrops.com/next-coin/", checkpoint.getResolvedUrl("Next Coin"));
+            assertEquals(2, checkpoint.getPendingEntries().size());
+            assertEquals("Next Coin", checkpoint.getPendingEntries().get("Next Coin").getToken());
+        } finally {
+            checkpoint.close();
+        }
+    }
+
+    private void leaveProgress(String parameters) throws IOException {
+        RunCheckpoint checkpoint = RunCheckpoint.open(this.directory, parameters);
+        checkpoint.recordUnchanged("Done Coin");
+        checkpoint.recordResolved("Resolved Coin", "https://icodrops.com/resolved-coin/");
+        checkpoint.spill("Spilled Coin", ImmutableEntry.builder().setToken("Spilled Coin").build().toEntry());
+        checkpoint.close();
+    }
+}
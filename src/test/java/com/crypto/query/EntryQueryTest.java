@@ -0,0 +1,102 @@
+package com.crypto.query;
+
+import com.crypto.entity.Entry;
+import com.crypto.entity.ImmutableEntry;
+import com.crypto.enums.QueryColumn;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EntryQueryTest {
+
+    private static final LocalDate REFERENCE_DATE = LocalDate.of(2018, 6, 15);
+
+    @Test
+    public void topKMatchesAFullSortCutToTheLimit() {
+        Random random = new Random(42);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // Repeated goals check that ties keep catalog order, and unknown goals that they sort last
+            String goal = i % 10 == 0 ? "TBA" : "$" + random.nextInt(50) + "M";
+            entries.add(entry("Coin " + i, goal, "2018-07-01", i % 2 == 0 ? "ERC20" : "NEP5"));
+        }
+        EntryCatalog catalog = new EntryCatalog(entries, REFERENCE_DATE);
+
+        for (boolean ascending : new boolean[] {true, false}) {
+            int[] sortedRows = catalog.query().orderBy(QueryColumn.FUNDRAISING_GOAL, ascending).rows();
+            assertEquals(entries.size(), sortedRows.length);
+
+            for (int limit : new int[] {0, 1, 7, 100, 499, 500, 10000}) {
+                int[] topRows = catalog.query().orderBy(QueryColumn.FUNDRAISING_GOAL, ascending).limit(limit).rows();
+                assertArrayEquals(Arrays.copyOf(sortedRows, Math.min(limit, sortedRows.length)), topRows);
+            }
+        }
+    }
+
+    @Test
+    public void sortedRowsAreInOrderWithUnknownValuesLast() {
+        EntryCatalog catalog = new EntryCatalog(Arrays.asList(
+                entry("Alpha", "$5M", "2018-07-01", "ERC20"),
+                entry("Beta", "TBA", "2018-07-01", "ERC20"),
+                entry("Gamma", "$1M", "2018-07-01", "ERC20"),
+                entry("Delta", "$5M", "2018-07-01", "ERC20"),
+                entry("Epsilon", "1,000 ETH", "2018-07-01", "ERC20")), REFERENCE_DATE);
+
+        assertEquals(Arrays.asList("Gamma", "Alpha", "Delta", "Beta", "Epsilon"),
+                tokens(catalog.query().orderBy(QueryColumn.FUNDRAISING_GOAL, true).list()));
+        assertEquals(Arrays.asList("Alpha", "Delta", "Gamma", "Beta", "Epsilon"),
+                tokens(catalog.query().orderBy(QueryColumn.FUNDRAISING_GOAL, false).list()));
+    }
+
+    @Test
+    public void limitAboveTheMatchCountReturnsEveryMatch() {
+        EntryCatalog catalog = new EntryCatalog(Arrays.asList(
+                entry("Alpha", "$5M", "2018-07-01", "ERC20"),
+                entry("Beta", "$2M", "2018-07-01", "NEP5"),
+                entry("Gamma", "$1M", "2018-07-01", "ERC20")), REFERENCE_DATE);
+
+        assertEquals(Arrays.asList("Gamma", "Alpha"), tokens(catalog.query()
+                .whereTokenType("erc20")
+                .orderBy(QueryColumn.FUNDRAISING_GOAL, true)
+                .limit(Integer.MAX_VALUE)
+                .list()));
+        assertEquals(Arrays.asList("Alpha", "Beta"), tokens(catalog.query().limit(2).list()));
+    }
+
+    @Test
+    public void filtersCombineWithLookups() {
+        EntryCatalog catalog = new EntryCatalog(Arrays.asList(
+                entry("Alpha", "$5M", "2018-07-01", "ERC20"),
+                entry("Beta", "$2M", "2018-05-01", "ERC20"),
+                entry("Gamma", "$1M", "TBA", "ERC20"),
+                entry("Alpha", "$20M", "2018-08-01", "NEP5")), REFERENCE_DATE);
+
+        assertEquals(Arrays.asList("Alpha", "Beta"), tokens(catalog.query()
+                .whereLessThan(QueryColumn.FUNDRAISING_GOAL, 10e6)
+                .whereTokenType("ERC20")
+                .whereStartsBetween(LocalDate.MIN, LocalDate.MAX)
+                .list()));
+        assertEquals(Arrays.asList("Alpha", "Alpha"), tokens(catalog.query().whereUpcoming().whereToken("alpha").list()));
+        assertEquals(Collections.singletonList("Alpha"), tokens(catalog.query().whereToken("ALPHA")
+                .whereGreaterThan(QueryColumn.FUNDRAISING_GOAL, 10e6).list()));
+        assertEquals(3, catalog.query().whereStartsBetween(LocalDate.MIN, LocalDate.MAX).count());
+    }
+
+    private static List<String> tokens(List<ImmutableEntry> entries) {
+        return entries.stream().map(ImmutableEntry::getToken).collect(Collectors.toList());
+    }
+
+    private static Entry entry(String token, String fundraisingGoal, String icoStartDate, String tokenType) {
+        return new Entry(token, "", "", "", fundraisingGoal, "", "", "", "", "", "", "", icoStartDate, "", tokenType,
+                "", "", "", "", "", "", "", "https://icodrops.com/" + token.toLowerCase() + "/", "", "", "", "", "");
+    }
+}
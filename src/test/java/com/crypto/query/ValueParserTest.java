@@ -0,0 +1,82 @@
+package com.crypto.query;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ValueParserTest {
+
+    private static final LocalDate REFERENCE_DATE = LocalDate.of(2018, 6, 15);
+
+    @Test
+    public void amountsReadSeparatorsAndMagnitudes() {
+        assertEquals(0.05, ValueParser.parseAmount("$0.05"), 1e-9);
+        assertEquals(20000000, ValueParser.parseAmount("20,000,000"), 1e-9);
+        assertEquals(10000000, ValueParser.parseAmount("10M USD"), 1e-9);
+        assertEquals(2500, ValueParser.parseAmount("2.5k"), 1e-9);
+        assertEquals(1.2e9, ValueParser.parseAmount("1.2 billion"), 1e-3);
+        assertTrue(Double.isNaN(ValueParser.parseAmount("TBA")));
+        assertTrue(Double.isNaN(ValueParser.parseAmount(null)));
+    }
+
+    @Test
+    public void exchangeRatesUseTheValueAfterTheEqualsSign() {
+        assertEquals(0.05, ValueParser.parseAmount("1 ABC = 0.05 USD"), 1e-9);
+        assertEquals("USD", ValueParser.parseCurrency("1 ABC = 0.05 USD"));
+        assertEquals("ETH", ValueParser.parseCurrency("1 ABC = 0.0002 ETH"));
+    }
+
+    @Test
+    public void currenciesAreReadFromCodesNamesAndSymbols() {
+        assertEquals("USD", ValueParser.parseCurrency("$0.05"));
+        assertEquals("USD", ValueParser.parseCurrency("5 million dollars"));
+        assertEquals("USD", ValueParser.parseCurrency("0.10 USDT"));
+        assertEquals("EUR", ValueParser.parseCurrency("€2M"));
+        assertEquals("BTC", ValueParser.parseCurrency("150 BTC"));
+        assertEquals("BNB", ValueParser.parseCurrency("10 BNB"));
+        assertNull(ValueParser.parseCurrency("20,000,000"));
+        assertNull(ValueParser.parseCurrency("20,000,000 tokens"));
+    }
+
+    @Test
+    public void usdAmountsAreUnknownInAnotherCurrency() {
+        assertEquals(0.05, ValueParser.parseUsdAmount("$0.05"), 1e-9);
+        assertEquals(10000000, ValueParser.parseUsdAmount("10M USD"), 1e-9);
+        assertEquals(0.05, ValueParser.parseUsdAmount("1 ABC = 0.05"), 1e-9);
+        assertEquals(20000000, ValueParser.parseUsdAmount("20,000,000"), 1e-9);
+        assertTrue(Double.isNaN(ValueParser.parseUsdAmount("50,000 ETH")));
+        assertTrue(Double.isNaN(ValueParser.parseUsdAmount("1 ABC = 0.0002 ETH")));
+        assertTrue(Double.isNaN(ValueParser.parseUsdAmount("1 ETH = 500 ABC")));
+    }
+
+    @Test
+    public void scoresReadNumbersAndRatingLevels() {
+        assertEquals(4.2, ValueParser.parseScore("4.2/5"), 1e-9);
+        assertEquals(5, ValueParser.parseScore("Very High Interest"), 1e-9);
+        assertEquals(4, ValueParser.parseScore("High"), 1e-9);
+        assertEquals(1, ValueParser.parseScore("very low"), 1e-9);
+        assertTrue(Double.isNaN(ValueParser.parseScore("n/a")));
+    }
+
+    @Test
+    public void datesUseTheFormatThatMatchesFirst() {
+        assertEquals(LocalDate.of(2018, 1, 15).toEpochDay(), ValueParser.parseDate("2018-01-15", REFERENCE_DATE));
+        assertEquals(LocalDate.of(2018, 1, 15).toEpochDay(), ValueParser.parseDate("15.01.2018", REFERENCE_DATE));
+        assertEquals(LocalDate.of(2017, 3, 2).toEpochDay(), ValueParser.parseDate("2nd March 2017", REFERENCE_DATE));
+        assertEquals(LocalDate.of(2019, 1, 15).toEpochDay(), ValueParser.parseDate("Jan 15, 2019 - Feb 15, 2019", REFERENCE_DATE));
+        assertEquals(ValueParser.UNKNOWN_DATE, ValueParser.parseDate("TBA", REFERENCE_DATE));
+        assertEquals(ValueParser.UNKNOWN_DATE, ValueParser.parseDate("2018-02-30", REFERENCE_DATE));
+    }
+
+    @Test
+    public void datesWithoutAYearAreTheClosestToTheReferenceDate() {
+        assertEquals(LocalDate.of(2018, 7, 1).toEpochDay(), ValueParser.parseDate("Jul 1", REFERENCE_DATE));
+        assertEquals(LocalDate.of(2019, 1, 5).toEpochDay(), ValueParser.parseDate("5 Jan", LocalDate.of(2018, 12, 20)));
+        assertEquals(LocalDate.of(2017, 12, 28).toEpochDay(), ValueParser.parseDate("Dec 28", LocalDate.of(2018, 1, 3)));
+        assertEquals(LocalDate.of(2020, 2, 29).toEpochDay(), ValueParser.parseDate("29 Feb", LocalDate.of(2019, 12, 1)));
+    }
+}
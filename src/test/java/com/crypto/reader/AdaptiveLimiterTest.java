@@ -0,0 +1,88 @@
+package com.crypto.reader;
+
+import com.crypto.enums.SourceType;
+import com.crypto.util.Deadline;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveLimiterTest {
+
+    /**
+     * Latency short enough that a cut is never held back for being within a round trip of the last one
+     */
+    private static final long LATENCY_NANOS = 1000;
+
+    @Test
+    public void steadyLatencyRaisesTheLimit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(SourceType.ICODrop);
+        int initialLimit = limiter.getLimit();
+
+        complete(limiter, 100, LATENCY_NANOS);
+
+        assertTrue(limiter.getLimit() > initialLimit);
+        assertEquals(0, limiter.getDecreaseCount());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void singleSlowResponsesDoNotCutTheLimit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(SourceType.ICODrop);
+        complete(limiter, 40, LATENCY_NANOS);
+
+        // One slow response in every five leaves the median where it was
+        for (int i = 0; i < 10; i++) {
+            complete(limiter, 4, LATENCY_NANOS);
+            complete(limiter, 1, LATENCY_NANOS * 50);
+        }
+
+        assertEquals(0, limiter.getDecreaseCount());
+    }
+
+    @Test
+    public void sustainedLatencyRiseCutsTheLimit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(SourceType.ICODrop);
+        complete(limiter, 40, LATENCY_NANOS);
+        int limitBefore = limiter.getLimit();
+
+        complete(limiter, 20, LATENCY_NANOS * 5);
+
+        assertTrue(limiter.getDecreaseCount() > 0);
+        assertTrue(limiter.getLimit() < limitBefore);
+    }
+
+    @Test
+    public void baselineFollowsAHostThatGotSlowerForGood() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(SourceType.ICODrop);
+        complete(limiter, 40, LATENCY_NANOS);
+
+        complete(limiter, 2000, LATENCY_NANOS * 5);
+        long decreaseCount = limiter.getDecreaseCount();
+        int limit = limiter.getLimit();
+
+        complete(limiter, 100, LATENCY_NANOS * 5);
+
+        assertEquals(decreaseCount, limiter.getDecreaseCount());
+        assertTrue(limiter.getLimit() > limit);
+    }
+
+    @Test
+    public void overloadHalvesTheLimit() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(SourceType.ICODrop);
+        int initialLimit = limiter.getLimit();
+
+        limiter.acquire(Deadline.NONE);
+        limiter.releaseOverloaded();
+
+        assertEquals(initialLimit / 2, limiter.getLimit());
+        assertEquals(1, limiter.getDecreaseCount());
+    }
+
+    private static void complete(AdaptiveLimiter limiter, int count, long latencyNanos) throws Exception {
+        for (int i = 0; i < count; i++) {
+            limiter.acquire(Deadline.NONE);
+            limiter.release(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.crypto.reader;
+
+import com.crypto.entity.Entry;
+import com.crypto.exception.InvalidArgumentException;
+import com.crypto.writer.CsvEntrySink;
+import com.crypto.writer.EntrySink;
+import com.crypto.writer.NdjsonEntrySink;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EntryFileReaderTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("entry-file-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void csvColumnsAreMatchedByNameInAnyOrder() throws IOException {
+        Path file = write("entries.csv", "\uFEFFICO Token Price,Notes,Token,Ticker\r\n"
+                + "$0.05,ignored,Alpha,ALP\r\n"
+                + "\r\n"
+                + "$0.10,,Beta,BET\n");
+
+        List<Entry> entries = readAll(file, 10);
+
+        assertEquals(Arrays.asList("Alpha", "Beta"), tokens(entries));
+        assertEquals("$0.05", entries.get(0).getIcoTokenPrice());
+        assertEquals("ALP", entries.get(0).getTicker());
+        assertEquals("", entries.get(0).getProjectSummary());
+    }
+
+    @Test
+    public void csvQuotedValuesKeepSeparatorsQuotesAndLineBreaks() throws IOException {
+        Path file = write("entries.csv", "token,projectSummary,ticker\n"
+                + "Alpha,\"Pays, \"\"fast\"\"\nand cheap\",ALP\n"
+                + "Beta,\"\",BET");
+
+        List<Entry> entries = readAll(file, 10);
+
+        assertEquals(Arrays.asList("Alpha", "Beta"), tokens(entries));
+        assertEquals("Pays, \"fast\"\nand cheap", entries.get(0).getProjectSummary());
+        assertEquals("ALP", entries.get(0).getTicker());
+        assertEquals("BET", entries.get(1).getTicker());
+    }
+
+    @Test
+    public void recordsWithoutATokenAreSkipped() throws IOException {
+        Path file = write("entries.csv", "token,ticker\n,NONE\nAlpha,ALP\n");
+
+        assertEquals(Arrays.asList("Alpha"), tokens(readAll(file, 10)));
+    }
+
+    @Test
+    public void ndjsonSkipsBlankAndInvalidLines() throws IOException {
+        Path file = write("entries.ndjson", "{\"token\":\"Alpha\",\"ICO Token Price\":\"$0.05\",\"extra\":1}\n"
+                + "\n"
+                + "{not json\n"
+                + "{\"token\":\"Beta\",\"ticker\":null}\n"
+                + "{\"ticker\":\"NONE\"}\n");
+
+        List<Entry> entries = readAll(file, 10);
+
+        assertEquals(Arrays.asList("Alpha", "Beta"), tokens(entries));
+        assertEquals("$0.05", entries.get(0).getIcoTokenPrice());
+        assertEquals("", entries.get(1).getTicker());
+    }
+
+    @Test
+    public void entriesAreReadInChunks() throws IOException {
+        StringBuilder content = new StringBuilder("token\n");
+        for (int i = 0; i < 5; i++) {
+            content.append("Coin ").append(i).append('\n');
+        }
+        Path file = write("entries.csv", content.toString());
+
+        try (EntryFileReader reader = new EntryFileReader(file)) {
+            assertEquals(Arrays.asList("Coin 0", "Coin 1"), tokens(reader.readEntries(2)));
+            assertEquals(Arrays.asList("Coin 2", "Coin 3"), tokens(reader.readEntries(2)));
+            assertEquals(Arrays.asList("Coin 4"), tokens(reader.readEntries(2)));
+            assertTrue(reader.readEntries(2).isEmpty());
+        }
+    }
+
+    @Test
+    public void filesWrittenByTheLocalSinksReadBackUnchanged() throws IOException {
+        List<Entry> entries = Arrays.asList(entry("Alpha", "Pays, \"fast\"\r\nand cheap"), entry("Beta", "Plain"));
+
+        for (String fileName : Arrays.asList("entries.csv", "entries.ndjson")) {
+            Path file = this.directory.resolve(fileName);
+            try (EntrySink sink = fileName.endsWith(".csv") ? new CsvEntrySink(file) : new NdjsonEntrySink(file)) {
+                sink.processResults(entries);
+            }
+
+            List<Entry> readEntries = readAll(file, 10);
+            assertEquals(entries.size(), readEntries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                for (String fieldName : Entry.getFieldNames()) {
+                    assertEquals(fileName + " " + fieldName, entries.get(i).getFieldValue(fieldName),
+                            readEntries.get(i).getFieldValue(fieldName));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unknownExtensionsAreRejected() {
+        try {
+            EntryFileReader.formatOf(Paths.get("entries.txt"));
+            fail("Accepted a file that is neither CSV nor NDJSON");
+        } catch (InvalidArgumentException expected) {
+        }
+    }
+
+    private Path write(String fileName, String content) throws IOException {
+        return Files.write(this.directory.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Entry> readAll(Path file, int chunkSize) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (EntryFileReader reader = new EntryFileReader(file)) {
+            List<Entry> chunk;
+            while (!(chunk = reader.readEntries(chunkSize)).isEmpty()) {
+                entries.addAll(chunk);
+            }
+        }
+        return entries;
+    }
+
+    private static List<String> tokens(List<Entry> entries) {
+        return entries.stream().map(Entry::getToken).collect(Collectors.toList());
+    }
+
+    private static Entry entry(String token, String projectSummary) {
+        return new Entry(token, token.substring(0, 3).toUpperCase(), "", "1,000,000", "$5M", "40%", "$0.05",
+                projectSummary, "", "", "", "", "2018-07-01", "", "ERC20", "", "", "", "", "", "", "",
+                "https://icodrops.com/" + token.toLowerCase() + "/", "", "", "", "", "");
+    }
+}
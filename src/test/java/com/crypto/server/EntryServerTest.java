@@ -0,0 +1,115 @@
+package com.crypto.server;
+
+import com.crypto.entity.Entry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EntryServerTest {
+
+    private CatalogCache cache;
+
+    private EntryServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        List<Entry> entries = Arrays.asList(entry("Alpha", "$5M"), entry("Beta", "$2M"), entry("Gamma", "$1M"));
+        this.cache = new CatalogCache(() -> entries, 60000);
+        this.cache.start();
+
+        this.server = new EntryServer(0, this.cache);
+        this.server.start();
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop();
+        this.cache.shutdown();
+    }
+
+    @Test
+    public void listensOnlyOnTheLoopbackAddressByDefault() {
+        assertTrue(this.server.getAddress().getAddress().isLoopbackAddress());
+    }
+
+    @Test
+    public void limitAboveTheCatalogSizeReturnsEveryEntry() throws IOException {
+        Response response = get("/entries?orderBy=fundraising_goal&limit=2000000000");
+
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.contains("\"count\":3"));
+        assertTrue(response.body.indexOf("Gamma") < response.body.indexOf("Beta"));
+        assertTrue(response.body.indexOf("Beta") < response.body.indexOf("Alpha"));
+    }
+
+    @Test
+    public void limitCutsTheSortedEntries() throws IOException {
+        Response response = get("/entries?orderBy=fundraising_goal&order=desc&limit=1");
+
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.contains("\"count\":1"));
+        assertTrue(response.body.contains("Alpha"));
+    }
+
+    @Test
+    public void invalidParametersAreRejected() throws IOException {
+        assertEquals(400, get("/entries?limit=-1").status);
+        assertEquals(400, get("/entries?limit=1.5").status);
+        assertEquals(400, get("/entries?orderBy=nothing").status);
+        assertEquals(400, get("/entries?unknown=1").status);
+    }
+
+    @Test
+    public void healthReportsTheCatalogSize() throws IOException {
+        Response response = get("/health");
+
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.contains("\"entries\":3"));
+    }
+
+    private Response get(String path) throws IOException {
+        URL url = new URL("http", this.server.getAddress().getHostString(), this.server.getAddress().getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            int status = connection.getResponseCode();
+            try (InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                if (stream != null) {
+                    stream.transferTo(body);
+                }
+                return new Response(status, body.toString(StandardCharsets.UTF_8));
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static Entry entry(String token, String fundraisingGoal) {
+        return new Entry(token, "", "", "", fundraisingGoal, "", "", "", "", "", "", "", "", "", "ERC20",
+                "", "", "", "", "", "", "", "https://icodrops.com/" + token.toLowerCase() + "/", "", "", "", "", "");
+    }
+
+    private static class Response {
+
+        private int status;
+
+        private String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.crypto.snapshot;
+
+import com.crypto.entity.Entry;
+import com.crypto.entity.ImmutableEntry;
+import com.crypto.exception.SnapshotFormatException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class SnapshotTest {
+
+    private Path directory;
+
+    private Path snapshot;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("snapshot-test");
+        this.snapshot = this.directory.resolve("entries.snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void roundTripKeepsEveryValueAndTheRowOrder() throws IOException {
+        char[] longSummary = new char[100 * 1024];
+        Arrays.fill(longSummary, 'x');
+
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            entries.add(ImmutableEntry.builder()
+                    .setToken("Coin " + i)
+                    .setTicker(i % 2 == 0 ? "C" + i : null)
+                    .setProjectSummary(i == 7 ? new String(longSummary) : "Résumé ✓ " + i)
+                    .setUrl("https://icodrops.com/coin-" + i + "/")
+                    .build()
+                    .toEntry());
+        }
+
+        SnapshotWriter.write(this.snapshot, entries);
+        SnapshotReader reader = new SnapshotReader(this.snapshot);
+
+        assertEquals(3000, reader.getRowCount());
+        assertEquals(Entry.getFieldNames(), reader.getColumnNames());
+
+        Map<String, Entry> readEntries = reader.getEntries();
+        assertEquals(3000, readEntries.size());
+        assertEquals("Coin 0", readEntries.keySet().iterator().next());
+
+        Entry entry = reader.getEntry(7);
+        assertEquals("Coin 7", entry.getToken());
+        assertNull(entry.getTicker());
+        assertEquals(longSummary.length, entry.getProjectSummary().length());
+
+        assertEquals("Résumé ✓ 2999", reader.getValue(2999, "projectSummary"));
+        assertEquals("C2998", reader.getValue(2998, Entry.getFieldNames().indexOf("ticker")));
+        assertNull(reader.getValue(0, "unknownColumn"));
+    }
+
+    @Test
+    public void emptySnapshotHasNoRows() throws IOException {
+        SnapshotWriter.write(this.snapshot, Collections.emptyList());
+
+        SnapshotReader reader = new SnapshotReader(this.snapshot);
+        assertEquals(0, reader.getRowCount());
+        assertEquals(0, reader.getEntries().size());
+    }
+
+    @Test
+    public void truncatedSnapshotIsFormatError() throws IOException {
+        SnapshotWriter.write(this.snapshot, Arrays.asList(
+                ImmutableEntry.builder().setToken("Alpha").build().toEntry(),
+                ImmutableEntry.builder().setToken("Beta").build().toEntry()));
+        byte[] contents = Files.readAllBytes(this.snapshot);
+
+        for (int length : new int[] {0, 3, 11, 40, contents.length / 2, contents.length - 9, contents.length - 1}) {
+            Path truncated = this.directory.resolve("truncated-" + length);
+            Files.write(truncated, Arrays.copyOf(contents, length));
+            assertFormatError(truncated);
+        }
+    }
+
+    @Test
+    public void corruptHeaderIsFormatError() throws IOException {
+        SnapshotWriter.write(this.snapshot, Collections.singletonList(
+                ImmutableEntry.builder().setToken("Alpha").build().toEntry()));
+        byte[] contents = Files.readAllBytes(this.snapshot);
+
+        // Magic number
+        assertFormatError(corrupt(contents, 0, 0x12345678));
+
+        // Column count
+        assertFormatError(corrupt(contents, Integer.BYTES + Short.BYTES + Short.BYTES, Integer.MAX_VALUE));
+        assertFormatError(corrupt(contents, Integer.BYTES + Short.BYTES + Short.BYTES, -1));
+
+        // Length of the first column name
+        assertFormatError(corrupt(contents, SnapshotFormat.PREAMBLE_SIZE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void rowOffsetOutsideOfTheDataIsFormatError() throws IOException {
+        SnapshotWriter.write(this.snapshot, Collections.singletonList(
+                ImmutableEntry.builder().setToken("Alpha").build().toEntry()));
+        byte[] contents = Files.readAllBytes(this.snapshot);
+
+        ByteBuffer buffer = ByteBuffer.wrap(contents);
+        buffer.putLong(contents.length - SnapshotFormat.INDEX_ENTRY_SIZE, contents.length);
+
+        Path corrupt = this.directory.resolve("corrupt-index");
+        Files.write(corrupt, contents);
+        assertFormatError(corrupt);
+    }
+
+    private Path corrupt(byte[] contents, int position, int value) throws IOException {
+        byte[] copy = contents.clone();
+        ByteBuffer.wrap(copy).putInt(position, value);
+
+        Path corrupt = this.directory.resolve("corrupt-" + position + "-" + value);
+        Files.write(corrupt, copy);
+        return corrupt;
+    }
+
+    private static void assertFormatError(Path path) throws IOException {
+        try {
+            new SnapshotReader(path);
+            fail("Expected a format error for " + path.getFileName());
+        } catch (SnapshotFormatException ex) {
+            // Expected
+        }
+    }
+}
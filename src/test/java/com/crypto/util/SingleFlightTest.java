@@ -0,0 +1,162 @@
+package com.crypto.util;
+
+import com.crypto.exception.DeadlineExceededException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallersShareTheLeadersResult() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> flight.execute("coin", Deadline.NONE, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "page";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<String> follower = executor.submit(() -> flight.execute("coin", Deadline.NONE, () -> {
+                calls.incrementAndGet();
+                return "other page";
+            }));
+            while (flight.getSharedCount() == 0) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertEquals("page", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("page", follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void followerWithTimeLeftRetriesWhenTheLeadersDeadlinePasses() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> flight.execute("coin", Deadline.NONE, () -> {
+                started.countDown();
+                await(release);
+                throw new DeadlineExceededException("Leader ran out of time");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<String> follower = executor.submit(() ->
+                    flight.execute("coin", Deadline.afterMillis(5000), () -> "page"));
+            while (flight.getSharedCount() == 0) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertEquals("page", follower.get(5, TimeUnit.SECONDS));
+            try {
+                leader.get(5, TimeUnit.SECONDS);
+                fail("Leader should fail with its own deadline");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof DeadlineExceededException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void followerSharesOtherFailures() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            executor.submit(() -> flight.execute("coin", Deadline.NONE, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                throw new IOException("Not found");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<String> follower = executor.submit(() -> flight.execute("coin", Deadline.afterMillis(5000), () -> {
+                calls.incrementAndGet();
+                return "page";
+            }));
+            while (flight.getSharedCount() == 0) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            try {
+                follower.get(5, TimeUnit.SECONDS);
+                fail("Follower should share the leader's failure");
+            } catch (ExecutionException ex) {
+                assertEquals("Not found", ex.getCause().getMessage());
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void followerFailsOnceItsOwnDeadlinePasses() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            executor.submit(() -> flight.execute("coin", Deadline.NONE, () -> {
+                started.countDown();
+                await(release);
+                return "page";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            try {
+                flight.execute("coin", Deadline.afterMillis(50), () -> "other page");
+                fail("Follower should time out waiting");
+            } catch (DeadlineExceededException ex) {
+                // expected
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+    }
+}